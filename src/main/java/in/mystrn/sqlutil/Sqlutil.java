@@ -1,7 +1,9 @@
 package in.mystrn.sqlutil;
 
 import com.formdev.flatlaf.FlatIntelliJLaf;
+import gudusoft.gsqlparser.EDbVendor;
 import in.mystrn.sqlutil.forms.FrmQueryAnalyzer;
+import in.mystrn.sqlutil.utils.ParserPool;
 import java.awt.Color; // <-- IMPORT THIS
 import java.awt.Insets;
 import javax.swing.SwingUtilities;
@@ -51,7 +53,13 @@ public class Sqlutil {
             }
         }
 
-        // 3. CREATE YOUR UI
+        // 3. WARM UP THE SQL PARSER IN THE BACKGROUND
+        // Loads the grammars of the vendors the form can detect, so the first
+        // Analyze click doesn't pay for it
+        ParserPool.warmUpAsync(EDbVendor.dbvmysql, EDbVendor.dbvpostgresql,
+                EDbVendor.dbvoracle, EDbVendor.dbvmssql);
+
+        // 4. CREATE YOUR UI
         // All components will now use the custom styles defined above
         SwingUtilities.invokeLater(new Runnable() {
             @Override
@@ -0,0 +1,396 @@
+package in.mystrn.sqlutil;
+
+import gudusoft.gsqlparser.EDbVendor;
+import in.mystrn.sqlutil.models.PhaseTimings;
+import in.mystrn.sqlutil.models.SqlResult;
+import in.mystrn.sqlutil.utils.CancellationToken;
+import in.mystrn.sqlutil.utils.MetricsRegistry;
+import in.mystrn.sqlutil.utils.ParsedScript;
+import in.mystrn.sqlutil.utils.ResultJsonWriter;
+import in.mystrn.sqlutil.utils.SlowQueryLog;
+import in.mystrn.sqlutil.utils.SqlAnalyzer;
+import in.mystrn.sqlutil.utils.SqlStatementSplitter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Headless entry point: analyzes SQL files and writes the results as JSON
+ * lines, without touching AWT, Swing or FlatLaf.
+ *
+ * <pre>
+ * java -cp sqlutil.jar in.mystrn.sqlutil.SqlutilBatch [--vendor mysql] [--threads N]
+ *      [--output results.jsonl] [--ext .sql] [--split-over BYTES] &lt;file-or-directory&gt;...
+ * </pre>
+ *
+ * Files are analyzed concurrently, one file per task; lines are written as
+ * files complete. Files larger than {@code --split-over} (16 MiB by default),
+ * such as dumps, are never loaded whole: they are streamed through
+ * {@link SqlStatementSplitter} and analyzed statement by statement.
+ *
+ * With {@code --slow-log}, a MySQL slow query log is aggregated by query
+ * fingerprint and only the sample statement of the {@code --top} fingerprints
+ * by total query time (20 by default) is analyzed; their log statistics are
+ * added to each output line. Every line also carries a {@code "timings"} object
+ * with the parse and structural analysis time of its script, in milliseconds.
+ * {@code --metrics} prints the counters, timers and histograms of the run to
+ * stderr at the end. Exit code 0 means every file parsed, 1 that at least one
+ * file failed to read or parse, 2 a usage error.
+ *
+ * @author hive
+ */
+public class SqlutilBatch {
+
+    private EDbVendor vendor = EDbVendor.dbvmysql;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Path output;
+    private String extension = ".sql";
+    private long splitThreshold = 16L * 1024 * 1024;
+    private final List<Path> slowLogs = new ArrayList<>();
+    private int top = 20;
+    private boolean printMetrics;
+    private final List<Path> inputs = new ArrayList<>();
+
+    // Every script is read once: skip the shared cache
+    private static final SqlAnalyzer.Options ANALYSIS_OPTIONS = SqlAnalyzer.Options.DEFAULT.withCache(false);
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Object idleLock = new Object();
+    private int pending;
+    private ExecutorService workers;
+    private Semaphore statementPermits;
+    private ResultJsonWriter results;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        SqlutilBatch batch = new SqlutilBatch();
+        try {
+            batch.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+        try {
+            System.exit(batch.run() ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: SqlutilBatch [--vendor mysql|postgresql|oracle|mssql|...] [--threads N]");
+        System.err.println("                    [--output FILE] [--ext .sql] [--split-over BYTES]");
+        System.err.println("                    [--slow-log FILE [--top N]] [--metrics] <file-or-directory>...");
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--vendor":
+                    vendor = parseVendor(valueOf(args, ++i, arg));
+                    break;
+                case "--threads":
+                    try {
+                        threads = Integer.parseInt(valueOf(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--threads expects a number.");
+                    }
+                    if (threads < 1) {
+                        throw new IllegalArgumentException("--threads must be at least 1.");
+                    }
+                    break;
+                case "--output":
+                    output = Paths.get(valueOf(args, ++i, arg));
+                    break;
+                case "--split-over":
+                    try {
+                        splitThreshold = Long.parseLong(valueOf(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--split-over expects a size in bytes.");
+                    }
+                    break;
+                case "--slow-log":
+                    slowLogs.add(Paths.get(valueOf(args, ++i, arg)));
+                    break;
+                case "--top":
+                    try {
+                        top = Integer.parseInt(valueOf(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--top expects a number.");
+                    }
+                    if (top < 1) {
+                        throw new IllegalArgumentException("--top must be at least 1.");
+                    }
+                    break;
+                case "--metrics":
+                    printMetrics = true;
+                    break;
+                case "--ext":
+                    extension = valueOf(args, ++i, arg).toLowerCase(Locale.ROOT);
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                    inputs.add(Paths.get(arg));
+            }
+        }
+        if (inputs.isEmpty() && slowLogs.isEmpty()) {
+            throw new IllegalArgumentException("No input files, directories or slow logs given.");
+        }
+    }
+
+    private static String valueOf(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " expects a value.");
+        }
+        return args[index];
+    }
+
+    /** Accepts Gudu vendor names with or without the "dbv" prefix (mysql, dbvmysql). */
+    private static EDbVendor parseVendor(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        if (!key.startsWith("dbv")) {
+            key = "dbv" + key;
+        }
+        try {
+            return EDbVendor.valueOf(key);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown vendor " + name);
+        }
+    }
+
+    /** Expands directories into the files below them that carry the extension. */
+    private List<Path> collectFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                try (Stream<Path> walk = Files.walk(input)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(extension))
+                            .sorted()
+                            .forEach(files::add);
+                }
+            } else if (Files.isRegularFile(input)) {
+                files.add(input);
+            } else {
+                throw new IOException("No such file or directory: " + input);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Analyzes all inputs.
+     *
+     * @return true if every file was read and parsed.
+     */
+    private boolean run() throws IOException {
+        List<Path> files = collectFiles();
+        long start = System.nanoTime();
+
+        Writer writer = output != null
+                ? Files.newBufferedWriter(output, StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        results = new ResultJsonWriter(writer);
+        AtomicInteger workerIds = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "sqlutil-batch-" + workerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        statementPermits = new Semaphore(threads * 4);
+        try {
+            for (Path file : files) {
+                submit(() -> analyzeFile(file));
+            }
+            for (Path slowLog : slowLogs) {
+                analyzeSlowLog(slowLog);
+            }
+            awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+            writer.flush();
+            if (output != null) {
+                writer.close();
+            }
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.err.printf("Analyzed %d files (%d statements) in %d ms with %d threads; %d failed.%n",
+                files.size(), statements.sum(), elapsedMs, threads, failures.sum());
+        if (printMetrics) {
+            System.err.print(MetricsRegistry.getShared().format());
+        }
+        return failures.sum() == 0;
+    }
+
+    /** Aggregates a slow log and analyzes the top fingerprints by total time. */
+    private void analyzeSlowLog(Path slowLog) {
+        String source = slowLog.toString();
+        SlowQueryLog log;
+        try {
+            log = SlowQueryLog.read(slowLog);
+        } catch (IOException | RuntimeException e) {
+            fail(source, -1, e.toString());
+            return;
+        }
+        System.err.printf("%s: %d queries, %d distinct fingerprints.%n", source, log.getTotalQueries(),
+                log.getEntries().size());
+        List<SlowQueryLog.Entry> topEntries = log.getTopByTotalTime(top);
+        for (int i = 0; i < topEntries.size(); i++) {
+            SlowQueryLog.Entry entry = topEntries.get(i);
+            Map<String, Object> extra = new LinkedHashMap<>();
+            extra.put("rank", i + 1);
+            extra.putAll(entry.toMap());
+            submit(() -> {
+                try {
+                    PhaseTimings timings = new PhaseTimings();
+                    write(source, analyze(entry.getSample(), timings), -1, extra, timings);
+                } catch (RuntimeException e) {
+                    fail(source, -1, e.toString());
+                }
+            });
+        }
+    }
+
+    private void analyzeFile(Path file) {
+        String source = file.toString();
+        try {
+            if (Files.size(file) > splitThreshold) {
+                analyzeLargeFile(file);
+                return;
+            }
+            String sql = Files.readString(file, StandardCharsets.UTF_8);
+            PhaseTimings timings = new PhaseTimings();
+            write(source, analyze(sql, timings), -1, Map.of(), timings);
+        } catch (IOException | RuntimeException e) {
+            fail(source, -1, e.toString());
+        }
+    }
+
+    /**
+     * Streams a large file through the {@link SqlStatementSplitter} and analyzes
+     * its statements one at a time. Statements are handed to idle workers while
+     * permits are available and analyzed on the splitting thread otherwise, which
+     * bounds the statements in flight (and the heap they need).
+     */
+    private void analyzeLargeFile(Path file) throws IOException {
+        String source = file.toString();
+        new SqlStatementSplitter(vendor).split(file, statement -> {
+            if (statement.isOversized()) {
+                fail(source, statement.getIndex(), "Statement at line " + statement.getLine() + " is larger than "
+                        + SqlStatementSplitter.DEFAULT_MAX_STATEMENT_BYTES + " bytes and was skipped.");
+                return;
+            }
+            if (statementPermits.tryAcquire()) {
+                submit(() -> {
+                    try {
+                        analyzeStatement(source, statement);
+                    } finally {
+                        statementPermits.release();
+                    }
+                });
+            } else {
+                analyzeStatement(source, statement);
+            }
+        });
+    }
+
+    private void analyzeStatement(String source, SqlStatementSplitter.Statement statement) {
+        try {
+            PhaseTimings timings = new PhaseTimings();
+            write(source, analyze(statement.getSql(), timings), statement.getIndex(), Map.of(), timings);
+        } catch (RuntimeException e) {
+            fail(source, statement.getIndex(), e.toString());
+        }
+    }
+
+    /** Parses and analyzes the SQL, recording the time of both phases. */
+    private SqlResult analyze(String sql, PhaseTimings timings) {
+        SqlAnalyzer analyzer = SqlAnalyzer.getShared();
+        long phaseStart = System.nanoTime();
+        ParsedScript script = analyzer.parse(vendor, sql, ANALYSIS_OPTIONS);
+        phaseStart = timings.record(PhaseTimings.Phase.PARSE, phaseStart);
+        try {
+            return analyzer.analyze(script, ANALYSIS_OPTIONS, new CancellationToken());
+        } finally {
+            timings.record(PhaseTimings.Phase.STRUCTURAL_ANALYSIS, phaseStart);
+            script.release();
+        }
+    }
+
+    /** Writes the result with the extra fields and a "timings" object of milliseconds per phase. */
+    private void write(String source, SqlResult result, int firstIndex, Map<String, ?> extra, PhaseTimings timings) {
+        if (!result.isValid()) {
+            failures.increment();
+        }
+        statements.add(result.getStatementCount());
+        Map<String, Object> fields = new LinkedHashMap<>(extra);
+        fields.put("timings", timings.toMap());
+        try {
+            results.write(source, result, firstIndex, fields);
+        } catch (IOException e) {
+            System.err.println("Could not write result for " + source + ": " + e.getMessage());
+        }
+    }
+
+    private void fail(String source, int index, String message) {
+        failures.increment();
+        try {
+            results.writeFailure(source, index, message);
+        } catch (IOException e) {
+            System.err.println("Could not write result for " + source + ": " + e.getMessage());
+        }
+    }
+
+    /** Runs a task on the worker pool, counting it until it finishes. */
+    private void submit(Runnable task) {
+        synchronized (idleLock) {
+            pending++;
+        }
+        workers.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                synchronized (idleLock) {
+                    if (--pending == 0) {
+                        idleLock.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    /** Waits until every submitted task, including tasks they submitted, has finished. */
+    private void awaitIdle() throws InterruptedException {
+        synchronized (idleLock) {
+            while (pending > 0) {
+                idleLock.wait();
+            }
+        }
+    }
+}
@@ -8,19 +8,19 @@ import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent; // For Key Binding
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList; // Used in createTableTabsFromAnalysis
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
@@ -32,9 +32,12 @@ import javax.swing.ActionMap;
 import javax.swing.BorderFactory;
 import javax.swing.InputMap;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPasswordField;
 import javax.swing.JScrollPane;
@@ -46,25 +49,41 @@ import javax.swing.JTextField;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.UIManager;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel; // Still needed for clearing/initial build
+import javax.swing.table.TableModel;
 
 // --- Imports ---
 import com.formdev.flatlaf.FlatIntelliJLaf; // Or your chosen FlatLaf theme
 
 import gudusoft.gsqlparser.EDbVendor;
-import gudusoft.gsqlparser.TGSqlParser;
-import gudusoft.gsqlparser.TSourceToken;
-import gudusoft.gsqlparser.nodes.TParseTreeNode;
-import gudusoft.gsqlparser.stmt.TDeleteSqlStatement;
-import gudusoft.gsqlparser.stmt.TInsertSqlStatement;
-import gudusoft.gsqlparser.stmt.TSelectSqlStatement;
-import gudusoft.gsqlparser.stmt.TUpdateSqlStatement;
+import in.mystrn.sqlutil.models.ColumnUsage;
+import in.mystrn.sqlutil.models.ExplainPlan;
+import in.mystrn.sqlutil.models.MicroAnalysis;
+import in.mystrn.sqlutil.models.PerformanceHint;
+import in.mystrn.sqlutil.models.PhaseTimings;
+import in.mystrn.sqlutil.models.SqlResult;
+import in.mystrn.sqlutil.models.StatementResult;
+import in.mystrn.sqlutil.models.TableUsage;
+import in.mystrn.sqlutil.utils.CancellationToken;
+import in.mystrn.sqlutil.utils.ConnectionPool;
 import in.mystrn.sqlutil.utils.CustomTableModel;
+import in.mystrn.sqlutil.utils.ExplainCache;
+import in.mystrn.sqlutil.utils.ExplainRunner;
+import in.mystrn.sqlutil.utils.MetricsRegistry;
 import in.mystrn.sqlutil.utils.ErrorDialog;
-import in.mystrn.sqlutil.utils.ProcessingDialog;
+import in.mystrn.sqlutil.utils.LiveAnalyzer;
+import in.mystrn.sqlutil.utils.ParsedScript;
+import in.mystrn.sqlutil.utils.PlanMicroAnalyzer;
 import in.mystrn.sqlutil.utils.ProcessingTask;
-import in.mystrn.sqlutil.utils.QueryAnalyzerUtil; // Your Gudu Util
+import in.mystrn.sqlutil.utils.RowHeightLayoutService;
+import in.mystrn.sqlutil.utils.SqlAnalyzer;
+import in.mystrn.sqlutil.utils.TaskPanel;
+import in.mystrn.sqlutil.utils.TaskScheduler;
+import in.mystrn.sqlutil.utils.WindowedTableModel;
 import in.mystrn.sqlutil.utils.WrappingTableCellRenderer;
 
 /**
@@ -86,15 +105,43 @@ public class FrmQueryAnalyzer extends JFrame {
     private JTable explainTable;
     private JTabbedPane resultsTabbedPane;
     private JTextArea analysisTextArea;
+    private JTextArea liveAnalysisTextArea; // Live results, apart from the last full run's report
+    private JScrollPane liveAnalysisScrollPane; // Tab of the live results while live analysis is on
     private JButton analyzeButton;
     private JLabel explainTimeLabel; // Label for EXPLAIN time
+    private JComboBox<ExplainPlan.Mode> explainModeCombo; // Traditional / JSON / ANALYZE
+    private JComboBox<String> planSelector; // Which statement's plan the EXPLAIN table shows
+    private List<ExplainRunner.Result> lastExplainResults; // Plans of the last run, in selector order
+    private Map<Integer, String> lastSelectSql = Map.of(); // SQL of the last run's SELECTs, by statement index
+    private WindowedTableModel previewModel; // Rows shown in the preview tab, if open
+    private final Map<String, Component> tableTabIndex = new HashMap<>(); // Table tab by lower-case title
+    private JCheckBox liveAnalysisCheckBox; // Re-analyze structure while typing
+    private Timer liveAnalysisTimer; // Debounces edits before a live run
+    private TaskScheduler.Task analysisTask; // The latest Analyze run
+    private int analysisRun; // Counts Analyze runs; only the latest one renders
 
     // --- Font Definition ---
     // Using a Google Font (Roboto Mono). Assumes font is installed.
     private static final Font MONOSPACED_FONT = new Font("Roboto Mono", Font.PLAIN, 13);
 
-    // --- Gudu Query Analyzer Utility Instance ---
-    private final QueryAnalyzerUtil queryAnalyzerUtil;
+    // --- Live analysis of the editor's text ---
+    private final LiveAnalyzer liveAnalyzer = new LiveAnalyzer();
+
+    // --- Plans of earlier runs, keyed by fingerprint and connection ---
+    private static final ExplainCache EXPLAIN_CACHE = new ExplainCache();
+
+    // --- Per-phase time budgets; an overrunning phase returns what it has ---
+    private static final long ANALYSIS_BUDGET_MS = 15_000;
+    private static final long EXPLAIN_BUDGET_MS = 60_000;
+
+    // --- Title of the tab "Preview Rows" opens ---
+    private static final String PREVIEW_TAB_TITLE = "Rows Preview";
+
+    // --- Title of the tab live analysis writes to ---
+    private static final String LIVE_TAB_TITLE = "Live Analysis";
+
+    // --- Pause in typing after which live analysis runs ---
+    private static final int LIVE_ANALYSIS_DELAY_MS = 300;
 
     public FrmQueryAnalyzer() {
         setTitle("SQL Query Analyzer");
@@ -102,8 +149,6 @@ public class FrmQueryAnalyzer extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
-        queryAnalyzerUtil = new QueryAnalyzerUtil();
-
         initComponents();
     }
 
@@ -132,6 +177,26 @@ public class FrmQueryAnalyzer extends JFrame {
         actionMap.put(actionName, analyzeAction);
         // --- END Key Binding ---
 
+        // --- Live analysis: re-run the structural analysis once typing pauses ---
+        liveAnalysisTimer = new Timer(LIVE_ANALYSIS_DELAY_MS, e -> runLiveAnalysis());
+        liveAnalysisTimer.setRepeats(false);
+        queryInputArea.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                scheduleLiveAnalysis();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                scheduleLiveAnalysis();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes only
+            }
+        });
+
         JScrollPane queryScrollPane = new JScrollPane(queryInputArea);
         queryScrollPane.setBorder(BorderFactory.createTitledBorder("SQL Query"));
 
@@ -143,9 +208,16 @@ public class FrmQueryAnalyzer extends JFrame {
         WrappingTableCellRenderer wrappingRendererExplain = new WrappingTableCellRenderer();
         explainTable.setDefaultRenderer(Object.class, wrappingRendererExplain);
         explainTable.setRowHeight(20); // Minimum row height
+        RowHeightLayoutService.install(explainTable); // Wrapped heights, measured off the EDT
 
         JScrollPane tableScrollPane = new JScrollPane(explainTable);
-        tableScrollPane.setBorder(BorderFactory.createTitledBorder("EXPLAIN Plan (from DB)"));
+        planSelector = new JComboBox<>();
+        planSelector.setEnabled(false);
+        planSelector.addActionListener(e -> showSelectedPlan());
+        JPanel planPanel = new JPanel(new BorderLayout());
+        planPanel.setBorder(BorderFactory.createTitledBorder("EXPLAIN Plan (from DB)"));
+        planPanel.add(planSelector, BorderLayout.NORTH);
+        planPanel.add(tableScrollPane, BorderLayout.CENTER);
 
         resultsTabbedPane = new JTabbedPane();
         analysisTextArea = new JTextArea();
@@ -153,6 +225,10 @@ public class FrmQueryAnalyzer extends JFrame {
         analysisTextArea.setFont(MONOSPACED_FONT); // Apply font
         JScrollPane analysisScrollPane = new JScrollPane(analysisTextArea);
         resultsTabbedPane.addTab("Structural Analysis & Hints", analysisScrollPane);
+        liveAnalysisTextArea = new JTextArea();
+        liveAnalysisTextArea.setEditable(false);
+        liveAnalysisTextArea.setFont(MONOSPACED_FONT);
+        liveAnalysisScrollPane = new JScrollPane(liveAnalysisTextArea);
 
         analyzeButton = new JButton("Analyze Query");
         analyzeButton.setPreferredSize(new Dimension(160, 40));
@@ -163,6 +239,37 @@ public class FrmQueryAnalyzer extends JFrame {
         JToolBar toolBar = new JToolBar();
         toolBar.setFloatable(false);
         toolBar.add(analyzeButton);
+        toolBar.addSeparator();
+        toolBar.add(new JLabel("EXPLAIN mode: "));
+        explainModeCombo = new JComboBox<>(ExplainPlan.Mode.values());
+        explainModeCombo.setToolTipText("Analyze runs the statement (SELECT only) to measure actual rows and times. MySQL only.");
+        explainModeCombo.setMaximumSize(explainModeCombo.getPreferredSize());
+        toolBar.add(explainModeCombo);
+        toolBar.addSeparator();
+        JButton metricsButton = new JButton("Metrics");
+        metricsButton.setToolTipText("Counters and timings of parsing, analysis, connections and EXPLAIN in this session");
+        metricsButton.addActionListener(e -> showMetrics());
+        toolBar.add(metricsButton);
+        JButton previewButton = new JButton("Preview Rows");
+        previewButton.setToolTipText("Runs the SELECT whose plan is shown and pages through its rows as you scroll");
+        previewButton.addActionListener(e -> previewRows());
+        toolBar.add(previewButton);
+        toolBar.addSeparator();
+        liveAnalysisCheckBox = new JCheckBox("Live analysis");
+        liveAnalysisCheckBox.setToolTipText("Updates the structural hints as you type; only edited statements are parsed again");
+        liveAnalysisCheckBox.addActionListener(e -> {
+            if (liveAnalysisCheckBox.isSelected()) {
+                resultsTabbedPane.insertTab(LIVE_TAB_TITLE, null, liveAnalysisScrollPane, null, 1);
+                resultsTabbedPane.setSelectedComponent(liveAnalysisScrollPane);
+                runLiveAnalysis();
+            } else {
+                liveAnalysisTimer.stop();
+                liveAnalyzer.cancel();
+                resultsTabbedPane.remove(liveAnalysisScrollPane);
+                liveAnalysisTextArea.setText("");
+            }
+        });
+        toolBar.add(liveAnalysisCheckBox);
 
         // --- Add Explain Time Label to layout ---
         explainTimeLabel = new JLabel("Explain Time: - ms");
@@ -174,7 +281,7 @@ public class FrmQueryAnalyzer extends JFrame {
 
 
         JSplitPane resultsSplitPane = new JSplitPane(
-                JSplitPane.VERTICAL_SPLIT, tableScrollPane, resultsTabbedPane);
+                JSplitPane.VERTICAL_SPLIT, planPanel, resultsTabbedPane);
         resultsSplitPane.setDividerLocation(300);
         JSplitPane mainSplitPane = new JSplitPane(
                 JSplitPane.HORIZONTAL_SPLIT, queryScrollPane, resultsSplitPane);
@@ -184,6 +291,7 @@ public class FrmQueryAnalyzer extends JFrame {
         topPanel.add(southPanel, BorderLayout.SOUTH); // Use container with label
         add(topPanel, BorderLayout.NORTH);
         add(mainSplitPane, BorderLayout.CENTER);
+        add(new TaskPanel(TaskScheduler.getShared()), BorderLayout.SOUTH); // Running analyses, non-modal
 
         // --- Action Listener with Integrated Logic ---
         analyzeButton.addActionListener(new ActionListener() {
@@ -191,6 +299,11 @@ public class FrmQueryAnalyzer extends JFrame {
             public void actionPerformed(ActionEvent e) {
                 String sqlQuery = queryInputArea.getText();
                 String jdbcUrl = jdbcUrlField.getText();
+                // Read on the EDT: the run connects from worker threads while the fields stay editable
+                String jdbcDriver = jdbcDriverField.getText();
+                String username = usernameField.getText();
+                String password = new String(passwordField.getPassword());
+                ExplainPlan.Mode selectedMode = (ExplainPlan.Mode) explainModeCombo.getSelectedItem();
 
                 if (sqlQuery == null || sqlQuery.trim().isEmpty()) {
                     ErrorDialog.showError(FrmQueryAnalyzer.this, "Please enter a query to analyze.");
@@ -200,119 +313,123 @@ public class FrmQueryAnalyzer extends JFrame {
                     ErrorDialog.showError(FrmQueryAnalyzer.this, "Please enter a JDBC URL.");
                     return;
                 }
+                // The full analysis below supersedes an earlier Analyze; live runs write to their own tab
+                if (analysisTask != null) {
+                    analysisTask.cancel();
+                }
+                final int runId = ++analysisRun;
+                final ExplainRunner.ConnectionSource connections = () -> getConnection(jdbcDriver, jdbcUrl, username, password);
+                final ConnectionPool.Key connectionKey = ConnectionPool.keyOf(jdbcUrl, username, password);
 
-                ProcessingDialog.show(FrmQueryAnalyzer.this, "Analyzing Query...", new ProcessingTask() {
+                analysisTask = TaskScheduler.getShared().submit("Analyze Query", new ProcessingTask() {
                     @Override
                     public void run(Consumer<String> messageUpdater) throws Exception {
-                        Connection connection = null;
-                        TSelectSqlStatement explainableSelectStatement = null; // Node for SELECT
-                        String explainableStatementSql = null; // SQL text for EXPLAIN
-                        long explainDurationMs = -1;
+                        run(messageUpdater, new CancellationToken());
+                    }
+
+                    @Override
+                    public void run(Consumer<String> messageUpdater, CancellationToken cancellationToken) throws Exception {
+                        ParsedScript script = null;
+                        // Where the time goes, from vendor detection to the EDT rendering the results
+                        final PhaseTimings timings = new PhaseTimings();
+                        final long runStart = System.nanoTime();
+                        long phaseStart = runStart;
 
                         try {
                             messageUpdater.accept("Determining database vendor...");
                             EDbVendor detectedVendor = determineDbVendor(jdbcUrl);
+                            phaseStart = timings.record(PhaseTimings.Phase.VENDOR_DETECTION, phaseStart);
                             // Corrected check for unknown vendor
                             if (detectedVendor == EDbVendor.dbvansi) {
                                 throw new Exception("Could not determine database vendor from URL: " + jdbcUrl);
                             }
-                            queryAnalyzerUtil.vendor = detectedVendor;
+                            // Shared and stateless: an overtaken run may still be parsing
+                            SqlAnalyzer analyzer = SqlAnalyzer.getShared();
+                            SqlAnalyzer.Options options = SqlAnalyzer.Options.DEFAULT.withBudgetMs(ANALYSIS_BUDGET_MS);
                             messageUpdater.accept("Vendor detected: " + detectedVendor.name());
 
                             messageUpdater.accept("Parsing SQL script...");
-                            TGSqlParser parser = new TGSqlParser(detectedVendor);
-                            parser.sqltext = sqlQuery;
-                            if (parser.parse() != 0) {
-                                 queryAnalyzerUtil.isValidSQL(sqlQuery); // Populate error field
-                                 throw new Exception("SQL parsing failed:\n" + queryAnalyzerUtil.error);
+                            script = analyzer.parse(detectedVendor, sqlQuery, options);
+                            if (!script.isValid()) {
+                                 throw new Exception("SQL parsing failed:\n" + script.getError());
                             }
 
-                            // Find the first explainable statement
-                            for (int i = 0; i < parser.sqlstatements.size(); i++) {
-                                TParseTreeNode stmtNode = parser.sqlstatements.get(i);
-                                if (stmtNode instanceof TSelectSqlStatement || stmtNode instanceof TInsertSqlStatement
-                                    || stmtNode instanceof TUpdateSqlStatement || stmtNode instanceof TDeleteSqlStatement)
-                                {
-                                    TSourceToken startToken = stmtNode.getStartToken();
-                                    TSourceToken endToken = stmtNode.getEndToken();
-                                    if (startToken != null && endToken != null) {
-                                        explainableStatementSql = sqlQuery.substring(
-                                                (int) startToken.offset,
-                                                (int) (endToken.offset + endToken.astext.length())
-                                        ).trim();
-                                        if (stmtNode instanceof TSelectSqlStatement) {
-                                             explainableSelectStatement = (TSelectSqlStatement) stmtNode;
-                                        }
-                                        break;
-                                    }
-                                }
-                            }
+                            // Every statement EXPLAIN accepts is explained, not just the first
+                            List<ParsedScript.ExplainableStatement> explainables = script.findExplainables();
+                            phaseStart = timings.record(PhaseTimings.Phase.PARSE, phaseStart);
+                            cancellationToken.throwIfCancelled();
 
                             messageUpdater.accept("Performing structural analysis...");
-                            final Map<String, Object> analysisResult = queryAnalyzerUtil.analyzeQueryStructure(sqlQuery);
+                            final SqlResult analysisResult = analyzer.analyze(script, options, cancellationToken);
+                            timings.record(PhaseTimings.Phase.STRUCTURAL_ANALYSIS, phaseStart);
 
-                            SwingUtilities.invokeLater(() -> updateAnalysisDisplay(analysisResult));
-                            if (!Boolean.TRUE.equals(analysisResult.get("isValid"))) return;
+                            renderIfLatest(runId, () -> {
+                                long renderStart = System.nanoTime();
+                                updateAnalysisDisplay(analysisResult);
+                                timings.record(PhaseTimings.Phase.RENDERING, renderStart);
+                            });
+                            if (!analysisResult.isValid()) {
+                                renderIfLatest(runId, () -> showTimings(timings, runStart));
+                                return;
+                            }
+                            // Partial analysis is shown, but EXPLAIN is not started after a cancel
+                            cancellationToken.throwIfCancelled();
 
-                            if (explainableStatementSql == null) {
+                            if (explainables.isEmpty()) {
                                 messageUpdater.accept("No explainable (SELECT/INSERT/UPDATE/DELETE) statement found in script.");
-                                SwingUtilities.invokeLater(() -> {
+                                renderIfLatest(runId, () -> {
                                      explainTable.setModel(new DefaultTableModel());
                                      explainTimeLabel.setText("Explain Time: N/A");
+                                     showTimings(timings, runStart);
                                 });
                                 return;
                             }
 
-                            messageUpdater.accept("Connecting to database...");
-                            connection = getConnection();
-
-                            messageUpdater.accept("Executing EXPLAIN command...");
-                            String explainQuery = "EXPLAIN " + explainableStatementSql;
-                            CustomTableModel explainTableModel; // Build DefaultTableModel first
-                            Map<String, String> aliasToTableMapForExplain = new HashMap<>();
-
-                            try (Statement stmt = connection.createStatement();
-                                 ResultSet rs = stmt.executeQuery(explainQuery)) {
-                                long startTime = System.currentTimeMillis(); // Start time closer to execution
-                                explainTableModel = buildTableModel(rs); // Use our static method
-                                explainDurationMs = System.currentTimeMillis() - startTime; // End time after fetching
-
-                            } catch (SQLException explainEx) {
-                                if (explainEx.getMessage().toLowerCase().contains("unknown column") || explainEx.getMessage().toLowerCase().contains("unknown variable")) {
-                                     throw new Exception("Error executing EXPLAIN: Database doesn't recognize variables like '@workspace_id'. Remove SET commands and replace variables with literal values in your query before analyzing.", explainEx);
-                                } else {
-                                    throw new Exception("Error executing EXPLAIN: " + explainEx.getMessage(), explainEx);
+                            // Reuse the alias maps computed for the structural analysis (empty for non-SELECTs)
+                            Map<Integer, Map<String, String>> aliasMaps = new HashMap<>();
+                            Map<Integer, String> selectSql = new HashMap<>(); // What "Preview Rows" may run
+                            for (ParsedScript.ExplainableStatement explainable : explainables) {
+                                aliasMaps.put(explainable.getIndex(), script.getAliasMap(explainable.getIndex()));
+                                if (explainable.isSelect()) {
+                                    selectSql.put(explainable.getIndex(), explainable.getSql());
                                 }
                             }
 
-                            // Build alias map only if it was a SELECT statement
-                            if (explainableSelectStatement != null) {
-                                // Correctly call buildAliasMap on the util instance
-                                aliasToTableMapForExplain.putAll(queryAnalyzerUtil.buildAliasMap(explainableSelectStatement));
+                            messageUpdater.accept("Executing EXPLAIN for " + explainables.size() + " statement(s)...");
+                            ExplainRunner runner = new ExplainRunner(connections, connectionKey, detectedVendor, EXPLAIN_CACHE);
+                            long startTime = System.nanoTime();
+                            final List<ExplainRunner.Result> explainResults = runner.explainAll(explainables, analysisResult, selectedMode, messageUpdater,
+                                    cancellationToken, EXPLAIN_BUDGET_MS);
+                            final long wallClockMs = (System.nanoTime() - startTime) / 1_000_000L;
+                            // Summed over the workers, so these can add up to more than the wall clock
+                            for (ExplainRunner.Result result : explainResults) {
+                                timings.addAll(result.getTimings());
                             }
-
-                            final Map<String, String> finalAliasMap = aliasToTableMapForExplain;
-                            // Ensure analysisResult and its contents are accessible in EDT lambda
-                            final Map<String, Map<String, Object>> finalTableInfo = (Map<String, Map<String, Object>>) analysisResult.get("tableInfo");
-                            final long finalExplainDuration = explainDurationMs;
-                            // Make the DefaultTableModel final to pass to lambda
-
-                            SwingUtilities.invokeLater(() -> {
-                                // Create CustomTableModel from DefaultTableModel data for display
-                                explainTable.setModel(explainTableModel); // Set the custom model
-                                explainTimeLabel.setText("Explain Time: " + finalExplainDuration + " ms");
-                                performMicroAnalysis(explainTableModel, resultsTabbedPane, finalAliasMap, finalTableInfo, 10000); // Pass threshold
+                            // The micro-analysis is pure; only applying it needs the EDT
+                            final List<MicroAnalysis> microAnalyses = analyzePlans(explainResults, analysisResult, aliasMaps);
+
+                            // Plans finished before a cancel or overrun are still shown
+                            renderIfLatest(runId, () -> {
+                                long renderStart = System.nanoTime();
+                                lastSelectSql = selectSql;
+                                showExplainResults(explainResults, analysisResult, microAnalyses, wallClockMs);
+                                timings.record(PhaseTimings.Phase.RENDERING, renderStart);
+                                showTimings(timings, runStart);
                             });
 
-                            messageUpdater.accept("Analysis complete.");
+                            messageUpdater.accept(cancellationToken.isCancelled() ? "Cancelled; showing partial results." : "Analysis complete.");
 
                         } finally {
-                            if (connection != null && !connection.isClosed()) {
-                                try { connection.close(); } catch (SQLException sqlEx) { System.err.println("Error closing connection: " + sqlEx.getMessage()); }
+                            if (script != null) {
+                                script.release(); // Hand the parser back to the pool
                             }
                         }
                     } // end run()
-                }); // end ProcessingDialog.show
+                }, task -> {
+                    if (task.getState() == TaskScheduler.State.FAILED) {
+                        ErrorDialog.showError(FrmQueryAnalyzer.this, "Task failed: " + task.getError().getMessage(), task.getError());
+                    }
+                }); // end TaskScheduler.submit
             } // end actionPerformed
         }); // end addActionListener
     }
@@ -347,16 +464,16 @@ public class FrmQueryAnalyzer extends JFrame {
     }
 
     /**
-     * Establishes and returns a database connection based on GUI inputs. (Unchanged)
+     * Returns a database connection for the GUI inputs read when the run started.
+     * Connections come from the shared {@link ConnectionPool}; closing them hands
+     * them back for the next run.
      */
-    private Connection getConnection() throws SQLException, ClassNotFoundException {
-        String jdbcDriver = jdbcDriverField.getText(); String dbUrl = jdbcUrlField.getText();
-        String username = usernameField.getText(); String password = new String(passwordField.getPassword());
+    private static Connection getConnection(String jdbcDriver, String dbUrl, String username, String password)
+            throws SQLException, ClassNotFoundException {
         if (jdbcDriver == null || jdbcDriver.trim().isEmpty()) { throw new ClassNotFoundException("JDBC Driver class name is empty."); }
         if (dbUrl == null || dbUrl.trim().isEmpty()) { throw new SQLException("JDBC URL is empty."); }
         if (username == null || username.trim().isEmpty()) { throw new SQLException("Username is empty."); }
-        Class.forName(jdbcDriver.trim());
-        return DriverManager.getConnection(dbUrl.trim(), username.trim(), password);
+        return ConnectionPool.getShared().borrow(jdbcDriver.trim(), dbUrl.trim(), username.trim(), password);
     }
 
     /**
@@ -382,13 +499,14 @@ public class FrmQueryAnalyzer extends JFrame {
 
 
     /**
-     * Removes all dynamic table tabs. (Unchanged)
+     * Removes all dynamic table tabs. The live analysis tab stays.
      */
     private void clearTableTabs() {
+        tableTabIndex.clear();
         int tabCount = resultsTabbedPane.getTabCount();
         for (int i = tabCount - 1; i > 0; i--) {
              // Check index validity before removing
-             if (i < resultsTabbedPane.getTabCount()){
+             if (i < resultsTabbedPane.getTabCount() && resultsTabbedPane.getComponentAt(i) != liveAnalysisScrollPane){
                  resultsTabbedPane.remove(i);
              }
         }
@@ -397,72 +515,132 @@ public class FrmQueryAnalyzer extends JFrame {
     /**
      * Updates the main analysis text area and table tabs based on Gudu analysis results. (Unchanged)
      */
-    private void updateAnalysisDisplay(Map<String, Object> analysisResult) {
+    private void updateAnalysisDisplay(SqlResult analysisResult) {
         resetTabColors(resultsTabbedPane);
         clearTableTabs();
+        closePreview();
+        lastExplainResults = null;
+        lastSelectSql = Map.of();
+        planSelector.removeAllItems();
+        planSelector.setEnabled(false);
         explainTable.setModel(new DefaultTableModel());
         explainTimeLabel.setText("Explain Time: - ms");
+        explainTimeLabel.setToolTipText(null);
         analysisTextArea.setText("");
 
-        if (!Boolean.TRUE.equals(analysisResult.get("isValid"))) {
-            String errorMsg = "--- SQL Parse Error ---\n" + analysisResult.get("error");
-            analysisTextArea.setText(errorMsg);
+        analysisTextArea.setText(formatAnalysis(analysisResult));
+        if (!analysisResult.isValid()) {
             return;
         }
+        // Ensure text area scrolls to top after update
+        analysisTextArea.setCaretPosition(0);
+
+
+        // Table usage is merged across all statements so every referenced table gets a tab
+        Map<String, TableUsage> tableInfo = analysisResult.getTables();
+        if (!tableInfo.isEmpty()) {
+            createTableTabsFromAnalysis(tableInfo.values());
+        } else {
+             System.out.println("tableInfo is null or empty. No table tabs created.");
+        }
+    }
+
+    /**
+     * Formats the structural analysis shown in the analysis tab: the parse error,
+     * or the report of every statement.
+     */
+    private String formatAnalysis(SqlResult analysisResult) {
+        if (!analysisResult.isValid()) {
+            return "--- SQL Parse Error ---\n" + analysisResult.getError();
+        }
 
         StringBuilder sb = new StringBuilder();
         sb.append("--- Query Structure Analysis ---\n");
-        sb.append("Statement Type: ").append(analysisResult.get("statementType")).append("\n");
+        if (analysisResult.isPartial()) {
+            sb.append("(Partial: some statements were skipped after a cancel or time-out.)\n");
+        }
+
+        List<StatementResult> statements = analysisResult.getStatements();
+        if (statements.size() > 1) {
+            sb.append("Script contains ").append(statements.size()).append(" statements.\n");
+            for (StatementResult statementResult : statements) {
+                sb.append("\n=== Statement ").append(statementResult.getIndex() + 1).append(" of ").append(statements.size()).append(" ===\n");
+                appendStatementReport(sb, statementResult);
+            }
+        } else if (!statements.isEmpty()) {
+            appendStatementReport(sb, statements.get(0));
+        }
+        return sb.toString();
+    }
+
+    /** Restarts the live analysis delay after an edit, if live analysis is on. */
+    private void scheduleLiveAnalysis() {
+        if (liveAnalysisCheckBox != null && liveAnalysisCheckBox.isSelected()) {
+            liveAnalysisTimer.restart();
+        }
+    }
+
+    /**
+     * Analyzes the editor's text in the background. Only the live analysis tab
+     * is updated; the report, plan and table tabs of the last full analysis
+     * stay until the next one.
+     */
+    private void runLiveAnalysis() {
+        EDbVendor vendor = determineDbVendor(jdbcUrlField.getText());
+        if (vendor == EDbVendor.dbvansi) {
+            liveAnalysisTextArea.setText("--- Live Analysis ---\nEnter the JDBC URL of a supported database to pick the SQL dialect.");
+            return;
+        }
+        liveAnalyzer.submit(vendor, queryInputArea.getText(), this::showLiveAnalysis);
+    }
+
+    /** Shows a live result without moving the live tab's scroll position. */
+    private void showLiveAnalysis(SqlResult analysisResult) {
+        if (!liveAnalysisCheckBox.isSelected()) {
+            return;
+        }
+        Rectangle visible = liveAnalysisTextArea.getVisibleRect();
+        liveAnalysisTextArea.setText(formatAnalysis(analysisResult));
+        SwingUtilities.invokeLater(() -> liveAnalysisTextArea.scrollRectToVisible(visible));
+    }
+
+    /**
+     * Appends the type, statistics and structural hints of one statement.
+     */
+    private void appendStatementReport(StringBuilder sb, StatementResult statementResult) {
+        sb.append("Statement Type: ").append(statementResult.getStatementType()).append("\n");
 
-        Map<String, Object> queryStats = (Map<String, Object>) analysisResult.get("queryStats");
-        if (queryStats != null && !queryStats.isEmpty()) {
+        Map<String, Object> queryStats = statementResult.getQueryStats().asMap();
+        if (!queryStats.isEmpty()) {
             sb.append("\n--- Query Statistics ---\n");
             queryStats.forEach((key, value) -> sb.append(key).append(": ").append(value).append("\n"));
         } else {
              sb.append("\n--- Query Statistics ---\n(No specific stats gathered)\n");
         }
 
-        List<?> hintObjects = (List<?>) analysisResult.get("performanceHints");
-        if (hintObjects != null && !hintObjects.isEmpty()) {
+        List<PerformanceHint> hints = statementResult.getHints();
+        if (!hints.isEmpty()) {
             sb.append("\n--- Performance Hints (Structural) ---\n");
-            for(Object hintObj : hintObjects) {
-                if (hintObj instanceof QueryAnalyzerUtil.PerformanceHint) {
-                    sb.append(hintObj.toString()).append("\n\n");
-                } else {
-                     sb.append("- ").append(hintObj.toString()).append("\n");
-                }
+            for (PerformanceHint hint : hints) {
+                sb.append(hint.toString()).append("\n\n");
             }
         }
-
-        analysisTextArea.setText(sb.toString());
-        // Ensure text area scrolls to top after update
-        analysisTextArea.setCaretPosition(0);
-
-
-        Map<String, Map<String, Object>> tableInfo = (Map<String, Map<String, Object>>) analysisResult.get("tableInfo");
-        if (tableInfo != null && !tableInfo.isEmpty()) {
-            createTableTabsFromAnalysis(tableInfo);
-        } else {
-             System.out.println("tableInfo is null or empty. No table tabs created.");
-        }
     }
 
     /**
      * Creates table tabs with individual columns listed, using CustomTableModel and wrapping renderer. (Unchanged)
      */
-    private void createTableTabsFromAnalysis(Map<String, Map<String, Object>> tableInfo) {
+    private void createTableTabsFromAnalysis(Collection<TableUsage> tableInfo) {
         Vector<String> columnNames = new Vector<>(List.of("Category", "Item", "Notes"));
 
-        for (Map.Entry<String, Map<String, Object>> entry : tableInfo.entrySet()) {
-            String tableName = entry.getKey();
-            Map<String, Object> details = entry.getValue();
-            if (details == null) continue;
+        for (TableUsage details : tableInfo) {
+            String tableName = details.getName();
 
             Vector<Vector<Object>> data = new Vector<>();
-            Set<?> allColsSet = (Set<?>) details.getOrDefault("allColumnsUsed", Set.of());
-            Set<?> whereColsSet = (Set<?>) details.getOrDefault("whereColumns", Set.of());
-            Set<?> funcColsSet = (Set<?>) details.getOrDefault("columnsWithFunctionsInWhere", Set.of());
-            String alias = details.getOrDefault("aliasUsed", "N/A").toString();
+            Set<String> allColsSet = details.getColumns().get(ColumnUsage.Kind.ALL);
+            Set<String> whereColsSet = details.getColumns().get(ColumnUsage.Kind.WHERE);
+            Set<String> funcColsSet = details.getColumns().get(ColumnUsage.Kind.FUNCTION_IN_WHERE);
+            String alias = details.getAlias() != null ? details.getAlias() : "N/A";
 
             data.add(new Vector<>(List.of("General", "Alias Used", alias)));
             data.add(new Vector<>(List.of("", "", "")));
@@ -498,285 +676,260 @@ public class FrmQueryAnalyzer extends JFrame {
             statsTable.getColumnModel().getColumn(1).setCellRenderer(wrappingRenderer); // Item
             statsTable.getColumnModel().getColumn(2).setCellRenderer(wrappingRenderer); // Notes
             statsTable.setRowHeight(20); // Min height
+            RowHeightLayoutService.install(statsTable);
 
             JScrollPane tableScrollPane = new JScrollPane(statsTable);
             resultsTabbedPane.addTab(tableName, tableScrollPane);
+            tableTabIndex.putIfAbsent(tableName.toLowerCase(Locale.ROOT), tableScrollPane);
         }
     }
 
     /**
-     * Builds a DefaultTableModel from a ResultSet. (Unchanged)
+     * Builds a CustomTableModel from a ResultSet.
      */
     public static CustomTableModel buildTableModel(ResultSet rs) throws SQLException {
-         ResultSetMetaData metaData = rs.getMetaData();
-        Vector<String> columnNames = new Vector<>();
-        int columnCount = metaData.getColumnCount();
-        for (int column = 1; column <= columnCount; column++) {
-            columnNames.add(metaData.getColumnName(column));
-        }
-        Vector<Vector<Object>> data = new Vector<>();
-        while (rs.next()) {
-            Vector<Object> row = new Vector<>();
-            for (int columnIndex = 1; columnIndex <= columnCount; columnIndex++) {
-                Object value = rs.getObject(columnIndex);
-                row.add(value != null ? value : "");
-            }
-            data.add(row);
-        }
-        return new CustomTableModel(data, columnNames);
+        return CustomTableModel.fromResultSet(rs);
     }
 
-     /**
-     * Helper to extract column names from a DefaultTableModel into a Vector. (Unchanged)
+    /**
+     * Computes the micro-analysis of every plan, in the order of the results
+     * (null for failed ones). Touches no component, so it runs on the worker.
      */
-     private Vector<String> getVectorColumnNames(DefaultTableModel model) {
-         Vector<String> names = new Vector<>();
-         for (int i = 0; i < model.getColumnCount(); i++) {
-             names.add(model.getColumnName(i));
-         }
-         return names;
-     }
+    private List<MicroAnalysis> analyzePlans(List<ExplainRunner.Result> explainResults, SqlResult analysisResult,
+                                             Map<Integer, Map<String, String>> aliasMaps) {
+        List<MicroAnalysis> microAnalyses = new ArrayList<>(explainResults.size());
+        for (ExplainRunner.Result result : explainResults) {
+            StatementResult explainedResult = analysisResult.getStatement(result.getIndex());
+            Map<String, String> aliasMap = aliasMaps.get(result.getIndex());
+            if (result.isFailed()) {
+                microAnalyses.add(null);
+            } else if (result.getPlan() != null) {
+                microAnalyses.add(PlanMicroAnalyzer.analyze(result.getPlan(), aliasMap, explainedResult, PlanMicroAnalyzer.DEFAULT_ROW_THRESHOLD));
+            } else {
+                microAnalyses.add(PlanMicroAnalyzer.analyze(result.getModel(), aliasMap, explainedResult, PlanMicroAnalyzer.DEFAULT_ROW_THRESHOLD));
+            }
+        }
+        return microAnalyses;
+    }
 
     /**
-     * Performs micro-analysis on EXPLAIN plan using CustomTableModel. (Unchanged)
+     * Shows the plans of all explained statements: the selector lists them, the
+     * EXPLAIN table shows the selected one and the precomputed micro-analysis of
+     * every plan is applied to the analysis text and table tabs. Must run on the EDT.
      */
-    private void performMicroAnalysis(CustomTableModel explainModel, // <-- Now uses CustomTableModel
-                                      JTabbedPane resultsTabbedPane,
-                                      Map<String, String> aliasToTableMap,
-                                      Map<String, Map<String, Object>> guduTableInfo,
-                                      long rowThreshold) {
-
-        StringBuilder suggestions = new StringBuilder();
-        suggestions.append("\n--- EXPLAIN Plan Micro-Analysis (DB Specific) ---\n");
-
-        if (explainModel == null || explainModel.getRowCount() == 0) {
-            suggestions.append("No EXPLAIN plan data available to analyze.\n");
-            analysisTextArea.append(suggestions.toString());
-            return;
+    private void showExplainResults(List<ExplainRunner.Result> explainResults, SqlResult analysisResult,
+                                    List<MicroAnalysis> microAnalyses, long wallClockMs) {
+        lastExplainResults = explainResults;
+        planSelector.removeAllItems();
+        int cached = 0; int failed = 0;
+        for (ExplainRunner.Result result : explainResults) {
+            String label = "Statement " + (result.getIndex() + 1) + " (" + result.getMode() + ")";
+            if (result.isFailed()) { label += " - failed"; failed++; }
+            else if (result.isCached()) { label += " - cached"; cached++; }
+            planSelector.addItem(label);
         }
+        planSelector.setEnabled(explainResults.size() > 1);
+        explainTimeLabel.setText(String.format("Explain Time: %d ms (%d plan(s), %d cached, %d failed)", wallClockMs, explainResults.size(), cached, failed));
+
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < explainResults.size(); i++) {
+            ExplainRunner.Result result = explainResults.get(i);
+            if (explainResults.size() > 1) {
+                report.append("\n=== EXPLAIN of Statement ").append(result.getIndex() + 1).append(" of ").append(analysisResult.getStatementCount()).append(" ===");
+            }
+            if (result.isFailed()) {
+                report.append("\n").append(result.getError()).append("\n");
+            } else {
+                report.append(microAnalyses.get(i).getText());
+            }
+        }
+        analysisTextArea.append(report.toString());
+        applyTableWarnings(microAnalyses);
+        // Ensure text area scrolls to top after appending
+        SwingUtilities.invokeLater(() -> analysisTextArea.setCaretPosition(0));
+        if (planSelector.getItemCount() > 0) {
+            planSelector.setSelectedIndex(0); // Fires showSelectedPlan
+        }
+    }
 
-        try {
-            int tableCol = findColumn(explainModel, "table");
-            int typeCol = findColumn(explainModel, "type");
-            int keyCol = findColumn(explainModel, "key");
-            int possibleKeysCol = findColumn(explainModel, "possible_keys");
-            int rowsCol = findColumn(explainModel, "rows");
-            int extraCol = findColumn(explainModel, "Extra");
-
-            for (int i = 0; i < explainModel.getRowCount(); i++) {
-                String rowId = getColumnValue(explainModel, i, 0, "Row " + (i + 1));
-                String currentAlias = getColumnValue(explainModel, i, tableCol, null);
-                String fullTableName = (currentAlias != null && aliasToTableMap != null) ? aliasToTableMap.get(currentAlias.toLowerCase()) : null;
-                String aliasAndTable = String.format("%s%s", currentAlias != null ? currentAlias : "?", fullTableName != null ? " (" + fullTableName + ")" : "");
-
-                Set<String> filteringCols = Set.of(); Set<String> funcColsInWhere = Set.of();
-                Set<String> groupByCols = Set.of(); Set<String> orderByCols = Set.of();
-                if (fullTableName != null && guduTableInfo != null) {
-                    Map<String, Object> tableDetails = guduTableInfo.get(fullTableName);
-                     if (tableDetails != null) {
-                         filteringCols = (Set<String>) tableDetails.getOrDefault("whereColumns", Set.of());
-                         funcColsInWhere = (Set<String>) tableDetails.getOrDefault("columnsWithFunctionsInWhere", Set.of());
-                         groupByCols = (Set<String>) tableDetails.getOrDefault("groupByColumns", Set.of());
-                         orderByCols = (Set<String>) tableDetails.getOrDefault("orderByColumns", Set.of());
-                     }
-                }
-
-                // Suggestion 1: Full Table Scan
-                String scanType = getColumnValue(explainModel, i, typeCol, "");
-                if ("ALL".equalsIgnoreCase(scanType)) {
-                    String detail=String.format("[%s %s] SEVERE: Full Table Scan ('type' is 'ALL'). ", rowId, aliasAndTable); String why="Why: DB read every row."; String suggestion="Suggestion: Index JOIN/WHERE columns.";
-                    if (!filteringCols.isEmpty()) { suggestion += " Candidates: [" + String.join(", ", filteringCols) + "]"; }
-                    else if (fullTableName != null) { suggestion += " Check JOIN columns for '" + currentAlias + "'."; }
-                    suggestions.append(detail).append(why).append("\n  > ").append(suggestion).append("\n");
-                    if (fullTableName != null) { addWarningToTableTab(resultsTabbedPane, fullTableName, "Full Table Scan", suggestion, filteringCols, groupByCols, orderByCols); highlightTableTab(resultsTabbedPane, fullTableName, Color.RED); }
-                }
-
-                // Suggestion 2: Index Not Used
-                String actualKey = getColumnValue(explainModel, i, keyCol, null);
-                String possibleKeys = getColumnValue(explainModel, i, possibleKeysCol, null);
-                if (possibleKeys != null && !possibleKeys.isEmpty() && (actualKey == null || actualKey.isEmpty() || "NULL".equalsIgnoreCase(actualKey))) {
-                     String warning = String.format("Possible keys [%s] found, but none used.", possibleKeys);
-                     StringBuilder explanation = new StringBuilder("Potential reasons:\n"); boolean reasonFound = false;
-                     if (!funcColsInWhere.isEmpty()) { Set<String> problematicCols = new HashSet<>(filteringCols); problematicCols.retainAll(funcColsInWhere);
-                         if (!problematicCols.isEmpty()) { explanation.append("    - Func on indexed col(s): [").append(String.join(", ", problematicCols)).append("]\n"); reasonFound = true; } }
-                     explanation.append("    - Data type mismatch in JOIN/WHERE"); if (!filteringCols.isEmpty()) { explanation.append(": [").append(String.join(", ", filteringCols)).append("]"); } explanation.append("\n");
-                     explanation.append("    - Optimizer chose scan (small table / low selectivity / outdated stats)\n");
-                     if (!reasonFound && !funcColsInWhere.isEmpty()) { explanation.append("    - Note: Funcs in WHERE on: [").append(String.join(", ", funcColsInWhere)).append("]. Overlap with keys?\n"); }
-
-                     suggestions.append(String.format("[%s %s] WARN: Index Not Used\n  > %s\n  > %s", rowId, aliasAndTable, warning, explanation.toString()));
-                     if (fullTableName != null) { addWarningToTableTab(resultsTabbedPane, fullTableName, "Index Not Used", explanation.toString().replace("\n    - ", "\n- ").trim(), filteringCols, groupByCols, orderByCols); highlightTableTab(resultsTabbedPane, fullTableName, Color.ORANGE); }
+    /**
+     * Applies the warnings and highlights of the micro-analyses to the table tabs
+     * in one pass: tabs are found through the table-name index, each tab's new
+     * rows are inserted with one model event, and each tab's title is colored once.
+     * A tab shows a warning type once in a row, as before.
+     */
+    private void applyTableWarnings(List<MicroAnalysis> microAnalyses) {
+        Map<Integer, List<Object[]>> newRowsByTab = new LinkedHashMap<>();
+        Map<Integer, String> topWarningByTab = new HashMap<>();
+        Map<Integer, Color> colorByTab = new LinkedHashMap<>();
+        int lastWarnedTab = -1;
+        for (MicroAnalysis microAnalysis : microAnalyses) {
+            if (microAnalysis == null) {
+                continue;
+            }
+            for (MicroAnalysis.TableWarning warning : microAnalysis.getWarnings()) {
+                Integer tab = findTableTab(warning.getTableName());
+                if (tab == null) {
+                    System.err.println("Warning: Could not find tab matching table '" + warning.getTableName() + "' to add warning/suggestion.");
+                    continue;
                 }
-
-                // Suggestion 3: Large Estimated Row Scan
-                 long rowsScanned = getLongValue(explainModel, i, rowsCol);
-                 if (rowsScanned > rowThreshold) {
-                     suggestions.append(String.format("[%s %s] INFO: High est. rows (%d).\n  > SUGGEST: Check WHERE/JOIN selectivity.\n", rowId, aliasAndTable, rowsScanned));
-                     if (fullTableName != null) { highlightTableTab(resultsTabbedPane, fullTableName, Color.ORANGE); addWarningToTableTab(resultsTabbedPane, fullTableName, "High Row Estimate", "Est. rows: " + rowsScanned, filteringCols, groupByCols, orderByCols); }
-                 } else if (rowsScanned > 10000) { suggestions.append(String.format("[%s %s] INFO: Est. rows: %d\n", rowId, aliasAndTable, rowsScanned)); }
-
-
-                // Suggestion 4 & 5: Using filesort / temporary
-                String extraInfo = getColumnValue(explainModel, i, extraCol, "");
-                if (extraInfo.contains("Using filesort")) {
-                    String suggestion = "Suggest: Index ORDER BY cols."; if(!orderByCols.isEmpty()){ suggestion += " Candidates: [" + String.join(", ", orderByCols) + "]"; }
-                    suggestions.append(String.format("[%s %s] WARN: 'Using filesort'.\n  > %s\n", rowId, aliasAndTable, suggestion));
-                     if (fullTableName != null) { addWarningToTableTab(resultsTabbedPane, fullTableName, "Filesort Used", suggestion, filteringCols, groupByCols, orderByCols); highlightTableTab(resultsTabbedPane, fullTableName, Color.ORANGE); }
+                List<Object[]> newRows = newRowsByTab.computeIfAbsent(tab, k -> new ArrayList<>());
+                String topWarning = topWarningByTab.computeIfAbsent(tab, this::currentTopWarning);
+                if (warning.getType().equals(topWarning)) {
+                    System.out.println("Warning type '" + warning.getType() + "' already present in tab '" + warning.getTableName() + "'. Skipping duplicate warning header.");
+                    continue;
                 }
-                if (extraInfo.contains("Using temporary")) {
-                     String suggestion = "Suggest: Temp table needed (slow). Common for complex GROUP BY/DISTINCT/UNION."; if(!groupByCols.isEmpty()){ suggestion += " Consider indexing GROUP BY cols: [" + String.join(", ", groupByCols) + "]"; } else { suggestion += " Simplify query?"; }
-                    suggestions.append(String.format("[%s %s] WARN: 'Using temporary'.\n  > %s\n", rowId, aliasAndTable, suggestion));
-                    if (fullTableName != null) { addWarningToTableTab(resultsTabbedPane, fullTableName, "Temporary Table Used", suggestion, filteringCols, groupByCols, orderByCols); highlightTableTab(resultsTabbedPane, fullTableName, Color.ORANGE); }
+                // Each warning goes above the ones before it
+                List<Object[]> block = new ArrayList<>();
+                block.add(new Object[]{"--- WARNING ---", warning.getType(), warning.getMessage()});
+                block.add(new Object[]{"", "", ""}); // Spacer
+                block.addAll(warning.getSuggestionRows());
+                if (!warning.getSuggestionRows().isEmpty()) { block.add(new Object[]{"", "", ""}); }
+                newRows.addAll(0, block);
+                topWarningByTab.put(tab, warning.getType());
+                lastWarnedTab = tab;
+            }
+            for (MicroAnalysis.TableHighlight highlight : microAnalysis.getHighlights()) {
+                Integer tab = findTableTab(highlight.getTableName());
+                if (tab == null) {
+                    System.err.println("Warn: No tab found for '" + highlight.getTableName() + "' to highlight.");
+                    continue;
                 }
-            } // End loop
-        } catch (Exception e) {
-            suggestions.append("\nError during EXPLAIN plan analysis: " + e.getMessage());
-            e.printStackTrace();
+                colorByTab.put(tab, highlight.getSeverity() == PerformanceHint.Severity.SEVERE ? Color.RED : Color.ORANGE);
+            }
         }
 
-        if (suggestions.toString().endsWith("---\n")) {
-            suggestions.append("EXPLAIN plan analysis found no common high-priority issues.\n");
+        newRowsByTab.forEach((tab, newRows) -> {
+            if (newRows.isEmpty()) return;
+            try {
+                JScrollPane scrollPane = (JScrollPane) resultsTabbedPane.getComponentAt(tab);
+                CustomTableModel model = (CustomTableModel) ((JTable) scrollPane.getViewport().getView()).getModel();
+                model.insertRows(0, newRows);
+            } catch (ClassCastException cce) {
+                System.err.println("Error: Table model is not a CustomTableModel for tab '" + resultsTabbedPane.getTitleAt(tab) + "'. Cannot insert warning.");
+                cce.printStackTrace();
+            }
+        });
+        colorByTab.forEach((tab, color) -> {
+            JComponent contentComp = (JComponent) resultsTabbedPane.getComponentAt(tab);
+            if (contentComp.getClientProperty("originalTabForeground") == null) {
+                contentComp.putClientProperty("originalTabForeground", resultsTabbedPane.getForegroundAt(tab));
+            }
+            resultsTabbedPane.setForegroundAt(tab, color);
+        });
+        if (lastWarnedTab >= 0) {
+            resultsTabbedPane.setSelectedIndex(lastWarnedTab);
         }
-        analysisTextArea.append(suggestions.toString());
-        // Ensure text area scrolls to top after appending
-        SwingUtilities.invokeLater(() -> analysisTextArea.setCaretPosition(0));
     }
 
+    /** @return The index of the tab of a table (matched by its unqualified name), or null. */
+    private Integer findTableTab(String tableName) {
+        if (tableName == null) return null;
+        String simpleTableName = tableName.contains(".") ? tableName.substring(tableName.lastIndexOf(".") + 1) : tableName;
+        // By component: the live analysis tab can come and go in front of the table tabs
+        Component tab = tableTabIndex.get(simpleTableName.toLowerCase(Locale.ROOT));
+        return tab == null ? null : resultsTabbedPane.indexOfComponent(tab);
+    }
 
-    /** Finds a table's tab and adds warnings/suggestions using CustomTableModel. */
-    private void addWarningToTableTab(JTabbedPane tabPane, String tableName, String warningType, String message,
-                                      Set<String> filteringCols, Set<String> groupByCols, Set<String> orderByCols) {
-
-        for (int i = 1; i < tabPane.getTabCount(); i++) {
-            String tabTitle = tabPane.getTitleAt(i);
-            String simpleTableName = tableName.contains(".") ? tableName.substring(tableName.lastIndexOf(".") + 1) : tableName;
-
-            if (simpleTableName.equalsIgnoreCase(tabTitle)) {
-                try {
-                    JScrollPane scrollPane = (JScrollPane) tabPane.getComponentAt(i);
-                    JTable table = (JTable) scrollPane.getViewport().getView();
-                    // --- Cast to CustomTableModel ---
-                    CustomTableModel model = (CustomTableModel) table.getModel();
-
-                    List<Object[]> suggestionRows = new ArrayList<>();
-                    boolean suggestionAdded = false;
-
-                    switch (warningType) {
-                        case "Full Table Scan":
-                            if (filteringCols != null && !filteringCols.isEmpty()) { suggestionRows.add(new Object[]{"-> Index Suggestion", "Index JOIN/WHERE columns:", "[" + String.join(", ", filteringCols) + "]"}); suggestionAdded = true; }
-                            else { suggestionRows.add(new Object[]{"-> Index Suggestion", "Index JOIN columns:", "(Check query for columns used to join)"}); suggestionAdded = true; }
-                            break;
-                        case "Index Not Used":
-                            // Split multi-line explanation for better table display
-                            String[] lines = message.split("\n");
-                            suggestionRows.add(new Object[]{"-> Explanation", lines.length > 0 ? lines[0] : message, ""}); // First line
-                            for(int lineIdx = 1; lineIdx < lines.length; lineIdx++) {
-                                suggestionRows.add(new Object[]{"", lines[lineIdx].trim(), ""}); // Subsequent lines indented
-                            }
-                            suggestionAdded = true;
-                            break;
-                        case "Filesort Used":
-                            if (orderByCols != null && !orderByCols.isEmpty()) { suggestionRows.add(new Object[]{"-> Index Suggestion", "Index ORDER BY columns:", "[" + String.join(", ", orderByCols) + "]"}); suggestionAdded = true; }
-                             else { suggestionRows.add(new Object[]{"-> Index Suggestion", "Index ORDER BY columns:", "(Columns not identified)"}); suggestionAdded = true; }
-                           break;
-                        case "Temporary Table Used":
-                            if (groupByCols != null && !groupByCols.isEmpty()) { suggestionRows.add(new Object[]{"-> Index Suggestion", "Index GROUP BY columns:", "[" + String.join(", ", groupByCols) + "]"}); suggestionAdded = true; }
-                             else { suggestionRows.add(new Object[]{"-> Index Suggestion", "Consider indexing GROUP BY columns", "(If applicable)"}); suggestionAdded = true; }
-                           break;
-                         case "High Row Estimate":
-                             suggestionRows.add(new Object[]{"-> Info", message, "(Check WHERE/JOIN selectivity)"}); suggestionAdded = true;
-                             break;
-                    }
-
-                    if (!suggestionAdded && filteringCols != null && !filteringCols.isEmpty()) {
-                         suggestionRows.add(new Object[]{"-> Index Suggestion", "Consider indexing WHERE/JOIN columns:", "[" + String.join(", ", filteringCols) + "]"});
-                    }
-
-                    boolean warningExists = false;
-                    if (model.getRowCount() > 0 && "--- WARNING ---".equals(model.getValueAt(0, 0)) && warningType.equals(model.getValueAt(0, 1)) ){ warningExists = true; }
-
-                    if (!warningExists) {
-                        String shortMessage = message.lines().findFirst().orElse(message);
-                        // --- Use Object[] with overloaded insertRow ---
-                        model.insertRow(0, new Object[]{"--- WARNING ---", warningType, shortMessage});
-                        model.insertRow(1, new Object[]{"", "", ""}); // Spacer
-
-                        int insertRowIndex = 2;
-                        for(Object[] suggestionRow : suggestionRows) { model.insertRow(insertRowIndex++, suggestionRow); }
-                        if(!suggestionRows.isEmpty()){ model.insertRow(insertRowIndex, new Object[]{"", "", ""}); }
-
-                        tabPane.setSelectedIndex(i);
-                    } else {
-                         System.out.println("Warning type '" + warningType + "' already present in tab '" + tableName + "'. Skipping duplicate warning header.");
-                    }
-                } catch (ClassCastException cce) {
-                     System.err.println("Error: Table model is not a CustomTableModel for tab '" + tableName + "'. Cannot insert warning.");
-                     cce.printStackTrace();
-                }
-                catch (Exception e) {
-                    System.err.println("Error adding warning/suggestion to tab '" + tableName + "' (Title: " + tabTitle + "): " + e.getMessage());
-                    e.printStackTrace();
-                }
-                return;
-            }
+    /** @return The warning type shown at the top of a table tab, or null. */
+    private String currentTopWarning(int tab) {
+        JScrollPane scrollPane = (JScrollPane) resultsTabbedPane.getComponentAt(tab);
+        TableModel model = ((JTable) scrollPane.getViewport().getView()).getModel();
+        if (model.getRowCount() > 0 && "--- WARNING ---".equals(model.getValueAt(0, 0))) {
+            return String.valueOf(model.getValueAt(0, 1));
         }
-         System.err.println("Warning: Could not find tab matching table '" + tableName + "' to add warning/suggestion.");
+        return null;
     }
 
-
-    // --- Helper Utilities (Overloaded for CustomTableModel) ---
-    // findColumn for DefaultTableModel (used by buildTableModel helper)
-    private int findColumn(DefaultTableModel model, String name) {
-        if (name == null || model == null) return -1;
-        for (int i = 0; i < model.getColumnCount(); i++) {
-            if (name.equalsIgnoreCase(model.getColumnName(i))) { return i; }
-        } return -1;
+    /**
+     * Appends the per-phase timing breakdown to the analysis text and puts it
+     * in the tooltip of the EXPLAIN time label. Must run on the EDT, after the
+     * results it describes have been rendered.
+     *
+     * @param runStart {@link System#nanoTime()} when the analysis started.
+     */
+    private void showTimings(PhaseTimings timings, long runStart) {
+        long totalMs = (System.nanoTime() - runStart) / 1_000_000L;
+        String breakdown = timings.format();
+        analysisTextArea.append("\n--- Timing Breakdown ---\n" + breakdown);
+        analysisTextArea.append("Total (wall clock): " + totalMs + " ms\n");
+        explainTimeLabel.setToolTipText("<html>" + breakdown.trim().replace("\n", "<br>") + "<br>Total (wall clock): " + totalMs + " ms</html>");
     }
-    // findColumn for CustomTableModel (used by performMicroAnalysis)
-    private int findColumn(CustomTableModel model, String name) {
-        if (name == null || model == null) return -1;
-        for (int i = 0; i < model.getColumnCount(); i++) {
-            if (name.equalsIgnoreCase(model.getColumnName(i))) { return i; }
-        } return -1;
+
+    /**
+     * Runs the SELECT whose plan is selected and shows its rows in a tab. Rows
+     * are read page by page as the table scrolls, so large results appear at once.
+     */
+    private void previewRows() {
+        int selected = planSelector.getSelectedIndex();
+        if (lastExplainResults == null || selected < 0 || selected >= lastExplainResults.size()) {
+            ErrorDialog.showError(this, "Analyze a query first; the rows of its SELECT statements can then be previewed.");
+            return;
+        }
+        int index = lastExplainResults.get(selected).getIndex();
+        String sql = lastSelectSql.get(index);
+        if (sql == null) {
+            ErrorDialog.showError(this, "Statement " + (index + 1) + " is not a SELECT; only SELECT rows can be previewed.");
+            return;
+        }
+        closePreview();
+        // The loader connects off the EDT; it gets the connection fields as they are now
+        String jdbcDriver = jdbcDriverField.getText();
+        String jdbcUrl = jdbcUrlField.getText();
+        String username = usernameField.getText();
+        String password = new String(passwordField.getPassword());
+        previewModel = new WindowedTableModel(() -> getConnection(jdbcDriver, jdbcUrl, username, password), sql,
+                determineDbVendor(jdbcUrl),
+                e -> ErrorDialog.showError(this, "Could not read the rows of statement " + (index + 1) + ".", e));
+        JTable rowsTable = new JTable(previewModel);
+        rowsTable.setFont(MONOSPACED_FONT);
+        rowsTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        resultsTabbedPane.addTab(PREVIEW_TAB_TITLE, new JScrollPane(rowsTable));
+        resultsTabbedPane.setSelectedIndex(resultsTabbedPane.getTabCount() - 1);
     }
 
-    // getColumnValue for DefaultTableModel (needed if used elsewhere)
-     private String getColumnValue(DefaultTableModel model, int row, int col, String defaultValue) {
-         if (model == null || row < 0 || col < 0 || row >= model.getRowCount() || col >= model.getColumnCount()) { return defaultValue; }
-         Object val = model.getValueAt(row, col);
-         return (val == null) ? defaultValue : val.toString();
-     }
-    // getColumnValue for CustomTableModel
-     private String getColumnValue(CustomTableModel model, int row, int col, String defaultValue) {
-         if (model == null || row < 0 || col < 0 || row >= model.getRowCount() || col >= model.getColumnCount()) { return defaultValue; }
-         Object val = model.getValueAt(row, col);
-         return (val == null) ? defaultValue : val.toString();
-     }
+    /**
+     * Runs a rendering step of an Analyze run on the EDT, unless a newer run
+     * has been started since; an overtaken run must not overwrite its results.
+     */
+    private void renderIfLatest(int runId, Runnable render) {
+        SwingUtilities.invokeLater(() -> {
+            if (runId == analysisRun) {
+                render.run();
+            }
+        });
+    }
 
-    // getLongValue for DefaultTableModel (needed if used elsewhere)
-    private long getLongValue(DefaultTableModel model, int row, int col) {
-        String strValue = getColumnValue(model, row, col, "0");
-        try { if (strValue.contains(".")) { return (long) Double.parseDouble(strValue); } return Long.parseLong(strValue); }
-        catch (NumberFormatException e) { System.err.println("Could not parse long: '" + strValue + "'"); return 0; }
+    /** Closes the row preview's cursor and removes its tab. */
+    private void closePreview() {
+        if (previewModel != null) {
+            previewModel.close();
+            previewModel = null;
+        }
+        int tab = resultsTabbedPane.indexOfTab(PREVIEW_TAB_TITLE);
+        if (tab > 0) {
+            resultsTabbedPane.remove(tab);
+        }
     }
-    // getLongValue for CustomTableModel
-    private long getLongValue(CustomTableModel model, int row, int col) {
-        String strValue = getColumnValue(model, row, col, "0");
-        try { if (strValue.contains(".")) { return (long) Double.parseDouble(strValue); } return Long.parseLong(strValue); }
-        catch (NumberFormatException e) { System.err.println("Could not parse long: '" + strValue + "'"); return 0; }
+
+    /** Shows the shared metrics registry and the plan cache counters in a dialog. */
+    private void showMetrics() {
+        JTextArea metricsArea = new JTextArea(MetricsRegistry.getShared().format() + "\n" + EXPLAIN_CACHE + "\n");
+        metricsArea.setEditable(false);
+        metricsArea.setFont(MONOSPACED_FONT);
+        JScrollPane scrollPane = new JScrollPane(metricsArea);
+        scrollPane.setPreferredSize(new Dimension(820, 420));
+        JOptionPane.showMessageDialog(this, scrollPane, "Analyzer Metrics", JOptionPane.PLAIN_MESSAGE);
     }
 
-    /** Highlights a tab's title color. (Unchanged) */
-    private void highlightTableTab(JTabbedPane tabPane, String tableName, Color highlightColor) {
-         if (tableName == null || tabPane == null) return;
-        for (int i = 0; i < tabPane.getTabCount(); i++) { String tabTitle = tabPane.getTitleAt(i); String simpleTableName = tableName.contains(".") ? tableName.substring(tableName.lastIndexOf(".") + 1) : tableName;
-            if (simpleTableName.equalsIgnoreCase(tabTitle)) { Component tabComp = tabPane.getTabComponentAt(i); Color origColor = tabPane.getForegroundAt(i);
-                if (tabComp != null && (origColor.equals(Color.RED) || origColor.equals(Color.ORANGE))) { /* Skip */ }
-                else { JComponent contentComp = (JComponent) tabPane.getComponentAt(i); if (contentComp.getClientProperty("originalTabForeground") == null) { contentComp.putClientProperty("originalTabForeground", origColor); } }
-                // Check index valid before setting
-                if(i < tabPane.getTabCount()) { tabPane.setForegroundAt(i, highlightColor); }
-                return;
-            }
-        } System.err.println("Warn: No tab found for '" + tableName + "' to highlight.");
+    /** Puts the plan picked in the selector into the EXPLAIN table. */
+    private void showSelectedPlan() {
+        int selected = planSelector.getSelectedIndex();
+        if (lastExplainResults == null || selected < 0 || selected >= lastExplainResults.size()) {
+            return;
+        }
+        ExplainRunner.Result result = lastExplainResults.get(selected);
+        explainTable.setModel(result.getModel() != null ? result.getModel() : new DefaultTableModel());
     }
 
     /** Determines EDbVendor based on JDBC URL prefix. (Unchanged) */
@@ -0,0 +1,196 @@
+package in.mystrn.sqlutil.models;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact, immutable record of how the columns of one table are used.
+ *
+ * Each distinct column name is stored once (names are interned across
+ * results) and gets a small integer id; every {@link Kind} of usage is a
+ * bitset over those ids. Per-kind views are read-only sets backed by the
+ * bitsets, so reading them does not allocate or hash.
+ *
+ * @author hive
+ */
+public final class ColumnUsage {
+
+    /** The ways a column can be used in a statement. */
+    public enum Kind {
+        /** Used anywhere in the statement. */
+        ALL,
+        /** Used in the WHERE clause. */
+        WHERE,
+        /** Wrapped in a function inside the WHERE clause. */
+        FUNCTION_IN_WHERE,
+        /** Used in GROUP BY. */
+        GROUP_BY,
+        /** Used in ORDER BY. */
+        ORDER_BY
+    }
+
+    /** Upper bound of the shared name table; names beyond it are not interned. */
+    private static final int MAX_INTERNED_NAMES = 100_000;
+    private static final Map<String, String> NAMES = new ConcurrentHashMap<>();
+
+    public static final ColumnUsage EMPTY = new Builder().build();
+
+    private final String[] columns;
+    private final BitSet[] byKind;
+
+    private ColumnUsage(String[] columns, BitSet[] byKind) {
+        this.columns = columns;
+        this.byKind = byKind;
+    }
+
+    private static String intern(String name) {
+        String existing = NAMES.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        if (NAMES.size() >= MAX_INTERNED_NAMES) {
+            return name;
+        }
+        existing = NAMES.putIfAbsent(name, name);
+        return existing != null ? existing : name;
+    }
+
+    /** @return The columns used in the given way, in first-seen order. */
+    public Set<String> get(Kind kind) {
+        return new KindView(kind);
+    }
+
+    public int count(Kind kind) {
+        return byKind[kind.ordinal()].cardinality();
+    }
+
+    public boolean isEmpty(Kind kind) {
+        return byKind[kind.ordinal()].isEmpty();
+    }
+
+    /** @return true if the column is used in the given way. */
+    public boolean has(String column, Kind kind) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) {
+                return byKind[kind.ordinal()].get(i);
+            }
+        }
+        return false;
+    }
+
+    /** Read-only set view over one usage bitset. */
+    private final class KindView extends AbstractSet<String> {
+        private final Kind kind;
+        private final BitSet bits;
+
+        KindView(Kind kind) {
+            this.kind = kind;
+            this.bits = byKind[kind.ordinal()];
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<>() {
+                private int next = bits.nextSetBit(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public String next() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    String column = columns[next];
+                    next = bits.nextSetBit(next + 1);
+                    return column;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return bits.cardinality();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof String && has((String) o, kind);
+        }
+    }
+
+    /** Mutable builder used while a statement is being walked. Not thread safe. */
+    public static final class Builder {
+        private final Map<String, Integer> ids = new LinkedHashMap<>();
+        private final BitSet[] byKind = new BitSet[Kind.values().length];
+
+        public Builder() {
+            for (int i = 0; i < byKind.length; i++) {
+                byKind[i] = new BitSet();
+            }
+        }
+
+        public Builder add(String column, Kind kind) {
+            Integer id = ids.get(column);
+            if (id == null) {
+                id = ids.size();
+                ids.put(column, id);
+            }
+            byKind[kind.ordinal()].set(id);
+            return this;
+        }
+
+        /** Adds every usage of another record. */
+        public Builder addAll(ColumnUsage other) {
+            for (Kind kind : Kind.values()) {
+                for (String column : other.get(kind)) {
+                    add(column, kind);
+                }
+            }
+            return this;
+        }
+
+        public boolean isEmpty(Kind kind) {
+            return byKind[kind.ordinal()].isEmpty();
+        }
+
+        public int count(Kind kind) {
+            return byKind[kind.ordinal()].cardinality();
+        }
+
+        /** @return The columns used in the given way so far, in first-seen order. */
+        public Set<String> get(Kind kind) {
+            return build().get(kind);
+        }
+
+        public ColumnUsage build() {
+            String[] columns = new String[ids.size()];
+            for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+                columns[entry.getValue()] = intern(entry.getKey());
+            }
+            BitSet[] bits = new BitSet[byKind.length];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = (BitSet) byKind[i].clone();
+            }
+            return new ColumnUsage(columns, bits);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ColumnUsage[");
+        for (Kind kind : Kind.values()) {
+            sb.append(kind).append('=').append(Arrays.toString(get(kind).toArray())).append(' ');
+        }
+        return sb.append(']').toString();
+    }
+}
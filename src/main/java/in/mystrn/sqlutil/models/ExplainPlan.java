@@ -0,0 +1,110 @@
+package in.mystrn.sqlutil.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parsed execution plan: a tree of {@link PlanNode}s produced by one of the
+ * EXPLAIN {@link Mode}s.
+ *
+ * @author hive
+ */
+public final class ExplainPlan {
+
+    /** How the plan is requested from the database. */
+    public enum Mode {
+        /** Plain EXPLAIN; tabular output, estimates only. */
+        TRADITIONAL("EXPLAIN ", "Traditional"),
+        /** EXPLAIN FORMAT=JSON; operator tree with cost estimates. */
+        JSON("EXPLAIN FORMAT=JSON ", "JSON (costs)"),
+        /** EXPLAIN ANALYZE; runs the statement and reports actual rows, loops and times. */
+        ANALYZE("EXPLAIN ANALYZE ", "Analyze (actuals)");
+
+        private final String prefix;
+        private final String label;
+
+        Mode(String prefix, String label) {
+            this.prefix = prefix;
+            this.label = label;
+        }
+
+        /** @return The text to put in front of the statement, including a trailing space. */
+        public String getPrefix() {
+            return prefix;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final Mode mode;
+    private final PlanNode root;
+    private final List<PlanNode> nodes;
+
+    public ExplainPlan(Mode mode, PlanNode root) {
+        this.mode = mode;
+        this.root = root;
+        List<PlanNode> all = new ArrayList<>();
+        collect(root, all);
+        this.nodes = Collections.unmodifiableList(all);
+    }
+
+    private static void collect(PlanNode node, List<PlanNode> into) {
+        into.add(node);
+        for (PlanNode child : node.getChildren()) {
+            collect(child, into);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public PlanNode getRoot() {
+        return root;
+    }
+
+    /** @return All nodes, depth first, parents before their inputs. */
+    public List<PlanNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return true if the plan carries measured values (EXPLAIN ANALYZE), also
+     *         when its root is an untimed grouping of several operators.
+     */
+    public boolean hasActuals() {
+        for (PlanNode node : nodes) {
+            if (node.hasActuals()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Measured time of the whole statement in ms, or NaN. An untimed
+     *         root (the parser's grouping of several top-level operators)
+     *         takes the sum of its timed inputs.
+     */
+    public double getActualTotalMs() {
+        return totalMs(root);
+    }
+
+    private static double totalMs(PlanNode node) {
+        if (node.hasActuals()) {
+            return node.getActualTotalMs();
+        }
+        double sum = Double.NaN;
+        for (PlanNode child : node.getChildren()) {
+            double childMs = totalMs(child);
+            if (!Double.isNaN(childMs)) {
+                sum = Double.isNaN(sum) ? childMs : sum + childMs;
+            }
+        }
+        return sum;
+    }
+}
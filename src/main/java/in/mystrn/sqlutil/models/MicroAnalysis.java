@@ -0,0 +1,118 @@
+package in.mystrn.sqlutil.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable result of the micro-analysis of one EXPLAIN plan: the report
+ * appended to the analysis text, the warnings to prepend to table tabs and
+ * the tabs to highlight, in the order they were found.
+ *
+ * It refers to tables by the name the structural analysis uses, never to UI
+ * components, so it can be computed off the EDT and applied in one pass.
+ *
+ * @author hive
+ */
+public final class MicroAnalysis {
+
+    private final String text;
+    private final List<TableWarning> warnings;
+    private final List<TableHighlight> highlights;
+
+    private MicroAnalysis(String text, List<TableWarning> warnings, List<TableHighlight> highlights) {
+        this.text = text;
+        this.warnings = List.copyOf(warnings);
+        this.highlights = List.copyOf(highlights);
+    }
+
+    /** @return The report for the analysis text, starting with a newline. */
+    public String getText() {
+        return text;
+    }
+
+    public List<TableWarning> getWarnings() {
+        return warnings;
+    }
+
+    public List<TableHighlight> getHighlights() {
+        return highlights;
+    }
+
+    /** A warning for a table's tab: a header row and the rows explaining it. */
+    public static final class TableWarning {
+        private final String tableName;
+        private final String type;
+        private final String message;
+        private final List<String[]> suggestionRows;
+
+        public TableWarning(String tableName, String type, String message, List<String[]> suggestionRows) {
+            this.tableName = tableName;
+            this.type = type;
+            this.message = message;
+            this.suggestionRows = List.copyOf(suggestionRows);
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        /** @return The kind of warning, e.g. "Full Table Scan"; a tab shows each kind once in a row. */
+        public String getType() {
+            return type;
+        }
+
+        /** @return The first line of the warning's message. */
+        public String getMessage() {
+            return message;
+        }
+
+        /** @return Rows of (category, item, notes) shown under the header. */
+        public List<String[]> getSuggestionRows() {
+            return suggestionRows;
+        }
+    }
+
+    /** A table whose tab title is colored by severity; the last highlight of a tab wins. */
+    public static final class TableHighlight {
+        private final String tableName;
+        private final PerformanceHint.Severity severity;
+
+        public TableHighlight(String tableName, PerformanceHint.Severity severity) {
+            this.tableName = tableName;
+            this.severity = severity;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public PerformanceHint.Severity getSeverity() {
+            return severity;
+        }
+    }
+
+    /** Collects a micro-analysis as it is computed. */
+    public static final class Builder {
+        private final StringBuilder text = new StringBuilder();
+        private final List<TableWarning> warnings = new ArrayList<>();
+        private final List<TableHighlight> highlights = new ArrayList<>();
+
+        public StringBuilder text() {
+            return text;
+        }
+
+        public Builder warn(TableWarning warning) {
+            warnings.add(warning);
+            return this;
+        }
+
+        public Builder highlight(String tableName, PerformanceHint.Severity severity) {
+            highlights.add(new TableHighlight(tableName, severity));
+            return this;
+        }
+
+        public MicroAnalysis build() {
+            return new MicroAnalysis(text.toString(), warnings, highlights);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package in.mystrn.sqlutil.models;
+
+/**
+ * A structural performance hint produced by the analyzer.
+ *
+ * @author hive
+ */
+public final class PerformanceHint {
+
+    public enum Severity {
+        INFO, WARN, SEVERE
+    }
+
+    private final Severity severity;
+    private final String title;
+    private final String explanation;
+    private final String suggestion;
+
+    public PerformanceHint(Severity severity, String title, String explanation, String suggestion) {
+        this.severity = severity;
+        this.title = title;
+        this.explanation = explanation;
+        this.suggestion = suggestion;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getExplanation() {
+        return explanation;
+    }
+
+    public String getSuggestion() {
+        return suggestion;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%s] %s\n  Why: %s\n  Suggestion: %s", severity, title, explanation, suggestion);
+    }
+}
@@ -0,0 +1,125 @@
+package in.mystrn.sqlutil.models;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time spent in each phase of an analysis, measured with
+ * {@link System#nanoTime()}.
+ *
+ * Phases that run on several workers at once (connection acquisition, EXPLAIN
+ * execution, result fetch) add up the time of every worker, so their sum can
+ * exceed the wall clock time of the run. Safe to update from several threads.
+ *
+ * @author hive
+ */
+public final class PhaseTimings {
+
+    /** The measured phases, in the order they run. */
+    public enum Phase {
+        VENDOR_DETECTION("Vendor detection", "vendorDetectionMs"),
+        PARSE("Parse", "parseMs"),
+        STRUCTURAL_ANALYSIS("Structural analysis", "structuralAnalysisMs"),
+        CONNECTION("Connection acquisition", "connectionMs"),
+        CACHE_LOOKUP("Plan cache lookup", "cacheLookupMs"),
+        EXPLAIN_EXECUTION("EXPLAIN execution", "explainExecutionMs"),
+        RESULT_FETCH("Result fetch", "resultFetchMs"),
+        RENDERING("Rendering", "renderingMs");
+
+        private final String label;
+        private final String key;
+
+        Phase(String label, String key) {
+            this.label = label;
+            this.key = key;
+        }
+
+        /** @return The field name used in exported results, e.g. "parseMs". */
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final AtomicLongArray nanos = new AtomicLongArray(PHASES.length);
+
+    /** Adds the given duration to a phase. */
+    public void add(Phase phase, long durationNanos) {
+        nanos.addAndGet(phase.ordinal(), durationNanos);
+    }
+
+    /**
+     * Adds the time elapsed since {@code startNanos} to a phase.
+     *
+     * @param startNanos A value of {@link System#nanoTime()} taken when the phase started.
+     * @return The current {@link System#nanoTime()}, to start the next phase with.
+     */
+    public long record(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        add(phase, now - startNanos);
+        return now;
+    }
+
+    /** Adds every phase of the other timings to this one. */
+    public void addAll(PhaseTimings other) {
+        for (Phase phase : PHASES) {
+            add(phase, other.getNanos(phase));
+        }
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    public double getMillis(Phase phase) {
+        return getNanos(phase) / 1_000_000.0;
+    }
+
+    /** @return true if nothing was recorded for the phase. */
+    public boolean isEmpty(Phase phase) {
+        return getNanos(phase) == 0;
+    }
+
+    /** @return Milliseconds per recorded phase, keyed by {@link Phase#getKey()}, in phase order. */
+    public Map<String, Double> toMap() {
+        Map<String, Double> map = new LinkedHashMap<>();
+        for (Phase phase : PHASES) {
+            if (!isEmpty(phase)) {
+                map.put(phase.getKey(), Math.round(getMillis(phase) * 1000) / 1000.0);
+            }
+        }
+        return map;
+    }
+
+    /** @return One line per recorded phase, e.g. "Parse: 12.3 ms". */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : PHASES) {
+            if (!isEmpty(phase)) {
+                sb.append(String.format("%s: %.1f ms", phase, getMillis(phase))).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("PhaseTimings[");
+        for (Phase phase : PHASES) {
+            if (!isEmpty(phase)) {
+                if (sb.length() > "PhaseTimings[".length()) {
+                    sb.append(", ");
+                }
+                sb.append(phase.getKey()).append('=').append(String.format("%.1f", getMillis(phase)));
+            }
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,242 @@
+package in.mystrn.sqlutil.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One operator of an execution plan, e.g. a table scan, an index lookup, a
+ * join or a sort, with the optimizer's estimates and, for EXPLAIN ANALYZE,
+ * the measured actuals.
+ *
+ * Numeric values that the plan did not report are {@link Double#NaN}. Times
+ * are in milliseconds and, as reported by MySQL, per loop: the total time
+ * spent in an operator is {@link #getActualTotalMs()}.
+ *
+ * @author hive
+ */
+public final class PlanNode {
+
+    private final String operation;
+    private final String table;
+    private final String accessType;
+    private final String key;
+    private final String possibleKeys;
+    private final String detail;
+    private final double estimatedCost;
+    private final double estimatedRows;
+    private final double actualFirstRowMs;
+    private final double actualLastRowMs;
+    private final double actualRows;
+    private final long loops;
+    private final boolean usingFilesort;
+    private final boolean usingTemporary;
+    private final List<PlanNode> children;
+
+    private PlanNode(Builder builder, List<PlanNode> children) {
+        this.operation = builder.operation;
+        this.table = builder.table;
+        this.accessType = builder.accessType;
+        this.key = builder.key;
+        this.possibleKeys = builder.possibleKeys;
+        this.detail = builder.detail;
+        this.estimatedCost = builder.estimatedCost;
+        this.estimatedRows = builder.estimatedRows;
+        this.actualFirstRowMs = builder.actualFirstRowMs;
+        this.actualLastRowMs = builder.actualLastRowMs;
+        this.actualRows = builder.actualRows;
+        this.loops = builder.loops;
+        this.usingFilesort = builder.usingFilesort;
+        this.usingTemporary = builder.usingTemporary;
+        this.children = Collections.unmodifiableList(children);
+    }
+
+    /** @return The operator, e.g. "Table scan on t1" or "Nested loop inner join". */
+    public String getOperation() {
+        return operation;
+    }
+
+    /** @return The table (or alias) the operator reads, or null. */
+    public String getTable() {
+        return table;
+    }
+
+    /** @return The access type in traditional EXPLAIN terms ("ALL", "ref", ...), or null. */
+    public String getAccessType() {
+        return accessType;
+    }
+
+    /** @return The index used, or null. */
+    public String getKey() {
+        return key;
+    }
+
+    public String getPossibleKeys() {
+        return possibleKeys;
+    }
+
+    /** @return Conditions and other operator details, or null. */
+    public String getDetail() {
+        return detail;
+    }
+
+    public double getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    public double getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    public double getActualFirstRowMs() {
+        return actualFirstRowMs;
+    }
+
+    public double getActualLastRowMs() {
+        return actualLastRowMs;
+    }
+
+    /** @return Rows returned per loop. */
+    public double getActualRows() {
+        return actualRows;
+    }
+
+    /** @return Number of times the operator ran; 0 if not measured or never executed. */
+    public long getLoops() {
+        return loops;
+    }
+
+    public boolean isUsingFilesort() {
+        return usingFilesort;
+    }
+
+    public boolean isUsingTemporary() {
+        return usingTemporary;
+    }
+
+    public List<PlanNode> getChildren() {
+        return children;
+    }
+
+    /** @return true if the node carries measured (EXPLAIN ANALYZE) values. */
+    public boolean hasActuals() {
+        return !Double.isNaN(actualRows);
+    }
+
+    /** @return Time spent in this operator and its inputs over all loops, or NaN. */
+    public double getActualTotalMs() {
+        return Double.isNaN(actualLastRowMs) ? Double.NaN : actualLastRowMs * Math.max(loops, 0);
+    }
+
+    /**
+     * @return Time spent in this operator itself: its total minus the totals of
+     *         its inputs. NaN if the plan has no timings.
+     */
+    public double getActualSelfMs() {
+        double total = getActualTotalMs();
+        if (Double.isNaN(total)) {
+            return Double.NaN;
+        }
+        for (PlanNode child : children) {
+            double childTotal = child.getActualTotalMs();
+            if (!Double.isNaN(childTotal)) {
+                total -= childTotal;
+            }
+        }
+        return Math.max(total, 0);
+    }
+
+    @Override
+    public String toString() {
+        return operation;
+    }
+
+    /** Collects the values of a node while a plan is parsed. */
+    public static final class Builder {
+        private final String operation;
+        private final List<Builder> children = new ArrayList<>();
+        private String table;
+        private String accessType;
+        private String key;
+        private String possibleKeys;
+        private String detail;
+        private double estimatedCost = Double.NaN;
+        private double estimatedRows = Double.NaN;
+        private double actualFirstRowMs = Double.NaN;
+        private double actualLastRowMs = Double.NaN;
+        private double actualRows = Double.NaN;
+        private long loops;
+        private boolean usingFilesort;
+        private boolean usingTemporary;
+
+        public Builder(String operation) {
+            this.operation = operation;
+        }
+
+        public Builder table(String table) {
+            this.table = table;
+            return this;
+        }
+
+        public Builder accessType(String accessType) {
+            this.accessType = accessType;
+            return this;
+        }
+
+        public Builder key(String key) {
+            this.key = key;
+            return this;
+        }
+
+        public Builder possibleKeys(String possibleKeys) {
+            this.possibleKeys = possibleKeys;
+            return this;
+        }
+
+        public Builder detail(String detail) {
+            this.detail = detail;
+            return this;
+        }
+
+        public Builder estimated(double cost, double rows) {
+            this.estimatedCost = cost;
+            this.estimatedRows = rows;
+            return this;
+        }
+
+        public Builder actual(double firstRowMs, double lastRowMs, double rows, long loops) {
+            this.actualFirstRowMs = firstRowMs;
+            this.actualLastRowMs = lastRowMs;
+            this.actualRows = rows;
+            this.loops = loops;
+            return this;
+        }
+
+        public Builder usingFilesort(boolean usingFilesort) {
+            this.usingFilesort = usingFilesort;
+            return this;
+        }
+
+        public Builder usingTemporary(boolean usingTemporary) {
+            this.usingTemporary = usingTemporary;
+            return this;
+        }
+
+        public Builder addChild(Builder child) {
+            children.add(child);
+            return this;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        public PlanNode build() {
+            List<PlanNode> built = new ArrayList<>(children.size());
+            for (Builder child : children) {
+                built.add(child.build());
+            }
+            return new PlanNode(this, built);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package in.mystrn.sqlutil.models;
+
+/**
+ * The shape of a statement: its text with literals replaced by placeholders
+ * and whitespace and case canonicalized, plus a 64-bit digest of that text.
+ * Statements that differ only in literal values share a fingerprint.
+ *
+ * @author hive
+ */
+public final class QueryFingerprint {
+
+    private final String text;
+    private final long digest;
+
+    public QueryFingerprint(String text, long digest) {
+        this.text = text;
+        this.digest = digest;
+    }
+
+    /** @return The normalized statement text, e.g. "select * from t where id = ?". */
+    public String getText() {
+        return text;
+    }
+
+    public long getDigest() {
+        return digest;
+    }
+
+    /** @return The digest as 16 hex digits. */
+    public String getDigestHex() {
+        return String.format("%016x", digest);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueryFingerprint)) {
+            return false;
+        }
+        QueryFingerprint other = (QueryFingerprint) o;
+        return digest == other.digest && text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(digest);
+    }
+
+    @Override
+    public String toString() {
+        return getDigestHex() + " " + text;
+    }
+}
@@ -0,0 +1,366 @@
+package in.mystrn.sqlutil.models;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable structural statistics of one statement: counts and flags of a
+ * SELECT, or the target and source of an INSERT, UPDATE or DELETE.
+ *
+ * Each statistic has a typed getter; one the statement kind does not have
+ * reads as 0, false or null. {@link #asMap()} lists only the statistics that
+ * were gathered, in the order they were set, for display and export.
+ *
+ * @author hive
+ */
+public final class QueryStats {
+
+    /** No statistics, for statements that were not analyzed. */
+    public static final QueryStats EMPTY = new Builder().build();
+
+    private final int selectItemCount;
+    private final boolean usesSelectStar;
+    private final int tableCount;
+    private final int joinCount;
+    private final List<String> joinTypes;
+    private final boolean hasWhereClause;
+    private final int whereConditionComplexity;
+    private final boolean hasGroupByClause;
+    private final int groupByItemCount;
+    private final boolean hasOrderByClause;
+    private final int orderByItemCount;
+    private final boolean hasLimitClause;
+    private final boolean distinct;
+    private final String setOperation;
+    private final int functionCallCount;
+    private final int windowFunctionCount;
+    private final int aggregateFunctionCount;
+    private final long totalWhereColumnsUsed;
+    private final long totalFunctionsOnWhereColumns;
+    private final String targetTable;
+    private final int columnCount;
+    private final String insertSource;
+    private final int setColumnCount;
+    private final String statementKind;
+    private final Map<String, Object> values;
+
+    private QueryStats(Builder b) {
+        this.selectItemCount = b.selectItemCount;
+        this.usesSelectStar = b.usesSelectStar;
+        this.tableCount = b.tableCount;
+        this.joinCount = b.joinCount;
+        this.joinTypes = b.joinTypes;
+        this.hasWhereClause = b.hasWhereClause;
+        this.whereConditionComplexity = b.whereConditionComplexity;
+        this.hasGroupByClause = b.hasGroupByClause;
+        this.groupByItemCount = b.groupByItemCount;
+        this.hasOrderByClause = b.hasOrderByClause;
+        this.orderByItemCount = b.orderByItemCount;
+        this.hasLimitClause = b.hasLimitClause;
+        this.distinct = b.distinct;
+        this.setOperation = b.setOperation;
+        this.functionCallCount = b.functionCallCount;
+        this.windowFunctionCount = b.windowFunctionCount;
+        this.aggregateFunctionCount = b.aggregateFunctionCount;
+        this.totalWhereColumnsUsed = b.totalWhereColumnsUsed;
+        this.totalFunctionsOnWhereColumns = b.totalFunctionsOnWhereColumns;
+        this.targetTable = b.targetTable;
+        this.columnCount = b.columnCount;
+        this.insertSource = b.insertSource;
+        this.setColumnCount = b.setColumnCount;
+        this.statementKind = b.statementKind;
+        this.values = Collections.unmodifiableMap(new LinkedHashMap<>(b.values));
+    }
+
+    public int getSelectItemCount() {
+        return selectItemCount;
+    }
+
+    public boolean usesSelectStar() {
+        return usesSelectStar;
+    }
+
+    public int getTableCount() {
+        return tableCount;
+    }
+
+    public int getJoinCount() {
+        return joinCount;
+    }
+
+    /** @return The join kinds in FROM order; unmodifiable. */
+    public List<String> getJoinTypes() {
+        return joinTypes;
+    }
+
+    public boolean hasWhereClause() {
+        return hasWhereClause;
+    }
+
+    /** @return The number of conditions in the statement's WHERE clauses. */
+    public int getWhereConditionComplexity() {
+        return whereConditionComplexity;
+    }
+
+    public boolean hasGroupByClause() {
+        return hasGroupByClause;
+    }
+
+    public int getGroupByItemCount() {
+        return groupByItemCount;
+    }
+
+    public boolean hasOrderByClause() {
+        return hasOrderByClause;
+    }
+
+    public int getOrderByItemCount() {
+        return orderByItemCount;
+    }
+
+    public boolean hasLimitClause() {
+        return hasLimitClause;
+    }
+
+    public boolean isDistinct() {
+        return distinct;
+    }
+
+    /** @return The set operator (UNION, ...), "None", or null if not a SELECT. */
+    public String getSetOperation() {
+        return setOperation;
+    }
+
+    public int getFunctionCallCount() {
+        return functionCallCount;
+    }
+
+    public int getWindowFunctionCount() {
+        return windowFunctionCount;
+    }
+
+    public int getAggregateFunctionCount() {
+        return aggregateFunctionCount;
+    }
+
+    public long getTotalWhereColumnsUsed() {
+        return totalWhereColumnsUsed;
+    }
+
+    public long getTotalFunctionsOnWhereColumns() {
+        return totalFunctionsOnWhereColumns;
+    }
+
+    /** @return The table an INSERT, UPDATE or DELETE writes to, or null. */
+    public String getTargetTable() {
+        return targetTable;
+    }
+
+    /** @return The number of columns an INSERT lists. */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /** @return Where an INSERT's rows come from, or null. */
+    public String getInsertSource() {
+        return insertSource;
+    }
+
+    /** @return The number of columns an UPDATE sets. */
+    public int getSetColumnCount() {
+        return setColumnCount;
+    }
+
+    /** @return "DDL/Custom" or "Other" for statements without specific statistics, or null. */
+    public String getStatementKind() {
+        return statementKind;
+    }
+
+    /** @return The statistics that were gathered by name, in a stable order; unmodifiable. */
+    public Map<String, Object> asMap() {
+        return values;
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /** Builder used while a statement is being analyzed. */
+    public static final class Builder {
+        private int selectItemCount;
+        private boolean usesSelectStar;
+        private int tableCount;
+        private int joinCount;
+        private List<String> joinTypes = List.of();
+        private boolean hasWhereClause;
+        private int whereConditionComplexity;
+        private boolean hasGroupByClause;
+        private int groupByItemCount;
+        private boolean hasOrderByClause;
+        private int orderByItemCount;
+        private boolean hasLimitClause;
+        private boolean distinct;
+        private String setOperation;
+        private int functionCallCount;
+        private int windowFunctionCount;
+        private int aggregateFunctionCount;
+        private long totalWhereColumnsUsed;
+        private long totalFunctionsOnWhereColumns;
+        private String targetTable;
+        private int columnCount;
+        private String insertSource;
+        private int setColumnCount;
+        private String statementKind;
+        private final Map<String, Object> values = new LinkedHashMap<>();
+
+        public Builder selectItemCount(int value) {
+            selectItemCount = value;
+            values.put("selectItemCount", value);
+            return this;
+        }
+
+        public Builder usesSelectStar(boolean value) {
+            usesSelectStar = value;
+            values.put("usesSelectStar", value);
+            return this;
+        }
+
+        public Builder tableCount(int value) {
+            tableCount = value;
+            values.put("tableCount", value);
+            return this;
+        }
+
+        public Builder joinCount(int value) {
+            joinCount = value;
+            values.put("joinCount", value);
+            return this;
+        }
+
+        public Builder joinTypes(List<String> value) {
+            joinTypes = List.copyOf(value);
+            values.put("joinTypes", joinTypes);
+            return this;
+        }
+
+        public Builder hasWhereClause(boolean value) {
+            hasWhereClause = value;
+            values.put("hasWhereClause", value);
+            return this;
+        }
+
+        public Builder whereConditionComplexity(int value) {
+            whereConditionComplexity = value;
+            values.put("whereConditionComplexity", value);
+            return this;
+        }
+
+        public Builder hasGroupByClause(boolean value) {
+            hasGroupByClause = value;
+            values.put("hasGroupByClause", value);
+            return this;
+        }
+
+        public Builder groupByItemCount(int value) {
+            groupByItemCount = value;
+            values.put("groupByItemCount", value);
+            return this;
+        }
+
+        public Builder hasOrderByClause(boolean value) {
+            hasOrderByClause = value;
+            values.put("hasOrderByClause", value);
+            return this;
+        }
+
+        public Builder orderByItemCount(int value) {
+            orderByItemCount = value;
+            values.put("orderByItemCount", value);
+            return this;
+        }
+
+        public Builder hasLimitClause(boolean value) {
+            hasLimitClause = value;
+            values.put("hasLimitClause", value);
+            return this;
+        }
+
+        public Builder distinct(boolean value) {
+            distinct = value;
+            values.put("isDistinct", value);
+            return this;
+        }
+
+        public Builder setOperation(String value) {
+            setOperation = value;
+            values.put("setOperation", value);
+            return this;
+        }
+
+        public Builder functionCallCount(int value) {
+            functionCallCount = value;
+            values.put("functionCallCount", value);
+            return this;
+        }
+
+        public Builder windowFunctionCount(int value) {
+            windowFunctionCount = value;
+            values.put("windowFunctionCount", value);
+            return this;
+        }
+
+        public Builder aggregateFunctionCount(int value) {
+            aggregateFunctionCount = value;
+            values.put("aggregateFunctionCount", value);
+            return this;
+        }
+
+        public Builder totalWhereColumnsUsed(long value) {
+            totalWhereColumnsUsed = value;
+            values.put("totalWhereColumnsUsed", value);
+            return this;
+        }
+
+        public Builder totalFunctionsOnWhereColumns(long value) {
+            totalFunctionsOnWhereColumns = value;
+            values.put("totalFunctionsOnWhereColumns", value);
+            return this;
+        }
+
+        public Builder targetTable(String value) {
+            targetTable = value;
+            values.put("targetTable", value);
+            return this;
+        }
+
+        public Builder columnCount(int value) {
+            columnCount = value;
+            values.put("columnCount", value);
+            return this;
+        }
+
+        public Builder insertSource(String value) {
+            insertSource = value;
+            values.put("insertSource", value);
+            return this;
+        }
+
+        public Builder setColumnCount(int value) {
+            setColumnCount = value;
+            values.put("setColumnCount", value);
+            return this;
+        }
+
+        public Builder statementKind(String value) {
+            statementKind = value;
+            values.put("statementKind", value);
+            return this;
+        }
+
+        public QueryStats build() {
+            return new QueryStats(this);
+        }
+    }
+}
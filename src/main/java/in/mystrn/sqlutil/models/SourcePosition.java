@@ -0,0 +1,59 @@
+package in.mystrn.sqlutil.models;
+
+/**
+ * Position of a construct in the analyzed SQL text.
+ *
+ * Results keep this compact copy instead of the parser's token, so a retained
+ * result does not pin the token list and parse tree it was computed from.
+ *
+ * @author hive
+ */
+public final class SourcePosition {
+
+    private final int line;
+    private final int column;
+    private final int offset;
+
+    public SourcePosition(int line, int column, int offset) {
+        this.line = line;
+        this.column = column;
+        this.offset = offset;
+    }
+
+    /** @return The 1-based line number. */
+    public int getLine() {
+        return line;
+    }
+
+    /** @return The 1-based column number. */
+    public int getColumn() {
+        return column;
+    }
+
+    /** @return The 0-based character offset in the script. */
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SourcePosition)) {
+            return false;
+        }
+        SourcePosition other = (SourcePosition) o;
+        return line == other.line && column == other.column && offset == other.offset;
+    }
+
+    @Override
+    public int hashCode() {
+        return (line * 31 + column) * 31 + offset;
+    }
+
+    @Override
+    public String toString() {
+        return "Line: " + line + ", Col: " + column;
+    }
+}
@@ -1,24 +1,96 @@
 package in.mystrn.sqlutil.models;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * Immutable structural analysis of a SQL script: whether it parsed, and the
+ * analysis of every statement in script order.
  *
  * @author hive
  */
-public class SqlResult {
+public final class SqlResult {
 
-    private List<Map<String, Object>> tables;
+    private final String error;
+    private final List<StatementResult> statements;
+    private final boolean partial;
+    private Map<String, TableUsage> mergedTables;
 
-    public List<Map<String, Object>> getTables() {
-        return tables;
+    private SqlResult(String error, List<StatementResult> statements, boolean partial) {
+        this.error = error;
+        this.statements = statements;
+        this.partial = partial;
     }
 
-    public void setTables(List<Map<String, Object>> tables) {
-        this.tables = tables;
+    /** A script that failed to parse. */
+    public static SqlResult invalid(String error) {
+        return new SqlResult(error != null ? error : "", List.of(), false);
     }
 
-    
-    
+    /** A script that parsed, with its per-statement analyses. */
+    public static SqlResult valid(List<StatementResult> statements) {
+        return new SqlResult(null, List.copyOf(statements), false);
+    }
+
+    /**
+     * A script that parsed but whose analysis was cut short by cancellation or
+     * its time budget; statements that were not analyzed carry a hint saying so.
+     */
+    public static SqlResult partial(List<StatementResult> statements) {
+        return new SqlResult(null, List.copyOf(statements), true);
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    /** @return true if some statements were skipped (see {@link #partial}). */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /** @return The formatted syntax errors, or null if the script is valid. */
+    public String getError() {
+        return error;
+    }
+
+    public List<StatementResult> getStatements() {
+        return statements;
+    }
+
+    public int getStatementCount() {
+        return statements.size();
+    }
+
+    /** @return The analysis of the statement at the given script index, or null. */
+    public StatementResult getStatement(int index) {
+        return index >= 0 && index < statements.size() ? statements.get(index) : null;
+    }
+
+    /**
+     * Table details unioned across all statements, so every table referenced by
+     * the script appears once. The first alias seen wins.
+     */
+    public synchronized Map<String, TableUsage> getTables() {
+        if (mergedTables == null) {
+            if (statements.size() == 1) {
+                mergedTables = statements.get(0).getTables();
+            } else {
+                Map<String, TableUsage.Builder> builders = new LinkedHashMap<>();
+                for (StatementResult statement : statements) {
+                    for (TableUsage table : statement.getTables().values()) {
+                        builders.computeIfAbsent(table.getName(),
+                                k -> new TableUsage.Builder(table.getName(), table.getAlias(), table.getPosition()))
+                                .getColumns().addAll(table.getColumns());
+                    }
+                }
+                Map<String, TableUsage> merged = new LinkedHashMap<>();
+                builders.forEach((name, builder) -> merged.put(name, builder.build()));
+                mergedTables = Collections.unmodifiableMap(merged);
+            }
+        }
+        return mergedTables;
+    }
 }
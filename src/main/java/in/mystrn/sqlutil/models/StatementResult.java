@@ -0,0 +1,80 @@
+package in.mystrn.sqlutil.models;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable structural analysis of one statement of a script.
+ *
+ * @author hive
+ */
+public final class StatementResult {
+
+    private final int index;
+    private final String sql;
+    private final String statementType;
+    private final Map<String, TableUsage> tables;
+    private final QueryStats queryStats;
+    private final List<PerformanceHint> hints;
+    private final QueryFingerprint fingerprint;
+
+    public StatementResult(int index, String sql, String statementType, List<TableUsage> tables,
+            QueryStats queryStats, List<PerformanceHint> hints) {
+        this(index, sql, statementType, tables, queryStats, hints, null);
+    }
+
+    public StatementResult(int index, String sql, String statementType, List<TableUsage> tables,
+            QueryStats queryStats, List<PerformanceHint> hints, QueryFingerprint fingerprint) {
+        this.index = index;
+        this.sql = sql;
+        this.statementType = statementType;
+        Map<String, TableUsage> byName = new LinkedHashMap<>();
+        for (TableUsage table : tables) {
+            byName.put(table.getName(), table);
+        }
+        this.tables = Collections.unmodifiableMap(byName);
+        this.queryStats = queryStats != null ? queryStats : QueryStats.EMPTY;
+        this.hints = List.copyOf(hints);
+        this.fingerprint = fingerprint;
+    }
+
+    /** @return Position of the statement in its script (0 based). */
+    public int getIndex() {
+        return index;
+    }
+
+    /** @return The statement's source text, or null if unknown. */
+    public String getSql() {
+        return sql;
+    }
+
+    public String getStatementType() {
+        return statementType;
+    }
+
+    /** @return Table details keyed by table name, in order of first reference. */
+    public Map<String, TableUsage> getTables() {
+        return tables;
+    }
+
+    /** @return The details of a table, or null if the statement doesn't use it. */
+    public TableUsage getTable(String name) {
+        return tables.get(name);
+    }
+
+    /** @return Structural statistics (counts, flags, join types). */
+    public QueryStats getQueryStats() {
+        return queryStats;
+    }
+
+    public List<PerformanceHint> getHints() {
+        return hints;
+    }
+
+    /** @return The statement's shape, or null if it could not be computed. */
+    public QueryFingerprint getFingerprint() {
+        return fingerprint;
+    }
+}
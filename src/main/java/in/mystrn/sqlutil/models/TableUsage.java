@@ -0,0 +1,72 @@
+package in.mystrn.sqlutil.models;
+
+/**
+ * Immutable per-table details of a statement: the alias it was referenced by,
+ * where it was referenced and how its columns are used. Holds no parser
+ * objects, so it outlives the parse tree it was computed from.
+ *
+ * @author hive
+ */
+public final class TableUsage {
+
+    private final String name;
+    private final String alias;
+    private final SourcePosition position;
+    private final ColumnUsage columns;
+
+    public TableUsage(String name, String alias, SourcePosition position, ColumnUsage columns) {
+        this.name = name;
+        this.alias = alias;
+        this.position = position;
+        this.columns = columns != null ? columns : ColumnUsage.EMPTY;
+    }
+
+    /** @return The table name as written (possibly schema qualified), or a "? (...)" placeholder. */
+    public String getName() {
+        return name;
+    }
+
+    /** @return The alias used in the statement, or null if none was recorded. */
+    public String getAlias() {
+        return alias;
+    }
+
+    /** @return Where the table is first referenced, or null if unknown. */
+    public SourcePosition getPosition() {
+        return position;
+    }
+
+    public ColumnUsage getColumns() {
+        return columns;
+    }
+
+    /** Mutable builder used while a statement is being walked. */
+    public static final class Builder {
+        private final String name;
+        private final String alias;
+        private final SourcePosition position;
+        private final ColumnUsage.Builder columns = new ColumnUsage.Builder();
+
+        public Builder(String name, String alias, SourcePosition position) {
+            this.name = name;
+            this.alias = alias;
+            this.position = position;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        public ColumnUsage.Builder getColumns() {
+            return columns;
+        }
+
+        public TableUsage build() {
+            return new TableUsage(name, alias, position, columns.build());
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import in.mystrn.sqlutil.models.SourcePosition;
+import in.mystrn.sqlutil.models.SqlResult;
+import in.mystrn.sqlutil.models.StatementResult;
+import in.mystrn.sqlutil.models.TableUsage;
+
+/**
+ * Bounded LRU cache of parsed scripts and their structural analysis results.
+ *
+ * Entries are keyed on the vendor plus the whitespace- and comment-normalized
+ * text (see {@link SqlTextNormalizer}). A parsed script is only served for
+ * its exact text, since its error positions, statement text and AST offsets
+ * are those of that text. The analysis is shared by every text of the entry:
+ * a trivially reformatted script is parsed again but skips the visitor chain,
+ * and gets the cached result with its statement text and table positions
+ * moved onto the new text.
+ * The cache is bounded by entry count and by weight, where the weight of an
+ * entry is the number of SQL characters it retains (a proxy for AST size).
+ *
+ * Cached results are immutable and shared between callers.
+ * The cache holds its own reference on every cached {@link ParsedScript} and
+ * releases it on eviction; scripts returned by {@link #getScript} are retained
+ * for the caller, who must release them when done.
+ *
+ * @author hive
+ */
+public final class AnalysisCache {
+
+	/** Default maximum number of cached scripts. */
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+	/** Default maximum retained SQL characters across all entries. */
+	public static final long DEFAULT_MAX_WEIGHT = 16L * 1024 * 1024;
+
+	private final int maxEntries;
+	private final long maxWeight;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+	private long weight;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	public AnalysisCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+	}
+
+	public AnalysisCache(int maxEntries, long maxWeight) {
+		if (maxEntries <= 0 || maxWeight <= 0) {
+			throw new IllegalArgumentException("Cache bounds must be positive.");
+		}
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+	}
+
+	/** Builds the cache key of a script. */
+	public static Key keyOf(EDbVendor vendor, String sql) {
+		String normalized = SqlTextNormalizer.normalize(sql, vendor);
+		return new Key(vendor, SqlTextNormalizer.hash64(normalized), normalized, sql == null ? "" : sql);
+	}
+
+	/**
+	 * @return The cached parse of the key's exact text, retained for the
+	 *         caller, or null on a miss. Each call counts one hit or miss.
+	 */
+	public synchronized ParsedScript getScript(Key key) {
+		Entry entry = entries.get(key);
+		if (entry == null || entry.script == null || !entry.script.getSql().equals(key.sql)
+				|| !entry.script.retain()) {
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return entry.script;
+	}
+
+	/**
+	 * @return The cached analysis of the script, moved onto its text if it was
+	 *         computed for another text of the same entry, or null on a miss.
+	 *         Not counted as a hit or miss: it always follows the
+	 *         {@link #getScript} of the same lookup.
+	 */
+	public SqlResult getResult(ParsedScript script) {
+		Key key = script.getCacheKey();
+		SqlResult result;
+		String resultSql;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry == null || entry.result == null) {
+				return null;
+			}
+			result = entry.result;
+			resultSql = entry.resultSql;
+		}
+		return resultSql.equals(script.getSql()) ? result : rebase(result, resultSql, script);
+	}
+
+	/** Caches a script; the cache takes its own reference on it. */
+	public synchronized void putScript(Key key, ParsedScript script) {
+		if (!script.retain()) {
+			return;
+		}
+		Entry entry = entryFor(key);
+		// A reformatted text replaces the entry's script
+		int added = script.getSql().length() - (entry.script == null ? 0 : entry.script.getSql().length());
+		entry.weight += added;
+		weight += added;
+		if (entry.script != null) {
+			entry.script.release();
+		}
+		entry.script = script;
+		evict();
+	}
+
+	/** Caches the analysis of the key's exact text. */
+	public synchronized void putResult(Key key, SqlResult result) {
+		Entry entry = entryFor(key);
+		entry.result = result;
+		entry.resultSql = key.sql;
+		evict();
+	}
+
+	/**
+	 * Moves a result onto another text with the same normalized form: the
+	 * statement text comes from the new script, and table positions are
+	 * carried over character by character through the normalized text.
+	 *
+	 * @return The moved result, or null if the texts do not line up.
+	 */
+	private static SqlResult rebase(SqlResult result, String fromSql, ParsedScript to) {
+		if (!result.isValid() || !to.isValid() || result.getStatementCount() != to.getStatementCount()) {
+			return null;
+		}
+		EDbVendor vendor = to.getCacheKey().getVendor();
+		int[] from = SqlTextNormalizer.sourceIndexes(fromSql, vendor);
+		int[] onto = SqlTextNormalizer.sourceIndexes(to.getSql(), vendor);
+		if (from.length != onto.length) {
+			return null;
+		}
+		List<StatementResult> statements = new ArrayList<>(result.getStatementCount());
+		for (StatementResult statement : result.getStatements()) {
+			List<TableUsage> tables = new ArrayList<>(statement.getTables().size());
+			for (TableUsage table : statement.getTables().values()) {
+				tables.add(new TableUsage(table.getName(), table.getAlias(),
+						rebase(table.getPosition(), from, onto, to.getSql()), table.getColumns()));
+			}
+			statements.add(new StatementResult(statement.getIndex(), to.getStatementSql(statement.getIndex()),
+					statement.getStatementType(), tables, statement.getQueryStats(), statement.getHints(),
+					statement.getFingerprint()));
+		}
+		return SqlResult.valid(statements);
+	}
+
+	private static SourcePosition rebase(SourcePosition position, int[] from, int[] onto, String sql) {
+		if (position == null) {
+			return null;
+		}
+		int i = Arrays.binarySearch(from, position.getOffset());
+		if (i < 0) {
+			// Not a character the normalized text kept
+			return null;
+		}
+		// A separator maps to the same index as the character after it
+		while (i + 1 < from.length && from[i + 1] == position.getOffset()) {
+			i++;
+		}
+		int offset = onto[i];
+		int lineStart = sql.lastIndexOf('\n', offset - 1) + 1;
+		int line = 1;
+		for (int c = 0; c < lineStart; c++) {
+			if (sql.charAt(c) == '\n') {
+				line++;
+			}
+		}
+		return new SourcePosition(line, offset - lineStart + 1, offset);
+	}
+
+	private Entry entryFor(Key key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			entry = new Entry(key.normalized.length());
+			entries.put(key, entry);
+			weight += entry.weight;
+		}
+		return entry;
+	}
+
+	private void evict() {
+		Iterator<Entry> it = entries.values().iterator();
+		while ((entries.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+			Entry eldest = it.next();
+			// Never evict the entry that was just inserted (most recently used, last)
+			if (entries.size() == 1) {
+				break;
+			}
+			it.remove();
+			weight -= eldest.weight;
+			evictionCount++;
+			if (eldest.script != null) {
+				eldest.script.release();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		for (Entry entry : entries.values()) {
+			if (entry.script != null) {
+				entry.script.release();
+			}
+		}
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("AnalysisCache[entries=%d/%d, weight=%d/%d, hits=%d, misses=%d, evictions=%d]",
+				entries.size(), maxEntries, weight, maxWeight, hitCount, missCount, evictionCount);
+	}
+
+	/** Cache key: vendor plus the normalized text and its 64-bit hash. */
+	public static final class Key {
+		private final EDbVendor vendor;
+		private final long hash;
+		private final String normalized;
+		/** The exact text the key was built from; not part of equality. */
+		private final String sql;
+
+		private Key(EDbVendor vendor, long hash, String normalized, String sql) {
+			this.vendor = vendor;
+			this.hash = hash;
+			this.normalized = normalized;
+			this.sql = sql;
+		}
+
+		public EDbVendor getVendor() {
+			return vendor;
+		}
+
+		public long getHash() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			// Hash first so that mismatches are rejected without a string compare
+			return hash == other.hash && vendor == other.vendor && normalized.equals(other.normalized);
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(hash) * 31 + (vendor == null ? 0 : vendor.hashCode());
+		}
+	}
+
+	private static final class Entry {
+		private long weight;
+		private ParsedScript script;
+		private SqlResult result;
+		private String resultSql;
+
+		Entry(long weight) {
+			this.weight = weight;
+		}
+	}
+}
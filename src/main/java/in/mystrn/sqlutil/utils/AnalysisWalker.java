@@ -0,0 +1,197 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.TCustomSqlStatement;
+import gudusoft.gsqlparser.nodes.TExpression;
+import gudusoft.gsqlparser.nodes.TFunctionCall;
+import gudusoft.gsqlparser.nodes.TGroupBy;
+import gudusoft.gsqlparser.nodes.TObjectName;
+import gudusoft.gsqlparser.nodes.TOrderBy;
+import gudusoft.gsqlparser.nodes.TParseTreeNode;
+import gudusoft.gsqlparser.nodes.TParseTreeVisitor;
+import gudusoft.gsqlparser.nodes.TResultColumn;
+import gudusoft.gsqlparser.nodes.TTable;
+import gudusoft.gsqlparser.nodes.TWhereClause;
+
+import java.util.List;
+
+/**
+ * A single-pass traversal engine for the structural analysis.
+ *
+ * The walker visits a statement once and keeps track of the clause it is in
+ * (WHERE, GROUP BY, ORDER BY, inside a function call). Every check is a
+ * {@link Listener} that receives callbacks from that shared walk, so adding a
+ * check no longer adds a full tree traversal.
+ *
+ * @author hive
+ */
+final class AnalysisWalker extends TParseTreeVisitor {
+
+	/**
+	 * A check plugged into the walk. All callbacks are optional and are invoked
+	 * in listener registration order.
+	 */
+	interface Listener {
+
+		default void onTable(TTable table, WalkContext context) {
+		}
+
+		default void onObjectName(TObjectName name, WalkContext context) {
+		}
+
+		default void onFunctionCall(TFunctionCall function, WalkContext context) {
+		}
+
+		default void onResultColumn(TResultColumn column, WalkContext context) {
+		}
+
+		default void onExpression(TExpression expression, WalkContext context) {
+		}
+
+		default void afterExpression(TExpression expression, WalkContext context) {
+		}
+	}
+
+	/** Clause nesting of the node currently being visited. */
+	static final class WalkContext {
+		private int whereDepth;
+		private int statementWhereDepth;
+		private int functionDepth;
+		private int groupByDepth;
+		private int orderByDepth;
+
+		boolean inWhere() {
+			return whereDepth > 0;
+		}
+
+		/**
+		 * Whether the node is inside the WHERE clause of the walked statement
+		 * itself, including subqueries in that clause, but not in the WHERE of a
+		 * derived table or of a subquery in the select list.
+		 */
+		boolean inStatementWhere() {
+			return statementWhereDepth > 0;
+		}
+
+		boolean inFunction() {
+			return functionDepth > 0;
+		}
+
+		boolean inGroupBy() {
+			return groupByDepth > 0;
+		}
+
+		boolean inOrderBy() {
+			return orderByDepth > 0;
+		}
+	}
+
+	private final Listener[] listeners;
+	private final WalkContext context = new WalkContext();
+	private TWhereClause statementWhere;
+
+	AnalysisWalker(List<? extends Listener> listeners) {
+		this.listeners = listeners.toArray(new Listener[0]);
+	}
+
+	/** Walks a whole statement. */
+	void walk(TParseTreeNode root) {
+		statementWhere = root instanceof TCustomSqlStatement ? ((TCustomSqlStatement) root).getWhereClause() : null;
+		root.accept(this);
+	}
+
+	/** Walks a bare WHERE condition, which is treated as being inside WHERE. */
+	void walkWhereCondition(TExpression condition) {
+		context.whereDepth++;
+		context.statementWhereDepth++;
+		try {
+			condition.accept(this);
+		} finally {
+			context.whereDepth--;
+			context.statementWhereDepth--;
+		}
+	}
+
+	@Override
+	public void preVisit(TTable table) {
+		for (Listener listener : listeners) {
+			listener.onTable(table, context);
+		}
+	}
+
+	@Override
+	public void preVisit(TObjectName name) {
+		for (Listener listener : listeners) {
+			listener.onObjectName(name, context);
+		}
+	}
+
+	@Override
+	public void preVisit(TFunctionCall function) {
+		for (Listener listener : listeners) {
+			listener.onFunctionCall(function, context);
+		}
+		context.functionDepth++;
+	}
+
+	@Override
+	public void postVisit(TFunctionCall function) {
+		context.functionDepth--;
+	}
+
+	@Override
+	public void preVisit(TResultColumn column) {
+		for (Listener listener : listeners) {
+			listener.onResultColumn(column, context);
+		}
+	}
+
+	@Override
+	public void preVisit(TExpression expression) {
+		for (Listener listener : listeners) {
+			listener.onExpression(expression, context);
+		}
+	}
+
+	@Override
+	public void postVisit(TExpression expression) {
+		for (Listener listener : listeners) {
+			listener.afterExpression(expression, context);
+		}
+	}
+
+	@Override
+	public void preVisit(TWhereClause where) {
+		context.whereDepth++;
+		if (where == statementWhere) {
+			context.statementWhereDepth++;
+		}
+	}
+
+	@Override
+	public void postVisit(TWhereClause where) {
+		context.whereDepth--;
+		if (where == statementWhere) {
+			context.statementWhereDepth--;
+		}
+	}
+
+	@Override
+	public void preVisit(TGroupBy groupBy) {
+		context.groupByDepth++;
+	}
+
+	@Override
+	public void postVisit(TGroupBy groupBy) {
+		context.groupByDepth--;
+	}
+
+	@Override
+	public void preVisit(TOrderBy orderBy) {
+		context.orderByDepth++;
+	}
+
+	@Override
+	public void postVisit(TOrderBy orderBy) {
+		context.orderByDepth--;
+	}
+}
@@ -0,0 +1,113 @@
+package in.mystrn.sqlutil.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events of the analyzer's hot paths, so a recording of a
+ * real workload shows where the analyzer spends its time without a profiler:
+ *
+ * <pre>
+ * jcmd &lt;pid&gt; JFR.start name=sqlutil filename=sqlutil.jfr
+ * jfr print --categories "SQL Util" sqlutil.jfr
+ * </pre>
+ *
+ * The events are enabled by the default JFR settings and have a duration, so
+ * they can be filtered with a threshold. When no recording is running,
+ * {@code begin()} and {@code commit()} do nothing.
+ *
+ * @author hive
+ */
+public final class AnalyzerEvents {
+
+	private static final String CATEGORY = "SQL Util";
+
+	private AnalyzerEvents() {
+	}
+
+	@Name("in.mystrn.sqlutil.Parse")
+	@Label("SQL Parse")
+	@Description("A script parsed by the Gudu SQL parser")
+	@Category({ CATEGORY, "Analysis" })
+	@StackTrace(false)
+	public static final class ParseEvent extends Event {
+		@Label("Vendor")
+		public String vendor;
+
+		@Label("Script Length")
+		@Description("Length of the script text in characters")
+		public int length;
+
+		@Label("Statements")
+		public int statementCount;
+
+		@Label("Valid")
+		public boolean valid;
+	}
+
+	@Name("in.mystrn.sqlutil.AnalysisStep")
+	@Label("Analysis Step")
+	@Description("One step of the structural analysis of a statement, such as the fused listener walk or hint generation")
+	@Category({ CATEGORY, "Analysis" })
+	@StackTrace(false)
+	public static final class AnalysisStepEvent extends Event {
+		@Label("Statement")
+		@Description("Position of the statement in the script (0 based)")
+		public int statementIndex;
+
+		@Label("Statement Type")
+		public String statementType;
+
+		@Label("Step")
+		public String step;
+	}
+
+	@Name("in.mystrn.sqlutil.ConnectionAcquire")
+	@Label("Connection Acquire")
+	@Description("A connection borrowed from the connection pool, including the wait for a permit")
+	@Category({ CATEGORY, "JDBC" })
+	@StackTrace(false)
+	public static final class ConnectionAcquireEvent extends Event {
+		@Label("Connection")
+		@Description("user@url")
+		public String connection;
+
+		@Label("Reused")
+		@Description("Whether an idle pooled connection was handed out instead of opening a new one")
+		public boolean reused;
+
+		@Label("Succeeded")
+		public boolean succeeded;
+	}
+
+	@Name("in.mystrn.sqlutil.Explain")
+	@Label("EXPLAIN")
+	@Description("EXPLAIN of one statement, from the cache lookup to the parsed plan")
+	@Category({ CATEGORY, "JDBC" })
+	@StackTrace(false)
+	public static final class ExplainEvent extends Event {
+		@Label("Statement")
+		@Description("Position of the statement in the script (0 based)")
+		public int statementIndex;
+
+		@Label("Mode")
+		public String mode;
+
+		@Label("Fingerprint")
+		public String fingerprint;
+
+		@Label("Cached")
+		@Description("Whether the plan came from the plan cache")
+		public boolean cached;
+
+		@Label("Plan Rows")
+		public int planRows;
+
+		@Label("Error")
+		public String error;
+	}
+}
@@ -0,0 +1,87 @@
+package in.mystrn.sqlutil.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation flag shared by the UI and the work it started.
+ *
+ * Long-running steps either poll {@link #isCancelled()} or register a
+ * callback with {@link #onCancel(Runnable)} that aborts them, such as
+ * {@code Statement.cancel()} for a running query. Callbacks run once, on the
+ * thread that calls {@link #cancel()}; a callback registered after
+ * cancellation runs immediately.
+ *
+ * @author hive
+ */
+public final class CancellationToken {
+
+	private final Set<Runnable> callbacks = new LinkedHashSet<>();
+	private volatile boolean cancelled;
+
+	/** A registered callback; closing it deregisters the callback. */
+	@FunctionalInterface
+	public interface Registration extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	/** Cancels the token and runs the registered callbacks. Later calls do nothing. */
+	public void cancel() {
+		List<Runnable> toRun;
+		synchronized (callbacks) {
+			if (cancelled) {
+				return;
+			}
+			cancelled = true;
+			toRun = new ArrayList<>(callbacks);
+			callbacks.clear();
+		}
+		for (Runnable callback : toRun) {
+			try {
+				callback.run();
+			} catch (RuntimeException e) {
+				System.err.println("Cancellation callback failed: " + e.getMessage());
+			}
+		}
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @throws CancellationException If the token has been cancelled.
+	 */
+	public void throwIfCancelled() {
+		if (cancelled) {
+			throw new CancellationException("Cancelled by the user.");
+		}
+	}
+
+	/**
+	 * Registers a callback to run on cancellation.
+	 *
+	 * @return The registration; close it once the guarded step is over.
+	 */
+	public Registration onCancel(Runnable callback) {
+		synchronized (callbacks) {
+			if (!cancelled) {
+				// Wrapped so that registering the same callback twice yields two registrations
+				Runnable entry = callback::run;
+				callbacks.add(entry);
+				return () -> {
+					synchronized (callbacks) {
+						callbacks.remove(entry);
+					}
+				};
+			}
+		}
+		callback.run();
+		return () -> {
+		};
+	}
+}
@@ -0,0 +1,423 @@
+package in.mystrn.sqlutil.utils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableModel;
+
+/**
+ * An immutable, column-oriented TableModel for large result grids such as
+ * EXPLAIN output.
+ *
+ * Each column is stored in one array of its JDBC type: {@code long[]} for
+ * integer columns, {@code double[]} for floating point columns, dictionary
+ * codes into a table of distinct values for character columns, and
+ * {@code Object[]} for everything else. NULLs are tracked in a per-column
+ * bitmap and read back as null. Compared to {@link CustomTableModel}, no
+ * per-row objects exist, repeated strings are stored once and
+ * {@link #getValueAt} takes no locks.
+ *
+ * The model never changes after it is built, so one instance can be shown by
+ * several tables and shared between threads.
+ *
+ * @author hive
+ */
+public final class ColumnarTableModel extends AbstractTableModel {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final String[] columnNames;
+	private final Column[] columns;
+	private final int rowCount;
+
+	private ColumnarTableModel(String[] columnNames, Column[] columns, int rowCount) {
+		this.columnNames = columnNames;
+		this.columns = columns;
+		this.rowCount = rowCount;
+	}
+
+	/** Reads all rows of a result set into a new model. */
+	public static ColumnarTableModel fromResultSet(ResultSet rs) throws SQLException {
+		ResultSetMetaData metaData = rs.getMetaData();
+		int columnCount = metaData.getColumnCount();
+		String[] names = new String[columnCount];
+		ColumnBuilder[] builders = new ColumnBuilder[columnCount];
+		for (int c = 0; c < columnCount; c++) {
+			names[c] = metaData.getColumnName(c + 1);
+			builders[c] = builderFor(metaData, c + 1);
+		}
+		int rows = 0;
+		while (rs.next()) {
+			for (int c = 0; c < columnCount; c++) {
+				builders[c].read(rs, c + 1, rows);
+			}
+			rows++;
+		}
+		return build(names, builders, rows);
+	}
+
+	/**
+	 * Copies any table model. Column types are inferred from the values: a
+	 * column whose values are all integers or all floating point numbers or all
+	 * strings gets the matching typed storage.
+	 */
+	public static ColumnarTableModel copyOf(TableModel model) {
+		if (model instanceof ColumnarTableModel) {
+			return (ColumnarTableModel) model;
+		}
+		int columnCount = model.getColumnCount();
+		int rows = model.getRowCount();
+		String[] names = new String[columnCount];
+		ColumnBuilder[] builders = new ColumnBuilder[columnCount];
+		for (int c = 0; c < columnCount; c++) {
+			names[c] = model.getColumnName(c);
+			builders[c] = builderFor(model, c);
+			for (int r = 0; r < rows; r++) {
+				builders[c].add(model.getValueAt(r, c), r);
+			}
+		}
+		return build(names, builders, rows);
+	}
+
+	private static ColumnarTableModel build(String[] names, ColumnBuilder[] builders, int rows) {
+		Column[] columns = new Column[builders.length];
+		for (int c = 0; c < builders.length; c++) {
+			columns[c] = builders[c].build(rows);
+		}
+		return new ColumnarTableModel(names, columns, rows);
+	}
+
+	private static ColumnBuilder builderFor(ResultSetMetaData metaData, int column) throws SQLException {
+		switch (metaData.getColumnType(column)) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return new LongColumnBuilder();
+			case Types.BIGINT:
+				// BIGINT UNSIGNED does not fit a long
+				return metaData.isSigned(column) ? new LongColumnBuilder() : new ObjectColumnBuilder();
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return new DoubleColumnBuilder();
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.LONGNVARCHAR:
+				return new StringColumnBuilder();
+			default:
+				return new ObjectColumnBuilder();
+		}
+	}
+
+	private static ColumnBuilder builderFor(TableModel model, int column) {
+		boolean integers = true;
+		boolean decimals = true;
+		boolean strings = true;
+		for (int r = 0; r < model.getRowCount(); r++) {
+			Object value = model.getValueAt(r, column);
+			if (value == null) {
+				continue;
+			}
+			integers &= value instanceof Long || value instanceof Integer || value instanceof Short
+					|| value instanceof Byte;
+			decimals &= value instanceof Double || value instanceof Float;
+			strings &= value instanceof String;
+		}
+		if (model.getRowCount() == 0) {
+			return new ObjectColumnBuilder();
+		}
+		return integers ? new LongColumnBuilder()
+				: decimals ? new DoubleColumnBuilder() : strings ? new StringColumnBuilder() : new ObjectColumnBuilder();
+	}
+
+	@Override
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	@Override
+	public Object getValueAt(int r, int c) {
+		if (r < 0 || r >= rowCount || c < 0 || c >= columns.length) {
+			return null;
+		}
+		Column column = columns[c];
+		return column.isNull(r) ? null : column.get(r);
+	}
+
+	@Override
+	public String getColumnName(int c) {
+		if (c >= 0 && c < columnNames.length) {
+			return columnNames[c];
+		}
+		return super.getColumnName(c);
+	}
+
+	@Override
+	public Class<?> getColumnClass(int c) {
+		return c >= 0 && c < columns.length ? columns[c].type() : Object.class;
+	}
+
+	@Override
+	public boolean isCellEditable(int r, int c) {
+		return false;
+	}
+
+	// --- Column storage ---
+
+	private abstract static class Column {
+		private final BitSet nulls;
+
+		Column(BitSet nulls) {
+			this.nulls = nulls;
+		}
+
+		final boolean isNull(int row) {
+			return nulls != null && nulls.get(row);
+		}
+
+		abstract Object get(int row);
+
+		abstract Class<?> type();
+	}
+
+	private static final class LongColumn extends Column {
+		private final long[] values;
+
+		LongColumn(long[] values, BitSet nulls) {
+			super(nulls);
+			this.values = values;
+		}
+
+		@Override
+		Object get(int row) {
+			return values[row];
+		}
+
+		@Override
+		Class<?> type() {
+			return Long.class;
+		}
+	}
+
+	private static final class DoubleColumn extends Column {
+		private final double[] values;
+
+		DoubleColumn(double[] values, BitSet nulls) {
+			super(nulls);
+			this.values = values;
+		}
+
+		@Override
+		Object get(int row) {
+			return values[row];
+		}
+
+		@Override
+		Class<?> type() {
+			return Double.class;
+		}
+	}
+
+	private static final class StringColumn extends Column {
+		private final int[] codes;
+		private final String[] dictionary;
+
+		StringColumn(int[] codes, String[] dictionary, BitSet nulls) {
+			super(nulls);
+			this.codes = codes;
+			this.dictionary = dictionary;
+		}
+
+		@Override
+		Object get(int row) {
+			return dictionary[codes[row]];
+		}
+
+		@Override
+		Class<?> type() {
+			return String.class;
+		}
+	}
+
+	private static final class ObjectColumn extends Column {
+		private final Object[] values;
+
+		ObjectColumn(Object[] values, BitSet nulls) {
+			super(nulls);
+			this.values = values;
+		}
+
+		@Override
+		Object get(int row) {
+			return values[row];
+		}
+
+		@Override
+		Class<?> type() {
+			return Object.class;
+		}
+	}
+
+	// --- Builders: grow while reading, trimmed to the row count when built ---
+
+	private abstract static class ColumnBuilder {
+		BitSet nulls;
+
+		/** Reads the value of the current result set row. */
+		abstract void read(ResultSet rs, int column, int row) throws SQLException;
+
+		/** Adds a value copied from another model; must be of the builder's type or null. */
+		abstract void add(Object value, int row);
+
+		abstract Column build(int rows);
+
+		final void markNull(int row) {
+			if (nulls == null) {
+				nulls = new BitSet();
+			}
+			nulls.set(row);
+		}
+
+		static int grow(int length) {
+			return Math.max(INITIAL_CAPACITY, length * 2);
+		}
+	}
+
+	private static final class LongColumnBuilder extends ColumnBuilder {
+		private long[] values = new long[0];
+
+		@Override
+		void read(ResultSet rs, int column, int row) throws SQLException {
+			long value = rs.getLong(column);
+			set(row, value, rs.wasNull());
+		}
+
+		@Override
+		void add(Object value, int row) {
+			set(row, value == null ? 0 : ((Number) value).longValue(), value == null);
+		}
+
+		private void set(int row, long value, boolean isNull) {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			values[row] = value;
+			if (isNull) {
+				markNull(row);
+			}
+		}
+
+		@Override
+		Column build(int rows) {
+			return new LongColumn(Arrays.copyOf(values, rows), nulls);
+		}
+	}
+
+	private static final class DoubleColumnBuilder extends ColumnBuilder {
+		private double[] values = new double[0];
+
+		@Override
+		void read(ResultSet rs, int column, int row) throws SQLException {
+			double value = rs.getDouble(column);
+			set(row, value, rs.wasNull());
+		}
+
+		@Override
+		void add(Object value, int row) {
+			set(row, value == null ? 0 : ((Number) value).doubleValue(), value == null);
+		}
+
+		private void set(int row, double value, boolean isNull) {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			values[row] = value;
+			if (isNull) {
+				markNull(row);
+			}
+		}
+
+		@Override
+		Column build(int rows) {
+			return new DoubleColumn(Arrays.copyOf(values, rows), nulls);
+		}
+	}
+
+	private static final class StringColumnBuilder extends ColumnBuilder {
+		private int[] codes = new int[0];
+		private final Map<String, Integer> codeOf = new HashMap<>();
+		private String[] dictionary = new String[0];
+
+		@Override
+		void read(ResultSet rs, int column, int row) throws SQLException {
+			add(rs.getString(column), row);
+		}
+
+		@Override
+		void add(Object value, int row) {
+			if (row >= codes.length) {
+				codes = Arrays.copyOf(codes, grow(codes.length));
+			}
+			if (value == null) {
+				markNull(row);
+				return;
+			}
+			String text = (String) value;
+			Integer code = codeOf.get(text);
+			if (code == null) {
+				code = codeOf.size();
+				codeOf.put(text, code);
+				if (code >= dictionary.length) {
+					dictionary = Arrays.copyOf(dictionary, grow(dictionary.length));
+				}
+				dictionary[code] = text;
+			}
+			codes[row] = code;
+		}
+
+		@Override
+		Column build(int rows) {
+			return new StringColumn(Arrays.copyOf(codes, rows), Arrays.copyOf(dictionary, codeOf.size()), nulls);
+		}
+	}
+
+	private static final class ObjectColumnBuilder extends ColumnBuilder {
+		private Object[] values = new Object[0];
+
+		@Override
+		void read(ResultSet rs, int column, int row) throws SQLException {
+			add(rs.getObject(column), row);
+		}
+
+		@Override
+		void add(Object value, int row) {
+			if (row >= values.length) {
+				values = Arrays.copyOf(values, grow(values.length));
+			}
+			values[row] = value;
+			if (value == null) {
+				markNull(row);
+			}
+		}
+
+		@Override
+		Column build(int rows) {
+			return new ObjectColumn(Arrays.copyOf(values, rows), nulls);
+		}
+	}
+}
@@ -0,0 +1,393 @@
+package in.mystrn.sqlutil.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small JDBC connection pool keyed by URL and user.
+ *
+ * Opening a connection (driver lookup, TCP and TLS handshake, authentication)
+ * often takes longer than the EXPLAIN it is opened for. Connections handed out
+ * by {@link #borrow} are proxies whose {@code close()} returns the physical
+ * connection to the pool, so callers keep their usual try/finally code.
+ *
+ * Idle connections are validated with {@link Connection#isValid(int)} before
+ * they are handed out and closed by a background sweep once they have been
+ * idle longer than the idle timeout. The number of open connections per key is
+ * capped; a borrow waits up to the borrow timeout for one to be returned.
+ *
+ * @author hive
+ */
+public final class ConnectionPool {
+
+	/** Default maximum open connections per URL/user. */
+	public static final int DEFAULT_MAX_PER_KEY = 4;
+	/** Default time an idle connection is kept before it is closed. */
+	public static final long DEFAULT_IDLE_TIMEOUT_MS = 5 * 60 * 1000L;
+	/** Default time a borrow waits for a connection when the key is at its cap. */
+	public static final long DEFAULT_BORROW_TIMEOUT_MS = 30 * 1000L;
+
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+	private static final ConnectionPool SHARED = new ConnectionPool(DEFAULT_MAX_PER_KEY, DEFAULT_IDLE_TIMEOUT_MS,
+			DEFAULT_BORROW_TIMEOUT_MS);
+	private static final byte[] PASSWORD_SALT = new byte[16];
+
+	static {
+		new SecureRandom().nextBytes(PASSWORD_SALT);
+	}
+
+	private final int maxPerKey;
+	private final long idleTimeoutMs;
+	private final long borrowTimeoutMs;
+	private final Map<Key, Slot> slots = new ConcurrentHashMap<>();
+	private final Set<String> loadedDrivers = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService sweeper;
+
+	public ConnectionPool(int maxPerKey, long idleTimeoutMs, long borrowTimeoutMs) {
+		if (maxPerKey <= 0 || idleTimeoutMs <= 0 || borrowTimeoutMs < 0) {
+			throw new IllegalArgumentException("Pool limits must be positive.");
+		}
+		this.maxPerKey = maxPerKey;
+		this.idleTimeoutMs = idleTimeoutMs;
+		this.borrowTimeoutMs = borrowTimeoutMs;
+		this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "sqlutil-connection-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1000L, idleTimeoutMs / 4);
+		sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/** @return The pool shared by the forms of this application. */
+	public static ConnectionPool getShared() {
+		return SHARED;
+	}
+
+	/** Builds the pool key of a URL/user pair; the key keeps only a digest of the password. */
+	public static Key keyOf(String url, String user, String password) {
+		return new Key(url.trim(), user.trim(), passwordDigest(password));
+	}
+
+	/**
+	 * Salted SHA-256 of a password. The salt is random per process: digests
+	 * are only ever compared with each other, and one found in a heap dump
+	 * cannot be looked up in a precomputed table.
+	 */
+	private static byte[] passwordDigest(String password) {
+		if (password == null) {
+			return null;
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(PASSWORD_SALT);
+			return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform must provide SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Borrows a connection, reusing a validated idle one when possible.
+	 *
+	 * @param driverClass JDBC driver class, loaded once per pool.
+	 * @return A connection whose {@code close()} hands it back to the pool.
+	 * @throws SQLException If no connection could be opened, or none was
+	 *                      returned within the borrow timeout.
+	 */
+	public Connection borrow(String driverClass, String url, String user, String password)
+			throws SQLException, ClassNotFoundException {
+		if (driverClass != null && !driverClass.trim().isEmpty() && !loadedDrivers.contains(driverClass.trim())) {
+			Class.forName(driverClass.trim());
+			loadedDrivers.add(driverClass.trim());
+		}
+		Key key = keyOf(url, user, password);
+		AnalyzerEvents.ConnectionAcquireEvent event = new AnalyzerEvents.ConnectionAcquireEvent();
+		event.begin();
+		long start = System.nanoTime();
+		boolean succeeded = false;
+		try {
+			Connection connection = acquire(key, password, event);
+			succeeded = true;
+			return connection;
+		} finally {
+			MetricsRegistry metrics = MetricsRegistry.getShared();
+			metrics.timer("connection.acquire").recordSince(start);
+			metrics.counter(!succeeded ? "connection.failures" : event.reused ? "connection.reused" : "connection.opened")
+					.increment();
+			event.end();
+			if (event.shouldCommit()) {
+				event.connection = key.toString();
+				event.succeeded = succeeded;
+				event.commit();
+			}
+		}
+	}
+
+	/** Waits for a permit, then hands out an idle connection or opens a new one. */
+	private Connection acquire(Key key, String password, AnalyzerEvents.ConnectionAcquireEvent event)
+			throws SQLException {
+		Slot slot = slots.computeIfAbsent(key, k -> new Slot(maxPerKey));
+		try {
+			if (!slot.permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+				throw new SQLException("Connection pool exhausted for " + key + " (" + maxPerKey + " in use).");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection.", e);
+		}
+
+		try {
+			Connection physical;
+			while ((physical = slot.pollIdle()) != null) {
+				if (isUsable(physical)) {
+					event.reused = true;
+					return wrap(key, slot, physical);
+				}
+				closeQuietly(physical);
+			}
+			physical = DriverManager.getConnection(key.url, key.user, password);
+			return wrap(key, slot, physical);
+		} catch (SQLException | RuntimeException e) {
+			slot.permits.release();
+			throw e;
+		}
+	}
+
+	private static boolean isUsable(Connection connection) {
+		try {
+			return !connection.isClosed() && connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private Connection wrap(Key key, Slot slot, Connection physical) {
+		return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new PooledHandler(key, slot, physical));
+	}
+
+	/** Puts a connection back after resetting the state a caller may have changed. */
+	private void giveBack(Slot slot, Connection physical) {
+		try {
+			if (physical.isClosed()) {
+				return;
+			}
+			if (!physical.getAutoCommit()) {
+				physical.rollback();
+				physical.setAutoCommit(true);
+			}
+			physical.clearWarnings();
+			slot.offerIdle(physical);
+		} catch (SQLException e) {
+			closeQuietly(physical);
+		} finally {
+			slot.permits.release();
+		}
+	}
+
+	/** Closes connections idle longer than the idle timeout. */
+	private void evictIdle() {
+		long cutoff = System.currentTimeMillis() - idleTimeoutMs;
+		for (Slot slot : slots.values()) {
+			for (Connection connection : slot.removeIdleBefore(cutoff)) {
+				closeQuietly(connection);
+			}
+		}
+	}
+
+	/** Closes all idle connections. Borrowed connections are closed when returned. */
+	public void clear() {
+		for (Slot slot : slots.values()) {
+			for (Connection connection : slot.removeIdleBefore(Long.MAX_VALUE)) {
+				closeQuietly(connection);
+			}
+		}
+	}
+
+	/** @return Number of idle connections across all keys. */
+	public int getIdleCount() {
+		int count = 0;
+		for (Slot slot : slots.values()) {
+			count += slot.idleCount();
+		}
+		return count;
+	}
+
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			System.err.println("Error closing pooled connection: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Pool key: URL and user. A digest of the password is part of equality;
+	 * the password itself is not kept, since keys outlive the borrow (e.g. as
+	 * {@link ExplainCache} keys).
+	 */
+	public static final class Key {
+		private final String url;
+		private final String user;
+		private final byte[] passwordDigest;
+
+		private Key(String url, String user, byte[] passwordDigest) {
+			this.url = url;
+			this.user = user;
+			this.passwordDigest = passwordDigest;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public String getUser() {
+			return user;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return url.equals(other.url) && user.equals(other.user) && MessageDigest.isEqual(passwordDigest, other.passwordDigest);
+		}
+
+		@Override
+		public int hashCode() {
+			return url.hashCode() * 31 + user.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return user + "@" + url;
+		}
+	}
+
+	/** Idle connections and the open-connection cap of one key. */
+	private static final class Slot {
+		private final Semaphore permits;
+		private final Deque<IdleConnection> idle = new ArrayDeque<>();
+
+		Slot(int maxPerKey) {
+			this.permits = new Semaphore(maxPerKey, true);
+		}
+
+		synchronized Connection pollIdle() {
+			// Most recently used first: it is the most likely to still be alive
+			IdleConnection entry = idle.pollFirst();
+			return entry == null ? null : entry.connection;
+		}
+
+		synchronized void offerIdle(Connection connection) {
+			idle.offerFirst(new IdleConnection(connection, System.currentTimeMillis()));
+		}
+
+		synchronized List<Connection> removeIdleBefore(long cutoff) {
+			List<Connection> removed = new ArrayList<>();
+			Iterator<IdleConnection> it = idle.iterator();
+			while (it.hasNext()) {
+				IdleConnection entry = it.next();
+				if (entry.idleSince < cutoff) {
+					it.remove();
+					removed.add(entry.connection);
+				}
+			}
+			return removed;
+		}
+
+		synchronized int idleCount() {
+			return idle.size();
+		}
+	}
+
+	private static final class IdleConnection {
+		private final Connection connection;
+		private final long idleSince;
+
+		IdleConnection(Connection connection, long idleSince) {
+			this.connection = connection;
+			this.idleSince = idleSince;
+		}
+	}
+
+	/** Routes calls to the physical connection; close() returns it to the pool. */
+	private final class PooledHandler implements InvocationHandler {
+		private final Key key;
+		private final Slot slot;
+		private Connection physical;
+
+		PooledHandler(Key key, Slot slot, Connection physical) {
+			this.key = key;
+			this.slot = slot;
+			this.physical = physical;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				Connection toReturn;
+				synchronized (this) {
+					toReturn = physical;
+					physical = null;
+				}
+				if (toReturn != null) {
+					giveBack(slot, toReturn);
+				}
+				return null;
+			case "isClosed":
+				synchronized (this) {
+					return physical == null || physical.isClosed();
+				}
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "PooledConnection[" + key + "]";
+			default:
+				break;
+			}
+			Connection target;
+			synchronized (this) {
+				target = physical;
+			}
+			if (target == null) {
+				throw new SQLException("Connection has been returned to the pool.");
+			}
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package in.mystrn.sqlutil.utils;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Vector; // Or use ArrayList<ArrayList<Object>>
 
@@ -9,6 +12,7 @@ import javax.swing.table.AbstractTableModel;
  * A basic custom TableModel extending AbstractTableModel. Stores data in a
  * Vector of Vectors (similar to DefaultTableModel's internal structure) but
  * provides more control. By default, cells are not editable.
+ * For large read-only grids, see {@link ColumnarTableModel}.
  */
 public class CustomTableModel extends AbstractTableModel {
 	private Vector<Vector<Object>> data;
@@ -19,6 +23,29 @@ public class CustomTableModel extends AbstractTableModel {
 		columnNames = (c != null) ? c : new Vector<>();
 	}
 
+	/**
+	 * Reads all rows of a result set into a new model. Null values are stored as
+	 * empty strings.
+	 */
+	public static CustomTableModel fromResultSet(ResultSet rs) throws SQLException {
+		ResultSetMetaData metaData = rs.getMetaData();
+		Vector<String> columnNames = new Vector<>();
+		int columnCount = metaData.getColumnCount();
+		for (int column = 1; column <= columnCount; column++) {
+			columnNames.add(metaData.getColumnName(column));
+		}
+		Vector<Vector<Object>> data = new Vector<>();
+		while (rs.next()) {
+			Vector<Object> row = new Vector<>();
+			for (int columnIndex = 1; columnIndex <= columnCount; columnIndex++) {
+				Object value = rs.getObject(columnIndex);
+				row.add(value != null ? value : "");
+			}
+			data.add(row);
+		}
+		return new CustomTableModel(data, columnNames);
+	}
+
 	@Override
 	public int getRowCount() {
 		return data.size();
@@ -100,6 +127,25 @@ public class CustomTableModel extends AbstractTableModel {
 		insertRow(r, v);
 	}
 
+	/** Inserts several rows at once, with a single model event. */
+	public void insertRows(int r, List<Object[]> rows) {
+		if (r < 0 || r > getRowCount()) {
+			throw new IllegalArgumentException("Index OOB: " + r);
+		}
+		if (rows.isEmpty()) {
+			return;
+		}
+		Vector<Vector<Object>> inserted = new Vector<>(rows.size());
+		for (Object[] d : rows) {
+			if (d == null || d.length != getColumnCount()) {
+				throw new IllegalArgumentException("Array mismatch.");
+			}
+			inserted.add(new Vector<>(List.of(d)));
+		}
+		data.addAll(r, inserted);
+		fireTableRowsInserted(r, r + inserted.size() - 1);
+	}
+
 	public Vector<Vector<Object>> getDataVector() {
 		return data;
 	} // Added getter
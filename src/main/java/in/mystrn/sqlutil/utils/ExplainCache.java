@@ -0,0 +1,274 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import javax.swing.table.TableModel;
+
+import in.mystrn.sqlutil.models.ExplainPlan;
+import in.mystrn.sqlutil.models.QueryFingerprint;
+
+/**
+ * Bounded LRU cache of EXPLAIN output, keyed by query fingerprint and
+ * {@link ExplainPlan.Mode} plus the connection (URL and user) the plan was
+ * produced on.
+ *
+ * An entry is served only while it is younger than the TTL and while the
+ * schema version it was stored with still matches. The schema version is a
+ * cheap probe of the referenced tables (see {@link #probeSchemaVersion}); a
+ * null version means "unknown" and leaves the TTL as the only invalidation.
+ *
+ * {@code EXPLAIN ANALYZE} output is never cached: it holds measurements of
+ * one execution with the exact literals, which a fingerprint does not keep.
+ *
+ * Entries hold the plan as an immutable {@link ColumnarTableModel}, which
+ * every hit returns as is; it can be shown by several tables at once.
+ *
+ * @author hive
+ */
+public final class ExplainCache {
+
+	/** Default maximum number of cached plans. */
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+	/** Default time a plan is served without re-running EXPLAIN. */
+	public static final long DEFAULT_TTL_MS = 10 * 60 * 1000L;
+
+	private final int maxEntries;
+	private final long ttlMs;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+	private long hitCount;
+	private long missCount;
+	private long invalidationCount;
+
+	public ExplainCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS);
+	}
+
+	public ExplainCache(int maxEntries, long ttlMs) {
+		if (maxEntries <= 0 || ttlMs <= 0) {
+			throw new IllegalArgumentException("Cache bounds must be positive.");
+		}
+		this.maxEntries = maxEntries;
+		this.ttlMs = ttlMs;
+	}
+
+	/** Builds the cache key of a statement explained in the given mode on the given connection. */
+	public static Key keyOf(ConnectionPool.Key connection, QueryFingerprint fingerprint, ExplainPlan.Mode mode) {
+		return new Key(Objects.requireNonNull(connection), Objects.requireNonNull(fingerprint),
+				Objects.requireNonNull(mode));
+	}
+
+	/**
+	 * @param schemaVersion The current schema version of the statement's tables,
+	 *                      or null if unknown.
+	 * @return The cached plan, or null on a miss or if the entry expired or its
+	 *         schema version changed.
+	 */
+	public synchronized TableModel get(Key key, String schemaVersion) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			missCount++;
+			return null;
+		}
+		if (System.currentTimeMillis() - entry.createdAt > ttlMs
+				|| !Objects.equals(entry.schemaVersion, schemaVersion)) {
+			entries.remove(key);
+			invalidationCount++;
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return entry.model;
+	}
+
+	/** Caches the plan currently held by the model; a mutable model is copied. */
+	public synchronized void put(Key key, String schemaVersion, TableModel model) {
+		entries.put(key, new Entry(schemaVersion, ColumnarTableModel.copyOf(model)));
+		Iterator<Entry> it = entries.values().iterator();
+		while (entries.size() > maxEntries && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/** Drops every plan produced on the given connection. */
+	public synchronized void invalidate(ConnectionPool.Key connection) {
+		Iterator<Key> it = entries.keySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().connection.equals(connection)) {
+				it.remove();
+				invalidationCount++;
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getInvalidationCount() {
+		return invalidationCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("ExplainCache[entries=%d/%d, hits=%d, misses=%d, invalidations=%d]", entries.size(),
+				maxEntries, hitCount, missCount, invalidationCount);
+	}
+
+	/**
+	 * Reads a version string for the given tables on MySQL/MariaDB: their
+	 * creation and last update times from {@code information_schema.TABLES},
+	 * plus their index definitions from {@code information_schema.STATISTICS}.
+	 * The index part matters most: an in-place {@code CREATE INDEX} changes
+	 * neither time, and MySQL 8 caches UPDATE_TIME for
+	 * {@code information_schema_stats_expiry}. Unqualified names are looked up
+	 * in the connection's current database.
+	 *
+	 * @param tables Table names as written in the statement, optionally
+	 *               schema-qualified or quoted.
+	 * @return The version, or null if the vendor has no cheap probe or the
+	 *         probe failed.
+	 */
+	public static String probeSchemaVersion(Connection connection, EDbVendor vendor, Collection<String> tables) {
+		if (vendor != EDbVendor.dbvmysql || tables.isEmpty()) {
+			return null;
+		}
+		// (schema or null, table) pairs, sorted so that the version does not depend on reference order
+		TreeSet<List<String>> names = new TreeSet<>(Comparator
+				.comparing((List<String> name) -> String.valueOf(name.get(0))).thenComparing(name -> name.get(1)));
+		for (String table : tables) {
+			names.add(Arrays.asList(schemaOf(table), unqualify(table)));
+		}
+		StringBuilder where = new StringBuilder(" WHERE ");
+		for (int i = 0; i < names.size(); i++) {
+			where.append(i == 0 ? "" : " OR ").append("(TABLE_SCHEMA = COALESCE(?, DATABASE()) AND TABLE_NAME = ?)");
+		}
+
+		try {
+			List<String> parts = new ArrayList<>();
+			query(connection, "SELECT TABLE_SCHEMA, TABLE_NAME, CREATE_TIME, UPDATE_TIME FROM information_schema.TABLES"
+					+ where + " ORDER BY TABLE_SCHEMA, TABLE_NAME", names,
+					rs -> rs.getString(1) + "." + rs.getString(2) + "@" + rs.getString(3) + "/" + rs.getString(4), parts);
+			query(connection, "SELECT TABLE_SCHEMA, TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX, COLUMN_NAME, NON_UNIQUE"
+					+ " FROM information_schema.STATISTICS" + where
+					+ " ORDER BY TABLE_SCHEMA, TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX", names,
+					rs -> rs.getString(1) + "." + rs.getString(2) + "#" + rs.getString(3) + ":" + rs.getString(4) + "="
+							+ rs.getString(5) + (rs.getInt(6) == 0 ? "!" : ""),
+					parts);
+			return String.join(";", parts);
+		} catch (SQLException e) {
+			System.err.println("Schema version probe failed: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/** Reads one row-to-text line per row of a probe query into {@code parts}. */
+	private static void query(Connection connection, String sql, Collection<List<String>> names, RowFormat format,
+			List<String> parts) throws SQLException {
+		try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+			int parameter = 1;
+			for (List<String> name : names) {
+				stmt.setString(parameter++, name.get(0));
+				stmt.setString(parameter++, name.get(1));
+			}
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					parts.add(format.format(rs));
+				}
+			}
+		}
+	}
+
+	private interface RowFormat {
+		String format(ResultSet rs) throws SQLException;
+	}
+
+	/** "db.`orders`" -> "db", "orders" -> null. */
+	private static String schemaOf(String table) {
+		int dot = table.lastIndexOf('.');
+		return dot <= 0 ? null : unquote(table.substring(0, dot).trim());
+	}
+
+	/** "db.`orders`" -> "orders". */
+	private static String unqualify(String table) {
+		return unquote(table.substring(table.lastIndexOf('.') + 1).trim());
+	}
+
+	private static String unquote(String name) {
+		if (name.length() >= 2 && (name.charAt(0) == '`' || name.charAt(0) == '"')) {
+			return name.substring(1, name.length() - 1);
+		}
+		return name;
+	}
+
+	/** Cache key: connection identity, query fingerprint and EXPLAIN mode. */
+	public static final class Key {
+		private final ConnectionPool.Key connection;
+		private final QueryFingerprint fingerprint;
+		private final ExplainPlan.Mode mode;
+
+		private Key(ConnectionPool.Key connection, QueryFingerprint fingerprint, ExplainPlan.Mode mode) {
+			this.connection = connection;
+			this.fingerprint = fingerprint;
+			this.mode = mode;
+		}
+
+		public QueryFingerprint getFingerprint() {
+			return fingerprint;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return mode == other.mode && fingerprint.equals(other.fingerprint) && connection.equals(other.connection);
+		}
+
+		@Override
+		public int hashCode() {
+			return (fingerprint.hashCode() * 31 + connection.hashCode()) * 31 + mode.hashCode();
+		}
+	}
+
+	private static final class Entry {
+		private final String schemaVersion;
+		private final ColumnarTableModel model;
+		private final long createdAt = System.currentTimeMillis();
+
+		Entry(String schemaVersion, ColumnarTableModel model) {
+			this.schemaVersion = schemaVersion;
+			this.model = model;
+		}
+	}
+}
@@ -0,0 +1,510 @@
+package in.mystrn.sqlutil.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Vector;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import in.mystrn.sqlutil.models.ExplainPlan;
+import in.mystrn.sqlutil.models.PlanNode;
+
+/**
+ * Parses MySQL's structured EXPLAIN output into an {@link ExplainPlan}.
+ *
+ * Two inputs are understood: the JSON document of {@code EXPLAIN FORMAT=JSON}
+ * (both the classic "query_block" layout and the operator layout of
+ * {@code explain_json_format_version=2}), and the indented operator tree of
+ * {@code EXPLAIN ANALYZE}, whose lines look like
+ *
+ * <pre>
+ * -> Nested loop inner join  (cost=4.95 rows=9) (actual time=0.153..0.200 rows=9 loops=1)
+ *     -> Table scan on t1  (cost=1.15 rows=9) (actual time=0.080..0.096 rows=9 loops=1)
+ * </pre>
+ *
+ * @author hive
+ */
+public final class ExplainPlanParser {
+
+	private static final Pattern ESTIMATE = Pattern.compile("\\((?:cost=([0-9.eE+-]+) )?rows=([0-9.eE+-]+)\\)");
+	private static final Pattern ACTUAL = Pattern
+			.compile("\\(actual(?: time=([0-9.eE+-]+)\\.\\.([0-9.eE+-]+))? rows=([0-9.eE+-]+) loops=([0-9]+)\\)");
+	private static final String NEVER_EXECUTED = "(never executed)";
+	private static final Pattern TABLE_AND_KEY = Pattern.compile("\\bon (\\S+)(?: using (\\S+))?");
+	private static final int TREE_INDENT = 4;
+
+	private ExplainPlanParser() {
+		// Utility class
+	}
+
+	/**
+	 * Parses the text of the single cell EXPLAIN returned in the given mode.
+	 *
+	 * @throws IllegalArgumentException If the mode has no structured output or
+	 *                                  the text cannot be parsed.
+	 */
+	public static ExplainPlan parse(ExplainPlan.Mode mode, String text) {
+		if (text == null || text.trim().isEmpty()) {
+			throw new IllegalArgumentException("EXPLAIN returned no plan text.");
+		}
+		switch (mode) {
+		case JSON:
+			return new ExplainPlan(mode, parseJson(text).build());
+		case ANALYZE:
+			// Newer servers may be configured to answer EXPLAIN ANALYZE in JSON
+			String trimmed = text.trim();
+			PlanNode.Builder root = trimmed.startsWith("{") ? parseJson(trimmed) : parseTree(text);
+			return new ExplainPlan(mode, root.build());
+		default:
+			throw new IllegalArgumentException("Mode " + mode.name() + " has no structured output.");
+		}
+	}
+
+	// --- EXPLAIN FORMAT=JSON ---
+
+	@SuppressWarnings("unchecked")
+	private static PlanNode.Builder parseJson(String text) {
+		Object document = JsonReader.parse(text);
+		if (!(document instanceof Map)) {
+			throw new IllegalArgumentException("EXPLAIN JSON is not an object.");
+		}
+		Map<String, Object> root = (Map<String, Object>) document;
+		if (root.containsKey("query_block")) {
+			return fromClassic("query_block", asMap(root.get("query_block")));
+		}
+		if (root.containsKey("operation")) {
+			return fromOperator(root);
+		}
+		throw new IllegalArgumentException("Unrecognized EXPLAIN JSON layout.");
+	}
+
+	/** Builds a node of the classic layout, where the member name says what the operator is. */
+	private static PlanNode.Builder fromClassic(String kind, Map<String, Object> obj) {
+		PlanNode.Builder node;
+		switch (kind) {
+		case "query_block":
+			node = new PlanNode.Builder("Query block #" + formatId(obj.get("select_id")));
+			node.estimated(number(path(obj, "cost_info", "query_cost")), Double.NaN);
+			node.detail(string(obj.get("message")));
+			break;
+		case "table":
+			node = fromClassicTable(obj);
+			break;
+		case "ordering_operation":
+			node = new PlanNode.Builder(bool(obj.get("using_filesort")) ? "Sort" : "Ordering");
+			node.estimated(number(path(obj, "cost_info", "sort_cost")), Double.NaN);
+			break;
+		case "grouping_operation":
+			node = new PlanNode.Builder("Group");
+			break;
+		case "duplicates_removal":
+			node = new PlanNode.Builder("Remove duplicates");
+			break;
+		case "windowing":
+			node = new PlanNode.Builder("Window");
+			break;
+		case "buffer_result":
+			node = new PlanNode.Builder("Buffer result");
+			break;
+		case "union_result":
+			node = new PlanNode.Builder("Union").table(string(obj.get("table_name")))
+					.accessType(string(obj.get("access_type")));
+			break;
+		case "materialized_from_subquery":
+			node = new PlanNode.Builder("Materialize").usingTemporary(true);
+			break;
+		default:
+			node = new PlanNode.Builder("Subquery" + (bool(obj.get("dependent")) ? " (dependent)" : ""));
+			break;
+		}
+		if (bool(obj.get("using_filesort"))) {
+			node.usingFilesort(true);
+		}
+		if (bool(obj.get("using_temporary_table"))) {
+			node.usingTemporary(true);
+		}
+		addClassicChildren(node, obj);
+		return node;
+	}
+
+	private static PlanNode.Builder fromClassicTable(Map<String, Object> obj) {
+		String table = string(obj.get("table_name"));
+		String accessType = string(obj.get("access_type"));
+		String key = string(obj.get("key"));
+		StringBuilder operation = new StringBuilder(describeAccess(accessType)).append(" on ").append(table);
+		if (key != null) {
+			operation.append(" using ").append(key);
+		}
+		PlanNode.Builder node = new PlanNode.Builder(operation.toString()).table(table).accessType(accessType)
+				.key(key).possibleKeys(joinList(obj.get("possible_keys")));
+		double readCost = number(path(obj, "cost_info", "read_cost"));
+		double evalCost = number(path(obj, "cost_info", "eval_cost"));
+		double cost = Double.isNaN(readCost) ? evalCost : Double.isNaN(evalCost) ? readCost : readCost + evalCost;
+		node.estimated(cost, number(obj.get("rows_examined_per_scan")));
+		String condition = string(obj.get("attached_condition"));
+		node.detail(condition != null ? condition : string(obj.get("message")));
+		return node;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void addClassicChildren(PlanNode.Builder node, Map<String, Object> obj) {
+		for (Map.Entry<String, Object> member : obj.entrySet()) {
+			String name = member.getKey();
+			Object value = member.getValue();
+			switch (name) {
+			case "query_block":
+			case "table":
+			case "ordering_operation":
+			case "grouping_operation":
+			case "duplicates_removal":
+			case "windowing":
+			case "buffer_result":
+			case "union_result":
+			case "materialized_from_subquery":
+				node.addChild(fromClassic(name, asMap(value)));
+				break;
+			case "nested_loop":
+				PlanNode.Builder join = new PlanNode.Builder("Nested loop join");
+				for (Object step : asList(value)) {
+					addClassicChildren(join, asMap(step));
+				}
+				node.addChild(join);
+				break;
+			case "query_specifications":
+				for (Object specification : asList(value)) {
+					addClassicChildren(node, asMap(specification));
+				}
+				break;
+			default:
+				if (name.endsWith("_subqueries") && value instanceof List) {
+					for (Object subquery : (List<Object>) value) {
+						node.addChild(fromClassic(name, asMap(subquery)));
+					}
+				}
+				break;
+			}
+		}
+	}
+
+	/** Builds a node of the operator layout (explain_json_format_version=2). */
+	private static PlanNode.Builder fromOperator(Map<String, Object> obj) {
+		String operation = string(obj.get("operation"));
+		String detail = string(obj.get("condition"));
+		if (operation == null) {
+			operation = "?";
+		} else if (operation.indexOf(": ") > 0) {
+			// Same split as the tree format: "Filter: (t.a > 1)"
+			if (detail == null) {
+				detail = operation.substring(operation.indexOf(": ") + 2);
+			}
+			operation = operation.substring(0, operation.indexOf(": "));
+		}
+		String accessType = string(obj.get("access_type"));
+		String indexAccess = string(obj.get("index_access_type"));
+		PlanNode.Builder node = new PlanNode.Builder(operation)
+				.table(string(obj.get("alias")) != null ? string(obj.get("alias")) : string(obj.get("table_name")))
+				.key(string(obj.get("index_name"))).detail(detail);
+		if ("table".equals(accessType)) {
+			node.accessType("ALL");
+		} else if ("index".equals(accessType)) {
+			node.accessType(indexAccessToType(indexAccess));
+		}
+		node.estimated(number(obj.get("estimated_total_cost")), number(obj.get("estimated_rows")));
+		if (obj.containsKey("actual_rows")) {
+			node.actual(number(obj.get("actual_first_row_ms")), number(obj.get("actual_last_row_ms")),
+					number(obj.get("actual_rows")), (long) orZero(number(obj.get("actual_loops"))));
+		}
+		String lower = operation.toLowerCase(Locale.ROOT);
+		node.usingFilesort(lower.startsWith("sort"));
+		node.usingTemporary(lower.contains("temporary") || lower.startsWith("materialize"));
+		for (Object input : asList(obj.get("inputs"))) {
+			node.addChild(fromOperator(asMap(input)));
+		}
+		return node;
+	}
+
+	private static String indexAccessToType(String indexAccess) {
+		if (indexAccess == null) {
+			return "index";
+		}
+		switch (indexAccess) {
+		case "index_lookup":
+			return "ref";
+		case "index_range_scan":
+		case "index_skip_scan":
+		case "group_index_skip_scan":
+			return "range";
+		default:
+			return "index";
+		}
+	}
+
+	/** "ALL" -> "Table scan", "ref" -> "Index lookup", ... */
+	private static String describeAccess(String accessType) {
+		if (accessType == null) {
+			return "Access";
+		}
+		switch (accessType) {
+		case "ALL":
+			return "Table scan";
+		case "index":
+			return "Index scan";
+		case "range":
+			return "Index range scan";
+		case "ref":
+		case "ref_or_null":
+			return "Index lookup";
+		case "eq_ref":
+			return "Single-row index lookup";
+		case "const":
+		case "system":
+			return "Constant row";
+		case "fulltext":
+			return "Full-text index search";
+		default:
+			return accessType;
+		}
+	}
+
+	// --- EXPLAIN ANALYZE tree ---
+
+	private static PlanNode.Builder parseTree(String text) {
+		Deque<PlanNode.Builder> stack = new ArrayDeque<>();
+		Deque<Integer> depths = new ArrayDeque<>();
+		List<PlanNode.Builder> roots = new ArrayList<>();
+		PlanNode.Builder last = null;
+		for (String line : text.split("\r?\n")) {
+			int indent = 0;
+			while (indent < line.length() && line.charAt(indent) == ' ') {
+				indent++;
+			}
+			String trimmed = line.trim();
+			if (trimmed.isEmpty()) {
+				continue;
+			}
+			if (!trimmed.startsWith("->")) {
+				// Continuation of a long operator line
+				if (last != null) {
+					last.detail(last.getDetail() == null ? trimmed : last.getDetail() + " " + trimmed);
+				}
+				continue;
+			}
+			int depth = indent / TREE_INDENT;
+			PlanNode.Builder node = parseTreeLine(trimmed.substring(2).trim());
+			while (!depths.isEmpty() && depths.peek() >= depth) {
+				depths.pop();
+				stack.pop();
+			}
+			if (stack.isEmpty()) {
+				roots.add(node);
+			} else {
+				stack.peek().addChild(node);
+			}
+			stack.push(node);
+			depths.push(depth);
+			last = node;
+		}
+		if (roots.isEmpty()) {
+			throw new IllegalArgumentException("EXPLAIN ANALYZE output has no operators.");
+		}
+		if (roots.size() == 1) {
+			return roots.get(0);
+		}
+		PlanNode.Builder plan = new PlanNode.Builder("Plan");
+		roots.forEach(plan::addChild);
+		return plan;
+	}
+
+	/** Parses "Table scan on t1  (cost=1.15 rows=9) (actual time=0.080..0.096 rows=9 loops=1)". */
+	private static PlanNode.Builder parseTreeLine(String body) {
+		int end = body.length();
+		Matcher estimate = ESTIMATE.matcher(body);
+		boolean hasEstimate = estimate.find();
+		if (hasEstimate) {
+			end = estimate.start();
+		}
+		Matcher actual = ACTUAL.matcher(body);
+		boolean hasActual = actual.find();
+		if (hasActual) {
+			end = Math.min(end, actual.start());
+		}
+		int never = body.indexOf(NEVER_EXECUTED);
+		if (never >= 0) {
+			end = Math.min(end, never);
+		}
+
+		String operation = body.substring(0, end).trim();
+		String detail = null;
+		int colon = operation.indexOf(": ");
+		if (colon > 0) {
+			detail = operation.substring(colon + 2);
+			operation = operation.substring(0, colon);
+		}
+
+		PlanNode.Builder node = new PlanNode.Builder(operation).detail(detail);
+		Matcher tableAndKey = TABLE_AND_KEY.matcher(operation);
+		if (tableAndKey.find()) {
+			node.table(tableAndKey.group(1)).key(tableAndKey.group(2));
+		}
+		String lower = operation.toLowerCase(Locale.ROOT);
+		node.accessType(treeAccessType(lower));
+		node.usingFilesort(lower.startsWith("sort"));
+		node.usingTemporary(lower.contains("temporary") || lower.startsWith("materialize"));
+		if (hasEstimate) {
+			node.estimated(number(estimate.group(1)), number(estimate.group(2)));
+		}
+		if (hasActual) {
+			node.actual(number(actual.group(1)), number(actual.group(2)), number(actual.group(3)),
+					Long.parseLong(actual.group(4)));
+		} else if (never >= 0) {
+			node.actual(0, 0, 0, 0);
+		}
+		return node;
+	}
+
+	/** Maps a tree operator to the traditional access type, so the same rules apply to both. */
+	private static String treeAccessType(String lowerOperation) {
+		String operation = lowerOperation.startsWith("covering ") ? lowerOperation.substring(9) : lowerOperation;
+		if (operation.startsWith("table scan")) {
+			return "ALL";
+		}
+		if (operation.startsWith("index range scan") || operation.startsWith("index skip scan")
+				|| operation.startsWith("group index skip scan")) {
+			return "range";
+		}
+		if (operation.startsWith("index scan")) {
+			return "index";
+		}
+		if (operation.startsWith("single-row index lookup") || operation.startsWith("single-row covering index lookup")) {
+			return "eq_ref";
+		}
+		if (operation.startsWith("index lookup")) {
+			return "ref";
+		}
+		if (operation.startsWith("full-text index search")) {
+			return "fulltext";
+		}
+		if (operation.startsWith("constant row")) {
+			return "const";
+		}
+		return null;
+	}
+
+	// --- Display ---
+
+	/**
+	 * Flattens a plan into a table for the EXPLAIN view: one row per operator,
+	 * indented by depth, with actual columns only when the plan has them.
+	 */
+	public static CustomTableModel toTableModel(ExplainPlan plan) {
+		boolean actuals = plan.hasActuals();
+		Vector<String> columns = new Vector<>(List.of("operation", "table", "type", "key", "est. cost", "est. rows"));
+		if (actuals) {
+			columns.addAll(List.of("actual ms", "self ms", "actual rows", "loops"));
+		}
+		columns.add("detail");
+		Vector<Vector<Object>> rows = new Vector<>();
+		addRows(plan.getRoot(), 0, actuals, rows);
+		return new CustomTableModel(rows, columns);
+	}
+
+	private static void addRows(PlanNode node, int depth, boolean actuals, Vector<Vector<Object>> rows) {
+		Vector<Object> row = new Vector<>();
+		row.add("  ".repeat(depth) + (depth > 0 ? "-> " : "") + node.getOperation());
+		row.add(orEmpty(node.getTable()));
+		row.add(orEmpty(node.getAccessType()));
+		row.add(orEmpty(node.getKey()));
+		row.add(format(node.getEstimatedCost(), "%.2f"));
+		row.add(formatRows(node.getEstimatedRows()));
+		if (actuals) {
+			row.add(format(node.getActualTotalMs(), "%.3f"));
+			row.add(format(node.getActualSelfMs(), "%.3f"));
+			row.add(formatRows(node.getActualRows()));
+			row.add(node.hasActuals() ? String.valueOf(node.getLoops()) : "");
+		}
+		row.add(orEmpty(node.getDetail()));
+		rows.add(row);
+		for (PlanNode child : node.getChildren()) {
+			addRows(child, depth + 1, actuals, rows);
+		}
+	}
+
+	private static String format(double value, String pattern) {
+		return Double.isNaN(value) ? "" : String.format(Locale.ROOT, pattern, value);
+	}
+
+	private static String formatRows(double rows) {
+		if (Double.isNaN(rows)) {
+			return "";
+		}
+		return rows == Math.rint(rows) ? String.valueOf((long) rows) : String.format(Locale.ROOT, "%.2f", rows);
+	}
+
+	private static String orEmpty(String value) {
+		return value == null ? "" : value;
+	}
+
+	// --- JSON value helpers ---
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> asMap(Object value) {
+		return value instanceof Map ? (Map<String, Object>) value : Map.of();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> asList(Object value) {
+		return value instanceof List ? (List<Object>) value : List.of();
+	}
+
+	private static Object path(Map<String, Object> obj, String first, String second) {
+		return asMap(obj.get(first)).get(second);
+	}
+
+	private static String string(Object value) {
+		return value == null ? null : value instanceof Double ? formatRows((Double) value) : value.toString();
+	}
+
+	private static boolean bool(Object value) {
+		return Boolean.TRUE.equals(value);
+	}
+
+	/** MySQL writes most numbers as strings ("1.25"); accepts both. */
+	private static double number(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		if (value instanceof String) {
+			try {
+				return Double.parseDouble((String) value);
+			} catch (NumberFormatException e) {
+				return Double.NaN;
+			}
+		}
+		return Double.NaN;
+	}
+
+	private static double orZero(double value) {
+		return Double.isNaN(value) ? 0 : value;
+	}
+
+	private static String formatId(Object id) {
+		String text = string(id);
+		return text == null ? "?" : text;
+	}
+
+	private static String joinList(Object value) {
+		List<Object> items = asList(value);
+		if (items.isEmpty()) {
+			return null;
+		}
+		List<String> parts = new ArrayList<>(items.size());
+		for (Object item : items) {
+			parts.add(String.valueOf(item));
+		}
+		return String.join(",", parts);
+	}
+}
@@ -0,0 +1,371 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.swing.table.TableModel;
+
+import in.mystrn.sqlutil.models.ExplainPlan;
+import in.mystrn.sqlutil.models.PhaseTimings;
+import in.mystrn.sqlutil.models.SqlResult;
+import in.mystrn.sqlutil.models.StatementResult;
+
+/**
+ * Runs EXPLAIN for every explainable statement of a script concurrently, each
+ * on its own pooled connection.
+ *
+ * Concurrency is capped at {@link ConnectionPool#DEFAULT_MAX_PER_KEY}, the
+ * number of connections the pool opens per URL/user, so no worker waits for a
+ * connection and a long script takes about as long as its slowest EXPLAIN
+ * times the number of rounds. Plans are looked up in and stored to an
+ * {@link ExplainCache}. A statement that fails to EXPLAIN gets a result with
+ * an error; the others are not affected.
+ *
+ * A run can be cancelled and given a time budget. Every query runs with a
+ * {@code setQueryTimeout} of the remaining budget and is aborted with
+ * {@code Statement.cancel()} on cancellation or overrun; the plans finished
+ * by then are returned, the others are reported as cancelled or timed out.
+ *
+ * Every result carries the time its worker spent acquiring the connection,
+ * looking up the plan cache, executing EXPLAIN and fetching its output.
+ *
+ * @author hive
+ */
+public final class ExplainRunner {
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+	private static final ExecutorService EXPLAIN_POOL = Executors.newFixedThreadPool(ConnectionPool.DEFAULT_MAX_PER_KEY,
+			runnable -> {
+				Thread thread = new Thread(runnable, "sqlutil-explain-" + THREAD_COUNTER.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/** Supplies a connection; closing it must hand it back (see {@link ConnectionPool}). */
+	@FunctionalInterface
+	public interface ConnectionSource {
+		Connection get() throws SQLException, ClassNotFoundException;
+	}
+
+	private final ConnectionSource connections;
+	private final ConnectionPool.Key connectionKey;
+	private final EDbVendor vendor;
+	private final ExplainCache cache;
+
+	/**
+	 * @param connections   Where each worker gets its connection from.
+	 * @param connectionKey Identity of those connections, for the cache.
+	 * @param cache         The plan cache, or null to always run EXPLAIN.
+	 */
+	public ExplainRunner(ConnectionSource connections, ConnectionPool.Key connectionKey, EDbVendor vendor,
+			ExplainCache cache) {
+		this.connections = connections;
+		this.connectionKey = connectionKey;
+		this.vendor = vendor;
+		this.cache = cache;
+	}
+
+	/**
+	 * Explains the statements concurrently.
+	 *
+	 * @param statements The statements to explain, from {@link ParsedScript#findExplainables()}.
+	 * @param analysis   The structural analysis of the same script (fingerprints and tables).
+	 * @param mode       The requested mode; see {@link #effectiveMode}.
+	 * @param progress   Receives "n of m" progress messages; may be called from any thread.
+	 * @return One result per statement, in the order given.
+	 */
+	public List<Result> explainAll(List<ParsedScript.ExplainableStatement> statements, SqlResult analysis,
+			ExplainPlan.Mode mode, Consumer<String> progress) throws InterruptedException {
+		return explainAll(statements, analysis, mode, progress, new CancellationToken(), Long.MAX_VALUE);
+	}
+
+	/**
+	 * Same as {@link #explainAll(List, SqlResult, ExplainPlan.Mode, Consumer)},
+	 * stopping when the token is cancelled or the budget runs out.
+	 *
+	 * @param budgetMs Time allowed for the whole run, in milliseconds.
+	 * @return One result per statement, in the order given; statements not
+	 *         explained in time have a failed result saying why.
+	 */
+	public List<Result> explainAll(List<ParsedScript.ExplainableStatement> statements, SqlResult analysis,
+			ExplainPlan.Mode mode, Consumer<String> progress, CancellationToken cancellationToken, long budgetMs)
+			throws InterruptedException {
+		int total = statements.size();
+		long deadline = budgetMs == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + budgetMs * 1_000_000L;
+		// Cancelled by the caller's token or when the budget runs out; aborts the running queries
+		CancellationToken runToken = new CancellationToken();
+		AtomicInteger done = new AtomicInteger();
+		List<Future<Result>> futures = new ArrayList<>(total);
+		for (ParsedScript.ExplainableStatement statement : statements) {
+			StatementResult statementResult = analysis.getStatement(statement.getIndex());
+			futures.add(EXPLAIN_POOL.submit(() -> {
+				Result result = explainRecorded(statement, statementResult, mode, runToken, deadline);
+				progress.accept("EXPLAIN " + done.incrementAndGet() + " of " + total + " done...");
+				return result;
+			}));
+		}
+		runToken.onCancel(() -> futures.forEach(future -> future.cancel(false)));
+
+		List<Result> results = new ArrayList<>(total);
+		try (CancellationToken.Registration registration = cancellationToken.onCancel(runToken::cancel)) {
+			for (int i = 0; i < total; i++) {
+				Future<Result> future = futures.get(i);
+				int index = statements.get(i).getIndex();
+				try {
+					long remaining = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+					Result result = remaining == Long.MAX_VALUE ? future.get()
+							: future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+					// A query aborted by the run token fails with a driver error; say why instead
+					results.add(result.isFailed() && runToken.isCancelled()
+							? Result.failed(index, result.getMode(), stopReason(cancellationToken, budgetMs)) : result);
+				} catch (TimeoutException e) {
+					runToken.cancel();
+					results.add(Result.failed(index, mode, stopReason(cancellationToken, budgetMs)));
+				} catch (CancellationException e) {
+					results.add(Result.failed(index, mode, stopReason(cancellationToken, budgetMs)));
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause() != null ? e.getCause() : e;
+					results.add(Result.failed(index, mode, cause.getMessage()));
+				}
+			}
+		} catch (InterruptedException e) {
+			runToken.cancel();
+			throw e;
+		}
+		return results;
+	}
+
+	private static String stopReason(CancellationToken cancellationToken, long budgetMs) {
+		return cancellationToken.isCancelled() ? "EXPLAIN cancelled."
+				: "EXPLAIN stopped: the time budget of " + budgetMs + " ms ran out.";
+	}
+
+	/**
+	 * @return The mode a statement is actually explained in: structured output
+	 *         is MySQL syntax, and EXPLAIN ANALYZE executes the statement, so
+	 *         it is only used for SELECTs.
+	 */
+	public ExplainPlan.Mode effectiveMode(ExplainPlan.Mode mode, ParsedScript.ExplainableStatement statement) {
+		if (mode != ExplainPlan.Mode.TRADITIONAL && vendor != EDbVendor.dbvmysql) {
+			return ExplainPlan.Mode.TRADITIONAL;
+		}
+		if (mode == ExplainPlan.Mode.ANALYZE && !statement.isSelect()) {
+			return ExplainPlan.Mode.JSON;
+		}
+		return mode;
+	}
+
+	/**
+	 * Explains one statement, reporting it to the {@link MetricsRegistry} and as
+	 * an {@link AnalyzerEvents.ExplainEvent}.
+	 */
+	private Result explainRecorded(ParsedScript.ExplainableStatement statement, StatementResult statementResult,
+			ExplainPlan.Mode requestedMode, CancellationToken runToken, long deadline) {
+		AnalyzerEvents.ExplainEvent event = new AnalyzerEvents.ExplainEvent();
+		event.begin();
+		long start = System.nanoTime();
+		Result result = explain(statement, statementResult, requestedMode, runToken, deadline);
+
+		MetricsRegistry metrics = MetricsRegistry.getShared();
+		metrics.timer("explain").recordSince(start);
+		PhaseTimings timings = result.getTimings();
+		if (!result.isFailed() && !result.isCached()) {
+			metrics.timer("explain.execute").record(timings.getNanos(PhaseTimings.Phase.EXPLAIN_EXECUTION));
+			metrics.timer("explain.fetch").record(timings.getNanos(PhaseTimings.Phase.RESULT_FETCH));
+		}
+		metrics.counter(result.isFailed() ? "explain.failures" : result.isCached() ? "explain.cached" : "explain.executed")
+				.increment();
+		int planRows = result.getModel() != null ? result.getModel().getRowCount() : 0;
+		if (!result.isFailed()) {
+			metrics.histogram("explain.planRows").record(planRows);
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.statementIndex = statement.getIndex();
+			event.mode = result.getMode().name();
+			event.fingerprint = statementResult != null && statementResult.getFingerprint() != null
+					? statementResult.getFingerprint().getDigestHex() : null;
+			event.cached = result.isCached();
+			event.planRows = planRows;
+			event.error = result.getError();
+			event.commit();
+		}
+		return result;
+	}
+
+	private Result explain(ParsedScript.ExplainableStatement statement, StatementResult statementResult,
+			ExplainPlan.Mode requestedMode, CancellationToken runToken, long deadline) {
+		ExplainPlan.Mode mode = effectiveMode(requestedMode, statement);
+		if (runToken.isCancelled()) {
+			return Result.failed(statement.getIndex(), mode, "EXPLAIN cancelled.");
+		}
+		PhaseTimings timings = new PhaseTimings();
+		long phaseStart = System.nanoTime();
+		try (Connection connection = connections.get()) {
+			phaseStart = timings.record(PhaseTimings.Phase.CONNECTION, phaseStart);
+			// Reuse the plan of an earlier run if the referenced tables did not change. Never for
+			// EXPLAIN ANALYZE: its measurements belong to the exact literals, not to the fingerprint
+			ExplainCache.Key key = null;
+			String schemaVersion = null;
+			TableModel raw = null;
+			if (cache != null && mode != ExplainPlan.Mode.ANALYZE && statementResult != null
+					&& statementResult.getFingerprint() != null) {
+				key = ExplainCache.keyOf(connectionKey, statementResult.getFingerprint(), mode);
+				schemaVersion = ExplainCache.probeSchemaVersion(connection, vendor,
+						statementResult.getTables().keySet());
+				raw = cache.get(key, schemaVersion);
+				timings.record(PhaseTimings.Phase.CACHE_LOOKUP, phaseStart);
+			}
+
+			long durationMs = -1;
+			if (raw == null) {
+				try (Statement stmt = connection.createStatement();
+						CancellationToken.Registration registration = runToken.onCancel(() -> cancelQuietly(stmt))) {
+					if (deadline != Long.MAX_VALUE) {
+						// Let the server give up too; whole seconds, at least one
+						long remainingMs = (deadline - System.nanoTime()) / 1_000_000L;
+						stmt.setQueryTimeout((int) Math.max(1, Math.min(Integer.MAX_VALUE, (remainingMs + 999) / 1000)));
+					}
+					// Timed from before executeQuery so the round trip is included
+					long startTime = System.nanoTime();
+					try (ResultSet rs = stmt.executeQuery(mode.getPrefix() + statement.getSql())) {
+						long fetchStart = timings.record(PhaseTimings.Phase.EXPLAIN_EXECUTION, startTime);
+						raw = ColumnarTableModel.fromResultSet(rs);
+						timings.record(PhaseTimings.Phase.RESULT_FETCH, fetchStart);
+					}
+					durationMs = (System.nanoTime() - startTime) / 1_000_000L;
+				}
+				if (key != null) {
+					cache.put(key, schemaVersion, raw);
+				}
+			}
+
+			// JSON and ANALYZE return the plan as the text of a single cell
+			ExplainPlan plan = null;
+			if (mode != ExplainPlan.Mode.TRADITIONAL) {
+				Object planText = raw.getRowCount() > 0 ? raw.getValueAt(0, 0) : null;
+				try {
+					plan = ExplainPlanParser.parse(mode, planText == null ? null : planText.toString());
+				} catch (IllegalArgumentException e) {
+					return new Result(statement.getIndex(), mode, null, null, -1,
+							"Could not read the " + mode + " plan: " + e.getMessage(), timings);
+				}
+			}
+			return new Result(statement.getIndex(), mode, plan != null ? ExplainPlanParser.toTableModel(plan) : raw,
+					plan, durationMs, null, timings);
+		} catch (SQLException e) {
+			return new Result(statement.getIndex(), mode, null, null, -1, describe(e), timings);
+		} catch (ClassNotFoundException e) {
+			return new Result(statement.getIndex(), mode, null, null, -1, "JDBC driver not found: " + e.getMessage(),
+					timings);
+		}
+	}
+
+	private static void cancelQuietly(Statement stmt) {
+		try {
+			stmt.cancel();
+		} catch (SQLException e) {
+			System.err.println("Could not cancel EXPLAIN: " + e.getMessage());
+		}
+	}
+
+	private static String describe(SQLException e) {
+		String message = e.getMessage() == null ? e.toString() : e.getMessage();
+		String lower = message.toLowerCase();
+		if (lower.contains("unknown column") || lower.contains("unknown variable")) {
+			return "Error executing EXPLAIN: Database doesn't recognize variables like '@workspace_id'. Remove SET commands and replace variables with literal values in your query before analyzing.";
+		}
+		return "Error executing EXPLAIN: " + message;
+	}
+
+	/** The EXPLAIN outcome of one statement. */
+	public static final class Result {
+		private final int index;
+		private final ExplainPlan.Mode mode;
+		private final TableModel model;
+		private final ExplainPlan plan;
+		private final long durationMs;
+		private final String error;
+		private final PhaseTimings timings;
+
+		Result(int index, ExplainPlan.Mode mode, TableModel model, ExplainPlan plan, long durationMs,
+				String error, PhaseTimings timings) {
+			this.index = index;
+			this.mode = mode;
+			this.model = model;
+			this.plan = plan;
+			this.durationMs = durationMs;
+			this.error = error;
+			this.timings = timings;
+		}
+
+		static Result failed(int index, ExplainPlan.Mode mode, String error) {
+			return new Result(index, mode, null, null, -1, error, new PhaseTimings());
+		}
+
+		/** @return Position of the statement in the script (0 based). */
+		public int getIndex() {
+			return index;
+		}
+
+		/** @return The mode the statement was actually explained in. */
+		public ExplainPlan.Mode getMode() {
+			return mode;
+		}
+
+		/** @return The table to display: the operator tree for structured modes, else the raw output. */
+		public TableModel getModel() {
+			return model;
+		}
+
+		/** @return The parsed plan, or null for traditional EXPLAIN. */
+		public ExplainPlan getPlan() {
+			return plan;
+		}
+
+		/**
+		 * @return Time EXPLAIN took, from sending the query to reading its last
+		 *         row, or -1 if the plan came from the cache or failed.
+		 */
+		public long getDurationMs() {
+			return durationMs;
+		}
+
+		/**
+		 * @return Time this statement's worker spent per phase: connection
+		 *         acquisition, plan cache lookup, EXPLAIN execution and result
+		 *         fetch. Empty for statements that were never started.
+		 */
+		public PhaseTimings getTimings() {
+			return timings;
+		}
+
+		public boolean isCached() {
+			return error == null && durationMs < 0;
+		}
+
+		public String getError() {
+			return error;
+		}
+
+		public boolean isFailed() {
+			return error != null;
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package in.mystrn.sqlutil.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader for the documents the database hands back (EXPLAIN
+ * FORMAT=JSON). Objects become ordered {@link Map}s, arrays {@link List}s,
+ * numbers {@link Double}s; strings, booleans and null map to their Java
+ * counterparts. The counterpart of {@link ResultJsonWriter}.
+ *
+ * @author hive
+ */
+final class JsonReader {
+
+	private final String text;
+	private int pos;
+
+	private JsonReader(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * @return The parsed value.
+	 * @throws IllegalArgumentException If the text is not valid JSON.
+	 */
+	static Object parse(String text) {
+		JsonReader reader = new JsonReader(text);
+		Object value = reader.readValue();
+		reader.skipWhitespace();
+		if (reader.pos != text.length()) {
+			throw reader.error("Unexpected trailing content");
+		}
+		return value;
+	}
+
+	private Object readValue() {
+		skipWhitespace();
+		if (pos >= text.length()) {
+			throw error("Unexpected end of input");
+		}
+		char c = text.charAt(pos);
+		switch (c) {
+		case '{':
+			return readObject();
+		case '[':
+			return readArray();
+		case '"':
+			return readString();
+		case 't':
+			expect("true");
+			return Boolean.TRUE;
+		case 'f':
+			expect("false");
+			return Boolean.FALSE;
+		case 'n':
+			expect("null");
+			return null;
+		default:
+			return readNumber();
+		}
+	}
+
+	private Map<String, Object> readObject() {
+		Map<String, Object> map = new LinkedHashMap<>();
+		pos++; // {
+		skipWhitespace();
+		if (peek() == '}') {
+			pos++;
+			return map;
+		}
+		while (true) {
+			skipWhitespace();
+			if (peek() != '"') {
+				throw error("Expected a member name");
+			}
+			String name = readString();
+			skipWhitespace();
+			if (peek() != ':') {
+				throw error("Expected ':'");
+			}
+			pos++;
+			map.put(name, readValue());
+			skipWhitespace();
+			char c = peek();
+			pos++;
+			if (c == '}') {
+				return map;
+			}
+			if (c != ',') {
+				throw error("Expected ',' or '}'");
+			}
+		}
+	}
+
+	private List<Object> readArray() {
+		List<Object> list = new ArrayList<>();
+		pos++; // [
+		skipWhitespace();
+		if (peek() == ']') {
+			pos++;
+			return list;
+		}
+		while (true) {
+			list.add(readValue());
+			skipWhitespace();
+			char c = peek();
+			pos++;
+			if (c == ']') {
+				return list;
+			}
+			if (c != ',') {
+				throw error("Expected ',' or ']'");
+			}
+		}
+	}
+
+	private String readString() {
+		StringBuilder sb = new StringBuilder();
+		pos++; // opening quote
+		while (pos < text.length()) {
+			char c = text.charAt(pos++);
+			if (c == '"') {
+				return sb.toString();
+			}
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			if (pos >= text.length()) {
+				break;
+			}
+			char escaped = text.charAt(pos++);
+			switch (escaped) {
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'u':
+				if (pos + 4 > text.length()) {
+					throw error("Truncated unicode escape");
+				}
+				sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+				pos += 4;
+				break;
+			default:
+				sb.append(escaped); // \" \\ \/
+			}
+		}
+		throw error("Unterminated string");
+	}
+
+	private Double readNumber() {
+		int start = pos;
+		while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+			pos++;
+		}
+		if (start == pos) {
+			throw error("Unexpected character '" + text.charAt(pos) + "'");
+		}
+		try {
+			return Double.valueOf(text.substring(start, pos));
+		} catch (NumberFormatException e) {
+			throw error("Malformed number");
+		}
+	}
+
+	private void expect(String literal) {
+		if (!text.startsWith(literal, pos)) {
+			throw error("Expected " + literal);
+		}
+		pos += literal.length();
+	}
+
+	private char peek() {
+		if (pos >= text.length()) {
+			throw error("Unexpected end of input");
+		}
+		return text.charAt(pos);
+	}
+
+	private void skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at offset " + pos + " of the JSON document.");
+	}
+}
@@ -0,0 +1,238 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+import in.mystrn.sqlutil.models.PerformanceHint;
+import in.mystrn.sqlutil.models.QueryStats;
+import in.mystrn.sqlutil.models.SourcePosition;
+import in.mystrn.sqlutil.models.SqlResult;
+import in.mystrn.sqlutil.models.StatementResult;
+import in.mystrn.sqlutil.models.TableUsage;
+
+/**
+ * Structural analysis of a script while it is being edited.
+ *
+ * The script is cut into statements with the {@link SqlStatementSplitter},
+ * and each statement is parsed and analyzed on its own. Results are kept per
+ * statement text (hashed as the key of a map), so a run only parses the
+ * statements that changed since the last one and reuses the others; their
+ * indexes and source positions are shifted to where they now sit in the
+ * script. A run started by {@link #submit} cancels the one before it, and a
+ * result that was overtaken by a newer edit is never delivered.
+ *
+ * A statement with a syntax error, or too large to analyze live, does not
+ * hide the others: it gets an entry of its own whose hint carries the error,
+ * with positions relative to the statement. Procedural blocks that contain the delimiter need a
+ * {@code DELIMITER} command to be split correctly; the full analysis of the
+ * Analyze button parses the script as a whole and stays the reference.
+ *
+ * @author hive
+ */
+public final class LiveAnalyzer {
+
+	/** One thread for all live analyzers: edits are analyzed one run at a time. */
+	private static final ExecutorService LIVE_POOL = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "sqlutil-live-analysis");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Edited text is rarely seen twice; don't fill the shared cache (and pin parsers) with every keystroke. */
+	private static final SqlAnalyzer.Options OPTIONS = SqlAnalyzer.Options.DEFAULT.withCache(false);
+
+	// Guarded by this
+	private Map<String, SqlResult> statementResults = new HashMap<>();
+	private EDbVendor cachedVendor;
+
+	// Guarded by the lock below
+	private final Object runLock = new Object();
+	private CancellationToken currentRun;
+
+	/**
+	 * Analyzes the text in the background, cancelling the previous run.
+	 *
+	 * @param onResult Receives the result on the EDT, unless a newer run was
+	 *                 submitted or {@link #cancel()} was called in the meantime.
+	 */
+	public void submit(EDbVendor vendor, String text, Consumer<SqlResult> onResult) {
+		CancellationToken token = new CancellationToken();
+		synchronized (runLock) {
+			if (currentRun != null) {
+				currentRun.cancel();
+			}
+			currentRun = token;
+		}
+		LIVE_POOL.execute(() -> {
+			if (token.isCancelled()) {
+				return;
+			}
+			SqlResult result;
+			try {
+				result = analyze(vendor, text, token);
+			} catch (CancellationException e) {
+				return;
+			} catch (RuntimeException e) {
+				result = SqlResult.invalid("Live analysis failed: " + e);
+			}
+			SqlResult delivered = result;
+			SwingUtilities.invokeLater(() -> {
+				if (!token.isCancelled()) {
+					onResult.accept(delivered);
+				}
+			});
+		});
+	}
+
+	/** Cancels the run in flight, if any; its result is dropped. */
+	public void cancel() {
+		synchronized (runLock) {
+			if (currentRun != null) {
+				currentRun.cancel();
+				currentRun = null;
+			}
+		}
+	}
+
+	/**
+	 * Analyzes the text on the calling thread, reusing the results of the
+	 * statements that did not change since the last call.
+	 *
+	 * @throws CancellationException If the token was cancelled before the end.
+	 */
+	public synchronized SqlResult analyze(EDbVendor vendor, String text, CancellationToken cancellationToken) {
+		long start = System.nanoTime();
+		if (vendor != cachedVendor) {
+			statementResults = new HashMap<>();
+			cachedVendor = vendor;
+		}
+		List<SqlStatementSplitter.Statement> split = new ArrayList<>();
+		new SqlStatementSplitter(vendor).split(text, split::add);
+		if (split.isEmpty()) {
+			// Blank or comments only: the analyzer's own "empty query" result
+			return analyzeStatement("");
+		}
+		int[] charOffsets = toCharOffsets(text, split);
+
+		Map<String, SqlResult> retained = new HashMap<>();
+		List<StatementResult> statements = new ArrayList<>();
+		int reparsed = 0;
+		boolean completed = false;
+		try {
+			for (int i = 0; i < split.size(); i++) {
+				cancellationToken.throwIfCancelled();
+				SqlStatementSplitter.Statement statement = split.get(i);
+				if (statement.isOversized()) {
+					statements.add(unanalyzedStatement(statements.size(), null, statement,
+							"Too Large for Live Analysis", "The statement is larger than live analysis reads."));
+					continue;
+				}
+				String sql = statement.getSql();
+				SqlResult result = retained.get(sql);
+				if (result == null) {
+					result = statementResults.get(sql);
+				}
+				if (result == null) {
+					result = analyzeStatement(sql);
+					reparsed++;
+				}
+				retained.put(sql, result);
+
+				if (!result.isValid()) {
+					statements.add(unanalyzedStatement(statements.size(), sql, statement, "Syntax Error",
+							result.getError()));
+					continue;
+				}
+				int offset = charOffsets[i];
+				int column = offset - (text.lastIndexOf('\n', offset - 1) + 1) + 1;
+				for (StatementResult statementResult : result.getStatements()) {
+					statements.add(rebase(statementResult, statements.size(), (int) statement.getLine(), column, offset));
+				}
+			}
+			completed = true;
+		} finally {
+			if (completed) {
+				statementResults = retained;
+			} else {
+				// Keep what was parsed before the cancel for the next run
+				statementResults.putAll(retained);
+			}
+			MetricsRegistry metrics = MetricsRegistry.getShared();
+			metrics.counter("live.reparsed").add(reparsed);
+			metrics.counter("live.reused").add(retained.size() - reparsed);
+			if (completed) {
+				metrics.timer("live.analysis").recordSince(start);
+			}
+		}
+		return SqlResult.valid(statements);
+	}
+
+	/** Entry of a statement that could not be analyzed, in place of its report. */
+	private static StatementResult unanalyzedStatement(int index, String sql, SqlStatementSplitter.Statement statement,
+			String title, String reason) {
+		return new StatementResult(index, sql, "Not analyzed", List.of(), QueryStats.EMPTY,
+				List.of(new PerformanceHint(PerformanceHint.Severity.WARN, title,
+						"Line " + statement.getLine() + ": " + reason,
+						"Fix the statement, or run Analyze for the script as a whole.")));
+	}
+
+	private SqlResult analyzeStatement(String sql) {
+		return SqlAnalyzer.getShared().analyze(cachedVendor, sql, OPTIONS);
+	}
+
+	/** Moves a statement's result from its own text to its place in the script. */
+	private static StatementResult rebase(StatementResult result, int index, int line, int column, int offset) {
+		List<TableUsage> tables = new ArrayList<>(result.getTables().size());
+		for (TableUsage table : result.getTables().values()) {
+			tables.add(new TableUsage(table.getName(), table.getAlias(),
+					rebase(table.getPosition(), line, column, offset), table.getColumns()));
+		}
+		return new StatementResult(index, result.getSql(), result.getStatementType(), tables,
+				result.getQueryStats(), result.getHints(), result.getFingerprint());
+	}
+
+	private static SourcePosition rebase(SourcePosition position, int line, int column, int offset) {
+		if (position == null) {
+			return null;
+		}
+		// Only the statement's first line is indented by where the statement starts
+		return new SourcePosition(position.getLine() + line - 1,
+				position.getLine() == 1 ? position.getColumn() + column - 1 : position.getColumn(),
+				position.getOffset() + offset);
+	}
+
+	/** Converts the statements' UTF-8 byte offsets into offsets in the text. */
+	private static int[] toCharOffsets(String text, List<SqlStatementSplitter.Statement> statements) {
+		int[] charOffsets = new int[statements.size()];
+		long bytes = 0;
+		int next = 0;
+		int c = 0;
+		while (next < charOffsets.length) {
+			while (next < charOffsets.length && statements.get(next).getOffset() <= bytes) {
+				charOffsets[next++] = c;
+			}
+			if (c >= text.length()) {
+				break;
+			}
+			int codePoint = text.codePointAt(c);
+			int chars = Character.charCount(codePoint);
+			if (chars == 1 && Character.isSurrogate(text.charAt(c))) {
+				bytes += 1; // A lone surrogate is encoded as '?'
+			} else {
+				bytes += codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+			}
+			c += chars;
+		}
+		return charOffsets;
+	}
+}
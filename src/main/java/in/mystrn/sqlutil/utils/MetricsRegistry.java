@@ -0,0 +1,192 @@
+package in.mystrn.sqlutil.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process counters, timers and histograms for the analyzer's hot paths:
+ * parsing, the analysis steps, connection acquisition and EXPLAIN.
+ *
+ * Metrics are created on first use and live for the life of the registry.
+ * Recording is lock-free and cheap enough to stay on in production; the batch
+ * tool prints the registry with {@code --metrics} and the analyzer window
+ * shows it from its toolbar. For per-event detail, see {@link AnalyzerEvents}.
+ *
+ * @author hive
+ */
+public final class MetricsRegistry {
+
+	private static final MetricsRegistry SHARED = new MetricsRegistry();
+
+	private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+	private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+	private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+	/** @return The registry the analyzer, the connection pool and EXPLAIN report to. */
+	public static MetricsRegistry getShared() {
+		return SHARED;
+	}
+
+	public Counter counter(String name) {
+		return counters.computeIfAbsent(name, k -> new Counter());
+	}
+
+	public Timer timer(String name) {
+		return timers.computeIfAbsent(name, k -> new Timer());
+	}
+
+	public Histogram histogram(String name) {
+		return histograms.computeIfAbsent(name, k -> new Histogram());
+	}
+
+	/** Forgets every metric, e.g. before profiling a workload. */
+	public void clear() {
+		counters.clear();
+		timers.clear();
+		histograms.clear();
+	}
+
+	/** @return A text table of all metrics, sorted by name; timers are in milliseconds. */
+	public String format() {
+		StringBuilder sb = new StringBuilder();
+		if (!counters.isEmpty()) {
+			sb.append("Counters\n");
+			new ConcurrentSkipListMap<>(counters)
+					.forEach((name, counter) -> sb.append(String.format("  %-32s %12d%n", name, counter.get())));
+		}
+		if (!timers.isEmpty()) {
+			sb.append(String.format("Timers (ms)%n  %-32s %8s %10s %9s %9s %9s %9s%n", "", "count", "total", "mean",
+					"p50", "p99", "max"));
+			new ConcurrentSkipListMap<>(timers).forEach((name, timer) -> {
+				Histogram h = timer.getHistogram();
+				sb.append(String.format("  %-32s %8d %10.1f %9.3f %9.3f %9.3f %9.3f%n", name, h.getCount(),
+						h.getSum() / 1e6, h.getMean() / 1e6, h.getPercentile(50) / 1e6, h.getPercentile(99) / 1e6,
+						h.getMax() / 1e6));
+			});
+		}
+		if (!histograms.isEmpty()) {
+			sb.append(String.format("Histograms%n  %-32s %8s %10s %9s %9s %9s %9s%n", "", "count", "total", "mean",
+					"p50", "p99", "max"));
+			new ConcurrentSkipListMap<>(histograms).forEach((name, h) -> sb.append(String.format(
+					"  %-32s %8d %10d %9.1f %9d %9d %9d%n", name, h.getCount(), h.getSum(), h.getMean(),
+					h.getPercentile(50), h.getPercentile(99), h.getMax())));
+		}
+		return sb.length() == 0 ? "No metrics recorded yet.\n" : sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return format();
+	}
+
+	/** A monotonically increasing count. */
+	public static final class Counter {
+		private final LongAdder count = new LongAdder();
+
+		public void increment() {
+			count.increment();
+		}
+
+		public void add(long amount) {
+			count.add(amount);
+		}
+
+		public long get() {
+			return count.sum();
+		}
+	}
+
+	/**
+	 * Distribution of non-negative values in power-of-two buckets: bucket
+	 * {@code b} counts values below {@code 2^b}. Percentiles are reported as the
+	 * upper bound of their bucket, so they are accurate to a factor of two;
+	 * count, sum and max are exact.
+	 */
+	public static final class Histogram {
+		private static final int BUCKETS = 64;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		public void record(long value) {
+			long v = Math.max(0, value);
+			buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(v)));
+			count.increment();
+			sum.add(v);
+			max.accumulateAndGet(v, Math::max);
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getSum() {
+			return sum.sum();
+		}
+
+		public long getMax() {
+			return max.get();
+		}
+
+		public double getMean() {
+			long n = getCount();
+			return n == 0 ? 0 : (double) getSum() / n;
+		}
+
+		/**
+		 * @param percentile 0 to 100.
+		 * @return The upper bound of the bucket holding the percentile, capped
+		 *         at the maximum; 0 if nothing was recorded.
+		 */
+		public long getPercentile(double percentile) {
+			long total = 0;
+			long[] snapshot = new long[BUCKETS];
+			for (int b = 0; b < BUCKETS; b++) {
+				snapshot[b] = buckets.get(b);
+				total += snapshot[b];
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0);
+			long seen = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				seen += snapshot[b];
+				if (seen >= Math.max(1, rank)) {
+					long upper = b == 0 ? 0 : b >= 63 ? Long.MAX_VALUE : (1L << b) - 1;
+					return Math.min(upper, getMax());
+				}
+			}
+			return getMax();
+		}
+	}
+
+	/** A histogram of durations in nanoseconds. */
+	public static final class Timer {
+		private final Histogram histogram = new Histogram();
+
+		public void record(long durationNanos) {
+			histogram.record(durationNanos);
+		}
+
+		/**
+		 * Records the time elapsed since {@code startNanos}.
+		 *
+		 * @param startNanos A value of {@link System#nanoTime()}.
+		 */
+		public void recordSince(long startNanos) {
+			record(System.nanoTime() - startNanos);
+		}
+
+		/** @return The recorded durations, in nanoseconds. */
+		public Histogram getHistogram() {
+			return histogram;
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+import gudusoft.gsqlparser.TCustomSqlStatement;
+import gudusoft.gsqlparser.TGSqlParser;
+import gudusoft.gsqlparser.TSourceToken;
+import gudusoft.gsqlparser.TSyntaxError;
+import gudusoft.gsqlparser.nodes.TTable;
+import gudusoft.gsqlparser.stmt.TDeleteSqlStatement;
+import gudusoft.gsqlparser.stmt.TInsertSqlStatement;
+import gudusoft.gsqlparser.stmt.TSelectSqlStatement;
+import gudusoft.gsqlparser.stmt.TUpdateSqlStatement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import in.mystrn.sqlutil.models.QueryFingerprint;
+
+/**
+ * The result of parsing a SQL script exactly once with Gudu SQL Parser.
+ *
+ * Everything the analyzer and the form need from a parse (syntax errors,
+ * statement boundaries, the SQL text of explainable statements and alias
+ * maps) is derived from this object, so a script is never re-parsed just to
+ * look at it from a different angle.
+ *
+ * The parser that produced the tree is borrowed from {@link ParserPool} and
+ * stays with the script while it is referenced. Holders call {@link #release()}
+ * when they are done; the parser goes back to the pool once the last holder
+ * has released the script. A script that is never released is simply
+ * garbage collected together with its parser.
+ *
+ * @author hive
+ */
+public final class ParsedScript {
+
+	private final EDbVendor vendor;
+	private final String sql;
+	private final List<TCustomSqlStatement> statements;
+	private final String error;
+	private final Map<Integer, Map<String, String>> aliasMaps = new HashMap<>();
+	private final Map<Integer, QueryFingerprint> fingerprints = new HashMap<>();
+	private AnalysisCache.Key cacheKey;
+	private TGSqlParser parser;
+	private int referenceCount = 1;
+
+	private ParsedScript(EDbVendor vendor, String sql, List<TCustomSqlStatement> statements, String error,
+			TGSqlParser parser) {
+		this.vendor = vendor;
+		this.sql = sql;
+		this.statements = statements;
+		this.error = error;
+		this.parser = parser;
+	}
+
+	/**
+	 * Parses the given script once.
+	 *
+	 * @param vendor The database vendor grammar to use.
+	 * @param sql    The SQL script text.
+	 * @return The parsed script, owned by the caller; check {@link #isValid()}
+	 *         before using the statements.
+	 */
+	public static ParsedScript parse(EDbVendor vendor, String sql) {
+		AnalyzerEvents.ParseEvent event = new AnalyzerEvents.ParseEvent();
+		event.begin();
+		long start = System.nanoTime();
+		ParsedScript script = parseWithPooledParser(vendor, sql);
+		MetricsRegistry metrics = MetricsRegistry.getShared();
+		metrics.timer("parse").recordSince(start);
+		metrics.histogram("parse.statements").record(script.statements.size());
+		if (!script.isValid()) {
+			metrics.counter("parse.errors").increment();
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.vendor = vendor.name();
+			event.length = sql.length();
+			event.statementCount = script.statements.size();
+			event.valid = script.isValid();
+			event.commit();
+		}
+		return script;
+	}
+
+	private static ParsedScript parseWithPooledParser(EDbVendor vendor, String sql) {
+		TGSqlParser parser = ParserPool.borrow(vendor);
+		List<TCustomSqlStatement> statements;
+		try {
+			parser.sqltext = sql;
+			if (parser.parse() != 0) {
+				String error = formatSyntaxErrors(parser.getSyntaxErrors());
+				// Nothing references the failed tree, the parser can go straight back
+				ParserPool.release(vendor, parser);
+				return new ParsedScript(vendor, sql, List.of(), error, null);
+			}
+			// Copy the statement list: the parser clears its own list on the next parse
+			statements = new ArrayList<>(parser.sqlstatements.size());
+			for (int i = 0; i < parser.sqlstatements.size(); i++) {
+				statements.add(parser.sqlstatements.get(i));
+			}
+		} catch (RuntimeException e) {
+			// The parser throws on some malformed input; it must still go back
+			ParserPool.release(vendor, parser);
+			throw e;
+		}
+		return new ParsedScript(vendor, sql, Collections.unmodifiableList(statements), null, parser);
+	}
+
+	/**
+	 * Adds a holder of this script.
+	 *
+	 * @return false if the script was already fully released and its tree may no
+	 *         longer be used.
+	 */
+	synchronized boolean retain() {
+		if (referenceCount <= 0) {
+			return false;
+		}
+		referenceCount++;
+		return true;
+	}
+
+	/**
+	 * Drops one holder of this script. When the last holder releases it, the
+	 * parser is returned to the {@link ParserPool}; the statements must not be
+	 * used after that.
+	 */
+	public void release() {
+		TGSqlParser toRelease = null;
+		synchronized (this) {
+			if (referenceCount <= 0) {
+				return;
+			}
+			if (--referenceCount == 0) {
+				toRelease = parser;
+				parser = null;
+			}
+		}
+		if (toRelease != null) {
+			ParserPool.release(vendor, toRelease);
+		}
+	}
+
+	/** Formats Gudu syntax errors the way the analyzer has always reported them. */
+	static String formatSyntaxErrors(List<TSyntaxError> syntaxErrors) {
+		StringBuilder errorBuilder = new StringBuilder();
+		if (syntaxErrors != null) {
+			for (TSyntaxError syntaxError : syntaxErrors) {
+				errorBuilder.append("Line: ").append(syntaxError.lineNo).append(", Col: ").append(syntaxError.columnNo)
+						.append(" (Near '").append(syntaxError.tokentext).append("')\n");
+			}
+		}
+		return errorBuilder.toString();
+	}
+
+	public EDbVendor getVendor() {
+		return vendor;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	/** @return The key of this script in an {@link AnalysisCache}, computed on first use. */
+	public synchronized AnalysisCache.Key getCacheKey() {
+		if (cacheKey == null) {
+			cacheKey = AnalysisCache.keyOf(vendor, sql);
+		}
+		return cacheKey;
+	}
+
+	synchronized void setCacheKey(AnalysisCache.Key cacheKey) {
+		this.cacheKey = cacheKey;
+	}
+
+	public boolean isValid() {
+		return error == null;
+	}
+
+	/** @return The formatted syntax errors, or null if the script parsed. */
+	public String getError() {
+		return error;
+	}
+
+	public List<TCustomSqlStatement> getStatements() {
+		return statements;
+	}
+
+	public int getStatementCount() {
+		return statements.size();
+	}
+
+	public TCustomSqlStatement getStatement(int index) {
+		return statements.get(index);
+	}
+
+	/**
+	 * Returns the trimmed source text of a statement, cut from the original
+	 * script using the statement's start and end tokens.
+	 *
+	 * @return The statement text, or null if Gudu did not record token bounds.
+	 */
+	public String getStatementSql(int index) {
+		TCustomSqlStatement statement = statements.get(index);
+		TSourceToken startToken = statement.getStartToken();
+		TSourceToken endToken = statement.getEndToken();
+		if (startToken == null || endToken == null) {
+			return null;
+		}
+		return sql.substring((int) startToken.offset, (int) (endToken.offset + endToken.astext.length())).trim();
+	}
+
+	/** @return true for SELECT/INSERT/UPDATE/DELETE, the statements EXPLAIN accepts. */
+	public static boolean isExplainable(TCustomSqlStatement statement) {
+		return statement instanceof TSelectSqlStatement || statement instanceof TInsertSqlStatement
+				|| statement instanceof TUpdateSqlStatement || statement instanceof TDeleteSqlStatement;
+	}
+
+	/**
+	 * Finds the first statement that can be passed to EXPLAIN.
+	 *
+	 * @return The statement, or null if the script has none.
+	 */
+	public ExplainableStatement findFirstExplainable() {
+		List<ExplainableStatement> explainables = findExplainables();
+		return explainables.isEmpty() ? null : explainables.get(0);
+	}
+
+	/**
+	 * Finds every statement that can be passed to EXPLAIN, in script order.
+	 *
+	 * @return The statements; empty if the script has none.
+	 */
+	public List<ExplainableStatement> findExplainables() {
+		List<ExplainableStatement> explainables = new ArrayList<>();
+		for (int i = 0; i < statements.size(); i++) {
+			if (isExplainable(statements.get(i))) {
+				String statementSql = getStatementSql(i);
+				if (statementSql != null) {
+					explainables.add(new ExplainableStatement(i, statements.get(i), statementSql));
+				}
+			}
+		}
+		return explainables;
+	}
+
+	/**
+	 * Alias (lower case) to table name map of a SELECT statement. Computed once
+	 * per statement and shared by the structural analysis and the EXPLAIN
+	 * micro-analysis.
+	 *
+	 * @return An unmodifiable map; empty for non-SELECT statements.
+	 */
+	public synchronized Map<String, String> getAliasMap(int index) {
+		return aliasMaps.computeIfAbsent(index, i -> {
+			TCustomSqlStatement statement = statements.get(i);
+			if (!(statement instanceof TSelectSqlStatement)) {
+				return Map.of();
+			}
+			return Collections.unmodifiableMap(buildAliasMap((TSelectSqlStatement) statement));
+		});
+	}
+
+	/**
+	 * Fingerprint of a statement, computed once from the tokens the parser
+	 * already produced (no second tokenization).
+	 *
+	 * @return The fingerprint, or null if the script was released or Gudu did
+	 *         not record token bounds.
+	 */
+	public synchronized QueryFingerprint getFingerprint(int index) {
+		QueryFingerprint fingerprint = fingerprints.get(index);
+		if (fingerprint == null && parser != null) {
+			TCustomSqlStatement statement = statements.get(index);
+			TSourceToken startToken = statement.getStartToken();
+			TSourceToken endToken = statement.getEndToken();
+			if (startToken == null || endToken == null) {
+				return null;
+			}
+			fingerprint = QueryFingerprinter.fingerprint(vendor, parser.sourcetokenlist, startToken.posinlist,
+					endToken.posinlist);
+			fingerprints.put(index, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	/** Builds the alias map of a SELECT from its table list. */
+	static Map<String, String> buildAliasMap(TSelectSqlStatement select) {
+		Map<String, String> aliasMap = new HashMap<>();
+		if (select.tables != null) {
+			for (TTable table : select.tables) {
+				String tableName = table.getTableName().toString();
+				String alias = tableName;
+				if (table.getAliasName() != null && !table.getAliasName().toString().isEmpty()) {
+					alias = table.getAliasName().toString();
+				}
+				aliasMap.put(alias.toLowerCase(), tableName);
+			}
+		}
+		return aliasMap;
+	}
+
+	/** A statement of the script that can be sent to EXPLAIN, with its source text. */
+	public static final class ExplainableStatement {
+		private final int index;
+		private final TCustomSqlStatement statement;
+		private final String sql;
+
+		ExplainableStatement(int index, TCustomSqlStatement statement, String sql) {
+			this.index = index;
+			this.statement = statement;
+			this.sql = sql;
+		}
+
+		/** @return Position of the statement in the script (0 based). */
+		public int getIndex() {
+			return index;
+		}
+
+		public TCustomSqlStatement getStatement() {
+			return statement;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public boolean isSelect() {
+			return statement instanceof TSelectSqlStatement;
+		}
+	}
+}
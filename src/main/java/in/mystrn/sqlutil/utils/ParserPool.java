@@ -0,0 +1,130 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+import gudusoft.gsqlparser.TGSqlParser;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-vendor pool of {@link TGSqlParser} instances.
+ *
+ * Creating a parser loads and builds the vendor's lexer and grammar tables,
+ * which makes the first parse after startup noticeably slow. Parsers are
+ * borrowed from this pool and handed back once nothing references the parse
+ * tree they produced (Gudu nodes read their text back from the parser's token
+ * list, so a parser must not be reused while its tree is still in use; see
+ * {@link ParsedScript#release()}).
+ *
+ * @author hive
+ */
+public final class ParserPool {
+
+	/** Maximum idle parsers kept per vendor. */
+	private static final int MAX_IDLE_PER_VENDOR = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	private static final Map<EDbVendor, Deque<TGSqlParser>> IDLE = new ConcurrentHashMap<>();
+	private static final Map<EDbVendor, AtomicInteger> IDLE_COUNTS = new ConcurrentHashMap<>();
+	private static final LongAdder CREATED = new LongAdder();
+	private static final LongAdder REUSED = new LongAdder();
+
+	private ParserPool() {
+		// Static utility
+	}
+
+	/**
+	 * Borrows a parser for the vendor, creating one if none is idle.
+	 *
+	 * @param vendor The database vendor.
+	 * @return A parser that belongs to the caller until {@link #release} is
+	 *         called.
+	 */
+	public static TGSqlParser borrow(EDbVendor vendor) {
+		TGSqlParser parser = idle(vendor).pollFirst();
+		if (parser != null) {
+			idleCount(vendor).decrementAndGet();
+			REUSED.increment();
+			return parser;
+		}
+		CREATED.increment();
+		return new TGSqlParser(vendor);
+	}
+
+	/**
+	 * Returns a parser to the pool. The parser's last parse tree is dropped so
+	 * an idle parser does not keep a script alive. Parsers beyond the idle limit
+	 * are left to the garbage collector.
+	 *
+	 * @param vendor The vendor the parser was borrowed for.
+	 * @param parser The parser; must not be used by the caller afterwards.
+	 */
+	public static void release(EDbVendor vendor, TGSqlParser parser) {
+		if (parser == null) {
+			return;
+		}
+		parser.sqltext = "";
+		parser.parse();
+		if (idleCount(vendor).incrementAndGet() <= MAX_IDLE_PER_VENDOR) {
+			idle(vendor).offerFirst(parser);
+		} else {
+			idleCount(vendor).decrementAndGet();
+		}
+	}
+
+	/**
+	 * Creates and exercises one parser for each vendor so its grammar is loaded
+	 * before the first real parse.
+	 */
+	public static void warmUp(EDbVendor... vendors) {
+		for (EDbVendor vendor : vendors) {
+			if (idleCount(vendor).get() > 0) {
+				continue;
+			}
+			TGSqlParser parser = borrow(vendor);
+			parser.sqltext = "SELECT 1";
+			parser.parse();
+			release(vendor, parser);
+		}
+	}
+
+	/**
+	 * Runs {@link #warmUp} on a low-priority daemon thread.
+	 *
+	 * @return The started thread.
+	 */
+	public static Thread warmUpAsync(EDbVendor... vendors) {
+		Thread thread = new Thread(() -> {
+			try {
+				warmUp(vendors);
+			} catch (RuntimeException e) {
+				System.err.println("Parser warm-up failed: " + e.getMessage());
+			}
+		}, "sqlutil-parser-warmup");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+		return thread;
+	}
+
+	/** @return Number of parsers created since startup. */
+	public static long getCreatedCount() {
+		return CREATED.sum();
+	}
+
+	/** @return Number of borrows served by an idle parser. */
+	public static long getReusedCount() {
+		return REUSED.sum();
+	}
+
+	private static Deque<TGSqlParser> idle(EDbVendor vendor) {
+		return IDLE.computeIfAbsent(vendor, v -> new ConcurrentLinkedDeque<>());
+	}
+
+	private static AtomicInteger idleCount(EDbVendor vendor) {
+		return IDLE_COUNTS.computeIfAbsent(vendor, v -> new AtomicInteger());
+	}
+}
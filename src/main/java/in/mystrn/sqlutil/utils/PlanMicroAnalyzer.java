@@ -0,0 +1,474 @@
+package in.mystrn.sqlutil.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.table.TableModel;
+
+import in.mystrn.sqlutil.models.ColumnUsage;
+import in.mystrn.sqlutil.models.ExplainPlan;
+import in.mystrn.sqlutil.models.MicroAnalysis;
+import in.mystrn.sqlutil.models.PerformanceHint;
+import in.mystrn.sqlutil.models.PlanNode;
+import in.mystrn.sqlutil.models.StatementResult;
+import in.mystrn.sqlutil.models.TableUsage;
+
+/**
+ * Micro-analysis of EXPLAIN plans: full scans, unused indexes, large row
+ * counts, filesorts and temporary tables, matched against the columns the
+ * structural analysis found for each table.
+ *
+ * The analysis is a pure function of the plan and the structural analysis; it
+ * touches no Swing component, so it runs on the worker that ran EXPLAIN and
+ * the window only applies the resulting {@link MicroAnalysis}.
+ *
+ * @author hive
+ */
+public final class PlanMicroAnalyzer {
+
+	/** Estimated rows above which a table access is reported. */
+	public static final long DEFAULT_ROW_THRESHOLD = 10000;
+
+	/** Share of the measured time that makes an operator a hotspot. */
+	private static final double HOT_SHARE = 0.10;
+
+	private PlanMicroAnalyzer() {
+	}
+
+	/**
+	 * Analyzes a traditional EXPLAIN plan (any TableModel, e.g. the columnar
+	 * EXPLAIN output).
+	 *
+	 * @param aliasToTableMap Table names by lower-case alias, may be null.
+	 * @param explainedResult The structural analysis of the explained statement, may be null.
+	 */
+	public static MicroAnalysis analyze(TableModel explainModel, Map<String, String> aliasToTableMap,
+			StatementResult explainedResult, long rowThreshold) {
+		MicroAnalysis.Builder result = new MicroAnalysis.Builder();
+		StringBuilder suggestions = result.text();
+		suggestions.append("\n--- EXPLAIN Plan Micro-Analysis (DB Specific) ---\n");
+
+		if (explainModel == null || explainModel.getRowCount() == 0) {
+			suggestions.append("No EXPLAIN plan data available to analyze.\n");
+			return result.build();
+		}
+
+		try {
+			int tableCol = findColumn(explainModel, "table");
+			int typeCol = findColumn(explainModel, "type");
+			int keyCol = findColumn(explainModel, "key");
+			int possibleKeysCol = findColumn(explainModel, "possible_keys");
+			int rowsCol = findColumn(explainModel, "rows");
+			int extraCol = findColumn(explainModel, "Extra");
+
+			for (int i = 0; i < explainModel.getRowCount(); i++) {
+				String rowId = getColumnValue(explainModel, i, 0, "Row " + (i + 1));
+				String currentAlias = getColumnValue(explainModel, i, tableCol, null);
+				String fullTableName = (currentAlias != null && aliasToTableMap != null)
+						? aliasToTableMap.get(currentAlias.toLowerCase())
+						: null;
+				String aliasAndTable = String.format("%s%s", currentAlias != null ? currentAlias : "?",
+						fullTableName != null ? " (" + fullTableName + ")" : "");
+
+				Set<String> filteringCols = Set.of();
+				Set<String> funcColsInWhere = Set.of();
+				Set<String> groupByCols = Set.of();
+				Set<String> orderByCols = Set.of();
+				if (fullTableName != null && explainedResult != null) {
+					TableUsage tableDetails = explainedResult.getTable(fullTableName);
+					if (tableDetails != null) {
+						filteringCols = tableDetails.getColumns().get(ColumnUsage.Kind.WHERE);
+						funcColsInWhere = tableDetails.getColumns().get(ColumnUsage.Kind.FUNCTION_IN_WHERE);
+						groupByCols = tableDetails.getColumns().get(ColumnUsage.Kind.GROUP_BY);
+						orderByCols = tableDetails.getColumns().get(ColumnUsage.Kind.ORDER_BY);
+					}
+				}
+
+				// Suggestion 1: Full Table Scan
+				String scanType = getColumnValue(explainModel, i, typeCol, "");
+				if ("ALL".equalsIgnoreCase(scanType)) {
+					String detail = String.format("[%s %s] SEVERE: Full Table Scan ('type' is 'ALL'). ", rowId, aliasAndTable);
+					String why = "Why: DB read every row.";
+					String suggestion = "Suggestion: Index JOIN/WHERE columns.";
+					if (!filteringCols.isEmpty()) {
+						suggestion += " Candidates: [" + String.join(", ", filteringCols) + "]";
+					} else if (fullTableName != null) {
+						suggestion += " Check JOIN columns for '" + currentAlias + "'.";
+					}
+					suggestions.append(detail).append(why).append("\n  > ").append(suggestion).append("\n");
+					if (fullTableName != null) {
+						result.warn(warning(fullTableName, "Full Table Scan", suggestion, filteringCols, groupByCols, orderByCols));
+						result.highlight(fullTableName, PerformanceHint.Severity.SEVERE);
+					}
+				}
+
+				// Suggestion 2: Index Not Used
+				String actualKey = getColumnValue(explainModel, i, keyCol, null);
+				String possibleKeys = getColumnValue(explainModel, i, possibleKeysCol, null);
+				if (possibleKeys != null && !possibleKeys.isEmpty()
+						&& (actualKey == null || actualKey.isEmpty() || "NULL".equalsIgnoreCase(actualKey))) {
+					String warning = String.format("Possible keys [%s] found, but none used.", possibleKeys);
+					StringBuilder explanation = new StringBuilder("Potential reasons:\n");
+					boolean reasonFound = false;
+					if (!funcColsInWhere.isEmpty()) {
+						Set<String> problematicCols = new HashSet<>(filteringCols);
+						problematicCols.retainAll(funcColsInWhere);
+						if (!problematicCols.isEmpty()) {
+							explanation.append("    - Func on indexed col(s): [").append(String.join(", ", problematicCols)).append("]\n");
+							reasonFound = true;
+						}
+					}
+					explanation.append("    - Data type mismatch in JOIN/WHERE");
+					if (!filteringCols.isEmpty()) {
+						explanation.append(": [").append(String.join(", ", filteringCols)).append("]");
+					}
+					explanation.append("\n");
+					explanation.append("    - Optimizer chose scan (small table / low selectivity / outdated stats)\n");
+					if (!reasonFound && !funcColsInWhere.isEmpty()) {
+						explanation.append("    - Note: Funcs in WHERE on: [").append(String.join(", ", funcColsInWhere)).append("]. Overlap with keys?\n");
+					}
+
+					suggestions.append(String.format("[%s %s] WARN: Index Not Used\n  > %s\n  > %s", rowId, aliasAndTable, warning,
+							explanation.toString()));
+					if (fullTableName != null) {
+						result.warn(warning(fullTableName, "Index Not Used", explanation.toString().replace("\n    - ", "\n- ").trim(),
+								filteringCols, groupByCols, orderByCols));
+						result.highlight(fullTableName, PerformanceHint.Severity.WARN);
+					}
+				}
+
+				// Suggestion 3: Large Estimated Row Scan
+				long rowsScanned = getLongValue(explainModel, i, rowsCol);
+				if (rowsScanned > rowThreshold) {
+					suggestions.append(String.format("[%s %s] INFO: High est. rows (%d).\n  > SUGGEST: Check WHERE/JOIN selectivity.\n",
+							rowId, aliasAndTable, rowsScanned));
+					if (fullTableName != null) {
+						result.highlight(fullTableName, PerformanceHint.Severity.WARN);
+						result.warn(warning(fullTableName, "High Row Estimate", "Est. rows: " + rowsScanned, filteringCols, groupByCols,
+								orderByCols));
+					}
+				} else if (rowsScanned > 10000) {
+					suggestions.append(String.format("[%s %s] INFO: Est. rows: %d\n", rowId, aliasAndTable, rowsScanned));
+				}
+
+				// Suggestion 4 & 5: Using filesort / temporary
+				String extraInfo = getColumnValue(explainModel, i, extraCol, "");
+				if (extraInfo.contains("Using filesort")) {
+					String suggestion = "Suggest: Index ORDER BY cols.";
+					if (!orderByCols.isEmpty()) {
+						suggestion += " Candidates: [" + String.join(", ", orderByCols) + "]";
+					}
+					suggestions.append(String.format("[%s %s] WARN: 'Using filesort'.\n  > %s\n", rowId, aliasAndTable, suggestion));
+					if (fullTableName != null) {
+						result.warn(warning(fullTableName, "Filesort Used", suggestion, filteringCols, groupByCols, orderByCols));
+						result.highlight(fullTableName, PerformanceHint.Severity.WARN);
+					}
+				}
+				if (extraInfo.contains("Using temporary")) {
+					String suggestion = "Suggest: Temp table needed (slow). Common for complex GROUP BY/DISTINCT/UNION.";
+					if (!groupByCols.isEmpty()) {
+						suggestion += " Consider indexing GROUP BY cols: [" + String.join(", ", groupByCols) + "]";
+					} else {
+						suggestion += " Simplify query?";
+					}
+					suggestions.append(String.format("[%s %s] WARN: 'Using temporary'.\n  > %s\n", rowId, aliasAndTable, suggestion));
+					if (fullTableName != null) {
+						result.warn(warning(fullTableName, "Temporary Table Used", suggestion, filteringCols, groupByCols, orderByCols));
+						result.highlight(fullTableName, PerformanceHint.Severity.WARN);
+					}
+				}
+			}
+		} catch (Exception e) {
+			suggestions.append("\nError during EXPLAIN plan analysis: " + e.getMessage());
+			e.printStackTrace();
+		}
+
+		if (suggestions.toString().endsWith("---\n")) {
+			suggestions.append("EXPLAIN plan analysis found no common high-priority issues.\n");
+		}
+		return result.build();
+	}
+
+	/**
+	 * Analyzes a structured (JSON / ANALYZE) plan. With measured times the
+	 * operators that actually consume the time are reported first, and scans
+	 * that turn out to be cheap are downgraded to INFO instead of being flagged
+	 * from estimates alone.
+	 */
+	public static MicroAnalysis analyze(ExplainPlan plan, Map<String, String> aliasToTableMap,
+			StatementResult explainedResult, long rowThreshold) {
+		MicroAnalysis.Builder result = new MicroAnalysis.Builder();
+		StringBuilder suggestions = result.text();
+		suggestions.append("\n--- EXPLAIN Plan Micro-Analysis (").append(plan.getMode()).append(") ---\n");
+		int headerLength = suggestions.length();
+
+		double totalMs = plan.getActualTotalMs();
+		boolean timed = plan.hasActuals() && !Double.isNaN(totalMs) && totalMs > 0;
+		if (timed) {
+			suggestions.append(String.format("Measured total: %.3f ms\n", totalMs));
+			headerLength = suggestions.length();
+			List<PlanNode> hottest = new ArrayList<>();
+			for (PlanNode node : plan.getNodes()) {
+				if (!Double.isNaN(node.getActualSelfMs()) && node.getActualSelfMs() / totalMs >= HOT_SHARE) {
+					hottest.add(node);
+				}
+			}
+			hottest.sort(Comparator.comparingDouble(PlanNode::getActualSelfMs).reversed());
+			for (PlanNode node : hottest.subList(0, Math.min(5, hottest.size()))) {
+				double share = node.getActualSelfMs() / totalMs;
+				String fullTableName = resolvePlanTable(firstTable(node), aliasToTableMap, explainedResult);
+				suggestions.append(String.format("[HOT %.1f%%] %.3f ms in '%s'%s (rows=%s, loops=%d)\n", share * 100,
+						node.getActualSelfMs(), node.getOperation(), node.getTable() != null ? " on " + node.getTable() : "",
+						formatPlanRows(node.getActualRows()), node.getLoops()));
+				if (fullTableName != null) {
+					result.warn(warning(fullTableName, "Time Hotspot",
+							String.format("%.1f%% of measured time in '%s'", share * 100, node.getOperation()),
+							planColumns(explainedResult, fullTableName, ColumnUsage.Kind.WHERE),
+							planColumns(explainedResult, fullTableName, ColumnUsage.Kind.GROUP_BY),
+							planColumns(explainedResult, fullTableName, ColumnUsage.Kind.ORDER_BY)));
+					result.highlight(fullTableName, share >= 0.5 ? PerformanceHint.Severity.SEVERE : PerformanceHint.Severity.WARN);
+				}
+			}
+		}
+
+		for (PlanNode node : plan.getNodes()) {
+			String currentAlias = node.getTable();
+			String fullTableName = resolvePlanTable(currentAlias, aliasToTableMap, explainedResult);
+			String aliasAndTable = String.format("%s%s", currentAlias != null ? currentAlias : node.getOperation(),
+					fullTableName != null && !fullTableName.equalsIgnoreCase(currentAlias) ? " (" + fullTableName + ")" : "");
+			Set<String> filteringCols = planColumns(explainedResult, fullTableName, ColumnUsage.Kind.WHERE);
+			Set<String> groupByCols = planColumns(explainedResult, fullTableName, ColumnUsage.Kind.GROUP_BY);
+			Set<String> orderByCols = planColumns(explainedResult, fullTableName, ColumnUsage.Kind.ORDER_BY);
+			double share = timed ? node.getActualSelfMs() / totalMs : Double.NaN;
+			boolean cheap = timed && !Double.isNaN(share) && share < HOT_SHARE;
+
+			// Full table scan, weighed by measured time when there is one
+			if ("ALL".equals(node.getAccessType()) && currentAlias != null && !currentAlias.startsWith("<")) {
+				if (cheap) {
+					suggestions.append(String.format("[%s] INFO: Full Table Scan, but only %.1f%% of measured time.\n", aliasAndTable,
+							share * 100));
+				} else {
+					String suggestion = "Suggestion: Index JOIN/WHERE columns.";
+					if (!filteringCols.isEmpty()) {
+						suggestion += " Candidates: [" + String.join(", ", filteringCols) + "]";
+					}
+					suggestions.append(String.format("[%s] SEVERE: Full Table Scan ('%s').\n  > %s\n", aliasAndTable,
+							node.getOperation(), suggestion));
+					if (fullTableName != null) {
+						result.warn(warning(fullTableName, "Full Table Scan", suggestion, filteringCols, groupByCols, orderByCols));
+						result.highlight(fullTableName, PerformanceHint.Severity.SEVERE);
+					}
+				}
+			}
+
+			// Index not used (JSON reports possible keys)
+			if (node.getPossibleKeys() != null && node.getKey() == null && !cheap) {
+				String warning = String.format("Possible keys [%s] found, but none used.", node.getPossibleKeys());
+				suggestions.append(String.format("[%s] WARN: Index Not Used\n  > %s\n", aliasAndTable, warning));
+				if (fullTableName != null) {
+					result.warn(warning(fullTableName, "Index Not Used", warning, filteringCols, groupByCols, orderByCols));
+					result.highlight(fullTableName, PerformanceHint.Severity.WARN);
+				}
+			}
+
+			// Estimated vs. actual rows per loop
+			if (node.hasActuals() && node.getLoops() > 0 && !Double.isNaN(node.getEstimatedRows())) {
+				double estimated = node.getEstimatedRows();
+				double actual = node.getActualRows();
+				double ratio = Math.max(estimated, actual) / Math.max(Math.min(estimated, actual), 1);
+				if (ratio >= 10 && Math.max(estimated, actual) >= 100) {
+					String message = String.format("Est. rows %s vs. actual %s per loop.", formatPlanRows(estimated),
+							formatPlanRows(actual));
+					suggestions.append(String.format("[%s] WARN: Row Misestimate. %s\n  > SUGGEST: Refresh statistics (ANALYZE TABLE) or add a histogram on the filtered columns.\n",
+							aliasAndTable, message));
+					if (fullTableName != null) {
+						result.warn(warning(fullTableName, "Row Misestimate", message, filteringCols, groupByCols, orderByCols));
+					}
+				}
+			}
+
+			// Large row scan: measured rows when available, estimates otherwise
+			if (currentAlias != null) {
+				long rowsScanned = (long) (node.hasActuals() ? node.getActualRows() * node.getLoops() : node.getEstimatedRows());
+				if (rowsScanned > rowThreshold && !cheap) {
+					String label = node.hasActuals() ? "Actual rows" : "Est. rows";
+					suggestions.append(String.format("[%s] INFO: High %s (%d).\n  > SUGGEST: Check WHERE/JOIN selectivity.\n",
+							aliasAndTable, label.toLowerCase(), rowsScanned));
+					if (fullTableName != null) {
+						result.highlight(fullTableName, PerformanceHint.Severity.WARN);
+						result.warn(warning(fullTableName, "High Row Estimate", label + ": " + rowsScanned, filteringCols, groupByCols,
+								orderByCols));
+					}
+				}
+			}
+
+			// Sorts and temporary tables belong to the first table below them
+			if (node.isUsingFilesort() || node.isUsingTemporary()) {
+				String sortTable = resolvePlanTable(firstTable(node), aliasToTableMap, explainedResult);
+				String where = sortTable != null ? sortTable : node.getOperation();
+				String timeNote = cheap ? String.format(" (%.1f%% of measured time)", share * 100) : "";
+				if (node.isUsingFilesort()) {
+					Set<String> sortCols = planColumns(explainedResult, sortTable, ColumnUsage.Kind.ORDER_BY);
+					String suggestion = "Suggest: Index ORDER BY cols.";
+					if (!sortCols.isEmpty()) {
+						suggestion += " Candidates: [" + String.join(", ", sortCols) + "]";
+					}
+					suggestions.append(String.format("[%s] %s: 'Using filesort'%s.\n  > %s\n", where, cheap ? "INFO" : "WARN", timeNote,
+							suggestion));
+					if (sortTable != null && !cheap) {
+						result.warn(warning(sortTable, "Filesort Used", suggestion,
+								planColumns(explainedResult, sortTable, ColumnUsage.Kind.WHERE),
+								planColumns(explainedResult, sortTable, ColumnUsage.Kind.GROUP_BY), sortCols));
+						result.highlight(sortTable, PerformanceHint.Severity.WARN);
+					}
+				}
+				if (node.isUsingTemporary()) {
+					Set<String> groupCols = planColumns(explainedResult, sortTable, ColumnUsage.Kind.GROUP_BY);
+					String suggestion = "Suggest: Temp table needed (slow). Common for complex GROUP BY/DISTINCT/UNION.";
+					if (!groupCols.isEmpty()) {
+						suggestion += " Consider indexing GROUP BY cols: [" + String.join(", ", groupCols) + "]";
+					}
+					suggestions.append(String.format("[%s] %s: 'Using temporary'%s.\n  > %s\n", where, cheap ? "INFO" : "WARN", timeNote,
+							suggestion));
+					if (sortTable != null && !cheap) {
+						result.warn(warning(sortTable, "Temporary Table Used", suggestion,
+								planColumns(explainedResult, sortTable, ColumnUsage.Kind.WHERE), groupCols,
+								planColumns(explainedResult, sortTable, ColumnUsage.Kind.ORDER_BY)));
+						result.highlight(sortTable, PerformanceHint.Severity.WARN);
+					}
+				}
+			}
+		}
+
+		if (suggestions.length() == headerLength) {
+			suggestions.append("EXPLAIN plan analysis found no common high-priority issues.\n");
+		}
+		return result.build();
+	}
+
+	/** Builds the rows a table's tab shows for a warning. */
+	private static MicroAnalysis.TableWarning warning(String tableName, String warningType, String message,
+			Set<String> filteringCols, Set<String> groupByCols, Set<String> orderByCols) {
+		List<String[]> suggestionRows = new ArrayList<>();
+		boolean suggestionAdded = true;
+		switch (warningType) {
+		case "Full Table Scan":
+			if (!filteringCols.isEmpty()) {
+				suggestionRows.add(new String[] { "-> Index Suggestion", "Index JOIN/WHERE columns:", "[" + String.join(", ", filteringCols) + "]" });
+			} else {
+				suggestionRows.add(new String[] { "-> Index Suggestion", "Index JOIN columns:", "(Check query for columns used to join)" });
+			}
+			break;
+		case "Index Not Used":
+			// Split multi-line explanation for better table display
+			String[] lines = message.split("\n");
+			suggestionRows.add(new String[] { "-> Explanation", lines.length > 0 ? lines[0] : message, "" });
+			for (int lineIdx = 1; lineIdx < lines.length; lineIdx++) {
+				suggestionRows.add(new String[] { "", lines[lineIdx].trim(), "" });
+			}
+			break;
+		case "Filesort Used":
+			if (!orderByCols.isEmpty()) {
+				suggestionRows.add(new String[] { "-> Index Suggestion", "Index ORDER BY columns:", "[" + String.join(", ", orderByCols) + "]" });
+			} else {
+				suggestionRows.add(new String[] { "-> Index Suggestion", "Index ORDER BY columns:", "(Columns not identified)" });
+			}
+			break;
+		case "Temporary Table Used":
+			if (!groupByCols.isEmpty()) {
+				suggestionRows.add(new String[] { "-> Index Suggestion", "Index GROUP BY columns:", "[" + String.join(", ", groupByCols) + "]" });
+			} else {
+				suggestionRows.add(new String[] { "-> Index Suggestion", "Consider indexing GROUP BY columns", "(If applicable)" });
+			}
+			break;
+		case "High Row Estimate":
+			suggestionRows.add(new String[] { "-> Info", message, "(Check WHERE/JOIN selectivity)" });
+			break;
+		default:
+			suggestionAdded = false;
+			break;
+		}
+		if (!suggestionAdded && !filteringCols.isEmpty()) {
+			suggestionRows.add(new String[] { "-> Index Suggestion", "Consider indexing WHERE/JOIN columns:", "[" + String.join(", ", filteringCols) + "]" });
+		}
+		return new MicroAnalysis.TableWarning(tableName, warningType, message.lines().findFirst().orElse(message), suggestionRows);
+	}
+
+	/** Maps a plan alias to the table name used by the structural analysis, or null. */
+	private static String resolvePlanTable(String alias, Map<String, String> aliasToTableMap, StatementResult explainedResult) {
+		if (alias == null || alias.startsWith("<")) {
+			return null;
+		}
+		String fullTableName = aliasToTableMap != null ? aliasToTableMap.get(alias.toLowerCase()) : null;
+		if (fullTableName == null && explainedResult != null && explainedResult.getTable(alias) != null) {
+			fullTableName = alias;
+		}
+		return fullTableName;
+	}
+
+	/** @return The table of the node or of its first input that reads one. */
+	private static String firstTable(PlanNode node) {
+		if (node.getTable() != null && !node.getTable().startsWith("<")) {
+			return node.getTable();
+		}
+		for (PlanNode child : node.getChildren()) {
+			String table = firstTable(child);
+			if (table != null) {
+				return table;
+			}
+		}
+		return null;
+	}
+
+	private static Set<String> planColumns(StatementResult explainedResult, String fullTableName, ColumnUsage.Kind kind) {
+		if (explainedResult == null || fullTableName == null) {
+			return Set.of();
+		}
+		TableUsage tableDetails = explainedResult.getTable(fullTableName);
+		return tableDetails != null ? tableDetails.getColumns().get(kind) : Set.of();
+	}
+
+	private static String formatPlanRows(double rows) {
+		if (Double.isNaN(rows)) {
+			return "?";
+		}
+		return rows == Math.rint(rows) ? String.valueOf((long) rows) : String.format("%.2f", rows);
+	}
+
+	private static int findColumn(TableModel model, String name) {
+		if (name == null || model == null) {
+			return -1;
+		}
+		for (int i = 0; i < model.getColumnCount(); i++) {
+			if (name.equalsIgnoreCase(model.getColumnName(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String getColumnValue(TableModel model, int row, int col, String defaultValue) {
+		if (model == null || row < 0 || col < 0 || row >= model.getRowCount() || col >= model.getColumnCount()) {
+			return defaultValue;
+		}
+		Object val = model.getValueAt(row, col);
+		return (val == null) ? defaultValue : val.toString();
+	}
+
+	private static long getLongValue(TableModel model, int row, int col) {
+		String strValue = getColumnValue(model, row, col, "0");
+		try {
+			if (strValue.contains(".")) {
+				return (long) Double.parseDouble(strValue);
+			}
+			return Long.parseLong(strValue);
+		} catch (NumberFormatException e) {
+			System.err.println("Could not parse long: '" + strValue + "'");
+			return 0;
+		}
+	}
+}
@@ -2,13 +2,18 @@ package in.mystrn.sqlutil.utils;
 import javax.swing.*;
 import java.awt.*;
 import java.net.URL; // Import URL
+import java.awt.event.KeyEvent;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
 /**
  * A utility to show a modal "Processing..." dialog, styled like ngx-spinner.
  * It uses a SwingWorker to ensure the long-running task doesn't block the EDT.
+ * The Cancel button (or Escape) cancels the task's {@link CancellationToken};
+ * pressed again, it interrupts the worker and closes the dialog.
+ * For work that should not block the window, see {@link TaskScheduler}.
  */
 public final class ProcessingDialog {
 
@@ -22,13 +27,15 @@ public final class ProcessingDialog {
      */
     public static void show(Component parent, String initialMessage, ProcessingTask task) {
         JLabel messageLabel = new JLabel(initialMessage, SwingConstants.CENTER);
-        JDialog dialog = createDialog(parent, messageLabel);
+        JButton cancelButton = new JButton("Cancel");
+        JDialog dialog = createDialog(parent, messageLabel, cancelButton);
+        CancellationToken cancellationToken = new CancellationToken();
 
         SwingWorker<Void, String> worker = new SwingWorker<>() {
             @Override
             protected Void doInBackground() throws Exception {
                 Consumer<String> messageUpdater = this::publish;
-                task.run(messageUpdater);
+                task.run(messageUpdater, cancellationToken);
                 return null;
             }
 
@@ -45,8 +52,13 @@ public final class ProcessingDialog {
                 dialog.dispose();
                 try {
                     get();
+                } catch (CancellationException e) {
+                    // Force-closed by the user
                 } catch (ExecutionException e) {
                     Throwable cause = e.getCause();
+                    if (cause instanceof CancellationException || cause instanceof InterruptedException) {
+                        return; // Cancelled by the user; nothing to report
+                    }
                     JOptionPane.showMessageDialog(
                         parent,
                         "Task failed: " + cause.getMessage(),
@@ -60,6 +72,19 @@ public final class ProcessingDialog {
             }
         };
 
+        cancelButton.addActionListener(e -> {
+            if (!cancellationToken.isCancelled()) {
+                // First press: ask the task to stop and keep what it has
+                cancellationToken.cancel();
+                messageLabel.setText("<html><body style='text-align: center;'>Cancelling...</body></html>");
+                cancelButton.setText("Force Close");
+            } else {
+                worker.cancel(true);
+            }
+        });
+        dialog.getRootPane().registerKeyboardAction(e -> cancelButton.doClick(),
+                KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), JComponent.WHEN_IN_FOCUSED_WINDOW);
+
         worker.execute();
         dialog.setVisible(true);
     }
@@ -80,7 +105,7 @@ public final class ProcessingDialog {
      * * Internal helper to create the ngx-spinner styled, non-closable,
      * modal JDialog.
      */
-    private static JDialog createDialog(Component parent, JLabel messageLabel) {
+    private static JDialog createDialog(Component parent, JLabel messageLabel, JButton cancelButton) {
         Window parentWindow = null;
         if (parent != null) {
             parentWindow = SwingUtilities.getWindowAncestor(parent);
@@ -141,7 +166,14 @@ public final class ProcessingDialog {
         // --- Message Label ---
         messageLabel.setForeground(Color.WHITE);
         messageLabel.setText("<html><body style='text-align: center;'>" + messageLabel.getText() + "</body></html>");
-        spinnerPanel.add(messageLabel, BorderLayout.SOUTH);
+        JPanel southPanel = new JPanel(new BorderLayout(10, 10));
+        southPanel.setOpaque(false);
+        southPanel.add(messageLabel, BorderLayout.CENTER);
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.setOpaque(false);
+        buttonPanel.add(cancelButton);
+        southPanel.add(buttonPanel, BorderLayout.SOUTH);
+        spinnerPanel.add(southPanel, BorderLayout.SOUTH);
 
         // --- Add the spinnerPanel to the dialog's content pane ---
         // Set the dialog's content pane to use GridBagLayout,
@@ -3,7 +3,8 @@ package in.mystrn.sqlutil.utils;
 import java.util.function.Consumer;
 
 /**
- * A functional interface for a task that can be run in the ProcessingDialog.
+ * A functional interface for a task that can be run by the {@link TaskScheduler}
+ * (or in the modal ProcessingDialog).
  * It's like a Runnable that can throw an Exception and can
  * provide String updates back to the UI thread.
  */
@@ -20,4 +21,17 @@ public interface ProcessingTask {
      * error dialog.
      */
     void run(Consumer<String> messageUpdater) throws Exception;
-}
\ No newline at end of file
+
+    /**
+     * The background task to execute, with the token the Cancel button of the
+     * task panel or dialog cancels. Tasks that can stop early override this method; the default
+     * ignores the token and runs {@link #run(Consumer)}.
+     *
+     * @param cancellationToken Cancelled when the user presses Cancel.
+     * @throws Exception Any exception thrown will be caught and displayed in an
+     * error dialog, except a CancellationException.
+     */
+    default void run(Consumer<String> messageUpdater, CancellationToken cancellationToken) throws Exception {
+        run(messageUpdater);
+    }
+}
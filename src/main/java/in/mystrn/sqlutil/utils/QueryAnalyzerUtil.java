@@ -7,36 +7,76 @@ import gudusoft.gsqlparser.EFunctionType;
 import gudusoft.gsqlparser.EJoinType;
 import gudusoft.gsqlparser.ESetOperatorType;
 import gudusoft.gsqlparser.TCustomSqlStatement;
-import gudusoft.gsqlparser.TGSqlParser;
 import gudusoft.gsqlparser.TSourceToken;
-import gudusoft.gsqlparser.TSyntaxError;
 import gudusoft.gsqlparser.nodes.*; // Using wildcard for brevity
 import gudusoft.gsqlparser.stmt.TDeleteSqlStatement;
 import gudusoft.gsqlparser.stmt.TInsertSqlStatement;
 import gudusoft.gsqlparser.stmt.TSelectSqlStatement;
 import gudusoft.gsqlparser.stmt.TUpdateSqlStatement;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
+import in.mystrn.sqlutil.models.ColumnUsage;
+import in.mystrn.sqlutil.models.PerformanceHint;
+import in.mystrn.sqlutil.models.QueryStats;
+import in.mystrn.sqlutil.models.SourcePosition;
+import in.mystrn.sqlutil.models.SqlResult;
+import in.mystrn.sqlutil.models.StatementResult;
+import in.mystrn.sqlutil.models.TableUsage;
+
 /**
  * Enhanced Utility for Handling SQL Statements parsing using Gudu SQL Parser.
  *
  * Provides detailed structural analytics and beginner-friendly performance
  * hints.
  *
+ * An instance carries the vendor and the last error in public fields, so it
+ * must not be shared between threads. Code that analyzes from several
+ * threads or sessions uses {@link SqlAnalyzer} instead.
+ *
  * @author hive
  */
 public class QueryAnalyzerUtil {
 
+	/** Runs the per-statement analysis of multi-statement scripts. */
+	private static final ForkJoinPool ANALYSIS_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+			pool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("sqlutil-analysis-" + thread.getPoolIndex());
+				return thread;
+			}, null, false);
+
+	/** Parses and analysis results shared by all analyzer instances. */
+	private static final AnalysisCache CACHE = new AnalysisCache();
+
 	public EDbVendor vendor;
 	public String error;
+	/**
+	 * Whether to go through the shared {@link AnalysisCache}. Batch runs over
+	 * many distinct scripts turn it off: nothing would be re-read, and every
+	 * cached script keeps its parser out of the pool until evicted.
+	 */
+	public boolean useCache = true;
+
+	/** @return The shared parse/analysis cache, e.g. to read its hit/miss counters. */
+	public static AnalysisCache getCache() {
+		return CACHE;
+	}
 
 	/**
 	 * Checks if the provided SQL string is valid according to the specified vendor.
@@ -46,23 +86,48 @@ public class QueryAnalyzerUtil {
 	 *         failure.
 	 */
 	public boolean isValidSQL(String sql) {
-		TGSqlParser parser = new TGSqlParser(vendor);
-		parser.sqltext = sql;
-		int result = parser.parse();
-
-		if (result == 0) {
-			this.error = null; // Clear previous errors
-			return true;
+		ParsedScript script = parse(sql);
+		try {
+			return script.isValid();
+		} finally {
+			script.release();
 		}
+	}
+
+	/**
+	 * Parses a SQL script once for the current vendor. The returned script can be
+	 * handed to {@link #analyzeQueryStructure(ParsedScript)} and used for EXPLAIN
+	 * without parsing the text again.
+	 *
+	 * A script parsed before from the same text is served from the shared
+	 * {@link AnalysisCache}; otherwise a parser is borrowed from the
+	 * {@link ParserPool}. Reformatted text is parsed again, but still reuses
+	 * the cached analysis.
+	 *
+	 * @param sql The SQL script text.
+	 * @return The parsed script; call {@link ParsedScript#release()} when done
+	 *         with it. Populates 'error' field on failure and clears it on
+	 *         success.
+	 */
+	public ParsedScript parse(String sql) {
+		ParsedScript script = parse(vendor, sql, useCache);
+		this.error = script.getError();
+		return script;
+	}
 
-		StringBuilder errorBuilder = new StringBuilder();
-		for (TSyntaxError syntaxError : parser.getSyntaxErrors()) {
-			// Use getMsg() for a more descriptive error
-			errorBuilder.append("Line: ").append(syntaxError.lineNo).append(", Col: ").append(syntaxError.columnNo)
-					.append(" (Near '").append(syntaxError.tokentext).append("')\n");
+	/** Same as {@link #parse(String)} with the vendor and cache use passed in; touches no field. */
+	static ParsedScript parse(EDbVendor vendor, String sql, boolean useCache) {
+		if (!useCache) {
+			return ParsedScript.parse(vendor, sql);
+		}
+		AnalysisCache.Key key = AnalysisCache.keyOf(vendor, sql);
+		ParsedScript script = CACHE.getScript(key);
+		if (script == null) {
+			script = ParsedScript.parse(vendor, sql);
+			script.setCacheKey(key);
+			CACHE.putScript(key, script);
 		}
-		this.error = errorBuilder.toString();
-		return false;
+		return script;
 	}
 
 	/**
@@ -70,57 +135,206 @@ public class QueryAnalyzerUtil {
 	 * performance hints.
 	 *
 	 * @param sql The SQL query string.
-	 * @return A Map containing analysis results: - "isValid": boolean - "error":
-	 *         String (if !isValid) - "statementType": String (e.g., "SELECT",
-	 *         "UPDATE") - "queryStats": Map<String, Object> (counts of joins,
-	 *         selects, etc.) - "tableInfo": Map<String, Map<String, Object>>
-	 *         (details per table) - "performanceHints": List<PerformanceHint>
-	 *         (potential issues based on structure)
+	 * @return The immutable analysis: validity, the syntax error if any, and per
+	 *         statement the type, statistics, table/column usage and structural
+	 *         performance hints.
 	 * @throws Exception If parsing fails unexpectedly.
 	 */
-	public Map<String, Object> analyzeQueryStructure(String sql) throws Exception {
-		Map<String, Object> analysisResult = new LinkedHashMap<>();
-		TGSqlParser parser = new TGSqlParser(vendor);
-		parser.sqltext = sql;
+	public SqlResult analyzeQueryStructure(String sql) throws Exception {
+		ParsedScript script = parse(sql);
+		try {
+			return analyzeQueryStructure(script);
+		} finally {
+			script.release();
+		}
+	}
+
+	/**
+	 * Same as {@link #analyzeQueryStructure(String)} for a script that has
+	 * already been parsed. Results are cached with the script.
+	 *
+	 * @param script The parsed script.
+	 * @return The immutable analysis result.
+	 */
+	public SqlResult analyzeQueryStructure(ParsedScript script) {
+		return analyzeQueryStructure(script, new CancellationToken(), Long.MAX_VALUE);
+	}
+
+	/**
+	 * Same as {@link #analyzeQueryStructure(ParsedScript)}, giving up on the
+	 * statements not analyzed when the token is cancelled or the budget runs
+	 * out. Such a result is {@link SqlResult#isPartial() partial} and is not
+	 * cached.
+	 *
+	 * @param budgetMs Time allowed for the analysis, in milliseconds.
+	 */
+	public SqlResult analyzeQueryStructure(ParsedScript script, CancellationToken cancellationToken, long budgetMs) {
+		return analyzeQueryStructure(script, useCache, cancellationToken, budgetMs);
+	}
+
+	/**
+	 * Same as {@link #analyzeQueryStructure(ParsedScript, CancellationToken, long)}
+	 * with the cache use passed in. Reads no field, so one instance can serve
+	 * any number of threads; see {@link SqlAnalyzer}.
+	 */
+	SqlResult analyzeQueryStructure(ParsedScript script, boolean useCache, CancellationToken cancellationToken,
+			long budgetMs) {
+		if (!useCache) {
+			return analyzeParsedScript(script, cancellationToken, budgetMs);
+		}
+		AnalysisCache.Key key = script.getCacheKey();
+		SqlResult cached = CACHE.getResult(script);
+		if (cached != null) {
+			return cached;
+		}
+		SqlResult analysisResult = analyzeParsedScript(script, cancellationToken, budgetMs);
+		if (!analysisResult.isPartial()) {
+			CACHE.putResult(key, analysisResult);
+		}
+		return analysisResult;
+	}
 
-		if (parser.parse() != 0) {
-			isValidSQL(sql); // Populate this.error
-			analysisResult.put("isValid", false);
-			analysisResult.put("error", this.error);
-			return analysisResult;
+	private SqlResult analyzeParsedScript(ParsedScript script, CancellationToken cancellationToken, long budgetMs) {
+		if (!script.isValid()) {
+			return SqlResult.invalid(script.getError());
 		}
 
-		analysisResult.put("isValid", true);
-		analysisResult.put("error", null);
+		if (script.getStatementCount() == 0) {
+			return SqlResult.valid(List.of(new StatementResult(0, "", "EMPTY", List.of(), QueryStats.EMPTY,
+					List.of(new PerformanceHint(PerformanceHint.Severity.INFO, "Empty Query",
+							"The input string contained no SQL statements.", "Enter a valid SQL query.")))));
+		}
 
-		if (parser.sqlstatements.size() == 0) {
-			analysisResult.put("statementType", "EMPTY");
-			analysisResult.put("performanceHints", List.of(new PerformanceHint(PerformanceHint.Severity.INFO,
-					"Empty Query", "The input string contained no SQL statements.", "Enter a valid SQL query.")));
-			return analysisResult;
+		// --- Analyze every statement, in parallel for multi-statement scripts ---
+		if (script.getStatementCount() == 1) {
+			return SqlResult.valid(List.of(analyzeStatementSafely(script, 0)));
 		}
+		return analyzeStatements(script, cancellationToken, budgetMs);
+	}
 
-		// --- Analyze the first statement ---
-		TParseTreeNode statement = parser.sqlstatements.get(0);
+	/**
+	 * Analyzes all statements of a valid script. Statements are independent
+	 * subtrees, so the visitor work is forked out over {@link #ANALYSIS_POOL};
+	 * results come back in statement order. Statements still pending when the
+	 * token is cancelled or the budget runs out are reported as skipped.
+	 *
+	 * A task that is already running when its statement is skipped finishes in
+	 * the background, after this method has returned. Each task holds its own
+	 * reference on the script, so the caller's {@link ParsedScript#release()}
+	 * never hands the parser back to the pool while a task still walks its tree.
+	 */
+	private SqlResult analyzeStatements(ParsedScript script, CancellationToken cancellationToken, long budgetMs) {
+		int count = script.getStatementCount();
+		List<Future<StatementResult>> futures = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final int index = i;
+			futures.add(ANALYSIS_POOL.submit(() -> {
+				// Fails only once every holder released the script: the caller returned long ago
+				if (!script.retain()) {
+					return null;
+				}
+				try {
+					return analyzeStatementSafely(script, index);
+				} finally {
+					script.release();
+				}
+			}));
+		}
+		long deadline = budgetMs == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + budgetMs * 1_000_000L;
+		List<StatementResult> results = new ArrayList<>(count);
+		boolean partial = false;
+		try (CancellationToken.Registration registration = cancellationToken
+				.onCancel(() -> futures.forEach(future -> future.cancel(false)))) {
+			for (int i = 0; i < count; i++) {
+				Future<StatementResult> future = futures.get(i);
+				try {
+					long remaining = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+					results.add(remaining == Long.MAX_VALUE ? future.get() : future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS));
+				} catch (TimeoutException | CancellationException e) {
+					future.cancel(false);
+					partial = true;
+					MetricsRegistry.getShared().counter("analysis.skipped").increment();
+					results.add(skippedStatement(script, i, cancellationToken.isCancelled() ? "cancelled"
+							: "its time budget of " + budgetMs + " ms ran out"));
+				}
+			}
+		} catch (InterruptedException e) {
+			futures.forEach(future -> future.cancel(false));
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Structural analysis was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Structural analysis failed: " + e.getCause(), e.getCause());
+		}
+		return partial ? SqlResult.partial(results) : SqlResult.valid(results);
+	}
+
+	/** Result of a statement whose analysis did not run. */
+	private static StatementResult skippedStatement(ParsedScript script, int index, String reason) {
+		return new StatementResult(index, script.getStatementSql(index),
+				script.getStatement(index).getClass().getSimpleName(), List.of(), QueryStats.EMPTY,
+				List.of(new PerformanceHint(PerformanceHint.Severity.INFO, "Analysis Skipped",
+						"Structural analysis of this statement was skipped because " + reason + ".",
+						"Analyze the statement on its own.")));
+	}
+
+	/** Analyzes one statement, turning an unexpected failure into a hint. */
+	private StatementResult analyzeStatementSafely(ParsedScript script, int index) {
+		MetricsRegistry metrics = MetricsRegistry.getShared();
+		long start = System.nanoTime();
+		try {
+			return analyzeStatement(script, index);
+		} catch (RuntimeException e) {
+			metrics.counter("analysis.failures").increment();
+			return new StatementResult(index, script.getStatementSql(index),
+					script.getStatement(index).getClass().getSimpleName(), List.of(), QueryStats.EMPTY,
+					List.of(new PerformanceHint(PerformanceHint.Severity.INFO, "Analysis Failed",
+							"Structural analysis of this statement failed: " + e.getMessage(),
+							"Check the statement manually or review its EXPLAIN plan.")));
+		} finally {
+			metrics.timer("analysis.statement").recordSince(start);
+		}
+	}
+
+	/**
+	 * Analyzes a single statement of a script.
+	 */
+	private StatementResult analyzeStatement(ParsedScript script, int index) {
+		TParseTreeNode statement = script.getStatement(index);
 		String statementTypeStr = "UNKNOWN"; // Default, will be overwritten
 
 		List<PerformanceHint> hints = new ArrayList<>();
-		Map<String, Object> queryStats = new HashMap<>();
-		Map<String, Map<String, Object>> tableInfo = new LinkedHashMap<>();
+		QueryStats queryStats = QueryStats.EMPTY;
+		Map<String, TableUsage.Builder> tableInfo = new LinkedHashMap<>();
+
+		Step step;
 
 		// --- Specific Analysis for SELECT Statements ---
 		if (statement instanceof TSelectSqlStatement) {
 			TSelectSqlStatement select = (TSelectSqlStatement) statement;
 			statementTypeStr = select.sqlstatementtype.name(); // CORRECT access
 
-			Map<String, String> aliasToTableMap = buildAliasMap(select);
+			step = Step.start(index, statement, "tableDetails");
+			Map<String, String> aliasToTableMap = script.getAliasMap(index);
 			tableInfo = extractTableDetails(select, aliasToTableMap);
-			queryStats = gatherQueryStats(select, tableInfo);
-			hints = generatePerformanceHints(select, tableInfo, queryStats);
+
+			// One walk feeds every SELECT check
+			step = step.next("walk");
+			ColumnUsageListener columnUsage = new ColumnUsageListener(aliasToTableMap, tableInfo);
+			StatsListener statsListener = new StatsListener();
+			LeadingWildcardListener wildcardListener = new LeadingWildcardListener();
+			OrConditionListener orListener = new OrConditionListener();
+			new AnalysisWalker(List.of(columnUsage, statsListener, wildcardListener, orListener)).walk(select);
+
+			step = step.next("queryStats");
+			queryStats = gatherQueryStats(select, tableInfo, statsListener);
+			step = step.next("hints");
+			hints = generatePerformanceHints(select, tableInfo, queryStats, wildcardListener, orListener);
 
 		} else {
 			// --- Enhanced handling for other statement types ---
+			step = Step.start(index, statement, "tableUsage");
 			tableInfo = extractGeneralTableUsage(statement); // Populate basic table info first
+			step = step.next("generalAnalysis");
 
 			if (statement instanceof TInsertSqlStatement) {
 				TInsertSqlStatement insert = (TInsertSqlStatement) statement;
@@ -156,107 +370,106 @@ public class QueryAnalyzerUtil {
 						"Analysis for " + statementTypeStr + " is basic.", "Focus on database-specific tools."));
 			}
 		}
+		step.end();
 
-		// Add results to the final map
-		analysisResult.put("statementType", statementTypeStr);
-		analysisResult.put("tableInfo", tableInfo);
-		analysisResult.put("queryStats", queryStats);
-		analysisResult.put("performanceHints", hints);
-
-		return analysisResult;
-	}
-
-	// --- PerformanceHint Class ---
-	public static class PerformanceHint {
-		public enum Severity {
-			INFO, WARN, SEVERE
+		List<TableUsage> tables = new ArrayList<>(tableInfo.size());
+		for (TableUsage.Builder table : tableInfo.values()) {
+			tables.add(table.build());
 		}
+		return new StatementResult(index, script.getStatementSql(index), statementTypeStr, tables, queryStats, hints,
+				script.getFingerprint(index));
+	}
 
-		public Severity severity;
-		public String title;
-		public String explanation;
-		public String suggestion;
+	// --- Helper Methods ---
 
-		public PerformanceHint(Severity severity, String title, String explanation, String suggestion) {
-			this.severity = severity;
-			this.title = title;
-			this.explanation = explanation;
-			this.suggestion = suggestion;
+	/**
+	 * Times one step of a statement's analysis for the {@link MetricsRegistry}
+	 * ("analysis.&lt;step&gt;") and as an {@link AnalyzerEvents.AnalysisStepEvent}.
+	 */
+	private static final class Step {
+		private final int index;
+		private final TParseTreeNode statement;
+		private final String name;
+		private final AnalyzerEvents.AnalysisStepEvent event = new AnalyzerEvents.AnalysisStepEvent();
+		private final long start;
+
+		private Step(int index, TParseTreeNode statement, String name) {
+			this.index = index;
+			this.statement = statement;
+			this.name = name;
+			event.begin();
+			this.start = System.nanoTime();
+		}
+
+		static Step start(int index, TParseTreeNode statement, String name) {
+			return new Step(index, statement, name);
+		}
+
+		/** Ends this step and starts the next one of the same statement. */
+		Step next(String nextName) {
+			end();
+			return new Step(index, statement, nextName);
+		}
+
+		void end() {
+			MetricsRegistry.getShared().timer("analysis." + name).recordSince(start);
+			event.end();
+			if (event.shouldCommit()) {
+				event.statementIndex = index;
+				event.statementType = statement.getClass().getSimpleName();
+				event.step = name;
+				event.commit();
+			}
 		}
+	}
 
-		@Override
-		public String toString() {
-			return String.format("[%s] %s\n  Why: %s\n  Suggestion: %s", severity, title, explanation, suggestion);
+	/**
+	 * Copies the position of a token. Results must not keep tokens: a token
+	 * references the parser's token list and with it the whole parse tree.
+	 */
+	private static SourcePosition positionOf(TSourceToken token) {
+		if (token == null) {
+			return null;
 		}
+		return new SourcePosition((int) token.lineNo, (int) token.columnNo, (int) token.offset);
 	}
 
-	// --- Helper Methods ---
-
 	/** Builds alias map. (Unchanged) */
 	public Map<String, String> buildAliasMap(TSelectSqlStatement select) {
-		Map<String, String> aliasMap = new HashMap<>();
-		if (select.tables != null) {
-			for (TTable table : select.tables) {
-				String tableName = table.getTableName().toString();
-				String alias = tableName;
-				if (table.getAliasName() != null && !table.getAliasName().toString().isEmpty()) {
-					alias = table.getAliasName().toString();
-				}
-				aliasMap.put(alias.toLowerCase(), tableName);
-			}
-		}
-		return aliasMap;
+		return ParsedScript.buildAliasMap(select);
 	}
 
 	/**
-	 * Extracts details (WHERE, Functions, ALL, GROUP BY, ORDER BY cols).
-	 * (Unchanged)
+	 * Creates the per-table details of a SELECT. The WHERE, function, ALL, GROUP
+	 * BY and ORDER BY column sets are filled by {@link ColumnUsageListener}
+	 * during the shared walk.
 	 */
-	private Map<String, Map<String, Object>> extractTableDetails(TSelectSqlStatement select,
+	private Map<String, TableUsage.Builder> extractTableDetails(TSelectSqlStatement select,
 			Map<String, String> aliasToTableMap) {
-		Map<String, Map<String, Object>> tableInfo = new LinkedHashMap<>();
+		Map<String, TableUsage.Builder> tableInfo = new LinkedHashMap<>();
 
 		if (select.tables != null) {
 			for (TTable table : select.tables) {
 				String tableName = table.getTableName().toString();
 				String mapKey = table.getAliasName() != null ? table.getAliasName().toString() : tableName;
 				String actualTableName = aliasToTableMap.getOrDefault(mapKey.toLowerCase(), mapKey);
-				tableInfo.computeIfAbsent(actualTableName, k -> {
-					Map<String, Object> data = new HashMap<>();
-					data.put("whereColumns", new HashSet<String>());
-					data.put("columnsWithFunctionsInWhere", new HashSet<String>());
-					data.put("allColumnsUsed", new HashSet<String>());
-					data.put("groupByColumns", new HashSet<String>());
-					data.put("orderByColumns", new HashSet<String>());
-					data.put("sourceToken", table.getStartToken());
-					data.put("aliasUsed", mapKey);
-					return data;
-				});
+				tableInfo.computeIfAbsent(actualTableName,
+						k -> new TableUsage.Builder(k, mapKey, positionOf(table.getStartToken())));
 			}
 		}
 
-		if (select.getWhereClause() != null && select.getWhereClause().getCondition() != null) {
-			WhereClauseColumnVisitor whereVisitor = new WhereClauseColumnVisitor(aliasToTableMap, tableInfo);
-			select.getWhereClause().getCondition().accept(whereVisitor);
-		}
-
-		AllUsageColumnVisitor allUsageVisitor = new AllUsageColumnVisitor(aliasToTableMap, tableInfo);
-		select.accept(allUsageVisitor);
-
 		return tableInfo;
 	}
 
-	/** Gathers detailed stats about SELECT query structure. (Unchanged) */
-	private Map<String, Object> gatherQueryStats(TSelectSqlStatement select,
-			Map<String, Map<String, Object>> tableInfo) {
-		Map<String, Object> stats = new LinkedHashMap<>();
-		GeneralStatsVisitor statsVisitor = new GeneralStatsVisitor();
-		select.accept(statsVisitor);
+	/** Gathers detailed stats about SELECT query structure. */
+	private QueryStats gatherQueryStats(TSelectSqlStatement select,
+			Map<String, TableUsage.Builder> tableInfo, StatsListener statsVisitor) {
+		QueryStats.Builder stats = new QueryStats.Builder();
 
-		stats.put("selectItemCount", select.getResultColumnList() == null ? 0 : select.getResultColumnList().size());
-		stats.put("usesSelectStar", statsVisitor.selectStarCount > 0);
-		stats.put("tableCount", select.tables == null ? 0 : select.tables.size());
-		stats.put("joinCount", select.joins == null ? 0 : select.joins.size());
+		stats.selectItemCount(select.getResultColumnList() == null ? 0 : select.getResultColumnList().size());
+		stats.usesSelectStar(statsVisitor.selectStarCount > 0);
+		stats.tableCount(select.tables == null ? 0 : select.tables.size());
+		stats.joinCount(select.joins == null ? 0 : select.joins.size());
 
 		List<String> joinTypes = new ArrayList<>();
 		if (select.joins != null) {
@@ -264,33 +477,31 @@ public class QueryAnalyzerUtil {
 				joinTypes.add(getJoinTypeString(join.getKind()));
 			}
 		}
-		stats.put("joinTypes", joinTypes);
-
-		stats.put("hasWhereClause", select.getWhereClause() != null);
-		stats.put("whereConditionComplexity", statsVisitor.whereConditionCount);
-		stats.put("hasGroupByClause", select.getGroupByClause() != null);
-		stats.put("groupByItemCount",
-				select.getGroupByClause() == null ? 0 : select.getGroupByClause().getItems().size());
-		stats.put("hasOrderByClause", select.getOrderbyClause() != null);
-		stats.put("orderByItemCount",
-				select.getOrderbyClause() == null ? 0 : select.getOrderbyClause().getItems().size());
-		stats.put("hasLimitClause", select.getLimitClause() != null);
-		stats.put("isDistinct", select.getSelectDistinct() != null);
-		stats.put("setOperation",
+		stats.joinTypes(joinTypes);
+
+		stats.hasWhereClause(select.getWhereClause() != null);
+		stats.whereConditionComplexity(statsVisitor.whereConditionCount);
+		stats.hasGroupByClause(select.getGroupByClause() != null);
+		stats.groupByItemCount(select.getGroupByClause() == null ? 0 : select.getGroupByClause().getItems().size());
+		stats.hasOrderByClause(select.getOrderbyClause() != null);
+		stats.orderByItemCount(select.getOrderbyClause() == null ? 0 : select.getOrderbyClause().getItems().size());
+		stats.hasLimitClause(select.getLimitClause() != null);
+		stats.distinct(select.getSelectDistinct() != null);
+		stats.setOperation(
 				select.getSetOperatorType() != ESetOperatorType.none ? select.getSetOperatorType().toString() : "None");
 		// Subquery count removed as it was unreliable
-		stats.put("functionCallCount", statsVisitor.functionCallCount);
-		stats.put("windowFunctionCount", statsVisitor.windowFunctionCount);
-		stats.put("aggregateFunctionCount", statsVisitor.aggregateFunctionCount);
+		stats.functionCallCount(statsVisitor.functionCallCount);
+		stats.windowFunctionCount(statsVisitor.windowFunctionCount);
+		stats.aggregateFunctionCount(statsVisitor.aggregateFunctionCount);
 
 		long totalWhereCols = tableInfo.values().stream()
-				.mapToLong(m -> ((Set<?>) m.getOrDefault("whereColumns", Set.of())).size()).sum();
+				.mapToLong(t -> t.getColumns().count(ColumnUsage.Kind.WHERE)).sum();
 		long totalFuncOnWhereCols = tableInfo.values().stream()
-				.mapToLong(m -> ((Set<?>) m.getOrDefault("columnsWithFunctionsInWhere", Set.of())).size()).sum();
-		stats.put("totalWhereColumnsUsed", totalWhereCols);
-		stats.put("totalFunctionsOnWhereColumns", totalFuncOnWhereCols);
+				.mapToLong(t -> t.getColumns().count(ColumnUsage.Kind.FUNCTION_IN_WHERE)).sum();
+		stats.totalWhereColumnsUsed(totalWhereCols);
+		stats.totalFunctionsOnWhereColumns(totalFuncOnWhereCols);
 
-		return stats;
+		return stats.build();
 	}
 
 	/** Converts Gudu join int to String using enum constants. (Unchanged) */
@@ -303,19 +514,19 @@ public class QueryAnalyzerUtil {
 	 * objects. (Unchanged)
 	 */
 	private List<PerformanceHint> generatePerformanceHints(TSelectSqlStatement select,
-			Map<String, Map<String, Object>> tableInfo, Map<String, Object> queryStats) {
+			Map<String, TableUsage.Builder> tableInfo, QueryStats queryStats,
+			LeadingWildcardListener lwv, OrConditionListener ov) {
 		List<PerformanceHint> hints = new ArrayList<>();
 
-		if (Boolean.TRUE.equals(queryStats.get("usesSelectStar"))) {
+		if (queryStats.usesSelectStar()) {
 			hints.add(new PerformanceHint(PerformanceHint.Severity.WARN, "Avoid SELECT *",
 					"Retrieving all columns (*) forces the database to fetch potentially unnecessary data, increasing network traffic and memory usage. It also prevents certain index optimizations (covering indexes).",
 					"Explicitly list only the columns your application requires in the SELECT clause."));
 		}
 
-		for (Map.Entry<String, Map<String, Object>> entry : tableInfo.entrySet()) {
-			@SuppressWarnings("unchecked")
-			Set<String> funcCols = (Set<String>) entry.getValue().get("columnsWithFunctionsInWhere");
-			if (funcCols != null && !funcCols.isEmpty()) {
+		for (Map.Entry<String, TableUsage.Builder> entry : tableInfo.entrySet()) {
+			Set<String> funcCols = entry.getValue().getColumns().get(ColumnUsage.Kind.FUNCTION_IN_WHERE);
+			if (!funcCols.isEmpty()) {
 				hints.add(new PerformanceHint(PerformanceHint.Severity.SEVERE, "Function on WHERE Column(s)",
 						"Applying a function (like YEAR(), UPPER(), CONCAT()) to a column in the WHERE clause often prevents the database from using an index on that column, forcing a slower table scan. This is because the database must calculate the function's result for every row before comparing.",
 						"Rewrite the condition to apply functions to the constant value instead of the column, if possible (e.g., `date_col >= '2024-01-01'` instead of `YEAR(date_col) = 2024`). Consider function-based indexes if rewriting isn't feasible (database-specific). Columns involved: ["
@@ -323,8 +534,8 @@ public class QueryAnalyzerUtil {
 			}
 		}
 
-		if (!Boolean.TRUE.equals(queryStats.get("hasWhereClause"))) {
-			int tableCount = (Integer) queryStats.getOrDefault("tableCount", 0);
+		if (!queryStats.hasWhereClause()) {
+			int tableCount = queryStats.getTableCount();
 			if (tableCount > 1) {
 				hints.add(new PerformanceHint(PerformanceHint.Severity.SEVERE, "Potential Cartesian Product",
 						"The query joins multiple tables (" + tableCount
@@ -376,10 +587,6 @@ public class QueryAnalyzerUtil {
 			}
 		}
 
-		LeadingWildcardVisitor lwv = new LeadingWildcardVisitor();
-		if (select.getWhereClause() != null && select.getWhereClause().getCondition() != null) {
-			select.getWhereClause().getCondition().accept(lwv);
-		}
 		if (!lwv.columnsWithLeadingWildcard.isEmpty()) {
 			hints.add(new PerformanceHint(PerformanceHint.Severity.WARN, "LIKE with Leading Wildcard",
 					"The WHERE clause uses `LIKE '%...'` (a leading wildcard) on column(s): ["
@@ -388,10 +595,6 @@ public class QueryAnalyzerUtil {
 					"Avoid leading wildcards if possible. Consider full-text indexing if searching within text is a primary requirement. If trailing wildcards (`LIKE 'abc%'`) are sufficient, they can use standard indexes."));
 		}
 
-		OrVisitor ov = new OrVisitor();
-		if (select.getWhereClause() != null && select.getWhereClause().getCondition() != null) {
-			select.getWhereClause().getCondition().accept(ov);
-		}
 		if (ov.orOnDifferentColumns) {
 			hints.add(new PerformanceHint(PerformanceHint.Severity.INFO, "OR Condition on Different Columns",
 					"The WHERE clause uses OR to combine conditions on different columns. Databases sometimes struggle to use multiple indexes efficiently for OR conditions, potentially leading to scans or less optimal index merges.",
@@ -405,7 +608,7 @@ public class QueryAnalyzerUtil {
 		// ("+subqueryCount+" found)", /*...*/ "Review correlated subqueries; consider
 		// JOINs. Check EXPLAIN.")); }
 
-		if (Boolean.TRUE.equals(queryStats.get("isDistinct"))) {
+		if (queryStats.isDistinct()) {
 			hints.add(new PerformanceHint(PerformanceHint.Severity.INFO, "SELECT DISTINCT Usage",
 					"The query uses SELECT DISTINCT to remove duplicate rows. This requires the database to perform extra work (often sorting or hashing) on the result set, which can be resource-intensive for large results.",
 					"Ensure DISTINCT is truly necessary. Sometimes duplicates can be avoided by refining JOIN conditions or using GROUP BY instead."));
@@ -421,35 +624,31 @@ public class QueryAnalyzerUtil {
 	}
 
 	/** Gathers basic stats for non-SELECT statements. (Unchanged) */
-	private Map<String, Object> gatherGeneralStats(TParseTreeNode statement) {
-		Map<String, Object> queryStats = new HashMap<>();
+	private QueryStats gatherGeneralStats(TParseTreeNode statement) {
+		QueryStats.Builder queryStats = new QueryStats.Builder();
 		if (statement instanceof TInsertSqlStatement) {
 			TInsertSqlStatement insert = (TInsertSqlStatement) statement;
-			queryStats.put("targetTable",
-					insert.getTargetTable() != null ? insert.getTargetTable().getFullName() : "UNKNOWN");
-			queryStats.put("columnCount", insert.getColumnList() != null ? insert.getColumnList().size() : 0);
-			queryStats.put("insertSource",
+			queryStats.targetTable(insert.getTargetTable() != null ? insert.getTargetTable().getFullName() : "UNKNOWN");
+			queryStats.columnCount(insert.getColumnList() != null ? insert.getColumnList().size() : 0);
+			queryStats.insertSource(
 					insert.getSubQuery() != null ? "SELECT Subquery"
 							: (insert.getValues() != null ? "VALUES Clause (" + insert.getValues().size() + " rows)"
 									: "Default"));
 		} else if (statement instanceof TUpdateSqlStatement) {
 			TUpdateSqlStatement update = (TUpdateSqlStatement) statement;
-			queryStats.put("targetTable",
-					update.getTargetTable() != null ? update.getTargetTable().getFullName() : "UNKNOWN");
-			queryStats.put("setColumnCount",
-					update.getResultColumnList() != null ? update.getResultColumnList().size() : 0);
-			queryStats.put("hasWhereClause", update.getWhereClause() != null);
+			queryStats.targetTable(update.getTargetTable() != null ? update.getTargetTable().getFullName() : "UNKNOWN");
+			queryStats.setColumnCount(update.getResultColumnList() != null ? update.getResultColumnList().size() : 0);
+			queryStats.hasWhereClause(update.getWhereClause() != null);
 		} else if (statement instanceof TDeleteSqlStatement) {
 			TDeleteSqlStatement delete = (TDeleteSqlStatement) statement;
-			queryStats.put("targetTable",
-					delete.getTargetTable() != null ? delete.getTargetTable().getFullName() : "UNKNOWN");
-			queryStats.put("hasWhereClause", delete.getWhereClause() != null);
+			queryStats.targetTable(delete.getTargetTable() != null ? delete.getTargetTable().getFullName() : "UNKNOWN");
+			queryStats.hasWhereClause(delete.getWhereClause() != null);
 		} else if (statement instanceof TCustomSqlStatement) {
-			queryStats.put("statementKind", "DDL/Custom");
+			queryStats.statementKind("DDL/Custom");
 		} else {
-			queryStats.put("statementKind", "Other");
+			queryStats.statementKind("Other");
 		}
-		return queryStats;
+		return queryStats.build();
 	}
 
 	/**
@@ -457,7 +656,7 @@ public class QueryAnalyzerUtil {
 	 * (Unchanged)
 	 */
 	private List<PerformanceHint> generateGeneralHints(TParseTreeNode statement,
-			Map<String, Map<String, Object>> tableInfo, Map<String, Object> queryStats) {
+			Map<String, TableUsage.Builder> tableInfo, QueryStats queryStats) {
 		List<PerformanceHint> hints = new ArrayList<>();
 		String statementTypeStr = "";
 
@@ -476,7 +675,7 @@ public class QueryAnalyzerUtil {
 		} else if (statement instanceof TUpdateSqlStatement) {
 			TUpdateSqlStatement update = (TUpdateSqlStatement) statement;
 			statementTypeStr = update.sqlstatementtype.toString();
-			String targetTable = (String) queryStats.getOrDefault("targetTable", "UNKNOWN");
+			String targetTable = queryStats.getTargetTable() != null ? queryStats.getTargetTable() : "UNKNOWN";
 			if (update.getWhereClause() == null) {
 				hints.add(new PerformanceHint(PerformanceHint.Severity.SEVERE, "UPDATE Without WHERE",
 						"This statement will update *all* rows in the table '" + targetTable + "'.",
@@ -487,7 +686,7 @@ public class QueryAnalyzerUtil {
 		} else if (statement instanceof TDeleteSqlStatement) {
 			TDeleteSqlStatement delete = (TDeleteSqlStatement) statement;
 			statementTypeStr = delete.sqlstatementtype.toString();
-			String targetTable = (String) queryStats.getOrDefault("targetTable", "UNKNOWN");
+			String targetTable = queryStats.getTargetTable() != null ? queryStats.getTargetTable() : "UNKNOWN";
 			if (delete.getWhereClause() == null) {
 				hints.add(new PerformanceHint(PerformanceHint.Severity.SEVERE, "DELETE Without WHERE",
 						"This statement will delete *all* rows from the table '" + targetTable + "'.",
@@ -508,22 +707,21 @@ public class QueryAnalyzerUtil {
 		return hints;
 	}
 
-	/** Helper to add function-in-where hint for DML. (Unchanged) */
+	/** Helper to add function-in-where hint for DML. */
 	private void checkWhereFunctions(TWhereClause whereClause, String tableName,
-			Map<String, Map<String, Object>> tableInfo, List<PerformanceHint> hints) {
-		Map<String, Object> details = tableInfo.get(tableName);
+			Map<String, TableUsage.Builder> tableInfo, List<PerformanceHint> hints) {
+		TableUsage.Builder details = tableInfo.get(tableName);
 		if (details == null && !tableInfo.isEmpty() && tableInfo.size() == 1) {
 			details = tableInfo.values().iterator().next();
 		}
 		if (details != null) {
-			Map<String, String> aliasMap = Map.of(details.getOrDefault("aliasUsed", tableName).toString().toLowerCase(),
-					tableName);
-			WhereClauseColumnVisitor whereVisitor = new WhereClauseColumnVisitor(aliasMap, tableInfo);
+			Map<String, String> aliasMap = Map.of(
+					(details.getAlias() != null ? details.getAlias() : tableName).toLowerCase(), tableName);
 			if (whereClause != null && whereClause.getCondition() != null) {
-				whereClause.getCondition().accept(whereVisitor);
+				new AnalysisWalker(List.of(new ColumnUsageListener(aliasMap, tableInfo)))
+						.walkWhereCondition(whereClause.getCondition());
 			}
-			@SuppressWarnings("unchecked")
-			Set<String> funcCols = (Set<String>) details.getOrDefault("columnsWithFunctionsInWhere", Set.of());
+			Set<String> funcCols = details.getColumns().get(ColumnUsage.Kind.FUNCTION_IN_WHERE);
 			if (!funcCols.isEmpty()) {
 				hints.add(new PerformanceHint(PerformanceHint.Severity.WARN, "Function on WHERE Column(s)",
 						"Applying a function to column(s) [" + String.join(", ", funcCols)
@@ -535,209 +733,95 @@ public class QueryAnalyzerUtil {
 		}
 	}
 
-	/** Extracts basic table usage for non-SELECTs. (Unchanged) */
-	private Map<String, Map<String, Object>> extractGeneralTableUsage(TParseTreeNode statement) {
-		Map<String, Map<String, Object>> tableInfo = new LinkedHashMap<>();
-		TableVisitor tv = new TableVisitor();
-		statement.accept(tv);
+	/** Extracts basic table usage for non-SELECTs. */
+	private Map<String, TableUsage.Builder> extractGeneralTableUsage(TParseTreeNode statement) {
+		Map<String, TableUsage.Builder> tableInfo = new LinkedHashMap<>();
+		TableListener tv = new TableListener();
+		new AnalysisWalker(List.of(tv)).walk(statement);
 		for (TTable table : tv.tables) {
 			String fullName = table.getFullName();
 			String simpleName = fullName.contains(".") ? fullName.substring(fullName.lastIndexOf(".") + 1) : fullName;
-			tableInfo.computeIfAbsent(fullName, k -> {
-				Map<String, Object> data = new HashMap<>();
-				data.put("sourceToken", table.getStartToken());
-				data.put("aliasUsed", table.getAliasName() != null ? table.getAliasName().toString() : simpleName);
-				data.put("whereColumns", new HashSet<String>());
-				data.put("columnsWithFunctionsInWhere", new HashSet<String>());
-				data.put("allColumnsUsed", new HashSet<String>());
-				data.put("groupByColumns", new HashSet<String>());
-				data.put("orderByColumns", new HashSet<String>());
-				return data;
-			});
+			tableInfo.computeIfAbsent(fullName, k -> new TableUsage.Builder(k,
+					table.getAliasName() != null ? table.getAliasName().toString() : simpleName,
+					positionOf(table.getStartToken())));
 		}
 		return tableInfo;
 	}
 
-	// --- Visitor Classes ---
+	// --- Analysis Listeners (plugged into AnalysisWalker) ---
 
-	/** Visitor to find all tables. (Unchanged) */
-	private static class TableVisitor extends TParseTreeVisitor {
+	/** Collects all tables. */
+	private static class TableListener implements AnalysisWalker.Listener {
 		List<TTable> tables = new ArrayList<>();
 
 		@Override
-		public void preVisit(TTable table) {
+		public void onTable(TTable table, AnalysisWalker.WalkContext context) {
 			tables.add(table);
 		}
 	}
 
-	/** Visitor for WHERE columns + functions. (Unchanged) */
-	private static class WhereClauseColumnVisitor extends TParseTreeVisitor {
+	/**
+	 * Records column usage per table: every column, plus WHERE columns,
+	 * functions on WHERE columns, GROUP BY and ORDER BY columns depending on the
+	 * clause the walker is in.
+	 */
+	private static class ColumnUsageListener implements AnalysisWalker.Listener {
 		private final Map<String, String> aliasToTableMap;
-		private final Map<String, Map<String, Object>> tableInfo;
-		private boolean insideFunction = false;
+		private final Map<String, TableUsage.Builder> tableInfo;
 
-		public WhereClauseColumnVisitor(Map<String, String> a, Map<String, Map<String, Object>> t) {
+		ColumnUsageListener(Map<String, String> a, Map<String, TableUsage.Builder> t) {
 			aliasToTableMap = a;
 			tableInfo = t;
 		}
 
 		@Override
-		public void preVisit(TFunctionCall f) {
-			insideFunction = true;
-			super.preVisit(f);
-		} // super needed
-
-		@Override
-		public void postVisit(TFunctionCall f) {
-			insideFunction = false;
-		}
-
-		@Override
-		public void preVisit(TObjectName o) {
-			if (o.getDbObjectType() == EDbObjectType.column) {
-				String c = o.getColumnNameOnly();
-				String q = o.getTableString();
-				String t = resolveTableName(q, c);
-				if (t != null) {
-					@SuppressWarnings("unchecked")
-					Set<String> wc = (Set<String>) tableInfo.get(t).get("whereColumns");
-					if (wc != null)
-						wc.add(c);
-					if (insideFunction) {
-						@SuppressWarnings("unchecked")
-						Set<String> fc = (Set<String>) tableInfo.get(t).get("columnsWithFunctionsInWhere");
-						if (fc != null)
-							fc.add(c);
-					}
-				}
+		public void onObjectName(TObjectName o, AnalysisWalker.WalkContext context) {
+			if (o.getDbObjectType() != EDbObjectType.column) {
+				return;
 			}
-		}
-
-		private String resolveTableName(String q, String c) {
-			String t = null;
-			if (q != null && !q.isEmpty()) {
-				t = aliasToTableMap.get(q.toLowerCase());
-				if (t == null) {
-					if (tableInfo.containsKey(q)) {
-						t = q;
-					} else {
-						t = "? (" + q + ")";
-						initializeTableInfoIfNeeded(t);
-					}
-				}
-			} else {
-				if (aliasToTableMap.size() == 1) {
-					t = aliasToTableMap.values().iterator().next();
-				} else {
-					t = "? (Ambiguous)";
-					initializeTableInfoIfNeeded(t);
-				}
+			String c = o.getColumnNameOnly();
+			TableUsage.Builder details = tableInfo.get(resolveTableName(o.getTableString()));
+			if (details == null) {
+				return;
 			}
-			return t;
-		}
-
-		private void initializeTableInfoIfNeeded(String t) {
-			tableInfo.computeIfAbsent(t, k -> {
-				Map<String, Object> d = new HashMap<>();
-				d.put("whereColumns", new HashSet<>());
-				d.put("columnsWithFunctionsInWhere", new HashSet<>());
-				d.put("allColumnsUsed", new HashSet<>());
-				d.put("groupByColumns", new HashSet<>());
-				d.put("orderByColumns", new HashSet<>());
-				return d;
-			});
-		}
-	}
-
-	/** Visitor to find ALL columns + GROUP BY + ORDER BY columns. (Unchanged) */
-	private static class AllUsageColumnVisitor extends TParseTreeVisitor {
-		private final Map<String, String> aliasToTableMap;
-		private final Map<String, Map<String, Object>> tableInfo;
-		private boolean inGroupBy = false;
-		private boolean inOrderBy = false;
-
-		public AllUsageColumnVisitor(Map<String, String> a, Map<String, Map<String, Object>> t) {
-			aliasToTableMap = a;
-			tableInfo = t;
-		}
-
-		@Override
-		public void preVisit(TGroupBy g) {
-			inGroupBy = true;
-			super.preVisit(g);
-		}
-
-		@Override
-		public void postVisit(TGroupBy g) {
-			inGroupBy = false;
-		}
-
-		@Override
-		public void preVisit(TOrderBy o) {
-			inOrderBy = true;
-			super.preVisit(o);
-		}
-
-		@Override
-		public void postVisit(TOrderBy o) {
-			inOrderBy = false;
-		}
-
-		@Override
-		public void preVisit(TObjectName o) {
-			if (o.getDbObjectType() == EDbObjectType.column) {
-				String c = o.getColumnNameOnly();
-				String q = o.getTableString();
-				String t = resolveTableName(q, c);
-				if (t != null) {
-					@SuppressWarnings("unchecked")
-					Set<String> ac = (Set<String>) tableInfo.get(t).get("allColumnsUsed");
-					if (ac != null)
-						ac.add(c);
-					if (inGroupBy) {
-						@SuppressWarnings("unchecked")
-						Set<String> gc = (Set<String>) tableInfo.get(t).get("groupByColumns");
-						if (gc != null)
-							gc.add(c);
-					}
-					if (inOrderBy) {
-						@SuppressWarnings("unchecked")
-						Set<String> oc = (Set<String>) tableInfo.get(t).get("orderByColumns");
-						if (oc != null)
-							oc.add(c);
-					}
+			ColumnUsage.Builder columns = details.getColumns();
+			columns.add(c, ColumnUsage.Kind.ALL);
+			if (context.inStatementWhere()) {
+				columns.add(c, ColumnUsage.Kind.WHERE);
+				if (context.inFunction()) {
+					columns.add(c, ColumnUsage.Kind.FUNCTION_IN_WHERE);
 				}
 			}
+			if (context.inGroupBy()) {
+				columns.add(c, ColumnUsage.Kind.GROUP_BY);
+			}
+			if (context.inOrderBy()) {
+				columns.add(c, ColumnUsage.Kind.ORDER_BY);
+			}
 		}
 
 		@Override
-		public void preVisit(TResultColumn r) {
+		public void onResultColumn(TResultColumn r, AnalysisWalker.WalkContext context) {
 			TExpression e = r.getExpr();
 			if (e != null && e.getExpressionType() == EExpressionType.simple_object_name_t) {
 				TObjectName o = e.getObjectOperand();
 				if (o != null && "*".equals(o.getPartString())) {
 					String q = o.getTableString();
 					if (q != null && !q.isEmpty()) {
-						String t = resolveTableName(q, "*");
-						if (t != null) {
-							@SuppressWarnings("unchecked")
-							Set<String> c = (Set<String>) tableInfo.get(t).get("allColumnsUsed");
-							if (c != null)
-								c.add("* (" + q + ".*)");
+						TableUsage.Builder details = tableInfo.get(resolveTableName(q));
+						if (details != null) {
+							details.getColumns().add("* (" + q + ".*)", ColumnUsage.Kind.ALL);
 						}
 					} else {
-						for (Map<String, Object> d : tableInfo.values()) {
-							@SuppressWarnings("unchecked")
-							Set<String> c = (Set<String>) d.get("allColumnsUsed");
-							if (c != null)
-								c.add("*");
+						for (TableUsage.Builder d : tableInfo.values()) {
+							d.getColumns().add("*", ColumnUsage.Kind.ALL);
 						}
 					}
 				}
 			}
 		}
 
-		private String resolveTableName(String q, String c) {
+		private String resolveTableName(String q) {
 			String t = null;
 			if (q != null && !q.isEmpty()) {
 				t = aliasToTableMap.get(q.toLowerCase());
@@ -761,42 +845,21 @@ public class QueryAnalyzerUtil {
 		}
 
 		private void initializeTableInfoIfNeeded(String t) {
-			tableInfo.computeIfAbsent(t, k -> {
-				Map<String, Object> d = new HashMap<>();
-				d.put("whereColumns", new HashSet<>());
-				d.put("columnsWithFunctionsInWhere", new HashSet<>());
-				d.put("allColumnsUsed", new HashSet<>());
-				d.put("groupByColumns", new HashSet<>());
-				d.put("orderByColumns", new HashSet<>());
-				return d;
-			});
+			tableInfo.computeIfAbsent(t, k -> new TableUsage.Builder(k, null, null));
 		}
 	}
 
-	/** Visitor to count various query elements. (Corrected) */
-	private static class GeneralStatsVisitor extends TParseTreeVisitor {
+	/** Counts various query elements. */
+	private static class StatsListener implements AnalysisWalker.Listener {
 		int subqueryCount = 0;
 		int functionCallCount = 0;
 		int windowFunctionCount = 0;
 		int aggregateFunctionCount = 0;
 		int selectStarCount = 0;
 		int whereConditionCount = 0;
-		private boolean isInWhereClause = false;
 
-		// Simplified subquery count: Count any nested SELECT encountered during
-		// traversal
 		@Override
-		public void preVisit(TSelectSqlStatement select) {
-			// Basic check: if this select node has a parent which is also a node (not the
-			// root),
-			// it's likely nested somehow. This isn't perfect but better than nothing.
-			// Gudu's parent tracking isn't exposed via a simple getParent().
-			// We rely on the fact that visitors traverse depth-first.
-			// Let's refine the count logic in gatherQueryStats instead.
-		}
-
-		@Override
-		public void preVisit(TFunctionCall func) {
+		public void onFunctionCall(TFunctionCall func, AnalysisWalker.WalkContext context) {
 			functionCallCount++;
 			EFunctionType funcTypeInt = func.getFunctionType();
 			if (funcTypeInt == EFunctionType.array_agg_t) { // Use integer constant
@@ -810,7 +873,7 @@ public class QueryAnalyzerUtil {
 		}
 
 		@Override
-		public void preVisit(TResultColumn r) {
+		public void onResultColumn(TResultColumn r, AnalysisWalker.WalkContext context) {
 			TExpression e = r.getExpr();
 			if (e != null && e.getExpressionType() == EExpressionType.simple_object_name_t) {
 				TObjectName o = e.getObjectOperand();
@@ -821,20 +884,9 @@ public class QueryAnalyzerUtil {
 		}
 
 		@Override
-		public void preVisit(TWhereClause w) {
-			isInWhereClause = true;
-			super.preVisit(w);
-		}
-
-		@Override
-		public void postVisit(TWhereClause w) {
-			isInWhereClause = false;
-		}
-
-		@Override
-		public void preVisit(TExpression e) {
+		public void onExpression(TExpression e, AnalysisWalker.WalkContext context) {
 			// Count conditions within WHERE
-			if (isInWhereClause) {
+			if (context.inWhere()) {
 				EExpressionType t = e.getExpressionType();
 				if (t == EExpressionType.logical_and_t || t == EExpressionType.logical_or_t
 						|| t == EExpressionType.simple_comparison_t || t == EExpressionType.parenthesis_t
@@ -851,13 +903,13 @@ public class QueryAnalyzerUtil {
 		}
 	}
 
-	/** Visitor to detect LIKE '%...'. (Unchanged) */
-	private static class LeadingWildcardVisitor extends TParseTreeVisitor {
+	/** Detects LIKE '%...' in the statement's own WHERE, as the check always has. */
+	private static class LeadingWildcardListener implements AnalysisWalker.Listener {
 		Set<String> columnsWithLeadingWildcard = new HashSet<>();
 
 		@Override
-		public void preVisit(TExpression e) {
-			if (e.getExpressionType() == EExpressionType.pattern_matching_t) {
+		public void onExpression(TExpression e, AnalysisWalker.WalkContext context) {
+			if (context.inStatementWhere() && e.getExpressionType() == EExpressionType.pattern_matching_t) {
 				TExpression l = e.getLeftOperand();
 				TExpression r = e.getRightOperand();
 				if (l != null && l.getExpressionType() == EExpressionType.simple_object_name_t
@@ -880,47 +932,72 @@ public class QueryAnalyzerUtil {
 	}
 
 	/**
-	 * Visitor to detect OR conditions involving different base columns. (Unchanged)
+	 * Detects OR conditions in the statement's own WHERE whose two sides involve
+	 * different base columns. Instead of re-walking each operand, every open OR keeps one
+	 * column set per side, filled as the shared walk passes through it, and is
+	 * evaluated when the walk leaves the OR expression.
 	 */
-	private static class OrVisitor extends TParseTreeVisitor {
+	private static class OrConditionListener implements AnalysisWalker.Listener {
 		boolean orOnDifferentColumns = false;
+		private final Deque<OrFrame> openOrs = new ArrayDeque<>();
 
-		@Override
-		public void preVisit(TExpression e) {
-			if (e.getExpressionType() == EExpressionType.logical_or_t) {
-				Set<String> l = collectBaseColumns(e.getLeftOperand());
-				Set<String> r = collectBaseColumns(e.getRightOperand());
-				if (!l.isEmpty() && !r.isEmpty()) {
-					boolean lu = !r.containsAll(l);
-					boolean ru = !l.containsAll(r);
-					if (lu || ru) {
-						orOnDifferentColumns = true;
-					}
-				}
+		private static final class OrFrame {
+			final TExpression or;
+			final Set<String> left = new HashSet<>();
+			final Set<String> right = new HashSet<>();
+			Set<String> current;
+
+			OrFrame(TExpression or) {
+				this.or = or;
 			}
 		}
 
-		private Set<String> collectBaseColumns(TExpression e) {
-			Set<String> c = new HashSet<>();
-			if (e == null)
-				return c;
-			e.accept(new TParseTreeVisitor() {
-				@Override
-				public void preVisit(TObjectName o) {
-					if (o.getDbObjectType() == EDbObjectType.column) {
-						c.add(o.getColumnNameOnly().toLowerCase());
-					}
+		@Override
+		public void onExpression(TExpression e, AnalysisWalker.WalkContext context) {
+			if (!context.inStatementWhere()) {
+				return;
+			}
+			OrFrame top = openOrs.peek();
+			if (top != null) {
+				if (e == top.or.getLeftOperand()) {
+					top.current = top.left;
+				} else if (e == top.or.getRightOperand()) {
+					top.current = top.right;
 				}
+			}
+			if (e.getExpressionType() == EExpressionType.logical_or_t) {
+				openOrs.push(new OrFrame(e));
+			}
+		}
 
-				@Override
-				public void preVisit(TFunctionCall f) {
+		@Override
+		public void onObjectName(TObjectName o, AnalysisWalker.WalkContext context) {
+			if (openOrs.isEmpty() || o.getDbObjectType() != EDbObjectType.column) {
+				return;
+			}
+			String column = o.getColumnNameOnly().toLowerCase();
+			// A column inside a nested OR also belongs to the enclosing ORs' side
+			for (OrFrame frame : openOrs) {
+				if (frame.current != null) {
+					frame.current.add(column);
 				}
+			}
+		}
 
-				@Override
-				public void preVisit(TSelectSqlStatement s) {
+		@Override
+		public void afterExpression(TExpression e, AnalysisWalker.WalkContext context) {
+			OrFrame top = openOrs.peek();
+			if (top == null || top.or != e) {
+				return;
+			}
+			openOrs.pop();
+			if (!top.left.isEmpty() && !top.right.isEmpty()) {
+				boolean lu = !top.right.containsAll(top.left);
+				boolean ru = !top.left.containsAll(top.right);
+				if (lu || ru) {
+					orOnDifferentColumns = true;
 				}
-			});
-			return c;
+			}
 		}
 	}
-}
\ No newline at end of file
+}
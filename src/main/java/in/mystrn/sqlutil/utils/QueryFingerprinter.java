@@ -0,0 +1,185 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+import gudusoft.gsqlparser.ETokenType;
+import gudusoft.gsqlparser.TGSqlParser;
+import gudusoft.gsqlparser.TSourceToken;
+import gudusoft.gsqlparser.TSourceTokenList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import in.mystrn.sqlutil.models.QueryFingerprint;
+
+/**
+ * Computes {@link QueryFingerprint}s from Gudu's token stream.
+ *
+ * Comments and whitespace are dropped, keywords and unquoted identifiers are
+ * lower-cased, string and numeric literals (numbers with their sign) become
+ * {@code ?}, lists of placeholders such as IN lists collapse to {@code (?)}
+ * and repeated VALUES rows collapse to one. The digest is the 64-bit FNV-1a hash of the result.
+ *
+ * @author hive
+ */
+public final class QueryFingerprinter {
+
+	private static final String PLACEHOLDER = "?";
+
+	private QueryFingerprinter() {
+		// Utility class
+	}
+
+	/**
+	 * Tokenizes and fingerprints a single statement. Only the lexer runs; the
+	 * statement does not have to be valid SQL.
+	 */
+	public static QueryFingerprint fingerprint(EDbVendor vendor, String sql) {
+		TGSqlParser parser = ParserPool.borrow(vendor);
+		try {
+			parser.sqltext = sql;
+			parser.tokenizeSqltext();
+			TSourceTokenList tokens = parser.sourcetokenlist;
+			return fingerprint(vendor, tokens, 0, tokens == null ? -1 : tokens.size() - 1);
+		} finally {
+			ParserPool.release(vendor, parser);
+		}
+	}
+
+	/**
+	 * Fingerprints the tokens {@code from..to} (inclusive) of an already
+	 * tokenized script, e.g. one statement of a {@link ParsedScript}.
+	 */
+	static QueryFingerprint fingerprint(EDbVendor vendor, TSourceTokenList tokens, int from, int to) {
+		List<String> parts = new ArrayList<>();
+		// Index of a "-" or "+" that cannot be binary, as in "= -5" or "(-1"
+		int unarySign = -1;
+		boolean afterOperand = false;
+		for (int i = from; tokens != null && i <= to && i < tokens.size(); i++) {
+			TSourceToken token = tokens.get(i);
+			String part = normalizeToken(vendor, token);
+			if (part == null) {
+				continue;
+			}
+			if (token.tokentype == ETokenType.ttnumber && unarySign == parts.size() - 1) {
+				// A signed number is one literal: "id = -5" has the shape of "id = 5"
+				parts.remove(unarySign);
+			}
+			unarySign = !afterOperand && ("-".equals(part) || "+".equals(part)) ? parts.size() : -1;
+			afterOperand = isOperand(token, part);
+			parts.add(part);
+		}
+		// A trailing statement delimiter is not part of the shape
+		while (!parts.isEmpty() && ";".equals(parts.get(parts.size() - 1))) {
+			parts.remove(parts.size() - 1);
+		}
+		String text = join(collapseLists(parts));
+		return new QueryFingerprint(text, SqlTextNormalizer.hash64(text));
+	}
+
+	/** @return The canonical form of a token, or null if it is not part of the shape. */
+	private static String normalizeToken(EDbVendor vendor, TSourceToken token) {
+		ETokenType type = token.tokentype;
+		String text = token.astext;
+		if (type == ETokenType.ttwhitespace || type == ETokenType.ttreturn || type == ETokenType.ttsimplecomment
+				|| (type == ETokenType.ttbracketedcomment && !isExecutableComment(text))) {
+			return null;
+		}
+		if (type == ETokenType.ttsqstring || type == ETokenType.ttnumber) {
+			return PLACEHOLDER;
+		}
+		if (type == ETokenType.ttdqstring) {
+			// MySQL reads "..." as a string literal; elsewhere it is a quoted identifier
+			return vendor == EDbVendor.dbvmysql ? PLACEHOLDER : text;
+		}
+		if (type == ETokenType.ttkeyword || type == ETokenType.ttidentifier) {
+			return text.toLowerCase(Locale.ROOT);
+		}
+		return text;
+	}
+
+	/** @return true if a "-" or "+" after this token would be a binary operator. */
+	private static boolean isOperand(TSourceToken token, String part) {
+		ETokenType type = token.tokentype;
+		return type == ETokenType.ttidentifier || type == ETokenType.ttnumber || type == ETokenType.ttsqstring
+				|| type == ETokenType.ttdqstring || ")".equals(part) || part.startsWith("`") || part.startsWith("[");
+	}
+
+	private static boolean isExecutableComment(String text) {
+		return text != null && (text.startsWith("/*!") || text.startsWith("/*+"));
+	}
+
+	/**
+	 * Collapses "( ? , ? , ? )" into "( ? )", then repeated "( ? ) , ( ? )"
+	 * into a single "( ? )".
+	 */
+	private static List<String> collapseLists(List<String> parts) {
+		List<String> out = new ArrayList<>(parts.size());
+		for (int i = 0; i < parts.size(); i++) {
+			int end = placeholderListEnd(parts, i);
+			if (end > 0) {
+				out.add("(");
+				out.add(PLACEHOLDER);
+				out.add(")");
+				i = end;
+			} else {
+				out.add(parts.get(i));
+			}
+		}
+		List<String> rows = new ArrayList<>(out.size());
+		for (int i = 0; i < out.size(); i++) {
+			rows.add(out.get(i));
+			if (endsWithPlaceholderGroup(rows)) {
+				while (i + 4 < out.size() && ",".equals(out.get(i + 1)) && "(".equals(out.get(i + 2))
+						&& PLACEHOLDER.equals(out.get(i + 3)) && ")".equals(out.get(i + 4))) {
+					i += 4;
+				}
+			}
+		}
+		return rows;
+	}
+
+	/** @return Index of the ")" closing a list of placeholders that opens at {@code start}, or -1. */
+	private static int placeholderListEnd(List<String> parts, int start) {
+		if (!"(".equals(parts.get(start))) {
+			return -1;
+		}
+		int i = start + 1;
+		boolean expectPlaceholder = true;
+		while (i < parts.size()) {
+			String part = parts.get(i);
+			if (expectPlaceholder && PLACEHOLDER.equals(part)) {
+				expectPlaceholder = false;
+			} else if (!expectPlaceholder && ",".equals(part)) {
+				expectPlaceholder = true;
+			} else if (!expectPlaceholder && ")".equals(part)) {
+				return i;
+			} else {
+				return -1;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+	private static boolean endsWithPlaceholderGroup(List<String> parts) {
+		int n = parts.size();
+		return n >= 3 && ")".equals(parts.get(n - 1)) && PLACEHOLDER.equals(parts.get(n - 2))
+				&& "(".equals(parts.get(n - 3));
+	}
+
+	/** Joins with single spaces, except around "." and inside parentheses and before ",". */
+	private static String join(List<String> parts) {
+		StringBuilder sb = new StringBuilder();
+		String previous = null;
+		for (String part : parts) {
+			if (previous != null && !"(".equals(previous) && !".".equals(previous) && !")".equals(part)
+					&& !",".equals(part) && !".".equals(part)) {
+				sb.append(' ');
+			}
+			sb.append(part);
+			previous = part;
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,264 @@
+package in.mystrn.sqlutil.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+
+import in.mystrn.sqlutil.models.ColumnUsage;
+import in.mystrn.sqlutil.models.PerformanceHint;
+import in.mystrn.sqlutil.models.SourcePosition;
+import in.mystrn.sqlutil.models.SqlResult;
+import in.mystrn.sqlutil.models.StatementResult;
+import in.mystrn.sqlutil.models.TableUsage;
+
+/**
+ * Writes analysis results as JSON lines: one object per statement, or a single
+ * object with {@code "valid": false} for a script that did not parse.
+ *
+ * All lines of one script are built in memory and written with a single call,
+ * so concurrent writers sharing a synchronized {@link Writer} never interleave
+ * within a script.
+ *
+ * @author hive
+ */
+public final class ResultJsonWriter {
+
+	private final Writer out;
+
+	/**
+	 * @param out The destination; writes are synchronized on this writer.
+	 */
+	public ResultJsonWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes the lines of one analyzed script.
+	 *
+	 * @param source Where the script came from (e.g. its file path).
+	 * @param result The analysis result.
+	 */
+	public void write(String source, SqlResult result) throws IOException {
+		write(source, result, -1);
+	}
+
+	/**
+	 * Writes the lines of a script that is one part of a larger source, such as
+	 * a single statement cut out of a dump file.
+	 *
+	 * @param firstIndex Index of the script's first statement within the source,
+	 *                   or -1 if the script is the whole source.
+	 */
+	public void write(String source, SqlResult result, int firstIndex) throws IOException {
+		write(source, result, firstIndex, Map.of());
+	}
+
+	/**
+	 * Same as {@link #write(String, SqlResult, int)}, adding the given fields
+	 * (e.g. aggregated log statistics) to every line.
+	 */
+	public void write(String source, SqlResult result, int firstIndex, Map<String, ?> extra) throws IOException {
+		if (!result.isValid()) {
+			StringBuilder sb = new StringBuilder(256);
+			appendHeader(sb, source, firstIndex, extra);
+			sb.append(",\"valid\":false,\"error\":");
+			appendString(sb, result.getError() == null ? null : result.getError().trim());
+			sb.append("}\n");
+			writeRaw(sb);
+			return;
+		}
+		StringBuilder sb = new StringBuilder(512);
+		for (StatementResult statement : result.getStatements()) {
+			appendHeader(sb, source, -1, extra);
+			appendStatement(sb, Math.max(firstIndex, 0), statement);
+			sb.append('\n');
+		}
+		writeRaw(sb);
+	}
+
+	/** Writes a line reporting a script that could not be read or analyzed. */
+	public void writeFailure(String source, String message) throws IOException {
+		writeFailure(source, -1, message);
+	}
+
+	/**
+	 * Writes a line reporting a failed statement of a larger source.
+	 *
+	 * @param index Index of the statement within the source, or -1 for the whole
+	 *              source.
+	 */
+	public void writeFailure(String source, int index, String message) throws IOException {
+		StringBuilder sb = new StringBuilder(128);
+		appendHeader(sb, source, index, Map.of());
+		sb.append(",\"valid\":false,\"error\":");
+		appendString(sb, message);
+		sb.append("}\n");
+		writeRaw(sb);
+	}
+
+	private void writeRaw(CharSequence text) throws IOException {
+		synchronized (out) {
+			out.append(text);
+		}
+	}
+
+	/** Opens a line with the source, the statement index if known and the extra fields. */
+	private static void appendHeader(StringBuilder sb, String source, int index, Map<String, ?> extra) {
+		sb.append("{\"source\":");
+		appendString(sb, source);
+		if (index >= 0) {
+			sb.append(",\"statement\":").append(index);
+		}
+		for (Map.Entry<String, ?> field : extra.entrySet()) {
+			sb.append(',');
+			appendString(sb, field.getKey());
+			sb.append(':');
+			appendValue(sb, field.getValue());
+		}
+	}
+
+	private static void appendStatement(StringBuilder sb, int firstIndex, StatementResult statement) {
+		sb.append(",\"valid\":true,\"statement\":").append(firstIndex + statement.getIndex());
+		sb.append(",\"type\":");
+		appendString(sb, statement.getStatementType());
+		sb.append(",\"sql\":");
+		appendString(sb, statement.getSql());
+		if (statement.getFingerprint() != null) {
+			sb.append(",\"fingerprint\":");
+			appendString(sb, statement.getFingerprint().getDigestHex());
+		}
+
+		sb.append(",\"tables\":[");
+		boolean first = true;
+		for (TableUsage table : statement.getTables().values()) {
+			if (!first) {
+				sb.append(',');
+			}
+			first = false;
+			appendTable(sb, table);
+		}
+		sb.append(']');
+
+		sb.append(",\"stats\":");
+		appendValue(sb, statement.getQueryStats().asMap());
+
+		sb.append(",\"hints\":[");
+		first = true;
+		for (PerformanceHint hint : statement.getHints()) {
+			if (!first) {
+				sb.append(',');
+			}
+			first = false;
+			sb.append("{\"severity\":");
+			appendString(sb, hint.getSeverity().name());
+			sb.append(",\"title\":");
+			appendString(sb, hint.getTitle());
+			sb.append(",\"explanation\":");
+			appendString(sb, hint.getExplanation());
+			sb.append(",\"suggestion\":");
+			appendString(sb, hint.getSuggestion());
+			sb.append('}');
+		}
+		sb.append("]}");
+	}
+
+	private static void appendTable(StringBuilder sb, TableUsage table) {
+		sb.append("{\"name\":");
+		appendString(sb, table.getName());
+		sb.append(",\"alias\":");
+		appendString(sb, table.getAlias());
+		SourcePosition position = table.getPosition();
+		if (position != null) {
+			sb.append(",\"line\":").append(position.getLine());
+			sb.append(",\"column\":").append(position.getColumn());
+		}
+		sb.append(",\"columns\":{");
+		boolean first = true;
+		for (ColumnUsage.Kind kind : ColumnUsage.Kind.values()) {
+			if (table.getColumns().isEmpty(kind)) {
+				continue;
+			}
+			if (!first) {
+				sb.append(',');
+			}
+			first = false;
+			appendString(sb, kind.name().toLowerCase(Locale.ROOT));
+			sb.append(':');
+			appendValue(sb, table.getColumns().get(kind));
+		}
+		sb.append("}}");
+	}
+
+	/** Appends maps, collections, numbers, booleans and strings; anything else as its string form. */
+	private static void appendValue(StringBuilder sb, Object value) {
+		if (value == null) {
+			sb.append("null");
+		} else if (value instanceof Number || value instanceof Boolean) {
+			sb.append(value);
+		} else if (value instanceof Map) {
+			sb.append('{');
+			boolean first = true;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (!first) {
+					sb.append(',');
+				}
+				first = false;
+				appendString(sb, String.valueOf(entry.getKey()));
+				sb.append(':');
+				appendValue(sb, entry.getValue());
+			}
+			sb.append('}');
+		} else if (value instanceof Collection) {
+			sb.append('[');
+			boolean first = true;
+			for (Object item : (Collection<?>) value) {
+				if (!first) {
+					sb.append(',');
+				}
+				first = false;
+				appendValue(sb, item);
+			}
+			sb.append(']');
+		} else {
+			appendString(sb, value.toString());
+		}
+	}
+
+	/** Appends a JSON string literal, escaping quotes, backslashes and control characters. */
+	static void appendString(StringBuilder sb, String value) {
+		if (value == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		sb.append('"');
+	}
+}
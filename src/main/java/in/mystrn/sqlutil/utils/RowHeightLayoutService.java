@@ -0,0 +1,288 @@
+package in.mystrn.sqlutil.utils;
+
+import java.awt.FontMetrics;
+import java.awt.Insets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.TableColumnModelEvent;
+import javax.swing.event.TableColumnModelListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
+
+/**
+ * Sizes the rows of a table to the wrapped height of its
+ * {@link WrappingTableCellRenderer} columns, without laying out text areas on
+ * the EDT.
+ *
+ * On every change the cell texts of the affected rows are copied on the EDT;
+ * their wrapped line counts are measured with the table's font metrics on a
+ * background thread, and the resulting row heights are applied in one EDT
+ * task. Heights are cached per column for the width they were measured at:
+ * resizing a column re-measures only that column, and a model change only the
+ * rows it reports. Results that were overtaken by a newer change are dropped.
+ * Full re-measures are coalesced: a model swap fires a structure event, a
+ * removal and an addition per column, and all of them lead to one pass.
+ *
+ * Meant for tables without a row sorter (view and model rows coincide).
+ *
+ * @author hive
+ */
+public final class RowHeightLayoutService {
+
+	private static final ExecutorService LAYOUT_POOL = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "sqlutil-row-heights");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final JTable table;
+	private final int minRowHeight;
+	private final TableModelListener modelListener = this::tableChanged;
+	private final TableColumnModelListener columnListener = new ColumnListener();
+
+	// EDT only
+	private final Map<Integer, ColumnHeights> heights = new HashMap<>();
+	private int generation;
+	private boolean relayoutPending;
+
+	private RowHeightLayoutService(JTable table) {
+		this.table = table;
+		this.minRowHeight = table.getRowHeight();
+	}
+
+	/**
+	 * Starts sizing the rows of the table; call on the EDT after the wrapping
+	 * renderers and the minimum row height are set.
+	 */
+	public static RowHeightLayoutService install(JTable table) {
+		RowHeightLayoutService service = new RowHeightLayoutService(table);
+		table.getModel().addTableModelListener(service.modelListener);
+		table.addPropertyChangeListener("model", e -> {
+			if (e.getOldValue() != null) {
+				((TableModel) e.getOldValue()).removeTableModelListener(service.modelListener);
+			}
+			table.getModel().addTableModelListener(service.modelListener);
+			service.scheduleRelayout();
+		});
+		table.addPropertyChangeListener("columnModel", e -> {
+			if (e.getOldValue() != null) {
+				((TableColumnModel) e.getOldValue()).removeColumnModelListener(service.columnListener);
+			}
+			table.getColumnModel().addColumnModelListener(service.columnListener);
+			service.scheduleRelayout();
+		});
+		table.getColumnModel().addColumnModelListener(service.columnListener);
+		service.relayoutAll();
+		return service;
+	}
+
+	/** Forgets every cached height and measures the whole table again. */
+	public void relayoutAll() {
+		relayoutPending = false;
+		generation++;
+		heights.clear();
+		for (int c = 0; c < table.getColumnCount(); c++) {
+			measure(c, 0, table.getRowCount() - 1);
+		}
+	}
+
+	/**
+	 * Measures everything once JTable has caught up with the current change;
+	 * further requests until then share that pass.
+	 */
+	private void scheduleRelayout() {
+		if (!relayoutPending) {
+			relayoutPending = true;
+			SwingUtilities.invokeLater(this::relayoutAll);
+		}
+	}
+
+	private void tableChanged(TableModelEvent e) {
+		boolean appended = e.getType() != TableModelEvent.INSERT || e.getLastRow() == table.getModel().getRowCount() - 1;
+		if (e.getFirstRow() == TableModelEvent.HEADER_ROW || e.getLastRow() == Integer.MAX_VALUE
+				|| e.getType() == TableModelEvent.DELETE || !appended) {
+			// Rows were reset or shifted
+			scheduleRelayout();
+			return;
+		}
+		int first = e.getFirstRow();
+		int last = e.getLastRow();
+		SwingUtilities.invokeLater(() -> {
+			if (relayoutPending) {
+				return;
+			}
+			for (int c = 0; c < table.getColumnCount(); c++) {
+				measure(c, first, Math.min(last, table.getRowCount() - 1));
+			}
+		});
+	}
+
+	/** Copies the texts of a wrapped column's rows and measures them in the background. */
+	private void measure(int viewColumn, int firstRow, int lastRow) {
+		TableColumn column = table.getColumnModel().getColumn(viewColumn);
+		TableCellRenderer renderer = column.getCellRenderer() != null ? column.getCellRenderer()
+				: table.getDefaultRenderer(table.getColumnClass(viewColumn));
+		int modelColumn = column.getModelIndex();
+		if (!(renderer instanceof WrappingTableCellRenderer) || lastRow < firstRow) {
+			return;
+		}
+		Insets insets = ((WrappingTableCellRenderer) renderer).getInsets();
+		int width = column.getWidth();
+		FontMetrics metrics = table.getFontMetrics(table.getFont());
+		TableModel model = table.getModel();
+		String[] texts = new String[lastRow - firstRow + 1];
+		for (int r = firstRow; r <= lastRow; r++) {
+			Object value = model.getValueAt(r, modelColumn);
+			texts[r - firstRow] = value == null ? "" : value.toString();
+		}
+		int expectedGeneration = generation;
+		LAYOUT_POOL.execute(() -> {
+			int textWidth = Math.max(1, width - insets.left - insets.right);
+			int[] measured = new int[texts.length];
+			for (int i = 0; i < texts.length; i++) {
+				measured[i] = countLines(texts[i], metrics, textWidth) * metrics.getHeight() + insets.top + insets.bottom;
+			}
+			SwingUtilities.invokeLater(() -> apply(expectedGeneration, modelColumn, width, firstRow, measured));
+		});
+	}
+
+	/** EDT: stores measured heights and sets the heights of the rows they change, in one pass. */
+	private void apply(int expectedGeneration, int modelColumn, int width, int firstRow, int[] measured) {
+		if (expectedGeneration != generation) {
+			return;
+		}
+		int viewColumn = table.convertColumnIndexToView(modelColumn);
+		if (viewColumn < 0) {
+			return;
+		}
+		if (table.getColumnModel().getColumn(viewColumn).getWidth() != width) {
+			// Resized while measuring
+			heights.remove(modelColumn);
+			measure(viewColumn, 0, table.getRowCount() - 1);
+			return;
+		}
+		ColumnHeights column = heights.get(modelColumn);
+		if (column == null || column.width != width) {
+			column = new ColumnHeights(width);
+			heights.put(modelColumn, column);
+		}
+		column.set(firstRow, measured);
+
+		int rowCount = table.getRowCount();
+		int lastRow = Math.min(firstRow + measured.length, rowCount) - 1;
+		for (int r = firstRow; r <= lastRow; r++) {
+			int height = minRowHeight;
+			for (ColumnHeights other : heights.values()) {
+				height = Math.max(height, other.get(r));
+			}
+			if (table.getRowHeight(r) != height) {
+				table.setRowHeight(r, height);
+			}
+		}
+	}
+
+	/**
+	 * Counts the lines a text takes when word-wrapped at the width, the way a
+	 * JTextArea with word wrapping breaks it: at spaces, and inside words that
+	 * are wider than a line.
+	 */
+	static int countLines(String text, FontMetrics metrics, int width) {
+		int lines = 0;
+		int spaceWidth = metrics.charWidth(' ');
+		for (String paragraph : text.split("\n", -1)) {
+			lines++;
+			int lineWidth = 0;
+			for (String word : paragraph.split(" ", -1)) {
+				int wordWidth = metrics.stringWidth(word);
+				int needed = lineWidth == 0 ? wordWidth : lineWidth + spaceWidth + wordWidth;
+				if (needed <= width) {
+					lineWidth = needed;
+					continue;
+				}
+				if (lineWidth > 0) {
+					lines++;
+				}
+				// A word wider than a line is broken between characters
+				lineWidth = 0;
+				for (int i = 0; i < word.length(); i++) {
+					int charWidth = metrics.charWidth(word.charAt(i));
+					if (lineWidth + charWidth > width && lineWidth > 0) {
+						lines++;
+						lineWidth = 0;
+					}
+					lineWidth += charWidth;
+				}
+			}
+		}
+		return Math.max(1, lines);
+	}
+
+	/** Measured heights of one column's rows at one width; 0 for rows not measured yet. */
+	private static final class ColumnHeights {
+		private final int width;
+		private int[] rows = new int[0];
+
+		ColumnHeights(int width) {
+			this.width = width;
+		}
+
+		void set(int firstRow, int[] measured) {
+			if (firstRow + measured.length > rows.length) {
+				rows = Arrays.copyOf(rows, firstRow + measured.length);
+			}
+			System.arraycopy(measured, 0, rows, firstRow, measured.length);
+		}
+
+		int get(int row) {
+			return row < rows.length ? rows[row] : 0;
+		}
+	}
+
+	/** Re-measures a column when its width changes, everything when columns are added, removed or moved. */
+	private final class ColumnListener implements TableColumnModelListener {
+		@Override
+		public void columnMarginChanged(ChangeEvent e) {
+			if (relayoutPending) {
+				return;
+			}
+			for (int c = 0; c < table.getColumnCount(); c++) {
+				TableColumn column = table.getColumnModel().getColumn(c);
+				ColumnHeights cached = heights.get(column.getModelIndex());
+				if (cached != null && cached.width != column.getWidth()) {
+					heights.remove(column.getModelIndex());
+					measure(c, 0, table.getRowCount() - 1);
+				}
+			}
+		}
+
+		@Override
+		public void columnAdded(TableColumnModelEvent e) {
+			scheduleRelayout();
+		}
+
+		@Override
+		public void columnRemoved(TableColumnModelEvent e) {
+			scheduleRelayout();
+		}
+
+		@Override
+		public void columnMoved(TableColumnModelEvent e) {
+		}
+
+		@Override
+		public void columnSelectionChanged(ListSelectionEvent e) {
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import in.mystrn.sqlutil.models.QueryFingerprint;
+
+/**
+ * Reads a MySQL slow query log and aggregates its entries by query
+ * fingerprint (see {@link QueryFingerprinter}), so each query shape can be
+ * analyzed once instead of once per occurrence.
+ *
+ * The log is memory-mapped window by window and read line by line; only the
+ * entry being read and one aggregate per distinct fingerprint are kept in
+ * memory. For every fingerprint the slowest occurrence is kept as the sample
+ * to analyze.
+ *
+ * @author hive
+ */
+public final class SlowQueryLog {
+
+	private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private final Map<QueryFingerprint, Entry> entries = new HashMap<>();
+	private long totalQueries;
+	private long skippedEntries;
+
+	// --- State of the entry being read ---
+	private final StringBuilder sql = new StringBuilder();
+	private boolean inEntry;
+	private double queryTime;
+	private double lockTime;
+	private long rowsSent;
+	private long rowsExamined;
+
+	private SlowQueryLog() {
+	}
+
+	/**
+	 * Reads and aggregates a slow query log.
+	 *
+	 * @param file The slow log file.
+	 * @return The per-fingerprint aggregates.
+	 */
+	public static SlowQueryLog read(Path file) throws IOException {
+		SlowQueryLog log = new SlowQueryLog();
+		forEachLine(file, log::acceptLine);
+		log.finishEntry();
+		return log;
+	}
+
+	/** Calls the consumer for every line of the file, without the line terminator. */
+	static void forEachLine(Path file, Consumer<String> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			byte[] line = new byte[1024];
+			int length = 0;
+			long size = channel.size();
+			for (long position = 0; position < size; position += WINDOW_SIZE) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(WINDOW_SIZE, size - position));
+				while (window.hasRemaining()) {
+					byte b = window.get();
+					if (b == '\n') {
+						consumer.accept(decodeLine(line, length));
+						length = 0;
+						continue;
+					}
+					if (length == line.length) {
+						line = Arrays.copyOf(line, line.length * 2);
+					}
+					line[length++] = b;
+				}
+			}
+			if (length > 0) {
+				consumer.accept(decodeLine(line, length));
+			}
+		}
+	}
+
+	private static String decodeLine(byte[] line, int length) {
+		if (length > 0 && line[length - 1] == '\r') {
+			length--;
+		}
+		return new String(line, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private void acceptLine(String line) {
+		if (line.startsWith("# Time:") || line.startsWith("# User@Host:")) {
+			// A new entry starts with its Time line, or User@Host when Time is omitted
+			if (sql.length() > 0 || line.startsWith("# Time:")) {
+				finishEntry();
+			}
+			inEntry = true;
+			return;
+		}
+		if (line.startsWith("# Query_time:")) {
+			parseQueryTimeLine(line);
+			inEntry = true;
+			return;
+		}
+		if (line.startsWith("#") || isServerBanner(line)) {
+			return;
+		}
+		if (!inEntry) {
+			return;
+		}
+		String trimmed = line.trim();
+		if (sql.length() == 0 && (isTimestampLine(trimmed) || isUseLine(trimmed) || trimmed.isEmpty())) {
+			return;
+		}
+		if (sql.length() > 0) {
+			sql.append('\n');
+		}
+		sql.append(line);
+	}
+
+	/** Parses "# Query_time: 1.5  Lock_time: 0.0 Rows_sent: 1  Rows_examined: 100". */
+	private void parseQueryTimeLine(String line) {
+		String[] parts = line.substring(1).trim().split("\\s+");
+		for (int i = 0; i + 1 < parts.length; i += 2) {
+			String key = parts[i];
+			String value = parts[i + 1];
+			try {
+				switch (key) {
+				case "Query_time:":
+					queryTime = Double.parseDouble(value);
+					break;
+				case "Lock_time:":
+					lockTime = Double.parseDouble(value);
+					break;
+				case "Rows_sent:":
+					rowsSent = Long.parseLong(value);
+					break;
+				case "Rows_examined:":
+					rowsExamined = Long.parseLong(value);
+					break;
+				default:
+					break;
+				}
+			} catch (NumberFormatException e) {
+				// Keep the defaults for a malformed header value
+			}
+		}
+	}
+
+	private static boolean isTimestampLine(String line) {
+		return line.regionMatches(true, 0, "SET timestamp=", 0, 14);
+	}
+
+	private static boolean isUseLine(String line) {
+		return line.regionMatches(true, 0, "use ", 0, 4) && line.endsWith(";") && line.indexOf(' ', 4) < 0;
+	}
+
+	/** Lines mysqld writes at the top of the log on every (re)start. */
+	private static boolean isServerBanner(String line) {
+		return line.contains(", Version: ") || line.startsWith("Tcp port: ")
+				|| line.startsWith("Time                 Id Command");
+	}
+
+	private void finishEntry() {
+		String statement = trimStatement(sql);
+		if (!statement.isEmpty()) {
+			totalQueries++;
+			QueryFingerprint fingerprint = QueryFingerprinter.fingerprint(EDbVendor.dbvmysql, statement);
+			Entry entry = entries.computeIfAbsent(fingerprint, Entry::new);
+			entry.add(statement, queryTime, lockTime, rowsSent, rowsExamined);
+		} else if (inEntry) {
+			skippedEntries++;
+		}
+		sql.setLength(0);
+		inEntry = false;
+		queryTime = 0;
+		lockTime = 0;
+		rowsSent = 0;
+		rowsExamined = 0;
+	}
+
+	private static String trimStatement(StringBuilder text) {
+		String statement = text.toString().trim();
+		while (statement.endsWith(";")) {
+			statement = statement.substring(0, statement.length() - 1).trim();
+		}
+		return statement;
+	}
+
+	/** @return Number of statements read from the log. */
+	public long getTotalQueries() {
+		return totalQueries;
+	}
+
+	/** @return Number of log entries that had no statement text. */
+	public long getSkippedEntries() {
+		return skippedEntries;
+	}
+
+	public Collection<Entry> getEntries() {
+		return entries.values();
+	}
+
+	/**
+	 * @return The {@code n} fingerprints with the highest total query time,
+	 *         slowest first.
+	 */
+	public List<Entry> getTopByTotalTime(int n) {
+		List<Entry> sorted = new ArrayList<>(entries.values());
+		sorted.sort(Comparator.comparingDouble(Entry::getTotalQueryTime).reversed());
+		return sorted.subList(0, Math.min(n, sorted.size()));
+	}
+
+	/** Aggregated statistics of one query fingerprint. */
+	public static final class Entry {
+		private final QueryFingerprint fingerprint;
+		private String sample;
+		private long count;
+		private double totalQueryTime;
+		private double maxQueryTime;
+		private double totalLockTime;
+		private long totalRowsSent;
+		private long totalRowsExamined;
+
+		Entry(QueryFingerprint fingerprint) {
+			this.fingerprint = fingerprint;
+		}
+
+		void add(String statement, double queryTime, double lockTime, long rowsSent, long rowsExamined) {
+			if (sample == null || queryTime > maxQueryTime) {
+				sample = statement;
+				maxQueryTime = queryTime;
+			}
+			count++;
+			totalQueryTime += queryTime;
+			totalLockTime += lockTime;
+			totalRowsSent += rowsSent;
+			totalRowsExamined += rowsExamined;
+		}
+
+		public QueryFingerprint getFingerprint() {
+			return fingerprint;
+		}
+
+		/** @return The slowest occurrence of this fingerprint. */
+		public String getSample() {
+			return sample;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getTotalQueryTime() {
+			return totalQueryTime;
+		}
+
+		public double getMaxQueryTime() {
+			return maxQueryTime;
+		}
+
+		public double getAverageQueryTime() {
+			return count == 0 ? 0 : totalQueryTime / count;
+		}
+
+		public double getTotalLockTime() {
+			return totalLockTime;
+		}
+
+		public long getTotalRowsSent() {
+			return totalRowsSent;
+		}
+
+		public long getTotalRowsExamined() {
+			return totalRowsExamined;
+		}
+
+		/** @return The aggregates as an ordered map, e.g. for reports. */
+		public Map<String, Object> toMap() {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("fingerprint", fingerprint.getText());
+			map.put("digest", fingerprint.getDigestHex());
+			map.put("count", count);
+			map.put("totalQueryTime", totalQueryTime);
+			map.put("avgQueryTime", getAverageQueryTime());
+			map.put("maxQueryTime", maxQueryTime);
+			map.put("totalLockTime", totalLockTime);
+			map.put("totalRowsSent", totalRowsSent);
+			map.put("totalRowsExamined", totalRowsExamined);
+			return map;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.util.Objects;
+
+import in.mystrn.sqlutil.models.SqlResult;
+
+/**
+ * Thread-safe structural analysis: the vendor and the options are passed
+ * with each call, and errors come back in the result. An instance holds no
+ * state, so one can be shared by any number of threads, editor tabs or
+ * sessions.
+ *
+ * Parses and results go through the same {@link AnalysisCache} and analysis
+ * pool as {@link QueryAnalyzerUtil}, which stays for code that owns its
+ * analyzer.
+ *
+ * @author hive
+ */
+public final class SqlAnalyzer {
+
+	private static final SqlAnalyzer SHARED = new SqlAnalyzer();
+
+	/** Only its field-free methods are called, so it is never mutated. */
+	private final QueryAnalyzerUtil engine = new QueryAnalyzerUtil();
+
+	private SqlAnalyzer() {
+	}
+
+	public static SqlAnalyzer getShared() {
+		return SHARED;
+	}
+
+	/** Same as {@link #analyze(EDbVendor, String, Options)} with the default options. */
+	public SqlResult analyze(EDbVendor vendor, String sql) {
+		return analyze(vendor, sql, Options.DEFAULT, new CancellationToken());
+	}
+
+	public SqlResult analyze(EDbVendor vendor, String sql, Options options) {
+		return analyze(vendor, sql, options, new CancellationToken());
+	}
+
+	/**
+	 * Parses and analyzes a script.
+	 *
+	 * @return The analysis; {@link SqlResult#isValid() invalid} with the error
+	 *         when the script does not parse or the analysis fails, and
+	 *         {@link SqlResult#isPartial() partial} when the token was cancelled
+	 *         or the budget ran out.
+	 */
+	public SqlResult analyze(EDbVendor vendor, String sql, Options options, CancellationToken cancellationToken) {
+		ParsedScript script;
+		try {
+			script = parse(vendor, sql, options);
+		} catch (RuntimeException e) {
+			return SqlResult.invalid("SQL parsing failed: " + e);
+		}
+		try {
+			return analyze(script, options, cancellationToken);
+		} finally {
+			script.release();
+		}
+	}
+
+	/**
+	 * Parses a script for the vendor, e.g. to analyze it and run EXPLAIN on it
+	 * without parsing it twice. A syntax error is kept in the script.
+	 *
+	 * @return The parsed script; call {@link ParsedScript#release()} when done
+	 *         with it.
+	 */
+	public ParsedScript parse(EDbVendor vendor, String sql, Options options) {
+		Objects.requireNonNull(vendor, "vendor");
+		return QueryAnalyzerUtil.parse(vendor, sql, options.useCache);
+	}
+
+	/**
+	 * Analyzes a script returned by {@link #parse}.
+	 *
+	 * @return The analysis, with failures reported as for
+	 *         {@link #analyze(EDbVendor, String, Options, CancellationToken)}.
+	 */
+	public SqlResult analyze(ParsedScript script, Options options, CancellationToken cancellationToken) {
+		try {
+			return engine.analyzeQueryStructure(script, options.useCache, cancellationToken, options.budgetMs);
+		} catch (RuntimeException e) {
+			MetricsRegistry.getShared().counter("analysis.failures").increment();
+			return SqlResult.invalid(e.getMessage() != null ? e.getMessage() : e.toString());
+		}
+	}
+
+	/**
+	 * Immutable analysis options; the {@code with} methods return a copy.
+	 */
+	public static final class Options {
+
+		/** Goes through the shared cache, with no time budget. */
+		public static final Options DEFAULT = new Options(true, Long.MAX_VALUE);
+
+		private final boolean useCache;
+		private final long budgetMs;
+
+		private Options(boolean useCache, long budgetMs) {
+			this.useCache = useCache;
+			this.budgetMs = budgetMs;
+		}
+
+		/**
+		 * Whether to go through the shared {@link AnalysisCache}. Scripts that are
+		 * rarely seen twice (batch runs, live edits) turn it off: every cached
+		 * script keeps its parser out of the pool until evicted.
+		 */
+		public boolean isUseCache() {
+			return useCache;
+		}
+
+		/** @return Time allowed for the analysis in milliseconds, {@code Long.MAX_VALUE} for none. */
+		public long getBudgetMs() {
+			return budgetMs;
+		}
+
+		public Options withCache(boolean useCache) {
+			return new Options(useCache, budgetMs);
+		}
+
+		public Options withBudgetMs(long budgetMs) {
+			if (budgetMs < 0) {
+				throw new IllegalArgumentException("Negative budget: " + budgetMs);
+			}
+			return new Options(useCache, budgetMs);
+		}
+
+		@Override
+		public String toString() {
+			return "Options[useCache=" + useCache + ", budgetMs=" + budgetMs + "]";
+		}
+	}
+}
@@ -0,0 +1,486 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Splits a SQL script file into statements without loading the whole file.
+ *
+ * The file is memory-mapped window by window and scanned byte by byte; only
+ * the statement currently being read is buffered, so the heap needed does not
+ * depend on the file size. The scanner understands string literals and quoted
+ * identifiers (with doubled-quote escapes, and backslash escapes where the
+ * vendor has them: MySQL strings and PostgreSQL {@code E'...'} strings), {@code --} and
+ * block comments, PostgreSQL dollar-quoted bodies ({@code $tag$ ... $tag$})
+ * and the mysql client's {@code DELIMITER} command. For MySQL, {@code #}
+ * starts a comment and {@code --} only does when followed by whitespace or a
+ * control character, as on the server ({@code 1--1} is {@code 1 - -1}). Text is assumed to be UTF-8; delimiters, quotes
+ * and comment markers are ASCII, which never occur inside a multi-byte UTF-8
+ * sequence, so scanning bytes is safe.
+ *
+ * A statement longer than the configured maximum is still scanned to its end
+ * but reported without text (see {@link Statement#isOversized()}).
+ *
+ * @author hive
+ */
+public final class SqlStatementSplitter {
+
+	/** Default size of each memory-mapped window. */
+	public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+	/** Default maximum statement size that is buffered and returned. */
+	public static final int DEFAULT_MAX_STATEMENT_BYTES = 64 * 1024 * 1024;
+
+	private static final int NORMAL = 0;
+	private static final int SINGLE_QUOTE = 1;
+	private static final int DOUBLE_QUOTE = 2;
+	private static final int BACKTICK = 3;
+	private static final int LINE_COMMENT = 4;
+	private static final int BLOCK_COMMENT = 5;
+	/** MySQL: after "--", until the next byte tells whether it is a comment. */
+	private static final int DASH_DASH = 6;
+	/** PostgreSQL: inside the opening tag of a possible dollar quote. */
+	private static final int DOLLAR_TAG = 7;
+	private static final int DOLLAR_QUOTE = 8;
+
+	/** Bytes kept of an oversized statement, at least, for the delimiter and tag checks. */
+	private static final int OVERSIZED_TAIL = 64;
+
+	private static final byte[] DELIMITER_COMMAND = "DELIMITER".getBytes(StandardCharsets.US_ASCII);
+
+	private final boolean hashComments;
+	private final boolean backslashEscapes;
+	private final boolean escapeStringPrefix;
+	private final boolean dashCommentNeedsSpace;
+	private final boolean dollarQuotes;
+	private final int windowSize;
+	private final int maxStatementBytes;
+
+	// --- Scanner state, reset for every split ---
+	private byte[] buffer = new byte[8192];
+	private int length;
+	private long statementLength;
+	private long statementOffset;
+	private long statementLine;
+	private boolean hasCode;
+	private int state;
+	private boolean escapeNext;
+	private boolean quoteEscapes;
+	private int commentLength;
+	private byte[] dollarTag = new byte[16];
+	private int tagLength;
+	private int quotedLength;
+	private int normalRun;
+	private byte[] delimiter;
+	private long offset;
+	private long line;
+	private int index;
+
+	public SqlStatementSplitter(EDbVendor vendor) {
+		this(vendor, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_STATEMENT_BYTES);
+	}
+
+	public SqlStatementSplitter(EDbVendor vendor, int windowSize, int maxStatementBytes) {
+		if (windowSize <= 0 || maxStatementBytes <= 0) {
+			throw new IllegalArgumentException("Window and statement sizes must be positive.");
+		}
+		this.hashComments = vendor == EDbVendor.dbvmysql;
+		this.backslashEscapes = vendor == EDbVendor.dbvmysql;
+		this.escapeStringPrefix = vendor == EDbVendor.dbvpostgresql;
+		this.dashCommentNeedsSpace = vendor == EDbVendor.dbvmysql;
+		this.dollarQuotes = vendor == EDbVendor.dbvpostgresql;
+		this.windowSize = windowSize;
+		this.maxStatementBytes = maxStatementBytes;
+	}
+
+	/**
+	 * Splits a file, handing each statement to the consumer as soon as its end
+	 * is found.
+	 *
+	 * @return The number of statements found.
+	 */
+	public int split(Path file, Consumer<Statement> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return split(channel, consumer);
+		}
+	}
+
+	/** Same as {@link #split(Path, Consumer)} for an open channel. */
+	public int split(FileChannel channel, Consumer<Statement> consumer) throws IOException {
+		reset();
+		long size = channel.size();
+		for (long position = 0; position < size; position += windowSize) {
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+					Math.min(windowSize, size - position));
+			while (window.hasRemaining()) {
+				accept(window.get(), consumer);
+			}
+		}
+		// A last statement without a trailing delimiter
+		finishStatement(consumer, 0);
+		return index;
+	}
+
+	/**
+	 * Same as {@link #split(Path, Consumer)} for script text already in memory,
+	 * such as the editor's contents. Offsets are those of the text's UTF-8
+	 * encoding.
+	 */
+	public int split(CharSequence text, Consumer<Statement> consumer) {
+		reset();
+		byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+		for (byte b : bytes) {
+			accept(b, consumer);
+		}
+		finishStatement(consumer, 0);
+		return index;
+	}
+
+	private void reset() {
+		length = 0;
+		statementLength = 0;
+		hasCode = false;
+		state = NORMAL;
+		escapeNext = false;
+		quoteEscapes = false;
+		commentLength = 0;
+		tagLength = 0;
+		quotedLength = 0;
+		normalRun = 0;
+		delimiter = new byte[] { ';' };
+		offset = 0;
+		line = 1;
+		index = 0;
+	}
+
+	private void accept(byte b, Consumer<Statement> consumer) {
+		long byteOffset = offset++;
+		if (statementLength == 0 && state == NORMAL && isWhitespace(b)) {
+			// Leading whitespace between statements is dropped
+			if (b == '\n') {
+				line++;
+			}
+			return;
+		}
+		if (statementLength == 0) {
+			statementOffset = byteOffset;
+			statementLine = line;
+		}
+		append(b);
+		if (b == '\n') {
+			line++;
+		}
+
+		switch (state) {
+		case SINGLE_QUOTE:
+		case DOUBLE_QUOTE:
+		case BACKTICK:
+			normalRun = 0;
+			if (escapeNext) {
+				escapeNext = false;
+			} else if (b == '\\' && quoteEscapes) {
+				escapeNext = true;
+			} else if (b == closingQuote()) {
+				state = NORMAL;
+			}
+			return;
+		case LINE_COMMENT:
+			normalRun = 0;
+			if (b == '\n') {
+				state = NORMAL;
+				dropLeadingComment();
+			}
+			return;
+		case BLOCK_COMMENT:
+			normalRun = 0;
+			commentLength++;
+			if (commentLength == 1 && (b == '!' || b == '+')) {
+				// MySQL executable comments and optimizer hints are code
+				hasCode = true;
+			}
+			if (b == '/' && commentLength > 1 && lastByte(1) == '*') {
+				state = NORMAL;
+				dropLeadingComment();
+			}
+			return;
+		case DASH_DASH:
+			if (isControlOrSpace(b)) {
+				state = b == '\n' ? NORMAL : LINE_COMMENT;
+				if (state == NORMAL) {
+					dropLeadingComment();
+				}
+				return;
+			}
+			// Two minus signs, e.g. "1--1"
+			state = NORMAL;
+			normalRun = 2;
+			break;
+		case DOLLAR_TAG:
+			if (b == '$') {
+				appendTag(b);
+				state = DOLLAR_QUOTE;
+				quotedLength = 0;
+				return;
+			}
+			if (isTagByte(b, tagLength == 1)) {
+				appendTag(b);
+				return;
+			}
+			// Not a dollar quote, e.g. the parameter "$1"
+			state = NORMAL;
+			normalRun = tagLength;
+			break;
+		case DOLLAR_QUOTE:
+			normalRun = 0;
+			quotedLength++;
+			if (b == '$' && quotedLength >= tagLength && endsWith(dollarTag, tagLength)) {
+				state = NORMAL;
+			}
+			return;
+		default:
+			break;
+		}
+
+		// --- NORMAL state ---
+		if (b == '\'' || b == '"' || b == '`') {
+			state = b == '\'' ? SINGLE_QUOTE : (b == '"' ? DOUBLE_QUOTE : BACKTICK);
+			quoteEscapes = state != BACKTICK && (backslashEscapes || (state == SINGLE_QUOTE && isEscapeStringPrefix()));
+			hasCode = true;
+			normalRun = 0;
+			return;
+		}
+		if (b == '-' && normalRun > 0 && lastByte(1) == '-') {
+			state = dashCommentNeedsSpace ? DASH_DASH : LINE_COMMENT;
+			normalRun = 0;
+			return;
+		}
+		if (b == '$' && dollarQuotes && !(normalRun > 0 && isIdentifierByte(lastByte(1)))) {
+			// "$" inside an identifier such as "a$b" never opens a quote
+			state = DOLLAR_TAG;
+			tagLength = 0;
+			appendTag(b);
+			hasCode = true;
+			normalRun = 0;
+			return;
+		}
+		if (b == '#' && hashComments) {
+			state = LINE_COMMENT;
+			normalRun = 0;
+			return;
+		}
+		if (b == '*' && normalRun > 0 && lastByte(1) == '/') {
+			state = BLOCK_COMMENT;
+			commentLength = 0;
+			normalRun = 0;
+			return;
+		}
+		normalRun++;
+
+		if (b == '\n' && isDelimiterCommand()) {
+			changeDelimiter();
+			return;
+		}
+		if (!isWhitespace(b) && b != '-' && b != '/') {
+			hasCode = true;
+		}
+		if (b == delimiter[delimiter.length - 1] && normalRun >= delimiter.length && endsWithDelimiter()
+				&& !isDelimiterCommand()) {
+			finishStatement(consumer, delimiter.length);
+		}
+	}
+
+	/**
+	 * Comments before the first code of a statement are dropped, so that a
+	 * DELIMITER command after a comment line is still recognized.
+	 */
+	private void dropLeadingComment() {
+		if (!hasCode) {
+			clearStatement();
+		}
+	}
+
+	/** PostgreSQL: the quote just read follows an {@code E} that is not the end of an identifier. */
+	private boolean isEscapeStringPrefix() {
+		if (!escapeStringPrefix || normalRun == 0 || (lastByte(1) != 'E' && lastByte(1) != 'e')) {
+			return false;
+		}
+		return normalRun == 1 || !isIdentifierByte(lastByte(2));
+	}
+
+	private byte closingQuote() {
+		return state == SINGLE_QUOTE ? (byte) '\'' : (state == DOUBLE_QUOTE ? (byte) '"' : (byte) '`');
+	}
+
+	private void append(byte b) {
+		statementLength++;
+		if (statementLength > maxStatementBytes) {
+			// Oversized: keep scanning, but only the tail needed for delimiter checks
+			if (length >= buffer.length) {
+				int keep = Math.min(length, Math.max(OVERSIZED_TAIL, Math.max(delimiter.length, tagLength)));
+				System.arraycopy(buffer, length - keep, buffer, 0, keep);
+				length = keep;
+			}
+		} else if (length == buffer.length) {
+			buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, (long) maxStatementBytes));
+		}
+		buffer[length++] = b;
+	}
+
+	private byte lastByte(int back) {
+		return buffer[length - 1 - back];
+	}
+
+	private boolean endsWithDelimiter() {
+		return endsWith(delimiter, delimiter.length);
+	}
+
+	/** @return true if the buffered statement ends with the first {@code count} bytes of {@code suffix}. */
+	private boolean endsWith(byte[] suffix, int count) {
+		if (length < count) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			if (buffer[length - count + i] != suffix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void appendTag(byte b) {
+		if (tagLength == dollarTag.length) {
+			dollarTag = Arrays.copyOf(dollarTag, tagLength * 2);
+		}
+		dollarTag[tagLength++] = b;
+	}
+
+	/** @return true if the buffered statement is a mysql client DELIMITER command line. */
+	private boolean isDelimiterCommand() {
+		if (statementLength > maxStatementBytes || length <= DELIMITER_COMMAND.length
+				|| !isWhitespace(buffer[DELIMITER_COMMAND.length])) {
+			return false;
+		}
+		for (int i = 0; i < DELIMITER_COMMAND.length; i++) {
+			if (Character.toUpperCase((char) buffer[i]) != DELIMITER_COMMAND[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void changeDelimiter() {
+		int start = DELIMITER_COMMAND.length;
+		int end = length;
+		while (start < end && isWhitespace(buffer[start])) {
+			start++;
+		}
+		while (end > start && isWhitespace(buffer[end - 1])) {
+			end--;
+		}
+		if (end > start) {
+			delimiter = Arrays.copyOfRange(buffer, start, end);
+		}
+		clearStatement();
+	}
+
+	private void finishStatement(Consumer<Statement> consumer, int delimiterLength) {
+		if (statementLength > 0 && hasCode) {
+			if (statementLength > maxStatementBytes) {
+				consumer.accept(new Statement(index++, null, statementOffset, statementLine, statementLength));
+			} else {
+				int end = length - delimiterLength;
+				while (end > 0 && isWhitespace(buffer[end - 1])) {
+					end--;
+				}
+				if (end > 0) {
+					consumer.accept(new Statement(index++, new String(buffer, 0, end, StandardCharsets.UTF_8),
+							statementOffset, statementLine, statementLength));
+				}
+			}
+		}
+		clearStatement();
+	}
+
+	private void clearStatement() {
+		length = 0;
+		statementLength = 0;
+		hasCode = false;
+		normalRun = 0;
+		if (buffer.length > 1024 * 1024) {
+			// Don't keep one huge statement's buffer for the rest of the file
+			buffer = new byte[8192];
+		}
+	}
+
+	/** For MySQL, "--" is a comment only when this kind of byte follows it. */
+	private static boolean isControlOrSpace(byte b) {
+		return (b & 0xff) <= ' ' || b == 0x7f;
+	}
+
+	/** Letters, digits and "_" make up a dollar-quote tag, which may not start with a digit. */
+	private static boolean isTagByte(byte b, boolean first) {
+		return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_' || b < 0 || (!first && b >= '0' && b <= '9');
+	}
+
+	private static boolean isIdentifierByte(byte b) {
+		return isTagByte(b, false) || b == '$';
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+	}
+
+	/** One statement of a split script. */
+	public static final class Statement {
+		private final int index;
+		private final String sql;
+		private final long offset;
+		private final long line;
+		private final long byteLength;
+
+		Statement(int index, String sql, long offset, long line, long byteLength) {
+			this.index = index;
+			this.sql = sql;
+			this.offset = offset;
+			this.line = line;
+			this.byteLength = byteLength;
+		}
+
+		/** @return Position of the statement in the file (0 based). */
+		public int getIndex() {
+			return index;
+		}
+
+		/** @return The statement text without its delimiter, or null if oversized. */
+		public String getSql() {
+			return sql;
+		}
+
+		/** @return Byte offset of the statement's first character in the file. */
+		public long getOffset() {
+			return offset;
+		}
+
+		/** @return 1-based line the statement starts on. */
+		public long getLine() {
+			return line;
+		}
+
+		/** @return Size of the statement in bytes, delimiter included. */
+		public long getByteLength() {
+			return byteLength;
+		}
+
+		/** @return true if the statement exceeded the maximum size and has no text. */
+		public boolean isOversized() {
+			return sql == null;
+		}
+	}
+}
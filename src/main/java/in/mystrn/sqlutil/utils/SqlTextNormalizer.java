@@ -0,0 +1,226 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.util.Arrays;
+
+/**
+ * Normalizes SQL text so that scripts differing only in whitespace or
+ * comments compare equal, and hashes the result to 64 bits.
+ *
+ * String literals, quoted identifiers and PostgreSQL dollar-quoted bodies
+ * ({@code $tag$ ... $tag$}) are copied verbatim. A backslash escapes the
+ * next character only where the vendor reads it so: in MySQL strings and in
+ * PostgreSQL {@code E'...'} strings. MySQL
+ * executable comments ({@code /*! ... *}{@code /}) and optimizer hints
+ * ({@code /*+ ... *}{@code /}) are kept because they change what the server
+ * runs.
+ *
+ * @author hive
+ */
+public final class SqlTextNormalizer {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private SqlTextNormalizer() {
+		// Utility class
+	}
+
+	/**
+	 * Collapses whitespace runs to a single space and strips comments outside
+	 * of literals.
+	 *
+	 * @param sql    The SQL text (may be null).
+	 * @param vendor Vendor of the text; for MySQL {@code #} starts a comment and
+	 *               {@code --} only does when followed by whitespace or a
+	 *               control character, as on the server ({@code n --1} is
+	 *               {@code n - -1}).
+	 * @return The normalized text, never null.
+	 */
+	public static String normalize(String sql, EDbVendor vendor) {
+		return sql == null ? "" : normalize(sql, vendor, null);
+	}
+
+	/**
+	 * Maps the normalized text back onto the text it came from.
+	 *
+	 * @return For each character of {@link #normalize(String, EDbVendor)}'s
+	 *         result, its index in {@code sql}; a collapsed separator maps to
+	 *         the character after it. Never decreasing.
+	 */
+	static int[] sourceIndexes(String sql, EDbVendor vendor) {
+		// A kept comment can add a separator after it, but at most one per character read
+		int[] sources = new int[2 * sql.length()];
+		return Arrays.copyOf(sources, normalize(sql, vendor, sources).length());
+	}
+
+	/**
+	 * @param sources Receives the source index of every output character, or
+	 *                null; at least twice as long as the text.
+	 */
+	private static String normalize(String sql, EDbVendor vendor, int[] sources) {
+		boolean hashComments = vendor == EDbVendor.dbvmysql;
+		int length = sql.length();
+		StringBuilder out = new StringBuilder(length);
+		boolean pendingSpace = false;
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+
+			if (Character.isWhitespace(c)) {
+				pendingSpace = true;
+				i++;
+				continue;
+			}
+			if ((c == '-' && isDashComment(sql, i, vendor)) || (c == '#' && hashComments)) {
+				while (i < length && sql.charAt(i) != '\n') {
+					i++;
+				}
+				pendingSpace = true;
+				continue;
+			}
+			if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				end = (end < 0) ? length : end + 2;
+				boolean keep = i + 2 < length && (sql.charAt(i + 2) == '!' || sql.charAt(i + 2) == '+');
+				if (keep) {
+					appendSeparator(out, pendingSpace, sources, i);
+					append(out, sql, i, end, sources);
+				}
+				pendingSpace = true;
+				i = end;
+				continue;
+			}
+
+			appendSeparator(out, pendingSpace, sources, i);
+			pendingSpace = false;
+			int dollarEnd = c == '$' && vendor == EDbVendor.dbvpostgresql ? skipDollarQuoted(sql, i) : -1;
+			if (c == '\'' || c == '"' || c == '`') {
+				int end = skipQuoted(sql, i, c, hasBackslashEscapes(sql, i, vendor));
+				append(out, sql, i, end, sources);
+				i = end;
+			} else if (dollarEnd >= 0) {
+				append(out, sql, i, dollarEnd, sources);
+				i = dollarEnd;
+			} else {
+				append(out, sql, i, i + 1, sources);
+				i++;
+			}
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Returns the index just past the closing quote of the literal that starts
+	 * at {@code start}. Handles doubled quotes, and backslash escapes if asked.
+	 */
+	static int skipQuoted(CharSequence sql, int start, char quote, boolean backslashEscapes) {
+		int length = sql.length();
+		int i = start + 1;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (c == '\\' && backslashEscapes) {
+				i += 2;
+				continue;
+			}
+			if (c == quote) {
+				if (i + 1 < length && sql.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return length;
+	}
+
+	/**
+	 * Whether the {@code -} at {@code i} starts a {@code --} comment. MySQL
+	 * needs whitespace or a control character (or the end of the text) after
+	 * the second dash.
+	 */
+	static boolean isDashComment(CharSequence sql, int i, EDbVendor vendor) {
+		if (i + 1 >= sql.length() || sql.charAt(i + 1) != '-') {
+			return false;
+		}
+		if (vendor != EDbVendor.dbvmysql || i + 2 >= sql.length()) {
+			return true;
+		}
+		char next = sql.charAt(i + 2);
+		return next <= ' ' || Character.isWhitespace(next);
+	}
+
+	/**
+	 * Returns the index just past the closing delimiter of the PostgreSQL
+	 * dollar-quoted string that starts at {@code start}, or -1 if the
+	 * {@code $} there does not open one (e.g. a {@code $1} parameter). An
+	 * unterminated body runs to the end of the text.
+	 */
+	static int skipDollarQuoted(CharSequence sql, int start) {
+		int length = sql.length();
+		int i = start + 1;
+		if (i < length && (Character.isLetter(sql.charAt(i)) || sql.charAt(i) == '_')) {
+			while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+				i++;
+			}
+		}
+		if (i >= length || sql.charAt(i) != '$') {
+			return -1;
+		}
+		String tag = sql.subSequence(start, i + 1).toString();
+		int end = sql.toString().indexOf(tag, i + 1);
+		return end < 0 ? length : end + tag.length();
+	}
+
+	/**
+	 * Whether a backslash escapes inside the quote at {@code start}: MySQL
+	 * strings, and PostgreSQL strings with an {@code E} prefix that does not
+	 * end an identifier.
+	 */
+	static boolean hasBackslashEscapes(CharSequence sql, int start, EDbVendor vendor) {
+		char quote = sql.charAt(start);
+		if (vendor == EDbVendor.dbvmysql) {
+			return quote != '`';
+		}
+		if (vendor != EDbVendor.dbvpostgresql || quote != '\'' || start == 0) {
+			return false;
+		}
+		char prefix = sql.charAt(start - 1);
+		return (prefix == 'E' || prefix == 'e')
+				&& (start == 1 || !(Character.isLetterOrDigit(sql.charAt(start - 2)) || sql.charAt(start - 2) == '_'
+						|| sql.charAt(start - 2) == '$'));
+	}
+
+	private static void appendSeparator(StringBuilder out, boolean pendingSpace, int[] sources, int next) {
+		if (pendingSpace && out.length() > 0) {
+			if (sources != null) {
+				sources[out.length()] = next;
+			}
+			out.append(' ');
+		}
+	}
+
+	private static void append(StringBuilder out, String sql, int start, int end, int[] sources) {
+		if (sources != null) {
+			for (int i = start; i < end; i++) {
+				sources[out.length() + i - start] = i;
+			}
+		}
+		out.append(sql, start, end);
+	}
+
+	/** 64-bit FNV-1a hash of the characters of the text. */
+	public static long hash64(CharSequence text) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			hash ^= (c & 0xff);
+			hash *= FNV_PRIME;
+			hash ^= (c >>> 8);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+}
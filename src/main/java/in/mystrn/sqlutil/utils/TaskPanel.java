@@ -0,0 +1,181 @@
+package in.mystrn.sqlutil.utils;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.swing.BorderFactory;
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+
+/**
+ * Lists the tasks of a {@link TaskScheduler}: title, state, latest message
+ * and elapsed time of each, with a button to cancel it.
+ *
+ * The panel is updated from the scheduler's frames, and only the labels whose
+ * text changed are set again; messages are shown as plain text. It hides
+ * itself while there are no tasks. Finished tasks stay listed until
+ * "Clear" is pressed, except that only the most recent
+ * {@link #MAX_FINISHED_SHOWN} of them are kept.
+ *
+ * @author hive
+ */
+public final class TaskPanel extends JPanel {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Finished tasks kept in the list. */
+	public static final int MAX_FINISHED_SHOWN = 10;
+
+	private static final int VISIBLE_ROWS = 4;
+
+	private final transient TaskScheduler scheduler;
+	private final JPanel rowsPanel = new JPanel();
+	private final transient Map<TaskScheduler.Task, Row> rows = new LinkedHashMap<>();
+
+	public TaskPanel(TaskScheduler scheduler) {
+		super(new BorderLayout());
+		this.scheduler = scheduler;
+		setBorder(BorderFactory.createTitledBorder("Tasks"));
+		rowsPanel.setLayout(new BoxLayout(rowsPanel, BoxLayout.Y_AXIS));
+		JScrollPane scrollPane = new JScrollPane(rowsPanel);
+		scrollPane.setBorder(BorderFactory.createEmptyBorder());
+		add(scrollPane, BorderLayout.CENTER);
+		JButton clearButton = new JButton("Clear");
+		clearButton.setToolTipText("Removes finished tasks from the list");
+		clearButton.addActionListener(e -> scheduler.removeFinished());
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 2, 0));
+		buttons.add(clearButton);
+		add(buttons, BorderLayout.EAST);
+		setVisible(false);
+		scheduler.addListener(this::update);
+	}
+
+	/** EDT: brings the rows in line with the scheduler's tasks. */
+	private void update(List<TaskScheduler.Task> tasks) {
+		trimFinished(tasks);
+		Set<TaskScheduler.Task> current = new HashSet<>(tasks);
+		boolean structureChanged = rows.keySet().removeIf(task -> {
+			if (!current.contains(task)) {
+				rowsPanel.remove(rows.get(task).panel);
+				return true;
+			}
+			return false;
+		});
+		for (TaskScheduler.Task task : tasks) {
+			Row row = rows.get(task);
+			if (row == null) {
+				row = new Row(task);
+				rows.put(task, row);
+				// Newest first
+				rowsPanel.add(row.panel, 0);
+				structureChanged = true;
+			}
+			row.refresh();
+		}
+		if (structureChanged) {
+			setVisible(!rows.isEmpty());
+			int rowHeight = rows.isEmpty() ? 0 : rows.values().iterator().next().panel.getPreferredSize().height;
+			setPreferredSize(new Dimension(getPreferredSize().width,
+					Math.min(rows.size(), VISIBLE_ROWS) * rowHeight + getInsets().top + getInsets().bottom + 4));
+			rowsPanel.revalidate();
+			revalidate();
+			repaint();
+		}
+	}
+
+	/** Forgets the oldest finished tasks beyond {@link #MAX_FINISHED_SHOWN}. */
+	private void trimFinished(List<TaskScheduler.Task> tasks) {
+		int finished = 0;
+		for (int i = tasks.size() - 1; i >= 0; i--) {
+			TaskScheduler.Task task = tasks.get(i);
+			if (task.getState().isFinished() && ++finished > MAX_FINISHED_SHOWN) {
+				scheduler.remove(task);
+				tasks.remove(i);
+			}
+		}
+	}
+
+	/** The components showing one task. */
+	private static final class Row {
+		private final TaskScheduler.Task task;
+		private final JPanel panel = new JPanel(new BorderLayout(8, 0));
+		private final JLabel titleLabel = new JLabel();
+		private final JLabel messageLabel = new JLabel();
+		private final JLabel elapsedLabel = new JLabel();
+		private final JProgressBar progressBar = new JProgressBar();
+		private final JButton cancelButton = new JButton("Cancel");
+
+		Row(TaskScheduler.Task task) {
+			this.task = task;
+			titleLabel.setText(task.getTitle());
+			titleLabel.setFont(titleLabel.getFont().deriveFont(Font.BOLD));
+			// Messages are not markup
+			messageLabel.putClientProperty("html.disable", Boolean.TRUE);
+			titleLabel.putClientProperty("html.disable", Boolean.TRUE);
+			progressBar.setIndeterminate(true);
+			progressBar.setPreferredSize(new Dimension(80, progressBar.getPreferredSize().height));
+			cancelButton.addActionListener(e -> task.cancel());
+
+			JPanel west = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+			west.add(titleLabel);
+			west.add(progressBar);
+			JPanel east = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+			east.add(elapsedLabel);
+			east.add(cancelButton);
+			panel.add(west, BorderLayout.WEST);
+			panel.add(messageLabel, BorderLayout.CENTER);
+			panel.add(east, BorderLayout.EAST);
+			panel.setBorder(BorderFactory.createEmptyBorder(1, 2, 1, 2));
+			panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, panel.getPreferredSize().height));
+			panel.setAlignmentX(Component.LEFT_ALIGNMENT);
+		}
+
+		void refresh() {
+			TaskScheduler.State state = task.getState();
+			setText(messageLabel, state.isFinished() && task.getError() == null ? state.toString() : task.getMessage());
+			Throwable error = task.getError();
+			String tooltip = error != null ? error.toString() : null;
+			if (tooltip == null ? messageLabel.getToolTipText() != null : !tooltip.equals(messageLabel.getToolTipText())) {
+				messageLabel.setToolTipText(tooltip);
+			}
+			setText(elapsedLabel, state == TaskScheduler.State.QUEUED ? "queued " + seconds(task.getQueuedMillis())
+					: seconds(task.getElapsedMillis()));
+			if (progressBar.isVisible() == state.isFinished()) {
+				progressBar.setVisible(!state.isFinished());
+			}
+			setText(cancelButton, task.isCancelRequested() ? "Force Stop" : "Cancel");
+			if (cancelButton.isEnabled() == state.isFinished()) {
+				cancelButton.setEnabled(!state.isFinished());
+			}
+		}
+
+		private static String seconds(long millis) {
+			return String.format("%.1f s", millis / 1000.0);
+		}
+
+		private static void setText(JLabel label, String text) {
+			if (!Objects.equals(text, label.getText())) {
+				label.setText(text);
+			}
+		}
+
+		private static void setText(JButton button, String text) {
+			if (!text.equals(button.getText())) {
+				button.setText(text);
+			}
+		}
+	}
+}
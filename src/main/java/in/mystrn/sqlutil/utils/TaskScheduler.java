@@ -0,0 +1,331 @@
+package in.mystrn.sqlutil.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Runs {@link ProcessingTask}s in the background without blocking the window,
+ * several at a time.
+ *
+ * Tasks run on a bounded pool of named daemon threads; tasks beyond the pool
+ * size wait in a bounded queue, and a submit beyond that fails the task right
+ * away instead of piling up work. Every task has its own
+ * {@link CancellationToken} and progress message.
+ *
+ * Progress messages only overwrite the task's latest message; the listeners
+ * (such as a {@link TaskPanel}) are told on the EDT at most
+ * {@link #FRAME_RATE} times a second, however often the tasks report. The
+ * frame timer stops once all tasks have finished and nothing changed.
+ *
+ * @author hive
+ */
+public final class TaskScheduler {
+
+	/** Default number of tasks running at once. */
+	public static final int DEFAULT_MAX_RUNNING = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	/** Default number of tasks waiting for a thread. */
+	public static final int DEFAULT_MAX_QUEUED = 32;
+	/** UI updates per second. */
+	public static final int FRAME_RATE = 10;
+
+	private static final TaskScheduler SHARED = new TaskScheduler(DEFAULT_MAX_RUNNING, DEFAULT_MAX_QUEUED);
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+	private final ThreadPoolExecutor executor;
+	private final List<Task> tasks = new CopyOnWriteArrayList<>();
+	private final List<Consumer<List<Task>>> listeners = new CopyOnWriteArrayList<>();
+	private final AtomicBoolean dirty = new AtomicBoolean();
+	private final AtomicInteger taskCounter = new AtomicInteger();
+	private Timer frameTimer; // EDT only
+
+	public TaskScheduler(int maxRunning, int maxQueued) {
+		if (maxRunning <= 0 || maxQueued <= 0) {
+			throw new IllegalArgumentException("Task limits must be positive.");
+		}
+		this.executor = new ThreadPoolExecutor(maxRunning, maxRunning, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(maxQueued), runnable -> {
+					Thread thread = new Thread(runnable, "sqlutil-task-" + THREAD_COUNTER.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/** @return The scheduler shared by the forms of this application. */
+	public static TaskScheduler getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Starts a task, or queues it if the pool is busy.
+	 *
+	 * @param title  Shown in the task panel.
+	 * @param onDone Called on the EDT once the task has finished, failed or
+	 *               been cancelled; may be null.
+	 * @return The task, to follow or cancel it.
+	 */
+	public Task submit(String title, ProcessingTask task, Consumer<Task> onDone) {
+		Task handle = new Task(taskCounter.incrementAndGet(), title, task, onDone);
+		tasks.add(handle);
+		MetricsRegistry.getShared().counter("tasks.submitted").increment();
+		try {
+			handle.future = executor.submit(handle::execute);
+		} catch (RejectedExecutionException e) {
+			MetricsRegistry.getShared().counter("tasks.rejected").increment();
+			handle.finish(State.FAILED, new IllegalStateException(
+					"Too many tasks are waiting to run; try again when some have finished."));
+		}
+		changed();
+		return handle;
+	}
+
+	/** @return All tasks not yet removed, in submit order. */
+	public List<Task> getTasks() {
+		return new ArrayList<>(tasks);
+	}
+
+	/** Forgets a finished task; unfinished tasks stay. */
+	public void remove(Task task) {
+		if (task.getState().isFinished() && tasks.remove(task)) {
+			changed();
+		}
+	}
+
+	/** Forgets every finished task. */
+	public void removeFinished() {
+		if (tasks.removeIf(task -> task.getState().isFinished())) {
+			changed();
+		}
+	}
+
+	/** Registers a listener told of task changes on the EDT, a frame at a time. */
+	public void addListener(Consumer<List<Task>> listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Consumer<List<Task>> listener) {
+		listeners.remove(listener);
+	}
+
+	/** Marks the tasks as changed; the next frame tells the listeners. */
+	private void changed() {
+		if (dirty.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(this::startFrameTimer);
+		}
+	}
+
+	private void startFrameTimer() {
+		if (frameTimer == null) {
+			frameTimer = new Timer(1000 / FRAME_RATE, e -> frame());
+		}
+		if (!frameTimer.isRunning()) {
+			frameTimer.start();
+		}
+	}
+
+	/**
+	 * EDT: one UI update covering every change since the previous one. Frames
+	 * keep coming while tasks are unfinished, so their elapsed times tick.
+	 */
+	private void frame() {
+		boolean changedSinceLastFrame = dirty.getAndSet(false);
+		boolean active = tasks.stream().anyMatch(task -> !task.getState().isFinished());
+		if (!changedSinceLastFrame && !active) {
+			frameTimer.stop();
+			return;
+		}
+		List<Task> snapshot = getTasks();
+		for (Consumer<List<Task>> listener : listeners) {
+			listener.accept(snapshot);
+		}
+	}
+
+	/** Life cycle of a task. */
+	public enum State {
+		QUEUED("Queued"), RUNNING("Running"), SUCCEEDED("Done"), FAILED("Failed"), CANCELLED("Cancelled");
+
+		private final String label;
+
+		State(String label) {
+			this.label = label;
+		}
+
+		public boolean isFinished() {
+			return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	/** A submitted task: its state, latest message and cancellation. */
+	public final class Task {
+		private final int id;
+		private final String title;
+		private final ProcessingTask work;
+		private final Consumer<Task> onDone;
+		private final CancellationToken cancellationToken = new CancellationToken();
+		private final long submitNanos = System.nanoTime();
+		private volatile Future<?> future;
+		// Written under the task's lock, so it only ever moves QUEUED -> RUNNING -> final
+		private volatile State state = State.QUEUED;
+		private volatile String message = "Waiting for a free thread...";
+		private volatile Throwable error;
+		private volatile long startNanos;
+		private volatile long endNanos;
+
+		Task(int id, String title, ProcessingTask work, Consumer<Task> onDone) {
+			this.id = id;
+			this.title = title;
+			this.work = work;
+			this.onDone = onDone;
+		}
+
+		/** Pool thread: runs the work and records how it ended. */
+		private void execute() {
+			if (cancellationToken.isCancelled()) {
+				finish(State.CANCELLED, null);
+				return;
+			}
+			if (!start()) {
+				// Cancelled (and finished) between being picked up and starting
+				return;
+			}
+			changed();
+			try {
+				work.run(this::setMessage, cancellationToken);
+				finish(cancellationToken.isCancelled() ? State.CANCELLED : State.SUCCEEDED, null);
+			} catch (CancellationException | InterruptedException e) {
+				finish(State.CANCELLED, null);
+			} catch (Exception | Error e) {
+				if (cancellationToken.isCancelled() && Thread.currentThread().isInterrupted()) {
+					// Force-cancelled: whatever broke was the interrupt
+					finish(State.CANCELLED, null);
+				} else {
+					MetricsRegistry.getShared().counter("tasks.failed").increment();
+					finish(State.FAILED, e);
+				}
+			} finally {
+				MetricsRegistry.getShared().timer("task").recordSince(startNanos);
+			}
+		}
+
+		/** @return false if the task finished before it could start. */
+		private synchronized boolean start() {
+			if (state != State.QUEUED) {
+				return false;
+			}
+			startNanos = System.nanoTime();
+			state = State.RUNNING;
+			return true;
+		}
+
+		/** Records how the task ended; only the first call counts, so onDone runs once. */
+		private void finish(State finalState, Throwable failure) {
+			synchronized (this) {
+				if (state.isFinished()) {
+					return;
+				}
+				error = failure;
+				endNanos = System.nanoTime();
+				state = finalState;
+				if (failure != null) {
+					message = "Failed: " + failure.getMessage();
+				}
+			}
+			changed();
+			if (onDone != null) {
+				SwingUtilities.invokeLater(() -> onDone.accept(this));
+			}
+		}
+
+		private void setMessage(String latest) {
+			message = latest;
+			changed();
+		}
+
+		/**
+		 * Asks the task to stop; it keeps what it has. Called again on a task
+		 * that has not stopped yet, interrupts its thread.
+		 */
+		public void cancel() {
+			if (state.isFinished()) {
+				return;
+			}
+			if (!cancellationToken.isCancelled()) {
+				cancellationToken.cancel();
+				message = "Cancelling...";
+				if (state == State.QUEUED && future != null && future.cancel(false)) {
+					// Never started: it won't finish by itself
+					finish(State.CANCELLED, null);
+				}
+			} else if (future != null) {
+				future.cancel(true);
+			}
+			changed();
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		/** @return The latest progress message of the task. */
+		public String getMessage() {
+			return message;
+		}
+
+		/** @return What made the task fail, or null. */
+		public Throwable getError() {
+			return error;
+		}
+
+		public boolean isCancelRequested() {
+			return cancellationToken.isCancelled();
+		}
+
+		/** @return Time since the task started, or until it ended; 0 while queued. */
+		public long getElapsedMillis() {
+			long start = startNanos;
+			if (start == 0) {
+				return 0;
+			}
+			long end = state.isFinished() ? endNanos : System.nanoTime();
+			return (end - start) / 1_000_000L;
+		}
+
+		/** @return Time spent waiting for a thread, in milliseconds. */
+		public long getQueuedMillis() {
+			long start = startNanos;
+			long end = start != 0 ? start : state.isFinished() ? endNanos : System.nanoTime();
+			return (end - submitNanos) / 1_000_000L;
+		}
+
+		@Override
+		public String toString() {
+			return title + " [" + state + "] " + message;
+		}
+	}
+}
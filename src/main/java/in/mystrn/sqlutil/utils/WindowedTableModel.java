@@ -0,0 +1,319 @@
+package in.mystrn.sqlutil.utils;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * A read-only TableModel over a query that pulls its rows on demand, a page
+ * at a time, as a JTable scrolls.
+ *
+ * The query runs on a forward-only, read-only cursor owned by a loader thread
+ * of the model; the EDT never touches JDBC. The table shows the rows read so
+ * far: asking for a row near the end reads the next page, and rows whose page
+ * is not loaded yet show {@link #LOADING} until it arrives. Pages live in an
+ * LRU cache of a bounded size, so memory stays constant however far the user
+ * scrolls. Scrolling back to an evicted page re-runs the query and skips
+ * forward to it. SQL NULLs are shown as null, not as empty strings.
+ *
+ * The cursor keeps its connection until the last row is read or the model is
+ * {@link #close() closed}; close the model when the table stops showing it.
+ *
+ * Like any Swing model it is used on the EDT only. The loader hands each page
+ * to the EDT, which caches it, updates the row count and fires the event in
+ * one step, so the table never sees a row count it was not told about.
+ *
+ * @author hive
+ */
+public final class WindowedTableModel extends AbstractTableModel implements AutoCloseable {
+
+	/** Default number of rows read per page. */
+	public static final int DEFAULT_FETCH_SIZE = 200;
+	/** Default number of pages kept in memory. */
+	public static final int DEFAULT_MAX_CACHED_PAGES = 10;
+	/** Shown in the cells of rows that are still being read. */
+	public static final String LOADING = "...";
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+	private final ExplainRunner.ConnectionSource connections;
+	private final String sql;
+	private final EDbVendor vendor;
+	private final int fetchSize;
+	private final int maxCachedPages;
+	private final Consumer<Exception> errorHandler;
+	private final ExecutorService loader;
+
+	// Confined to the EDT
+	private final LinkedHashMap<Integer, Object[][]> pages;
+	private final Set<Integer> pendingPages = new HashSet<>();
+	private String[] columnNames = new String[0];
+	private int knownRowCount;
+	private boolean exhausted;
+
+	// Set on the EDT, read by the loader to stop early
+	private volatile boolean closed;
+
+	// Confined to the loader thread
+	private Cursor cursor;
+	/** Pages handed to the EDT and not evicted since; the EDT reports evictions in order with requests. */
+	private final Set<Integer> deliveredPages = new HashSet<>();
+
+	/**
+	 * Starts reading the first page in the background.
+	 *
+	 * @param connections    Where the cursor gets its connection from; it is
+	 *                       closed (handed back) when the cursor is.
+	 * @param sql            The query to page through.
+	 * @param vendor         Picks the fetch settings that make the driver stream.
+	 * @param fetchSize      Rows per page.
+	 * @param maxCachedPages Pages kept in memory.
+	 * @param errorHandler   Receives query failures, on the EDT.
+	 */
+	public WindowedTableModel(ExplainRunner.ConnectionSource connections, String sql, EDbVendor vendor, int fetchSize,
+			int maxCachedPages, Consumer<Exception> errorHandler) {
+		if (fetchSize <= 0 || maxCachedPages <= 0) {
+			throw new IllegalArgumentException("Fetch size and page cache size must be positive.");
+		}
+		this.connections = connections;
+		this.sql = sql;
+		this.vendor = vendor;
+		this.fetchSize = fetchSize;
+		this.maxCachedPages = maxCachedPages;
+		this.errorHandler = errorHandler;
+		this.pages = new LinkedHashMap<>(16, 0.75f, true);
+		this.loader = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "sqlutil-rows-" + THREAD_COUNTER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		requestPage(0);
+	}
+
+	public WindowedTableModel(ExplainRunner.ConnectionSource connections, String sql, EDbVendor vendor,
+			Consumer<Exception> errorHandler) {
+		this(connections, sql, vendor, DEFAULT_FETCH_SIZE, DEFAULT_MAX_CACHED_PAGES, errorHandler);
+	}
+
+	@Override
+	public int getRowCount() {
+		return knownRowCount;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return columnNames.length;
+	}
+
+	@Override
+	public String getColumnName(int c) {
+		return c >= 0 && c < columnNames.length ? columnNames[c] : super.getColumnName(c);
+	}
+
+	@Override
+	public Object getValueAt(int r, int c) {
+		if (r < 0 || r >= knownRowCount || c < 0 || c >= columnNames.length) {
+			return null;
+		}
+		int page = r / fetchSize;
+		Object[][] rows = pages.get(page);
+		Object[] row = rows != null && r % fetchSize < rows.length ? rows[r % fetchSize] : null;
+		if (row == null) {
+			requestPage(page);
+			return LOADING;
+		}
+		// Read ahead once the table shows the last page read so far
+		if (page == (getRowCount() - 1) / fetchSize) {
+			requestPage(page + 1);
+		}
+		return row[c];
+	}
+
+	@Override
+	public boolean isCellEditable(int r, int c) {
+		return false;
+	}
+
+	/** @return true once the last row of the query has been read. */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	/** Stops reading and closes the cursor and its connection. Safe to call twice. */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		pages.clear();
+		loader.execute(this::closeCursor);
+		loader.shutdown();
+	}
+
+	/** Schedules a page to be read unless it is cached, pending or past the end. */
+	private void requestPage(int page) {
+		if (closed || pages.containsKey(page) || pendingPages.contains(page)
+				|| (exhausted && page * (long) fetchSize >= knownRowCount)) {
+			return;
+		}
+		pendingPages.add(page);
+		loader.execute(() -> loadPage(page));
+	}
+
+	/** Loader thread: reads the cursor up to and including the page. */
+	private void loadPage(int page) {
+		try {
+			// Read on the way to a later page in the meantime
+			if (closed || deliveredPages.contains(page)) {
+				return;
+			}
+			long firstRow = page * (long) fetchSize;
+			if (cursor == null || cursor.position > firstRow) {
+				// Forward-only: an evicted earlier page means running the query again
+				closeCursor();
+				cursor = new Cursor();
+			}
+			while (cursor != null && cursor.position <= firstRow) {
+				int current = (int) (cursor.position / fetchSize);
+				Object[][] rows = cursor.readPage();
+				publish(current, rows, cursor.isDone());
+				if (cursor.isDone()) {
+					closeCursor();
+				}
+			}
+		} catch (SQLException | ClassNotFoundException | RuntimeException e) {
+			closeCursor();
+			SwingUtilities.invokeLater(() -> {
+				exhausted = true;
+				errorHandler.accept(e);
+			});
+		} finally {
+			// Queued after the page's own publish, so a read-ahead never runs twice
+			SwingUtilities.invokeLater(() -> pendingPages.remove(page));
+		}
+	}
+
+	/** Loader thread: hands a page read from the cursor to the EDT. */
+	private void publish(int page, Object[][] rows, boolean last) {
+		deliveredPages.add(page);
+		SwingUtilities.invokeLater(() -> {
+			if (closed) {
+				return;
+			}
+			pages.put(page, rows);
+			while (pages.size() > maxCachedPages) {
+				Integer eldest = pages.keySet().iterator().next();
+				pages.remove(eldest);
+				loader.execute(() -> deliveredPages.remove(eldest));
+			}
+			int oldCount = knownRowCount;
+			int firstRow = page * fetchSize;
+			knownRowCount = Math.max(knownRowCount, firstRow + rows.length);
+			exhausted |= last;
+			if (knownRowCount > oldCount) {
+				fireTableRowsInserted(oldCount, knownRowCount - 1);
+			}
+			if (rows.length > 0 && firstRow < oldCount) {
+				fireTableRowsUpdated(firstRow, Math.min(oldCount, firstRow + rows.length) - 1);
+			}
+		});
+	}
+
+	private void closeCursor() {
+		if (cursor != null) {
+			cursor.close();
+			cursor = null;
+		}
+	}
+
+	/** The open query: its connection, statement and result set, and the next row index. */
+	private final class Cursor {
+		private final Connection connection;
+		private final Statement statement;
+		private final ResultSet resultSet;
+		private final int columnCount;
+		private long position;
+		private boolean done;
+
+		Cursor() throws SQLException, ClassNotFoundException {
+			Connection opened = connections.get();
+			try {
+				statement = opened.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				// Connector/J only streams rows with this fetch size; others honour the page size
+				statement.setFetchSize(vendor == EDbVendor.dbvmysql ? Integer.MIN_VALUE : fetchSize);
+				resultSet = statement.executeQuery(sql);
+				ResultSetMetaData metaData = resultSet.getMetaData();
+				columnCount = metaData.getColumnCount();
+				String[] names = new String[columnCount];
+				for (int c = 0; c < columnCount; c++) {
+					names[c] = metaData.getColumnLabel(c + 1);
+				}
+				publishColumns(names);
+			} catch (SQLException | RuntimeException e) {
+				opened.close();
+				throw e;
+			}
+			connection = opened;
+		}
+
+		/** Reads up to one page from the current position. */
+		Object[][] readPage() throws SQLException {
+			Object[][] rows = new Object[fetchSize][];
+			int count = 0;
+			while (count < fetchSize && resultSet.next()) {
+				Object[] row = new Object[columnCount];
+				for (int c = 0; c < columnCount; c++) {
+					row[c] = resultSet.getObject(c + 1);
+				}
+				rows[count++] = row;
+			}
+			done = count < fetchSize;
+			position += count;
+			return count == fetchSize ? rows : Arrays.copyOf(rows, count);
+		}
+
+		boolean isDone() {
+			return done;
+		}
+
+		void close() {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				System.err.println("Could not close row cursor: " + e.getMessage());
+			}
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				System.err.println("Could not release row cursor connection: " + e.getMessage());
+			}
+		}
+	}
+
+	/** Loader thread: sets the column names on first open and tells the table. */
+	private void publishColumns(String[] names) {
+		SwingUtilities.invokeLater(() -> {
+			if (closed || columnNames.length == names.length) {
+				return;
+			}
+			columnNames = names;
+			fireTableStructureChanged();
+		});
+	}
+}
@@ -1,17 +1,16 @@
 package in.mystrn.sqlutil.utils;
 
 import java.awt.Component;
-import java.awt.Dimension;
 
 import javax.swing.JTable;
 import javax.swing.JTextArea;
-import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.table.TableCellRenderer;
 
 /**
- * A TableCellRenderer that wraps text within a JTextArea and adjusts row
- * height.
+ * A TableCellRenderer that wraps text within a JTextArea. Row heights are
+ * left to a {@link RowHeightLayoutService} installed on the table, which
+ * measures the wrapped text off the EDT.
  */
 public class WrappingTableCellRenderer extends JTextArea implements TableCellRenderer {
 	private static final long serialVersionUID = 8617037110140323308L;
@@ -35,17 +34,6 @@ public class WrappingTableCellRenderer extends JTextArea implements TableCellRen
 			setForeground(table.getForeground());
 			setBackground(table.getBackground());
 		}
-		int columnWidth = table.getColumnModel().getColumn(column).getWidth();
-		setSize(new Dimension(columnWidth, Short.MAX_VALUE));
-		int preferredHeight = getPreferredSize().height;
-		// Adjust row height using invokeLater
-		if (table.getRowHeight(row) != preferredHeight) {
-			SwingUtilities.invokeLater(() -> {
-				if (table.getRowCount() > row && table.getRowHeight(row) != preferredHeight) {
-					table.setRowHeight(row, preferredHeight);
-				}
-			});
-		}
 		return this;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package in.mystrn.sqlutil.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import in.mystrn.sqlutil.models.ExplainPlan;
+import in.mystrn.sqlutil.models.PlanNode;
+
+/**
+ * Plans parsed by {@link ExplainPlanParser} from each EXPLAIN output format.
+ *
+ * @author hive
+ */
+class ExplainPlanParserTest {
+
+	/** Mode, plan text, and the expected nodes depth first as "operation|table|type|key". */
+	private static final Object[][] SHAPES = {
+			// Classic FORMAT=JSON layout
+			{ ExplainPlan.Mode.JSON,
+					"{\"query_block\": {\"select_id\": 1, \"cost_info\": {\"query_cost\": \"2.50\"},"
+							+ " \"ordering_operation\": {\"using_filesort\": true,"
+							+ " \"nested_loop\": [{\"table\": {\"table_name\": \"o\", \"access_type\": \"ALL\","
+							+ " \"rows_examined_per_scan\": 100}},"
+							+ " {\"table\": {\"table_name\": \"c\", \"access_type\": \"eq_ref\", \"key\": \"PRIMARY\"}}]}}}",
+					List.of("Query block #1|||", "Sort|||", "Nested loop join|||", "Table scan on o|o|ALL|",
+							"Single-row index lookup on c using PRIMARY|c|eq_ref|PRIMARY") },
+			// Operator layout of explain_json_format_version=2
+			{ ExplainPlan.Mode.JSON,
+					"{\"operation\": \"Filter: (t.a > 1)\", \"inputs\": [{\"operation\": \"Index range scan on t\","
+							+ " \"alias\": \"t\", \"access_type\": \"index\", \"index_access_type\": \"index_range_scan\","
+							+ " \"index_name\": \"ix_a\"}]}",
+					List.of("Filter|||", "Index range scan on t|t|range|ix_a") },
+			// EXPLAIN ANALYZE tree
+			{ ExplainPlan.Mode.ANALYZE,
+					"-> Nested loop inner join  (cost=4.95 rows=9) (actual time=0.153..0.200 rows=9 loops=1)\n"
+							+ "    -> Table scan on t1  (cost=1.15 rows=9) (actual time=0.080..0.096 rows=9 loops=1)\n"
+							+ "    -> Single-row index lookup on t2 using PRIMARY (id=t1.id)  (cost=0.27 rows=1)"
+							+ " (actual time=0.010..0.010 rows=1 loops=9)\n",
+					List.of("Nested loop inner join|||", "Table scan on t1|t1|ALL|",
+							"Single-row index lookup on t2 using PRIMARY (id=t1.id)|t2|eq_ref|PRIMARY") },
+			// Siblings after a deeper subtree, and a never executed operator
+			{ ExplainPlan.Mode.ANALYZE,
+					"-> Filter: (a > 1)  (cost=1 rows=1) (actual time=0.1..0.2 rows=0 loops=1)\n"
+							+ "    -> Sort: t.a  (actual time=0.1..0.1 rows=0 loops=1)\n"
+							+ "        -> Table scan on t  (cost=1 rows=1) (actual time=0.05..0.05 rows=0 loops=1)\n"
+							+ "    -> Covering index scan on u using ix  (cost=1 rows=1) (never executed)\n",
+					List.of("Filter|||", "Sort|||", "Table scan on t|t|ALL|", "Covering index scan on u using ix|u|index|ix") },
+			// EXPLAIN ANALYZE answered in JSON
+			{ ExplainPlan.Mode.ANALYZE,
+					"  {\"operation\": \"Table scan on t\", \"alias\": \"t\", \"access_type\": \"table\","
+							+ " \"actual_rows\": 3, \"actual_loops\": 1, \"actual_last_row_ms\": 0.5}",
+					List.of("Table scan on t|t|ALL|") },
+			// Several top-level operators, grouped under an untimed root
+			{ ExplainPlan.Mode.ANALYZE,
+					"-> Table scan on t  (cost=1 rows=4) (actual time=0.1..0.5 rows=4 loops=1)\n"
+							+ "-> Select #2 (subquery in projection; run only once)\n"
+							+ "    -> Index lookup on u using ix  (cost=1 rows=1) (actual time=0.2..0.25 rows=1 loops=2)\n",
+					List.of("Plan|||", "Table scan on t|t|ALL|", "Select #2 (subquery in projection; run only once)|||",
+							"Index lookup on u using ix|u|ref|ix") }, };
+
+	/** Mode and text that cannot be parsed. */
+	private static final Object[][] INVALID = {
+			{ ExplainPlan.Mode.JSON, "" },
+			{ ExplainPlan.Mode.JSON, "[1]" },
+			{ ExplainPlan.Mode.JSON, "{\"unknown\": 1}" },
+			{ ExplainPlan.Mode.JSON, "{\"query_block\": " },
+			{ ExplainPlan.Mode.ANALYZE, "no operators here" },
+			{ ExplainPlan.Mode.TRADITIONAL, "-> Table scan on t" }, };
+
+	@Test
+	void parsesPlanShapes() {
+		for (Object[] c : SHAPES) {
+			ExplainPlan plan = ExplainPlanParser.parse((ExplainPlan.Mode) c[0], (String) c[1]);
+			assertEquals(c[2], describe(plan), (String) c[1]);
+		}
+	}
+
+	@Test
+	void readsEstimatesAndActuals() {
+		ExplainPlan plan = ExplainPlanParser.parse(ExplainPlan.Mode.ANALYZE, (String) SHAPES[2][1]);
+		assertTrue(plan.hasActuals());
+		PlanNode lookup = plan.getNodes().get(2);
+		assertEquals(0.27, lookup.getEstimatedCost(), 1e-9);
+		assertEquals(1, lookup.getEstimatedRows(), 1e-9);
+		assertEquals(9, lookup.getLoops());
+		assertEquals(0.09, lookup.getActualTotalMs(), 1e-9);
+		// 0.200 ms for the join minus 0.096 + 0.090 ms for its inputs
+		assertEquals(0.014, plan.getRoot().getActualSelfMs(), 1e-9);
+	}
+
+	@Test
+	void readsClassicJsonCosts() {
+		ExplainPlan plan = ExplainPlanParser.parse(ExplainPlan.Mode.JSON, (String) SHAPES[0][1]);
+		assertFalse(plan.hasActuals());
+		assertEquals(2.5, plan.getRoot().getEstimatedCost(), 1e-9);
+		assertTrue(plan.getNodes().get(1).isUsingFilesort());
+		assertEquals(100, plan.getNodes().get(3).getEstimatedRows(), 1e-9);
+	}
+
+	@Test
+	void neverExecutedOperatorHasZeroActuals() {
+		ExplainPlan plan = ExplainPlanParser.parse(ExplainPlan.Mode.ANALYZE, (String) SHAPES[3][1]);
+		PlanNode skipped = plan.getNodes().get(3);
+		assertTrue(skipped.hasActuals());
+		assertEquals(0, skipped.getLoops());
+		assertEquals(0, skipped.getActualRows(), 1e-9);
+		assertTrue(plan.getNodes().get(1).isUsingFilesort());
+	}
+
+	@Test
+	void untimedRootKeepsTheActualsOfItsInputs() {
+		ExplainPlan plan = ExplainPlanParser.parse(ExplainPlan.Mode.ANALYZE, (String) SHAPES[5][1]);
+		assertFalse(plan.getRoot().hasActuals());
+		assertTrue(plan.hasActuals());
+		// 0.5 ms for the scan plus 2 loops of 0.25 ms for the lookup
+		assertEquals(1.0, plan.getActualTotalMs(), 1e-9);
+		assertEquals(11, ExplainPlanParser.toTableModel(plan).getColumnCount());
+	}
+
+	@Test
+	void rejectsUnparseableText() {
+		for (Object[] c : INVALID) {
+			assertThrows(IllegalArgumentException.class,
+					() -> ExplainPlanParser.parse((ExplainPlan.Mode) c[0], (String) c[1]), c[0] + ": " + c[1]);
+		}
+	}
+
+	@Test
+	void tableModelHasActualColumnsOnlyForAnalyze() {
+		ExplainPlan analyzed = ExplainPlanParser.parse(ExplainPlan.Mode.ANALYZE, (String) SHAPES[2][1]);
+		CustomTableModel model = ExplainPlanParser.toTableModel(analyzed);
+		assertEquals(11, model.getColumnCount());
+		assertEquals(3, model.getRowCount());
+		assertEquals("  -> Table scan on t1", model.getValueAt(1, 0));
+		assertEquals("9", model.getValueAt(2, 9));
+
+		ExplainPlan estimated = ExplainPlanParser.parse(ExplainPlan.Mode.JSON, (String) SHAPES[1][1]);
+		assertEquals(7, ExplainPlanParser.toTableModel(estimated).getColumnCount());
+	}
+
+	private static List<String> describe(ExplainPlan plan) {
+		List<String> nodes = new ArrayList<>();
+		for (PlanNode node : plan.getNodes()) {
+			nodes.add(node.getOperation() + "|" + orEmpty(node.getTable()) + "|" + orEmpty(node.getAccessType()) + "|"
+					+ orEmpty(node.getKey()));
+		}
+		return nodes;
+	}
+
+	private static String orEmpty(String value) {
+		return value == null ? "" : value;
+	}
+}
@@ -0,0 +1,58 @@
+package in.mystrn.sqlutil.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Values read by {@link JsonReader}, and the documents it rejects.
+ *
+ * @author hive
+ */
+class JsonReaderTest {
+
+	/** JSON text and the value expected from it. */
+	private static final Object[][] VALUES = {
+			{ "true", Boolean.TRUE },
+			{ " false ", Boolean.FALSE },
+			{ "null", null },
+			{ "0", 0.0 },
+			{ "-12.5e1", -125.0 },
+			{ "\"a\\\"b\\\\c\\/d\\n\\t\\u00e9\"", "a\"b\\c/d\n\t\u00e9" },
+			{ "[]", List.of() },
+			{ "[1, \"x\", [true]]", List.of(1.0, "x", List.of(true)) },
+			{ "[null]", Arrays.asList((Object) null) },
+			{ "{}", Map.of() },
+			{ "{\"a\": {\"b\": [ 1 , 2 ]}}", Map.of("a", Map.of("b", List.of(1.0, 2.0))) }, };
+
+	/** Documents that are not valid JSON. */
+	private static final String[] INVALID = { "", "   ", "tru", "[1,", "[1 2]", "{\"a\" 1}", "{a: 1}", "{\"a\": 1,}",
+			"\"unterminated", "\"\\u12\"", "1 2", "-", "@" };
+
+	@Test
+	void readsValues() {
+		for (Object[] c : VALUES) {
+			assertEquals(c[1], JsonReader.parse((String) c[0]), (String) c[0]);
+		}
+	}
+
+	@Test
+	void keepsMemberOrder() {
+		Object document = JsonReader.parse("{\"z\": 1, \"a\": 2, \"m\": 3}");
+		assertEquals(LinkedHashMap.class, document.getClass());
+		assertEquals(List.of("z", "a", "m"), List.copyOf(((Map<?, ?>) document).keySet()));
+	}
+
+	@Test
+	void rejectsInvalidDocuments() {
+		for (String text : INVALID) {
+			assertThrows(IllegalArgumentException.class, () -> JsonReader.parse(text), text);
+		}
+	}
+}
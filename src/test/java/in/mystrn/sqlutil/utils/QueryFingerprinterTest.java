@@ -0,0 +1,89 @@
+package in.mystrn.sqlutil.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+import in.mystrn.sqlutil.models.QueryFingerprint;
+
+/**
+ * Fingerprints computed by {@link QueryFingerprinter} from the Gudu lexer.
+ *
+ * @author hive
+ */
+class QueryFingerprinterTest {
+
+	/** MySQL statement and its expected fingerprint text. */
+	private static final String[][] TEXTS = {
+			{ "SELECT * FROM t WHERE id = 5", "select * from t where id = ?" },
+			{ "select  *\n from T where ID = 'x';", "select * from t where id = ?" },
+			{ "SELECT a FROM t WHERE id IN (1, 2, 3)", "select a from t where id in (?)" },
+			{ "SELECT a FROM t WHERE id IN (-1, 2)", "select a from t where id in (?)" },
+			{ "SELECT a FROM t WHERE id = -5", "select a from t where id = ?" },
+			{ "SELECT a - 5 FROM t", "select a - ? from t" },
+			{ "INSERT INTO t (a, b) VALUES (1, 'x'), (2, 'y')", "insert into t (a, b) values (?)" },
+			{ "SELECT /* note */ a FROM t -- trailing\n", "select a from t" }, };
+
+	/** Pairs of MySQL statements with the same shape. */
+	private static final String[][] SAME = {
+			{ "SELECT a FROM t WHERE id = 5", "SELECT a FROM t WHERE id = -5" },
+			{ "SELECT a FROM t WHERE id = 5", "SELECT a FROM t WHERE id = +5" },
+			{ "SELECT a FROM t WHERE id IN (1)", "SELECT a FROM t WHERE id IN (-1, 2, -3)" },
+			{ "SELECT a FROM t WHERE x = \"s\"", "SELECT a FROM t WHERE x = 's'" },
+			{ "SELECT a FROM t", "select A from T;" }, };
+
+	/** Pairs of MySQL statements with different shapes. */
+	private static final String[][] DIFFERENT = {
+			{ "SELECT a - 5 FROM t", "SELECT a + 5 FROM t" },
+			{ "SELECT a - 5 FROM t", "SELECT a FROM t" },
+			{ "SELECT a FROM t WHERE id = 5", "SELECT a FROM t WHERE id > 5" },
+			{ "SELECT /*+ NO_INDEX(t) */ a FROM t", "SELECT a FROM t" }, };
+
+	@Test
+	void normalizesStatements() {
+		for (String[] c : TEXTS) {
+			assertEquals(c[1], fingerprint(c[0]).getText(), c[0]);
+		}
+	}
+
+	@Test
+	void groupsStatementsOfTheSameShape() {
+		for (String[] c : SAME) {
+			assertEquals(fingerprint(c[0]), fingerprint(c[1]), c[0] + " / " + c[1]);
+		}
+		for (String[] c : DIFFERENT) {
+			assertNotEquals(fingerprint(c[0]), fingerprint(c[1]), c[0] + " / " + c[1]);
+		}
+	}
+
+	@Test
+	void digestDoesNotDependOnTheDefaultLocale() {
+		QueryFingerprint expected = fingerprint("SELECT ID, TITLE FROM ITEMS WHERE ID = 1");
+		Locale saved = Locale.getDefault();
+		try {
+			// Turkish lower-cases "I" to a dotless "i"
+			Locale.setDefault(new Locale("tr", "TR"));
+			QueryFingerprint turkish = fingerprint("SELECT ID, TITLE FROM ITEMS WHERE ID = 1");
+			assertEquals(expected.getText(), turkish.getText());
+			assertEquals(expected.getDigest(), turkish.getDigest());
+			assertEquals("select id, title from items where id = ?", turkish.getText());
+		} finally {
+			Locale.setDefault(saved);
+		}
+	}
+
+	@Test
+	void digestIsTheHashOfTheText() {
+		QueryFingerprint fingerprint = fingerprint("SELECT a FROM t WHERE id = 5");
+		assertEquals(SqlTextNormalizer.hash64(fingerprint.getText()), fingerprint.getDigest());
+	}
+
+	private static QueryFingerprint fingerprint(String sql) {
+		return QueryFingerprinter.fingerprint(EDbVendor.dbvmysql, sql);
+	}
+}
@@ -0,0 +1,182 @@
+package in.mystrn.sqlutil.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import gudusoft.gsqlparser.EDbVendor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Statement boundaries found by {@link SqlStatementSplitter}, from script
+ * text and from memory-mapped files.
+ *
+ * @author hive
+ */
+class SqlStatementSplitterTest {
+
+	/** Vendor, script, and the statements expected from it. */
+	private static final Object[][] CASES = {
+			{ EDbVendor.dbvmysql, "SELECT 1; SELECT 2;", List.of("SELECT 1", "SELECT 2") },
+			{ EDbVendor.dbvmysql, "SELECT 1", List.of("SELECT 1") },
+			{ EDbVendor.dbvmysql, "  \n-- only a comment;\n/* ; */\n", List.of() },
+			// Delimiters inside literals and quoted identifiers
+			{ EDbVendor.dbvmysql, "SELECT 'a;b', \"c;d\", `e;f`; SELECT 2;",
+					List.of("SELECT 'a;b', \"c;d\", `e;f`", "SELECT 2") },
+			{ EDbVendor.dbvmysql, "SELECT 'it''s;', 'x\\';y'; SELECT 2;",
+					List.of("SELECT 'it''s;', 'x\\';y'", "SELECT 2") },
+			// Backslash is an escape for MySQL and PostgreSQL E'' strings only
+			{ EDbVendor.dbvpostgresql, "SELECT 'C:\\'; SELECT 2;", List.of("SELECT 'C:\\'", "SELECT 2") },
+			{ EDbVendor.dbvpostgresql, "SELECT \"a\\\"; SELECT 2;", List.of("SELECT \"a\\\"", "SELECT 2") },
+			{ EDbVendor.dbvpostgresql, "SELECT E'x\\';y'; SELECT 2;", List.of("SELECT E'x\\';y'", "SELECT 2") },
+			{ EDbVendor.dbvpostgresql, "SELECT e'\\''; SELECT 2;", List.of("SELECT e'\\''", "SELECT 2") },
+			{ EDbVendor.dbvpostgresql, "SELECT name'C:\\'; SELECT 2;", List.of("SELECT name'C:\\'", "SELECT 2") },
+			{ EDbVendor.dbvmssql, "SELECT 'C:\\'; SELECT 2;", List.of("SELECT 'C:\\'", "SELECT 2") },
+			{ EDbVendor.dbvmssql, "SELECT N'C:\\' AS p; SELECT 2;", List.of("SELECT N'C:\\' AS p", "SELECT 2") },
+			// Comments
+			{ EDbVendor.dbvmysql, "-- lead;\nSELECT 1 /* ; */; # tail;\nSELECT 2;",
+					List.of("SELECT 1 /* ; */", "SELECT 2") },
+			{ EDbVendor.dbvmysql, "SELECT /*!40000 1 */;", List.of("SELECT /*!40000 1 */") },
+			// MySQL: "--" needs whitespace or a control character to start a comment
+			{ EDbVendor.dbvmysql, "SELECT 1--1;SELECT 2;", List.of("SELECT 1--1", "SELECT 2") },
+			{ EDbVendor.dbvmysql, "SELECT 1 --\tc;\n;SELECT 2;", List.of("SELECT 1 --\tc;", "SELECT 2") },
+			{ EDbVendor.dbvmysql, "SELECT 1 --\n;SELECT 2;", List.of("SELECT 1 --", "SELECT 2") },
+			{ EDbVendor.dbvmysql, "SELECT 1---1;", List.of("SELECT 1---1") },
+			{ EDbVendor.dbvpostgresql, "SELECT 1--1;\nSELECT 2;", List.of("SELECT 1--1;\nSELECT 2") },
+			// "#" is a comment for MySQL only
+			{ EDbVendor.dbvpostgresql, "SELECT 1 # 2; SELECT 3;", List.of("SELECT 1 # 2", "SELECT 3") },
+			// mysql client DELIMITER command
+			{ EDbVendor.dbvmysql,
+					"DELIMITER //\nCREATE PROCEDURE p() BEGIN SELECT 1; SELECT 2; END//\nDELIMITER ;\nSELECT 3;",
+					List.of("CREATE PROCEDURE p() BEGIN SELECT 1; SELECT 2; END", "SELECT 3") },
+			{ EDbVendor.dbvmysql, "-- set it\ndelimiter $$\nSELECT 1$$ SELECT 2$$",
+					List.of("SELECT 1", "SELECT 2") },
+			// PostgreSQL dollar quotes
+			{ EDbVendor.dbvpostgresql,
+					"CREATE FUNCTION f() RETURNS int AS $$ BEGIN RETURN 1; END; $$ LANGUAGE plpgsql;\nSELECT 2;",
+					List.of("CREATE FUNCTION f() RETURNS int AS $$ BEGIN RETURN 1; END; $$ LANGUAGE plpgsql",
+							"SELECT 2") },
+			{ EDbVendor.dbvpostgresql, "DO $body$ SELECT '$$;'; -- ;\n $body$; SELECT 2;",
+					List.of("DO $body$ SELECT '$$;'; -- ;\n $body$", "SELECT 2") },
+			{ EDbVendor.dbvpostgresql, "SELECT $$$$; SELECT 2;", List.of("SELECT $$$$", "SELECT 2") },
+			{ EDbVendor.dbvpostgresql, "PREPARE q AS SELECT $1; SELECT 2;",
+					List.of("PREPARE q AS SELECT $1", "SELECT 2") },
+			{ EDbVendor.dbvpostgresql, "SELECT a$b$ FROM t; SELECT 2;", List.of("SELECT a$b$ FROM t", "SELECT 2") },
+			{ EDbVendor.dbvmysql, "SELECT $$;SELECT 2;", List.of("SELECT $$", "SELECT 2") }, };
+
+	@Test
+	void splitsStatements() {
+		for (Object[] c : CASES) {
+			EDbVendor vendor = (EDbVendor) c[0];
+			String script = (String) c[1];
+			assertEquals(c[2], sqlOf(split(vendor, script)), vendor + ": " + script);
+		}
+	}
+
+	@Test
+	void reportsLinesAndByteOffsets() {
+		// "\u00e9" is two bytes in UTF-8
+		List<SqlStatementSplitter.Statement> statements = split(EDbVendor.dbvmysql,
+				"SELECT '\u00e9';\n\n  SELECT 2;");
+		assertEquals(2, statements.size());
+		assertEquals(0, statements.get(0).getOffset());
+		assertEquals(1, statements.get(0).getLine());
+		assertEquals(12, statements.get(0).getByteLength());
+		assertEquals(16, statements.get(1).getOffset());
+		assertEquals(3, statements.get(1).getLine());
+		assertEquals(1, statements.get(1).getIndex());
+	}
+
+	@Test
+	void reportsOversizedStatementsWithoutText() {
+		SqlStatementSplitter splitter = new SqlStatementSplitter(EDbVendor.dbvmysql,
+				SqlStatementSplitter.DEFAULT_WINDOW_SIZE, 16);
+		String longStatement = "SELECT 'a long literal; still inside it'";
+		List<SqlStatementSplitter.Statement> statements = new ArrayList<>();
+		splitter.split("SELECT 1;" + longStatement + ";SELECT 3;", statements::add);
+
+		assertEquals(3, statements.size());
+		assertFalse(statements.get(0).isOversized());
+		assertTrue(statements.get(1).isOversized());
+		assertNull(statements.get(1).getSql());
+		assertEquals(longStatement.length() + 1, statements.get(1).getByteLength());
+		assertEquals(9, statements.get(1).getOffset());
+		assertEquals("SELECT 3", statements.get(2).getSql());
+	}
+
+	@Test
+	void oversizedDollarQuoteStillCloses() {
+		SqlStatementSplitter splitter = new SqlStatementSplitter(EDbVendor.dbvpostgresql,
+				SqlStatementSplitter.DEFAULT_WINDOW_SIZE, 8);
+		List<SqlStatementSplitter.Statement> statements = new ArrayList<>();
+		splitter.split("DO $body$ " + "x; ".repeat(100) + "$body$; SELECT 2;", statements::add);
+
+		assertEquals(2, statements.size());
+		assertTrue(statements.get(0).isOversized());
+		assertTrue(statements.get(1).isOversized());
+	}
+
+	@Test
+	void fileWindowsMatchInMemoryText() throws IOException {
+		String script = "DELIMITER //\nCREATE PROCEDURE p() BEGIN SELECT '\u00e9;'; END//\nDELIMITER ;\n"
+				+ "SELECT 1--1; -- c;\nSELECT `a;b` /* ; */ FROM t; # x;\nSELECT \"\u20ac\"";
+		Path file = Files.createTempFile("splitter", ".sql");
+		try {
+			Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+			List<String> expected = describe(split(EDbVendor.dbvmysql, script));
+			// Every small window size puts boundaries inside markers, quotes and multi-byte characters
+			for (int windowSize = 1; windowSize <= 7; windowSize++) {
+				List<SqlStatementSplitter.Statement> statements = new ArrayList<>();
+				new SqlStatementSplitter(EDbVendor.dbvmysql, windowSize, SqlStatementSplitter.DEFAULT_MAX_STATEMENT_BYTES)
+						.split(file, statements::add);
+				assertEquals(expected, describe(statements), "window size " + windowSize);
+			}
+			assertEquals(4, expected.size());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	void splitterCanBeReused() {
+		SqlStatementSplitter splitter = new SqlStatementSplitter(EDbVendor.dbvmysql);
+		splitter.split("DELIMITER //\nSELECT 'unterminated", statement -> {
+		});
+		List<SqlStatementSplitter.Statement> statements = new ArrayList<>();
+		assertEquals(2, splitter.split("SELECT 1; SELECT 2;", statements::add));
+		assertEquals(List.of("SELECT 1", "SELECT 2"), sqlOf(statements));
+		assertEquals(1, statements.get(0).getLine());
+	}
+
+	private static List<SqlStatementSplitter.Statement> split(EDbVendor vendor, String script) {
+		List<SqlStatementSplitter.Statement> statements = new ArrayList<>();
+		new SqlStatementSplitter(vendor).split(script, statements::add);
+		return statements;
+	}
+
+	private static List<String> sqlOf(List<SqlStatementSplitter.Statement> statements) {
+		List<String> sql = new ArrayList<>();
+		for (SqlStatementSplitter.Statement statement : statements) {
+			sql.add(statement.getSql());
+		}
+		return sql;
+	}
+
+	private static List<String> describe(List<SqlStatementSplitter.Statement> statements) {
+		List<String> described = new ArrayList<>();
+		for (SqlStatementSplitter.Statement statement : statements) {
+			described.add(statement.getIndex() + "@" + statement.getOffset() + ":" + statement.getLine() + "+"
+					+ statement.getByteLength() + " " + statement.getSql());
+		}
+		return described;
+	}
+}